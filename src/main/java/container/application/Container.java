@@ -1,11 +1,12 @@
 package container.application;
 
 import java.util.Map;
+import shared.application.TrackedEntity;
 
 /**
  * Container entity class.
  */
-public abstract class Container {
+public abstract class Container extends TrackedEntity<ContainerAttribute> {
 
     /**
      * Container code.
@@ -36,6 +37,7 @@ public abstract class Container {
      * @param isDeleted Whether the container is deleted or not.
      */
     protected Container(int code, String name, double weight, boolean isDeleted) {
+        super(ContainerAttribute.class);
         this.code = code;
         this.name = name;
         this.weight = weight;
@@ -92,6 +94,7 @@ public abstract class Container {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(ContainerAttribute.ISDELETED);
     }
 
     /**
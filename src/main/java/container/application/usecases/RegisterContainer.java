@@ -7,6 +7,8 @@ import container.application.utils.ContainerValidator;
 import container.persistence.ContainerRepository;
 import java.util.Map;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Register container use case.
@@ -18,13 +20,20 @@ public class RegisterContainer {
      */
     private ContainerRepository containerRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param containerRepository Container repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public RegisterContainer(ContainerRepository containerRepository) {
+    public RegisterContainer(ContainerRepository containerRepository, SequenceRepository sequenceRepository) {
         this.containerRepository = containerRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -42,7 +51,7 @@ public class RegisterContainer {
     public ContainerValidationState execute(Map<ContainerAttribute, Object> newContainerAttributes) {
         boolean isCodeManuallyAdded = newContainerAttributes.containsKey(ContainerAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedContainerCode = CodeAutoGenerator.generate(containerRepository);
+            int generatedContainerCode = CodeAutoGenerator.generate(sequenceRepository, "container");
             newContainerAttributes.put(ContainerAttribute.CODE, generatedContainerCode);
         }
 
@@ -50,7 +59,12 @@ public class RegisterContainer {
 
         ContainerValidationState containerValidationState = ContainerValidator.isValid(container, containerRepository);
         if (containerValidationState == ContainerValidationState.VALID) {
-            containerRepository.register(container);
+            try {
+                containerRepository.register(container);
+            } catch (DuplicatedEntityException ex) {
+                // Another station has registered the same container after the validation.
+                return ContainerValidationState.DUPLICATED;
+            }
         }
 
         return containerValidationState;
@@ -19,15 +19,7 @@ public class DuplicatedContainerValidator {
      * @return true if the container is duplicated, otherwise false.
      */
     public static boolean isDuplicated(Container container, ContainerRepository containerRepository) {
-        int containerCode = container.getCode();
-
-        for (Integer code : containerRepository.getCodeList()) {
-            if (code.equals(containerCode)) {
-                return true;
-            }
-        }
-
-        return false;
+        return containerRepository.hasCode(container.getCode());
     }
 
 }
@@ -5,6 +5,7 @@ import container.application.Container;
 import container.application.Pallet;
 import java.util.ArrayList;
 import shared.persistence.Repository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Represents the repository model for the container entity.
@@ -46,18 +47,22 @@ public interface ContainerRepository extends Repository {
     public ArrayList<Pallet> getPallets(boolean includeRemoved);
 
     /**
-     * Get the code from all containers from the repository.
+     * Check whether there is a container with the given code, even if it has been
+     * removed.
      *
-     * @return A list with all the retrieved container codes.
+     * @param code The container code.
+     * @return true if there is a container with the given code, otherwise false.
      */
-    public ArrayList<Integer> getCodeList();
+    public boolean hasCode(int code);
 
     /**
      * Register the given container.
      *
      * @param container The container to register.
+     * @throws DuplicatedEntityException Thrown when another container has
+     * the same unique key.
      */
-    public void register(Container container);
+    public void register(Container container) throws DuplicatedEntityException;
 
     /**
      * Update the given container with its associated data.
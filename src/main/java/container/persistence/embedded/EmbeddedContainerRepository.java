@@ -0,0 +1,201 @@
+package container.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import container.application.Box;
+import container.application.Container;
+import container.application.ContainerAttribute;
+import container.application.Pallet;
+import container.persistence.ContainerRepository;
+import container.persistence.mongo.ContainerCodec;
+import java.util.ArrayList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the container collection on the embedded database.
+ */
+public class EmbeddedContainerRepository extends EmbeddedRepository implements ContainerRepository {
+
+    /**
+     * Recently used containers, indexed by their code.
+     */
+    private final EntityCache<Integer, Container> cache;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedContainerRepository() throws NotDefinedDatabaseContextException {
+        super("container", new ContainerCodec());
+        super.createIndex(true, "code");
+        super.createIndex(false, "isBox", "isDeleted");
+        this.cache = new EntityCache<>("container");
+    }
+
+    /**
+     * It creates a document from a container.
+     *
+     * @param container The container to get the data.
+     * @return A document with the given container data.
+     */
+    private Document createDocumentFrom(Container container) {
+        Document document = new Document();
+
+        document.append("code", container.getCode());
+        document.append("name", container.getName());
+        document.append("weight", container.getWeight());
+        document.append("isBox", container.isBox());
+        document.append("isDeleted", container.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * Obtain the filter for the container code.
+     *
+     * @param code The container code.
+     * @return A filter indicating that the query must only obtain the container
+     * which contains the given container code.
+     */
+    private Bson getContainerCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * Obtain the filter to get the containers of the given type.
+     *
+     * @param isBox Whether the query must obtain boxes or pallets.
+     * @param includeRemoved Whether the query must obtain removed containers
+     * or not.
+     * @return A filter indicating that the query must only obtain the
+     * containers of the given type.
+     */
+    private Bson getContainerTypeFilter(boolean isBox, boolean includeRemoved) {
+        Bson containerTypeFilter = Filters.eq("isBox", isBox);
+        return includeRemoved ? containerTypeFilter : Filters.and(containerTypeFilter, Filters.eq("isDeleted", false));
+    }
+
+    /**
+     * It creates the update for a changed attribute of the container.
+     *
+     * @param attribute The changed attribute.
+     * @param container The container.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(ContainerAttribute attribute, Container container) {
+        if (attribute == ContainerAttribute.ISDELETED) {
+            return Updates.set("isDeleted", container.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The container attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * Find the stored container associated with the given code.
+     *
+     * @param code The container code.
+     * @return The found container, otherwise null.
+     */
+    private Container findStored(int code) {
+        Bson containerCodeFilter = this.getContainerCodeFilter(code);
+        ArrayList<Container> foundContainers = super.find(containerCodeFilter, Container.class);
+
+        return foundContainers.isEmpty() ? null : foundContainers.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Container find(int code) {
+        return this.cache.get(code, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Container> get(boolean includeRemoved) {
+        Bson filters = includeRemoved ? new Document() : Filters.eq("isDeleted", false);
+        return super.find(filters, Container.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Box> getBoxes(boolean includeRemoved) {
+        Bson containerTypeFilter = this.getContainerTypeFilter(true, includeRemoved);
+        ArrayList<Box> boxes = new ArrayList<>();
+
+        for (Container container : super.find(containerTypeFilter, Container.class)) {
+            boxes.add((Box) container);
+        }
+
+        return boxes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasCode(int code) {
+        return super.exists(this.getContainerCodeFilter(code));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Pallet> getPallets(boolean includeRemoved) {
+        Bson containerTypeFilter = this.getContainerTypeFilter(false, includeRemoved);
+        ArrayList<Pallet> pallets = new ArrayList<>();
+
+        for (Container container : super.find(containerTypeFilter, Container.class)) {
+            pallets.add((Pallet) container);
+        }
+
+        return pallets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(Container container) throws DuplicatedEntityException {
+        Document document = this.createDocumentFrom(container);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(container.getCode());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Container container) {
+        Bson containerCodeFilter = this.getContainerCodeFilter(container.getCode());
+
+        try {
+            return super.updateChanges(containerCodeFilter, container, attribute -> this.createUpdateFor(attribute, container), () -> this.createDocumentFrom(container));
+        } finally {
+            this.cache.invalidate(container.getCode());
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package container.persistence.mongo;
+
+import container.application.Box;
+import container.application.Container;
+import container.application.Pallet;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import shared.persistence.mongo.MongoCodec;
+
+/**
+ * Converts containers to and from the documents of the container collection.
+ */
+public class ContainerCodec extends MongoCodec<Container> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Container decode(BsonReader reader, DecoderContext decoderContext) {
+        Integer code = null;
+        String name = null;
+        Double weight = null;
+        Boolean isBox = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readInteger(reader);
+                    break;
+                case "name":
+                    name = super.readString(reader);
+                    break;
+                case "weight":
+                    weight = super.readDouble(reader);
+                    break;
+                case "isBox":
+                    isBox = super.readBoolean(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        if (super.orDefault(isBox, true)) {
+            return new Box(super.orDefault(code, 0), super.orDefault(name, ""), super.orDefault(weight, 0.0), super.orDefault(isDeleted, false));
+        }
+
+        return new Pallet(super.orDefault(code, 0), super.orDefault(name, ""), super.orDefault(weight, 0.0), super.orDefault(isDeleted, false));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(BsonWriter writer, Container container, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("code", container.getCode());
+        super.writeString(writer, "name", container.getName());
+        writer.writeDouble("weight", container.getWeight());
+        writer.writeBoolean("isBox", container.isBox());
+        writer.writeBoolean("isDeleted", container.isDeleted());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Container> getEncoderClass() {
+        return Container.class;
+    }
+
+}
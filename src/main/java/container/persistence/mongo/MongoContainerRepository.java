@@ -1,16 +1,21 @@
 package container.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
 import container.application.Box;
 import container.application.Container;
 import container.application.ContainerAttribute;
 import container.application.Pallet;
 import container.persistence.ContainerRepository;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 
@@ -19,6 +24,11 @@ import shared.persistence.mongo.MongoRepository;
  */
 public class MongoContainerRepository extends MongoRepository implements ContainerRepository {
 
+    /**
+     * Recently used containers, indexed by their code.
+     */
+    private final EntityCache<Integer, Container> cache;
+
     /**
      * Constructor.
      *
@@ -26,25 +36,8 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      * connected database to the system.
      */
     public MongoContainerRepository() throws NotDefinedDatabaseContextException {
-        super("container");
-    }
-
-    /**
-     * It creates a container from a Mongo document.
-     *
-     * @param document A document obtained from the Mongo collection.
-     * @return A container object based on the data obtained from the given
-     * document.
-     */
-    private Container createContainerFrom(Document document) {
-        Map<ContainerAttribute, Object> attributes = new HashMap<>();
-        attributes.put(ContainerAttribute.CODE, document.get("code"));
-        attributes.put(ContainerAttribute.NAME, document.get("name"));
-        attributes.put(ContainerAttribute.WEIGHT, document.get("weight"));
-        attributes.put(ContainerAttribute.ISBOX, document.get("isBox"));
-        attributes.put(ContainerAttribute.ISDELETED, document.get("isDeleted"));
-
-        return Container.from(attributes);
+        super("container", new ContainerCodec());
+        this.cache = new EntityCache<>("container");
     }
 
     /**
@@ -76,6 +69,58 @@ public class MongoContainerRepository extends MongoRepository implements Contain
         return Filters.eq("code", code);
     }
 
+    /**
+     * Obtain the filter to get the containers of the given type.
+     *
+     * @param isBox Whether the query must obtain boxes or pallets.
+     * @param includeRemoved Whether the query must obtain removed containers
+     * or not.
+     * @return A filter indicating that the query must only obtain the
+     * containers of the given type.
+     */
+    private Bson getContainerTypeFilter(boolean isBox, boolean includeRemoved) {
+        Bson containerTypeFilter = Filters.eq("isBox", isBox);
+        return includeRemoved ? containerTypeFilter : Filters.and(containerTypeFilter, Filters.eq("isDeleted", false));
+    }
+
+    /**
+     * It creates the update for a changed attribute of the container.
+     *
+     * @param attribute The changed attribute.
+     * @param container The container.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(ContainerAttribute attribute, Container container) {
+        if (attribute == ContainerAttribute.ISDELETED) {
+            return Updates.set("isDeleted", container.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The container attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        indexes.add(new IndexModel(Indexes.ascending("isBox", "isDeleted")));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getContainerCodeFilter(0));
+        queryShapes.add(this.getContainerTypeFilter(true, false));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -84,20 +129,25 @@ public class MongoContainerRepository extends MongoRepository implements Contain
         return super.count();
     }
 
+    /**
+     * Find the stored container associated with the given code.
+     *
+     * @param code The container code.
+     * @return The found container, otherwise null.
+     */
+    private Container findStored(int code) {
+        Bson containerCodeFilter = this.getContainerCodeFilter(code);
+        ArrayList<Container> foundContainers = super.find(containerCodeFilter, Container.class);
+
+        return foundContainers.isEmpty() ? null : foundContainers.get(0);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Container find(int code) {
-        Bson containerCodeFilter = this.getContainerCodeFilter(code);
-        ArrayList<Document> foundContainerDocuments = super.find(containerCodeFilter);
-
-        if (foundContainerDocuments.isEmpty()) {
-            return null;
-        } else {
-            Document foundContainerDocument = foundContainerDocuments.get(0);
-            return this.createContainerFrom(foundContainerDocument);
-        }
+        return this.cache.get(code, this::findStored);
     }
 
     /**
@@ -105,18 +155,8 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      */
     @Override
     public ArrayList<Container> get(boolean includeRemoved) {
-        ArrayList<Document> foundDocuments = super.find();
-
-        ArrayList<Container> containers = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            Container container = this.createContainerFrom(document);
-
-            if (includeRemoved || !container.isDeleted()) {
-                containers.add(container);
-            }
-        }
-
-        return containers;
+        Bson filters = includeRemoved ? new Document() : Filters.eq("isDeleted", false);
+        return super.find(filters, Container.class);
     }
 
     /**
@@ -124,12 +164,11 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      */
     @Override
     public ArrayList<Box> getBoxes(boolean includeRemoved) {
+        Bson containerTypeFilter = this.getContainerTypeFilter(true, includeRemoved);
         ArrayList<Box> boxes = new ArrayList<>();
 
-        for (Container container : this.get(includeRemoved)) {
-            if (container instanceof Box) {
-                boxes.add((Box) container);
-            }
+        for (Container container : super.find(containerTypeFilter, Container.class)) {
+            boxes.add((Box) container);
         }
 
         return boxes;
@@ -139,8 +178,8 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<Integer> getCodeList() {
-        return super.distinct("code", Integer.class);
+    public boolean hasCode(int code) {
+        return super.exists(this.getContainerCodeFilter(code));
     }
 
     /**
@@ -148,12 +187,11 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      */
     @Override
     public ArrayList<Pallet> getPallets(boolean includeRemoved) {
+        Bson containerTypeFilter = this.getContainerTypeFilter(false, includeRemoved);
         ArrayList<Pallet> pallets = new ArrayList<>();
 
-        for (Container container : this.get(includeRemoved)) {
-            if (container instanceof Pallet) {
-                pallets.add((Pallet) container);
-            }
+        for (Container container : super.find(containerTypeFilter, Container.class)) {
+            pallets.add((Pallet) container);
         }
 
         return pallets;
@@ -163,9 +201,10 @@ public class MongoContainerRepository extends MongoRepository implements Contain
      * {@inheritDoc}
      */
     @Override
-    public void register(Container container) {
+    public void register(Container container) throws DuplicatedEntityException {
         Document document = this.createDocumentFrom(container);
-        super.insertOne(document);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(container.getCode());
     }
 
     /**
@@ -174,7 +213,12 @@ public class MongoContainerRepository extends MongoRepository implements Contain
     @Override
     public boolean update(Container container) {
         Bson containerCodeFilter = this.getContainerCodeFilter(container.getCode());
-        return super.replaceOne(containerCodeFilter, this.createDocumentFrom(container));
+
+        try {
+            return super.updateChanges(containerCodeFilter, container, attribute -> this.createUpdateFor(attribute, container), () -> this.createDocumentFrom(container));
+        } finally {
+            this.cache.invalidate(container.getCode());
+        }
     }
 
 }
@@ -1,8 +1,8 @@
 package container.presentation.panels;
 
 import container.application.Container;
-import container.persistence.mongo.MongoContainerRepository;
 import container.application.usecases.ListContainers;
+import container.persistence.ContainerRepository;
 import container.presentation.utils.ListContainersMouseAdapter;
 import container.presentation.utils.ListContainersTableModel;
 import java.util.ArrayList;
@@ -10,6 +10,7 @@ import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.TableColumn;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -35,7 +36,7 @@ public class ListContainersPanel extends javax.swing.JPanel {
      */
     private ArrayList<Container> getContainers() {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
             ListContainers listContainers = new ListContainers(containerRepository);
             return listContainers.execute(true);
         } catch (NotDefinedDatabaseContextException ex) {
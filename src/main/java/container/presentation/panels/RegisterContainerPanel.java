@@ -3,7 +3,7 @@ package container.presentation.panels;
 import container.application.ContainerAttribute;
 import container.application.usecases.RegisterContainer;
 import container.application.utils.ContainerValidationState;
-import container.persistence.mongo.MongoContainerRepository;
+import container.persistence.ContainerRepository;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -12,6 +12,8 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.SpinnerNumberModel;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -107,8 +109,9 @@ public class RegisterContainerPanel extends javax.swing.JPanel {
      */
     private void registerContainer(Map<ContainerAttribute, Object> newContainerAttributes) {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
-            RegisterContainer registerContainer = new RegisterContainer(containerRepository);
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            RegisterContainer registerContainer = new RegisterContainer(containerRepository, sequenceRepository);
             ContainerValidationState state = registerContainer.execute(newContainerAttributes);
 
             this.showInfoMessage(state);
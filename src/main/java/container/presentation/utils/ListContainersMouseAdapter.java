@@ -2,13 +2,14 @@ package container.presentation.utils;
 
 import container.application.usecases.RemoveContainer;
 import container.application.usecases.RestoreContainer;
-import container.persistence.mongo.MongoContainerRepository;
+import container.persistence.ContainerRepository;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JTable;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -42,7 +43,7 @@ public class ListContainersMouseAdapter extends MouseAdapter {
      */
     private boolean removeContainer(int code) {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
             RemoveContainer removeContainer = new RemoveContainer(containerRepository);
             return removeContainer.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -62,7 +63,7 @@ public class ListContainersMouseAdapter extends MouseAdapter {
      */
     private boolean restoreContainer(int code) {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
             RestoreContainer restoreContainer = new RestoreContainer(containerRepository);
             return restoreContainer.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -2,13 +2,14 @@ package container.presentation.utils;
 
 import container.application.ContainerAttribute;
 import container.application.usecases.EditContainer;
-import container.persistence.mongo.MongoContainerRepository;
+import container.persistence.ContainerRepository;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -69,7 +70,7 @@ public class ListContainersTableModel extends DefaultTableModel {
         try {
             Map<ContainerAttribute, Object> containerAttributes = this.getContainerAttributes(newValue, row, column);
 
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
             EditContainer editContainer = new EditContainer(containerRepository);
             editContainer.execute(containerAttributes);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -1,11 +1,12 @@
 package customer.application;
 
 import java.util.Map;
+import shared.application.TrackedEntity;
 
 /**
  * Customer entity class.
  */
-public class Customer {
+public class Customer extends TrackedEntity<CustomerAttribute> {
 
     /**
      * Customer code.
@@ -78,6 +79,7 @@ public class Customer {
      * @param isDeleted Whether the customer is deleted or not.
      */
     private Customer(int code, String name, String tin, String address, String city, String province, String zipcode, String iban, boolean isFarmer, boolean isDeleted) {
+        super(CustomerAttribute.class);
         this.code = code;
         this.name = name;
         this.tin = tin;
@@ -187,6 +189,7 @@ public class Customer {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(CustomerAttribute.ISDELETED);
     }
 
     /**
@@ -0,0 +1,58 @@
+package customer.application;
+
+/**
+ * Customer summary class.
+ *
+ * It only contains the data needed to choose a customer, so it can be
+ * obtained without loading the whole customer.
+ */
+public class CustomerSummary {
+
+    /**
+     * Customer code.
+     */
+    private final int code;
+
+    /**
+     * Customer name.
+     */
+    private final String name;
+
+    /**
+     * Constructor.
+     *
+     * @param code Customer code.
+     * @param name Customer name.
+     */
+    public CustomerSummary(int code, String name) {
+        this.code = code;
+        this.name = name;
+    }
+
+    /**
+     * Retrieve the customer code.
+     *
+     * @return The customer code.
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Retrieve the customer name.
+     *
+     * @return The customer name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%s (%d)", this.name, this.code);
+    }
+
+}
@@ -1,6 +1,6 @@
 package customer.application.usecases;
 
-import customer.application.Customer;
+import customer.application.CustomerSummary;
 import customer.persistence.CustomerRepository;
 import java.util.ArrayList;
 
@@ -24,12 +24,12 @@ public class ObtainCustomers {
     }
 
     /**
-     * Obtain all customers.
+     * Obtain the summaries of all the non-removed customers.
      *
      * @param getFarmers Whether we should get the farmer customers or not.
-     * @return A list with all obtained customers.
+     * @return A list with the summaries of all obtained customers.
      */
-    public ArrayList<Customer> execute(boolean getFarmers) {
+    public ArrayList<CustomerSummary> execute(boolean getFarmers) {
         return customerRepository.obtain(getFarmers);
     }
 
@@ -2,11 +2,13 @@ package customer.application.usecases;
 
 import customer.application.Customer;
 import customer.application.CustomerAttribute;
-import customer.application.utils.CustomerValidator;
 import customer.application.utils.CustomerValidationState;
+import customer.application.utils.CustomerValidator;
 import customer.persistence.CustomerRepository;
 import java.util.Map;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Register customer use case.
@@ -18,13 +20,20 @@ public class RegisterCustomer {
      */
     private final CustomerRepository customerRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private final SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param customerRepository Customer repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public RegisterCustomer(CustomerRepository customerRepository) {
+    public RegisterCustomer(CustomerRepository customerRepository, SequenceRepository sequenceRepository) {
         this.customerRepository = customerRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -41,7 +50,7 @@ public class RegisterCustomer {
     public CustomerValidationState execute(Map<CustomerAttribute, Object> newCustomerAttributes) {
         boolean isCodeManuallyAdded = newCustomerAttributes.containsKey(CustomerAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedCustomerCode = CodeAutoGenerator.generate(customerRepository);
+            int generatedCustomerCode = CodeAutoGenerator.generate(sequenceRepository, "customer");
             newCustomerAttributes.put(CustomerAttribute.CODE, generatedCustomerCode);
         }
 
@@ -49,7 +58,12 @@ public class RegisterCustomer {
 
         CustomerValidationState customerValidationState = CustomerValidator.isValid(customer, customerRepository);
         if (customerValidationState == CustomerValidationState.VALID) {
-            customerRepository.register(customer);
+            try {
+                customerRepository.register(customer);
+            } catch (DuplicatedEntityException ex) {
+                // Another station has registered the same customer after the validation.
+                return CustomerValidationState.DUPLICATED;
+            }
         }
 
         return customerValidationState;
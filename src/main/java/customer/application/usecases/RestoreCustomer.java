@@ -2,6 +2,7 @@ package customer.application.usecases;
 
 import customer.application.Customer;
 import customer.persistence.CustomerRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Restore customer use case.
@@ -37,7 +38,12 @@ public class RestoreCustomer {
         }
 
         customer.setIsDeleted(false);
-        return customerRepository.update(customer);
+        try {
+            return customerRepository.update(customer);
+        } catch (DuplicatedEntityException ex) {
+            // Only the removal state is updated, so it is not expected to break the TIN index.
+            return false;
+        }
     }
 
 }
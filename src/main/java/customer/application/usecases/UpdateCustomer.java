@@ -6,6 +6,7 @@ import customer.application.utils.CustomerValidationState;
 import customer.application.utils.CustomerValidator;
 import customer.persistence.CustomerRepository;
 import java.util.Map;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Update customer use case.
@@ -41,7 +42,12 @@ public class UpdateCustomer {
 
         CustomerValidationState customerValidationState = CustomerValidator.isValid(customer, repository);
         if (customerValidationState == CustomerValidationState.VALID) {
-            customerRepository.update(customer);
+            try {
+                customerRepository.update(customer);
+            } catch (DuplicatedEntityException ex) {
+                // Another station has taken the same TIN after the validation.
+                return CustomerValidationState.DUPLICATED;
+            }
         }
 
         return customerValidationState;
@@ -19,15 +19,7 @@ public class DuplicatedCustomerValidator {
      * @return true if the customer is duplicated, otherwise false.
      */
     public static boolean isDuplicated(Customer customer, CustomerRepository customerRepository) {
-        String customerTin = customer.getTin();
-
-        for (String tin : customerRepository.getTinList()) {
-            if (tin.equals(customerTin)) {
-                return true;
-            }
-        }
-
-        return false;
+        return customerRepository.hasTin(customer.getTin());
     }
 
 }
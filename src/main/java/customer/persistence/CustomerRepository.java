@@ -1,8 +1,11 @@
 package customer.persistence;
 
 import customer.application.Customer;
+import customer.application.CustomerSummary;
 import java.util.ArrayList;
+import java.util.List;
 import shared.persistence.Repository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Represents the repository model for the customer entity.
@@ -10,18 +13,22 @@ import shared.persistence.Repository;
 public interface CustomerRepository extends Repository {
 
     /**
-     * Get the TIN from all non-removed customers from the repository.
+     * Check whether there is a customer with the given TIN, even if it has been
+     * removed.
      *
-     * @return A list with all the retrieved TINs.
+     * @param tin The customer TIN.
+     * @return true if there is a customer with the given TIN, otherwise false.
      */
-    public ArrayList<String> getTinList();
+    public boolean hasTin(String tin);
 
     /**
      * Register the given customer.
      *
      * @param customer The customer to register.
+     * @throws DuplicatedEntityException Thrown when another customer has
+     * the same unique key.
      */
-    public void register(Customer customer);
+    public void register(Customer customer) throws DuplicatedEntityException;
 
     /**
      * Obtain all the customers registered on the system, even if they have been
@@ -40,20 +47,30 @@ public interface CustomerRepository extends Repository {
      */
     public Customer find(int code);
 
+    /**
+     * Find all the customers which match with the given codes in one query.
+     *
+     * @param codes The codes of the customers to find.
+     * @return A list with the found customers.
+     */
+    public ArrayList<Customer> find(List<Integer> codes);
+
     /**
      * Update the given customer with its associated data.
      *
      * @param customer The customer to update.
      * @return Whether the customer has been updated or not.
+     * @throws DuplicatedEntityException Thrown when another customer has the
+     * same TIN.
      */
-    public boolean update(Customer customer);
+    public boolean update(Customer customer) throws DuplicatedEntityException;
 
     /**
-     * Obtain all customers.
+     * Obtain the summaries of all the non-removed farmer or trader customers.
      *
      * @param getFarmers Whether we should get the farmer customers or not.
-     * @return A list with all obtained customers.
+     * @return A list with the summaries of all obtained customers.
      */
-    public ArrayList<Customer> obtain(boolean getFarmers);
+    public ArrayList<CustomerSummary> obtain(boolean getFarmers);
 
 }
@@ -0,0 +1,245 @@
+package customer.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import customer.application.Customer;
+import customer.application.CustomerAttribute;
+import customer.application.CustomerSummary;
+import customer.persistence.CustomerRepository;
+import customer.persistence.mongo.CustomerCodec;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the customer collection on the embedded database.
+ */
+public class EmbeddedCustomerRepository extends EmbeddedRepository implements CustomerRepository {
+
+    /**
+     * Recently used customers, indexed by their code.
+     */
+    private final EntityCache<Integer, Customer> cache;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedCustomerRepository() throws NotDefinedDatabaseContextException {
+        super("customer", new CustomerCodec());
+        super.createIndex(true, "code");
+        super.createIndex(false, "isDeleted", "isFarmer", "code", "name");
+        super.createIndex(true, "tin");
+        this.cache = new EntityCache<>("customer");
+    }
+
+    /**
+     * It creates a document from a customer.
+     *
+     * @param customer The customer to get the data.
+     * @return A document with the given customer data.
+     */
+    private Document createDocumentFrom(Customer customer) {
+        Document document = new Document();
+
+        document.append("code", customer.getCode());
+        document.append("name", customer.getName());
+        document.append("tin", customer.getTin());
+        document.append("address", customer.getAddress());
+        document.append("city", customer.getCity());
+        document.append("province", customer.getProvince());
+        document.append("zipcode", customer.getZipCode());
+        document.append("iban", customer.getIban());
+        document.append("isFarmer", customer.isFarmer());
+        document.append("isDeleted", customer.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * Obtain the filter to get all the customers which are not deleted.
+     *
+     * @return A filter indicating that the query must only obtain non-removed
+     * customers.
+     */
+    private Bson isNotDeletedFilter() {
+        return Filters.eq("isDeleted", false);
+    }
+
+    /**
+     * Obtain the filter for the customer TIN.
+     *
+     * @param tin The customer TIN.
+     * @return A filter indicating that the query must only obtain the customer
+     * which contains the given TIN.
+     */
+    private Bson getTinFilter(String tin) {
+        return Filters.eq("tin", tin);
+    }
+
+    /**
+     * Obtain the filter to get all the non-removed farmers or traders.
+     *
+     * @param getFarmers Whether the query must obtain the farmers or not.
+     * @return A filter indicating that the query must only obtain non-removed
+     * customers of the given type.
+     */
+    private Bson getCustomerTypeFilter(boolean getFarmers) {
+        return Filters.and(this.isNotDeletedFilter(), Filters.eq("isFarmer", getFarmers));
+    }
+
+    /**
+     * Obtain the projection used to query customer summaries.
+     *
+     * @return A projection indicating that the query must only obtain the
+     * customer code and name.
+     */
+    private Bson summaryProjection() {
+        return Projections.fields(Projections.include("code", "name"), Projections.excludeId());
+    }
+
+    /**
+     * Obtain the filter for the customer code.
+     *
+     * @param code The customer code.
+     * @return A filter indicating that the query must only obtain the customer
+     * which contains the given customer code.
+     */
+    private Bson getCustomerCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * It creates the update for a changed attribute of the customer.
+     *
+     * @param attribute The changed attribute.
+     * @param customer The customer.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(CustomerAttribute attribute, Customer customer) {
+        if (attribute == CustomerAttribute.ISDELETED) {
+            return Updates.set("isDeleted", customer.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The customer attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * Find the stored customer associated with the given code.
+     *
+     * @param code The customer code.
+     * @return The found customer, otherwise null.
+     */
+    private Customer findStored(int code) {
+        Bson customerCodeFilter = this.getCustomerCodeFilter(code);
+        ArrayList<Customer> foundCustomers = super.find(customerCodeFilter, Customer.class);
+
+        return foundCustomers.isEmpty() ? null : foundCustomers.get(0);
+    }
+
+    /**
+     * Find the stored customers associated with the given codes.
+     *
+     * @param codes The customer codes.
+     * @return A list with the found customers.
+     */
+    private List<Customer> findStored(List<Integer> codes) {
+        Bson customerCodesFilter = Filters.in("code", codes);
+        return super.find(customerCodesFilter, Customer.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer find(int code) {
+        return this.cache.get(code, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Customer> find(List<Integer> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return this.cache.getAll(codes, Customer::getCode, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Customer> get(boolean includeRemoved) {
+        Bson filters = includeRemoved ? new Document() : this.isNotDeletedFilter();
+        return super.find(filters, Customer.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasTin(String tin) {
+        return super.exists(this.getTinFilter(tin));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<CustomerSummary> obtain(boolean getFarmers) {
+        Bson customerTypeFilter = this.getCustomerTypeFilter(getFarmers);
+        ArrayList<Document> foundDocuments = super.find(customerTypeFilter, this.summaryProjection());
+
+        ArrayList<CustomerSummary> customerSummaries = new ArrayList<>();
+        for (Document document : foundDocuments) {
+            customerSummaries.add(new CustomerSummary(document.getInteger("code"), document.getString("name")));
+        }
+
+        return customerSummaries;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(Customer customer) throws DuplicatedEntityException {
+        Document document = this.createDocumentFrom(customer);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(customer.getCode());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Customer customer) throws DuplicatedEntityException {
+        Bson customerCodeFilter = this.getCustomerCodeFilter(customer.getCode());
+
+        try {
+            return super.updateUniqueChanges(customerCodeFilter, customer, attribute -> this.createUpdateFor(attribute, customer), () -> this.createDocumentFrom(customer));
+        } finally {
+            this.cache.invalidate(customer.getCode());
+        }
+    }
+
+}
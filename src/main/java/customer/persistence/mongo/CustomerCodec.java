@@ -0,0 +1,116 @@
+package customer.persistence.mongo;
+
+import customer.application.Customer;
+import customer.application.CustomerAttribute;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import shared.persistence.mongo.MongoCodec;
+
+/**
+ * Converts customers to and from the documents of the customer collection.
+ */
+public class CustomerCodec extends MongoCodec<Customer> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Customer decode(BsonReader reader, DecoderContext decoderContext) {
+        Integer code = null;
+        String name = null;
+        String tin = null;
+        String address = null;
+        String city = null;
+        String province = null;
+        String zipcode = null;
+        String iban = null;
+        Boolean isFarmer = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readInteger(reader);
+                    break;
+                case "name":
+                    name = super.readString(reader);
+                    break;
+                case "tin":
+                    tin = super.readString(reader);
+                    break;
+                case "address":
+                    address = super.readString(reader);
+                    break;
+                case "city":
+                    city = super.readString(reader);
+                    break;
+                case "province":
+                    province = super.readString(reader);
+                    break;
+                case "zipcode":
+                    zipcode = super.readString(reader);
+                    break;
+                case "iban":
+                    iban = super.readString(reader);
+                    break;
+                case "isFarmer":
+                    isFarmer = super.readBoolean(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Map<CustomerAttribute, Object> attributes = new HashMap<>();
+        attributes.put(CustomerAttribute.CODE, super.orDefault(code, 0));
+        attributes.put(CustomerAttribute.NAME, super.orDefault(name, ""));
+        attributes.put(CustomerAttribute.TIN, super.orDefault(tin, ""));
+        attributes.put(CustomerAttribute.ADDRESS, address);
+        attributes.put(CustomerAttribute.CITY, city);
+        attributes.put(CustomerAttribute.PROVINCE, province);
+        attributes.put(CustomerAttribute.ZIPCODE, zipcode);
+        attributes.put(CustomerAttribute.IBAN, iban);
+        attributes.put(CustomerAttribute.ISFARMER, super.orDefault(isFarmer, false));
+        attributes.put(CustomerAttribute.ISDELETED, super.orDefault(isDeleted, false));
+
+        return Customer.from(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(BsonWriter writer, Customer customer, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("code", customer.getCode());
+        super.writeString(writer, "name", customer.getName());
+        super.writeString(writer, "tin", customer.getTin());
+        super.writeString(writer, "address", customer.getAddress());
+        super.writeString(writer, "city", customer.getCity());
+        super.writeString(writer, "province", customer.getProvince());
+        super.writeString(writer, "zipcode", customer.getZipCode());
+        super.writeString(writer, "iban", customer.getIban());
+        writer.writeBoolean("isFarmer", customer.isFarmer());
+        writer.writeBoolean("isDeleted", customer.isDeleted());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Customer> getEncoderClass() {
+        return Customer.class;
+    }
+
+}
@@ -1,14 +1,21 @@
 package customer.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import customer.application.Customer;
 import customer.application.CustomerAttribute;
+import customer.application.CustomerSummary;
 import customer.persistence.CustomerRepository;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 
@@ -17,6 +24,11 @@ import shared.persistence.mongo.MongoRepository;
  */
 public class MongoCustomerRepository extends MongoRepository implements CustomerRepository {
 
+    /**
+     * Recently used customers, indexed by their code.
+     */
+    private final EntityCache<Integer, Customer> cache;
+
     /**
      * Constructor.
      *
@@ -24,7 +36,8 @@ public class MongoCustomerRepository extends MongoRepository implements Customer
      * connected database to the system.
      */
     public MongoCustomerRepository() throws NotDefinedDatabaseContextException {
-        super("customer");
+        super("customer", new CustomerCodec());
+        this.cache = new EntityCache<>("customer");
     }
 
     /**
@@ -51,36 +64,45 @@ public class MongoCustomerRepository extends MongoRepository implements Customer
     }
 
     /**
-     * It creates a customer a Mongo document.
+     * Obtain the filter to get all the customers which are not deleted.
      *
-     * @param document A document obtained from the Mongo collection.
-     * @return A customer object based on the data obtained from the given
-     * document.
+     * @return A filter indicating that the query must only obtain non-removed
+     * customers.
      */
-    private Customer createCustomerFrom(Document document) {
-        Map<CustomerAttribute, Object> attributes = new HashMap<>();
-        attributes.put(CustomerAttribute.CODE, document.get("code"));
-        attributes.put(CustomerAttribute.NAME, document.get("name"));
-        attributes.put(CustomerAttribute.TIN, document.get("tin"));
-        attributes.put(CustomerAttribute.ADDRESS, document.get("address"));
-        attributes.put(CustomerAttribute.CITY, document.get("city"));
-        attributes.put(CustomerAttribute.PROVINCE, document.get("province"));
-        attributes.put(CustomerAttribute.ZIPCODE, document.get("zipcode"));
-        attributes.put(CustomerAttribute.IBAN, document.get("iban"));
-        attributes.put(CustomerAttribute.ISFARMER, document.get("isFarmer"));
-        attributes.put(CustomerAttribute.ISDELETED, document.get("isDeleted"));
+    private Bson isNotDeletedFilter() {
+        return Filters.eq("isDeleted", false);
+    }
 
-        return Customer.from(attributes);
+    /**
+     * Obtain the filter for the customer TIN.
+     *
+     * @param tin The customer TIN.
+     * @return A filter indicating that the query must only obtain the customer
+     * which contains the given TIN.
+     */
+    private Bson getTinFilter(String tin) {
+        return Filters.eq("tin", tin);
     }
 
     /**
-     * Obtain the filter to get all the customers which are not deleted.
+     * Obtain the filter to get all the non-removed farmers or traders.
      *
+     * @param getFarmers Whether the query must obtain the farmers or not.
      * @return A filter indicating that the query must only obtain non-removed
-     * customers.
+     * customers of the given type.
      */
-    private Bson isNotDeletedFilter() {
-        return Filters.eq("isDeleted", false);
+    private Bson getCustomerTypeFilter(boolean getFarmers) {
+        return Filters.and(this.isNotDeletedFilter(), Filters.eq("isFarmer", getFarmers));
+    }
+
+    /**
+     * Obtain the projection used to query customer summaries.
+     *
+     * @return A projection indicating that the query must only obtain the
+     * customer code and name.
+     */
+    private Bson summaryProjection() {
+        return Projections.fields(Projections.include("code", "name"), Projections.excludeId());
     }
 
     /**
@@ -94,6 +116,48 @@ public class MongoCustomerRepository extends MongoRepository implements Customer
         return Filters.eq("code", code);
     }
 
+    /**
+     * It creates the update for a changed attribute of the customer.
+     *
+     * @param attribute The changed attribute.
+     * @param customer The customer.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(CustomerAttribute attribute, Customer customer) {
+        if (attribute == CustomerAttribute.ISDELETED) {
+            return Updates.set("isDeleted", customer.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The customer attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        // It covers the customer summaries query, so no document is fetched.
+        indexes.add(new IndexModel(Indexes.ascending("isDeleted", "isFarmer", "code", "name")));
+        indexes.add(new IndexModel(Indexes.ascending("tin"), new IndexOptions().unique(true)));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getCustomerCodeFilter(0));
+        queryShapes.add(this.getTinFilter(""));
+        queryShapes.add(this.isNotDeletedFilter());
+        queryShapes.add(this.getCustomerTypeFilter(true));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -102,20 +166,48 @@ public class MongoCustomerRepository extends MongoRepository implements Customer
         return super.count();
     }
 
+    /**
+     * Find the stored customer associated with the given code.
+     *
+     * @param code The customer code.
+     * @return The found customer, otherwise null.
+     */
+    private Customer findStored(int code) {
+        Bson customerCodeFilter = this.getCustomerCodeFilter(code);
+        ArrayList<Customer> foundCustomers = super.find(customerCodeFilter, Customer.class);
+
+        return foundCustomers.isEmpty() ? null : foundCustomers.get(0);
+    }
+
+    /**
+     * Find the stored customers associated with the given codes.
+     *
+     * @param codes The customer codes.
+     * @return A list with the found customers.
+     */
+    private List<Customer> findStored(List<Integer> codes) {
+        Bson customerCodesFilter = Filters.in("code", codes);
+        return super.find(customerCodesFilter, Customer.class);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Customer find(int code) {
-        Bson customerCodeFilter = this.getCustomerCodeFilter(code);
-        ArrayList<Document> foundCustomerDocuments = super.find(customerCodeFilter);
+        return this.cache.get(code, this::findStored);
+    }
 
-        if (foundCustomerDocuments.isEmpty()) {
-            return null;
-        } else {
-            Document foundCustomerDocument = foundCustomerDocuments.get(0);
-            return this.createCustomerFrom(foundCustomerDocument);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Customer> find(List<Integer> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
         }
+
+        return this.cache.getAll(codes, Customer::getCode, this::findStored);
     }
 
     /**
@@ -123,54 +215,56 @@ public class MongoCustomerRepository extends MongoRepository implements Customer
      */
     @Override
     public ArrayList<Customer> get(boolean includeRemoved) {
-        ArrayList<Document> foundDocuments = super.find();
-
-        ArrayList<Customer> customers = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            Customer customer = this.createCustomerFrom(document);
-
-            if (includeRemoved || !customer.isDeleted()) {
-                customers.add(customer);
-            }
-        }
-
-        return customers;
+        Bson filters = includeRemoved ? new Document() : this.isNotDeletedFilter();
+        return super.find(filters, Customer.class);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<String> getTinList() {
-        return super.distinct("tin", String.class);
+    public boolean hasTin(String tin) {
+        return super.exists(this.getTinFilter(tin));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<Customer> obtain(boolean getFarmers) {
-        ArrayList<Customer> customers = this.get(false);
-        customers.removeIf(customer -> customer.isFarmer() != getFarmers);
-        return customers;
+    public ArrayList<CustomerSummary> obtain(boolean getFarmers) {
+        Bson customerTypeFilter = this.getCustomerTypeFilter(getFarmers);
+        ArrayList<Document> foundDocuments = super.find(customerTypeFilter, this.summaryProjection());
+
+        ArrayList<CustomerSummary> customerSummaries = new ArrayList<>();
+        for (Document document : foundDocuments) {
+            customerSummaries.add(new CustomerSummary(document.getInteger("code"), document.getString("name")));
+        }
+
+        return customerSummaries;
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void register(Customer customer) {
+    public void register(Customer customer) throws DuplicatedEntityException {
         Document document = this.createDocumentFrom(customer);
-        super.insertOne(document);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(customer.getCode());
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean update(Customer customer) {
+    public boolean update(Customer customer) throws DuplicatedEntityException {
         Bson customerCodeFilter = this.getCustomerCodeFilter(customer.getCode());
-        return super.replaceOne(customerCodeFilter, this.createDocumentFrom(customer));
+
+        try {
+            return super.updateUniqueChanges(customerCodeFilter, customer, attribute -> this.createUpdateFor(attribute, customer), () -> this.createDocumentFrom(customer));
+        } finally {
+            this.cache.invalidate(customer.getCode());
+        }
     }
 
 }
@@ -2,7 +2,7 @@ package customer.presentation.panels;
 
 import customer.application.Customer;
 import customer.application.usecases.ListCustomers;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.persistence.CustomerRepository;
 import customer.presentation.utils.ListCustomersMouseAdapter;
 import java.util.ArrayList;
 import java.util.Vector;
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -36,7 +37,7 @@ public class ListCustomersPanel extends javax.swing.JPanel {
      */
     private ArrayList<Customer> getCustomers() {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             ListCustomers listCustomers = new ListCustomers(customerRepository);
             return listCustomers.execute(true);
         } catch (NotDefinedDatabaseContextException ex) {
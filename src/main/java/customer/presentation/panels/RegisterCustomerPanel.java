@@ -3,7 +3,7 @@ package customer.presentation.panels;
 import customer.application.CustomerAttribute;
 import customer.application.usecases.RegisterCustomer;
 import customer.application.utils.CustomerValidationState;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.persistence.CustomerRepository;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -11,6 +11,8 @@ import java.util.logging.Logger;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -106,8 +108,9 @@ public class RegisterCustomerPanel extends javax.swing.JPanel {
      */
     private void registerCustomer(Map<CustomerAttribute, Object> newCustomerAttributes) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
-            RegisterCustomer registerCustomer = new RegisterCustomer(customerRepository);
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            RegisterCustomer registerCustomer = new RegisterCustomer(customerRepository, sequenceRepository);
             CustomerValidationState state = registerCustomer.execute(newCustomerAttributes);
 
             this.showInfoMessage(state);
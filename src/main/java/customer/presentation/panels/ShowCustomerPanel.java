@@ -5,7 +5,7 @@ import customer.application.CustomerAttribute;
 import customer.application.usecases.ShowCustomer;
 import customer.application.usecases.UpdateCustomer;
 import customer.application.utils.CustomerValidationState;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.persistence.CustomerRepository;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -14,6 +14,7 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.MainFrame;
 import shared.presentation.localization.Localization;
@@ -88,7 +89,7 @@ public class ShowCustomerPanel extends javax.swing.JPanel {
      */
     private Customer findCustomer(int customerCode) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             ShowCustomer showCustomer = new ShowCustomer(customerRepository);
             return showCustomer.execute(customerCode);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -186,7 +187,7 @@ public class ShowCustomerPanel extends javax.swing.JPanel {
      */
     private void updateCustomer(Map<CustomerAttribute, Object> customerAttributes) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             UpdateCustomer updateCustomer = new UpdateCustomer(customerRepository);
 
             String inputTin = (String) customerAttributes.get(CustomerAttribute.TIN);
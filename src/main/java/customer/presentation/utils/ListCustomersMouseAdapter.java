@@ -2,7 +2,7 @@ package customer.presentation.utils;
 
 import customer.application.usecases.RemoveCustomer;
 import customer.application.usecases.RestoreCustomer;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.persistence.CustomerRepository;
 import customer.presentation.panels.ListCustomersPanel;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import javax.swing.JTable;
 import javax.swing.SwingUtilities;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.MainFrame;
 import shared.presentation.localization.Localization;
@@ -44,7 +45,7 @@ public class ListCustomersMouseAdapter extends MouseAdapter {
      */
     private boolean removeCustomer(int code) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             RemoveCustomer removeCustomer = new RemoveCustomer(customerRepository);
             return removeCustomer.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -64,7 +65,7 @@ public class ListCustomersMouseAdapter extends MouseAdapter {
      */
     private boolean restoreCustomer(int code) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             RestoreCustomer restoreCustomer = new RestoreCustomer(customerRepository);
             return restoreCustomer.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
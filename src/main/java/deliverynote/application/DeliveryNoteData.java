@@ -1,24 +1,18 @@
 package deliverynote.application;
 
 import customer.application.Customer;
-import customer.persistence.CustomerRepository;
-import customer.persistence.mongo.MongoCustomerRepository;
 import java.io.File;
 import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import product.application.Product;
-import product.persistence.ProductRepository;
-import product.persistence.mongo.MongoProductRepository;
-import shared.persistence.Base64Converter;
-import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import shared.application.LazyFile;
+import shared.application.TrackedEntity;
 
 /**
  * Delivery note stored data.
  */
-public class DeliveryNoteData {
+public class DeliveryNoteData extends TrackedEntity<DeliveryNoteDataAttribute> {
 
     /**
      * The code.
@@ -46,9 +40,9 @@ public class DeliveryNoteData {
     private Product product;
 
     /**
-     * The file.
+     * The file, loaded on demand.
      */
-    private File file;
+    private LazyFile file;
 
     /**
      * The total number of pallets.
@@ -97,7 +91,8 @@ public class DeliveryNoteData {
      * @param isClosed Whether the delivery note is closed or not.
      * @param isDeleted Whether the delivery note is deleted or not.
      */
-    private DeliveryNoteData(int code, Date date, Customer farmer, Customer trader, Product product, File file, int numPallets, int numBoxes, int netWeight, float price, boolean isClosed, boolean isDeleted) {
+    private DeliveryNoteData(int code, Date date, Customer farmer, Customer trader, Product product, LazyFile file, int numPallets, int numBoxes, int netWeight, float price, boolean isClosed, boolean isDeleted) {
+        super(DeliveryNoteDataAttribute.class);
         this.code = code;
         this.date = date == null ? Date.from(Instant.now()) : date;
         this.farmer = farmer;
@@ -163,7 +158,7 @@ public class DeliveryNoteData {
      * @return The delivery note data file.
      */
     public File getFile() {
-        return this.file;
+        return this.file.get();
     }
 
     /**
@@ -227,6 +222,7 @@ public class DeliveryNoteData {
      */
     public void setPrice(float price) {
         this.price = price;
+        this.markChanged(DeliveryNoteDataAttribute.PRICE);
     }
 
     /**
@@ -237,6 +233,7 @@ public class DeliveryNoteData {
      */
     public void setIsClosed(boolean isClosed) {
         this.isClosed = isClosed;
+        this.markChanged(DeliveryNoteDataAttribute.IS_CLOSED);
     }
 
     /**
@@ -247,6 +244,7 @@ public class DeliveryNoteData {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(DeliveryNoteDataAttribute.IS_DELETED);
     }
 
     /**
@@ -261,33 +259,11 @@ public class DeliveryNoteData {
 
         Date date = (Date) attributes.get(DeliveryNoteDataAttribute.DATE);
 
-        Map<String, String> fileAttributes = (Map<String, String>) attributes.get(DeliveryNoteDataAttribute.FILE);
-        File file = Base64Converter.decode(fileAttributes);
-        file.deleteOnExit();
-
-        Customer farmer = null, trader = null;
-        try {
-            CustomerRepository customerRepository = new MongoCustomerRepository();
-
-            int farmerCode = (int) attributes.get(DeliveryNoteDataAttribute.FARMER);
-            farmer = customerRepository.find(farmerCode);
-
-            int traderCode = (int) attributes.get(DeliveryNoteDataAttribute.TRADER);
-            trader = customerRepository.find(traderCode);
-        } catch (NotDefinedDatabaseContextException ex) {
-            String className = DeliveryNoteData.class.getName();
-            Logger.getLogger(className).log(Level.INFO, "Customers cannot be obtained because the database has not been found", ex);
-        }
-
-        Product product = null;
-        try {
-            ProductRepository productRepository = new MongoProductRepository();
-            String productCode = (String) attributes.get(DeliveryNoteDataAttribute.PRODUCT);
-            product = productRepository.find(productCode);
-        } catch (NotDefinedDatabaseContextException ex) {
-            String className = DeliveryNoteData.class.getName();
-            Logger.getLogger(className).log(Level.INFO, "Customer cannot be obtained because the database has not been found", ex);
-        }
+        LazyFile file = LazyFile.from(attributes.get(DeliveryNoteDataAttribute.FILE));
+
+        Customer farmer = (Customer) attributes.get(DeliveryNoteDataAttribute.FARMER);
+        Customer trader = (Customer) attributes.get(DeliveryNoteDataAttribute.TRADER);
+        Product product = (Product) attributes.get(DeliveryNoteDataAttribute.PRODUCT);
 
         int numPallets = (int) attributes.getOrDefault(DeliveryNoteDataAttribute.NUM_PALLETS, 0);
         int numBoxes = (int) attributes.getOrDefault(DeliveryNoteDataAttribute.NUM_BOXES, 0);
@@ -0,0 +1,184 @@
+package deliverynote.application;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Delivery note rollup class.
+ *
+ * It contains the sums of the non-removed delivery notes of a farmer, a
+ * trader and a product on a day, closed or not. It can also represent the
+ * change to apply to those sums when a delivery note is saved or updated.
+ */
+public class DeliveryNoteRollup {
+
+    /**
+     * Day of the delivery notes, at the start of the day.
+     */
+    private final Date day;
+
+    /**
+     * Farmer customer code.
+     */
+    private final int farmer;
+
+    /**
+     * Trader customer code.
+     */
+    private final int trader;
+
+    /**
+     * Product code.
+     */
+    private final String product;
+
+    /**
+     * Number of delivery notes.
+     */
+    private final int numDeliveryNotes;
+
+    /**
+     * Total net weight.
+     */
+    private final int netWeight;
+
+    /**
+     * Total boxes quantity.
+     */
+    private final int numBoxes;
+
+    /**
+     * Total pallets quantity.
+     */
+    private final int numPallets;
+
+    /**
+     * Total amount, which is the sum of the net weight per price of each
+     * delivery note.
+     */
+    private final double amount;
+
+    /**
+     * Constructor.
+     *
+     * @param day Day of the delivery notes.
+     * @param farmer Farmer customer code.
+     * @param trader Trader customer code.
+     * @param product Product code.
+     * @param numDeliveryNotes Number of delivery notes.
+     * @param netWeight Total net weight.
+     * @param numBoxes Total boxes quantity.
+     * @param numPallets Total pallets quantity.
+     * @param amount Total amount.
+     */
+    public DeliveryNoteRollup(Date day, int farmer, int trader, String product, int numDeliveryNotes, int netWeight, int numBoxes, int numPallets, double amount) {
+        this.day = DeliveryNoteRollup.getDayOf(day);
+        this.farmer = farmer;
+        this.trader = trader;
+        this.product = product;
+        this.numDeliveryNotes = numDeliveryNotes;
+        this.netWeight = netWeight;
+        this.numBoxes = numBoxes;
+        this.numPallets = numPallets;
+        this.amount = amount;
+    }
+
+    /**
+     * Obtain the start of the day of the given date, on the local time zone.
+     *
+     * @param date The date.
+     * @return The date at the start of its day.
+     */
+    public static Date getDayOf(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        return calendar.getTime();
+    }
+
+    /**
+     * Retrieve the day of the delivery notes.
+     *
+     * @return The day, at the start of the day.
+     */
+    public Date getDay() {
+        return this.day;
+    }
+
+    /**
+     * Retrieve the farmer customer code.
+     *
+     * @return The farmer customer code.
+     */
+    public int getFarmer() {
+        return this.farmer;
+    }
+
+    /**
+     * Retrieve the trader customer code.
+     *
+     * @return The trader customer code.
+     */
+    public int getTrader() {
+        return this.trader;
+    }
+
+    /**
+     * Retrieve the product code.
+     *
+     * @return The product code.
+     */
+    public String getProduct() {
+        return this.product;
+    }
+
+    /**
+     * Retrieve the number of delivery notes.
+     *
+     * @return The number of delivery notes.
+     */
+    public int getNumDeliveryNotes() {
+        return this.numDeliveryNotes;
+    }
+
+    /**
+     * Retrieve the total net weight.
+     *
+     * @return The total net weight.
+     */
+    public int getNetWeight() {
+        return this.netWeight;
+    }
+
+    /**
+     * Retrieve the total boxes quantity.
+     *
+     * @return The total boxes quantity.
+     */
+    public int getNumBoxes() {
+        return this.numBoxes;
+    }
+
+    /**
+     * Retrieve the total pallets quantity.
+     *
+     * @return The total pallets quantity.
+     */
+    public int getNumPallets() {
+        return this.numPallets;
+    }
+
+    /**
+     * Retrieve the total amount.
+     *
+     * @return The total amount.
+     */
+    public double getAmount() {
+        return this.amount;
+    }
+
+}
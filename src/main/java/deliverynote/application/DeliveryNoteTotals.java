@@ -0,0 +1,67 @@
+package deliverynote.application;
+
+/**
+ * Delivery note totals class.
+ *
+ * It contains the sums of a set of delivery notes, which are calculated by
+ * the repository without obtaining the delivery notes.
+ */
+public class DeliveryNoteTotals {
+
+    /**
+     * Total boxes quantity.
+     */
+    private final int numBoxes;
+
+    /**
+     * Total net weight.
+     */
+    private final int netWeight;
+
+    /**
+     * Total import, which is the sum of the net weight per price of each
+     * delivery note.
+     */
+    private final float totalImport;
+
+    /**
+     * Constructor.
+     *
+     * @param numBoxes Total boxes quantity.
+     * @param netWeight Total net weight.
+     * @param totalImport Total import.
+     */
+    public DeliveryNoteTotals(int numBoxes, int netWeight, float totalImport) {
+        this.numBoxes = numBoxes;
+        this.netWeight = netWeight;
+        this.totalImport = totalImport;
+    }
+
+    /**
+     * Retrieve the total boxes quantity.
+     *
+     * @return The total boxes quantity.
+     */
+    public int getNumBoxes() {
+        return this.numBoxes;
+    }
+
+    /**
+     * Retrieve the total net weight.
+     *
+     * @return The total net weight.
+     */
+    public int getNetWeight() {
+        return this.netWeight;
+    }
+
+    /**
+     * Retrieve the total import.
+     *
+     * @return The total import.
+     */
+    public float getTotalImport() {
+        return this.totalImport;
+    }
+
+}
@@ -0,0 +1,43 @@
+package deliverynote.application.usecases;
+
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteTotals;
+import deliverynote.persistence.DeliveryNoteRepository;
+import java.util.Date;
+import product.application.Product;
+import shared.persistence.PersistenceMetrics;
+
+/**
+ * Calculate delivery note totals use case.
+ */
+public class CalculateDeliveryNoteTotals {
+
+    /**
+     * @see DeliveryNoteRepository
+     */
+    private final DeliveryNoteRepository deliveryNoteRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryNoteRepository Delivery note repository.
+     */
+    public CalculateDeliveryNoteTotals(DeliveryNoteRepository deliveryNoteRepository) {
+        this.deliveryNoteRepository = deliveryNoteRepository;
+    }
+
+    /**
+     * Calculate the totals of the listed delivery notes.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param start The start date to get the delivery notes.
+     * @param end The end date to get the delivery notes.
+     * @return The totals of the delivery notes.
+     */
+    public DeliveryNoteTotals execute(Customer farmer, Customer trader, Product product, Date start, Date end) {
+        return PersistenceMetrics.measure("CalculateDeliveryNoteTotals", () -> deliveryNoteRepository.getTotals(farmer, trader, product, start, end));
+    }
+
+}
@@ -0,0 +1,42 @@
+package deliverynote.application.usecases;
+
+import deliverynote.persistence.DeliveryNoteRepository;
+import java.util.Date;
+
+/**
+ * Check delivery notes availability use case.
+ */
+public class CheckDeliveryNotesAvailability {
+
+    /**
+     * @see DeliveryNoteRepository
+     */
+    private DeliveryNoteRepository deliveryNoteRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryNoteRepository Delivery note repository.
+     */
+    public CheckDeliveryNotesAvailability(DeliveryNoteRepository deliveryNoteRepository) {
+        this.deliveryNoteRepository = deliveryNoteRepository;
+    }
+
+    /**
+     * Check whether all the delivery notes since the given date can be read
+     * right now, otherwise the listings only hold the recent ones.
+     *
+     * @param from The start date, or null for all the delivery notes.
+     * @return The date of the oldest readable delivery notes when the older
+     * ones are also requested, otherwise null.
+     */
+    public Date execute(Date from) {
+        Date availableSince = deliveryNoteRepository.getAvailableSince();
+        if (availableSince == null || (from != null && !from.before(availableSince))) {
+            return null;
+        }
+
+        return availableSince;
+    }
+
+}
@@ -0,0 +1,36 @@
+package deliverynote.application.usecases;
+
+import customer.application.Customer;
+import deliverynote.persistence.DeliveryNoteRepository;
+
+/**
+ * Check pending delivery notes use case.
+ */
+public class CheckPendingDeliveryNotes {
+
+    /**
+     * @see DeliveryNoteRepository
+     */
+    private DeliveryNoteRepository deliveryNoteRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryNoteRepository Delivery note repository.
+     */
+    public CheckPendingDeliveryNotes(DeliveryNoteRepository deliveryNoteRepository) {
+        this.deliveryNoteRepository = deliveryNoteRepository;
+    }
+
+    /**
+     * Check whether any saved delivery note of the given customer has not been
+     * written yet, so it would be left out of the listings and the invoices.
+     *
+     * @param customer The farmer or trader of the delivery notes.
+     * @return Whether the customer has pending delivery notes.
+     */
+    public boolean execute(Customer customer) {
+        return deliveryNoteRepository.hasPendingWrites(customer);
+    }
+
+}
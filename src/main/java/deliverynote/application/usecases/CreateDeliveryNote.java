@@ -8,6 +8,7 @@ import deliverynote.persistence.DeliveryNoteRepository;
 import java.util.Map;
 import shared.application.Pair;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
 
 /**
  * Create delivery note use case.
@@ -19,13 +20,20 @@ public class CreateDeliveryNote {
      */
     private DeliveryNoteRepository deliveryNoteRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param deliveryNoteRepository Delivery note repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public CreateDeliveryNote(DeliveryNoteRepository deliveryNoteRepository) {
+    public CreateDeliveryNote(DeliveryNoteRepository deliveryNoteRepository, SequenceRepository sequenceRepository) {
         this.deliveryNoteRepository = deliveryNoteRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -39,9 +47,28 @@ public class CreateDeliveryNote {
      * @return A pair indicating the delivery note and its validation state.
      */
     public Pair<DeliveryNote, DeliveryNoteValidationState> execute(Map<DeliveryNoteAttribute, Object> newDeliveryNoteAttributes) {
+        return this.execute(newDeliveryNoteAttributes, true);
+    }
+
+    /**
+     * Execute the delivery note object creation.
+     *
+     * Note that the delivery note code is automatically generated if it has not
+     * been introduced manually. When the delivery note is not going to be
+     * registered, as it happens with previews, the generated code is not
+     * reserved.
+     *
+     * @param newDeliveryNoteAttributes The attributes for the delivery note to
+     * create.
+     * @param reserveCode Whether the generated code must be reserved or not.
+     * @return A pair indicating the delivery note and its validation state.
+     */
+    public Pair<DeliveryNote, DeliveryNoteValidationState> execute(Map<DeliveryNoteAttribute, Object> newDeliveryNoteAttributes, boolean reserveCode) {
         boolean isCodeManuallyAdded = newDeliveryNoteAttributes.containsKey(DeliveryNoteAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedDeliveryNoteCode = CodeAutoGenerator.generate(deliveryNoteRepository);
+            int generatedDeliveryNoteCode = reserveCode
+                    ? CodeAutoGenerator.generate(sequenceRepository, "deliverynote")
+                    : CodeAutoGenerator.preview(sequenceRepository, "deliverynote");
             newDeliveryNoteAttributes.put(DeliveryNoteAttribute.CODE, generatedDeliveryNoteCode);
         }
 
@@ -2,6 +2,7 @@ package deliverynote.application.usecases;
 
 import deliverynote.application.DeliveryNoteData;
 import deliverynote.persistence.DeliveryNoteRepository;
+import shared.persistence.PersistenceMetrics;
 
 /**
  * Find delivery note use case.
@@ -29,7 +30,7 @@ public class FindDeliveryNote {
      * @return The found delivery note, otherwise null.
      */
     public DeliveryNoteData execute(int code) {
-        return deliveryNoteRepository.find(code);
+        return PersistenceMetrics.measure("FindDeliveryNote", () -> deliveryNoteRepository.find(code));
     }
 
 }
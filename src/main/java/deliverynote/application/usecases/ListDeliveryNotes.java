@@ -6,6 +6,9 @@ import deliverynote.persistence.DeliveryNoteRepository;
 import java.util.ArrayList;
 import java.util.Date;
 import product.application.Product;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.PersistenceMetrics;
 
 /**
  * List delivery notes use case.
@@ -37,7 +40,24 @@ public class ListDeliveryNotes {
      * @return A list with all delivery notes.
      */
     public ArrayList<DeliveryNoteData> execute(Customer farmer, Customer trader, Product product, Date start, Date end) {
-        return deliveryNoteRepository.get(farmer, trader, product, start, end);
+        return PersistenceMetrics.measure("ListDeliveryNotes", () -> deliveryNoteRepository.get(farmer, trader, product, start, end));
+    }
+
+    /**
+     * List a page of delivery notes, sorted by date and code.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param start The start date to get the delivery notes.
+     * @param end The end date to get the delivery notes.
+     * @param afterKey The key of the last delivery note of the previous page,
+     * or null to get the first page.
+     * @param limit The maximum number of delivery notes on the page.
+     * @return The page with the delivery notes.
+     */
+    public Page<DeliveryNoteData> execute(Customer farmer, Customer trader, Product product, Date start, Date end, PageKey afterKey, int limit) {
+        return PersistenceMetrics.measure("ListDeliveryNotes", () -> deliveryNoteRepository.page(farmer, trader, product, start, end, afterKey, limit));
     }
 
 }
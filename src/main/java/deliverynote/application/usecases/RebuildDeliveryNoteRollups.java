@@ -0,0 +1,40 @@
+package deliverynote.application.usecases;
+
+import deliverynote.persistence.DeliveryNoteRollupRepository;
+
+/**
+ * Rebuild delivery note rollups use case.
+ */
+public class RebuildDeliveryNoteRollups {
+
+    /**
+     * @see DeliveryNoteRollupRepository
+     */
+    private final DeliveryNoteRollupRepository deliveryNoteRollupRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryNoteRollupRepository Delivery note rollup repository.
+     */
+    public RebuildDeliveryNoteRollups(DeliveryNoteRollupRepository deliveryNoteRollupRepository) {
+        this.deliveryNoteRollupRepository = deliveryNoteRollupRepository;
+    }
+
+    /**
+     * Rebuild the daily rollups from the stored delivery notes.
+     *
+     * @param onlyIfEmpty Whether the rollups must only be rebuilt when there
+     * is none, for example the first time the application is run.
+     * @return Whether the rollups have been rebuilt or not.
+     */
+    public boolean execute(boolean onlyIfEmpty) {
+        if (onlyIfEmpty && deliveryNoteRollupRepository.count() > 0) {
+            return false;
+        }
+
+        deliveryNoteRollupRepository.rebuild();
+        return true;
+    }
+
+}
@@ -12,7 +12,7 @@ import com.github.jhonnymertz.wkhtmltopdf.wrapper.params.Param;
 import container.application.Pallet;
 import deliverynote.application.DeliveryNote;
 import deliverynote.application.usecases.SaveDeliveryNote;
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRepository;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -31,12 +31,13 @@ import java.util.logging.Logger;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import template.application.Template;
 import variable.application.EntityAttribute;
 import variable.application.Variable;
 import variable.application.usecases.ListVariables;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 import weighing.application.Weighing;
 
 /**
@@ -131,7 +132,7 @@ public class DeliveryNoteGenerator {
         ArrayList<Variable> variables = new ArrayList<>();
 
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             ListVariables listVariables = new ListVariables(variableRepository);
             variables = listVariables.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -270,7 +271,7 @@ public class DeliveryNoteGenerator {
         if (save) {
             // Call to use case.
             try {
-                MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
+                DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
                 SaveDeliveryNote saveDeliveryNote = new SaveDeliveryNote(deliveryNoteRepository);
                 saveDeliveryNote.execute(deliveryNote);
             } catch (NotDefinedDatabaseContextException ex) {
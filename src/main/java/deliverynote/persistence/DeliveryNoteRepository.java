@@ -3,10 +3,15 @@ package deliverynote.persistence;
 import customer.application.Customer;
 import deliverynote.application.DeliveryNote;
 import deliverynote.application.DeliveryNoteData;
+import deliverynote.application.DeliveryNoteTotals;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
 import product.application.Product;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
 import shared.persistence.Repository;
 
 /**
@@ -22,6 +27,17 @@ public interface DeliveryNoteRepository extends Repository {
      */
     public DeliveryNoteData find(int code);
 
+    /**
+     * Find all the non-closed delivery notes which match with the given codes.
+     *
+     * Note that the referenced customers and products are loaded in batch, so
+     * the number of queries does not depend on the number of delivery notes.
+     *
+     * @param codes The codes of the delivery notes to find.
+     * @return A list with the found delivery notes.
+     */
+    public ArrayList<DeliveryNoteData> find(List<Integer> codes);
+
     /**
      * Save the delivery note data.
      *
@@ -44,6 +60,56 @@ public interface DeliveryNoteRepository extends Repository {
      */
     public ArrayList<DeliveryNoteData> get(Customer farmer, Customer trader, Product product, Date from, Date to);
 
+    /**
+     * Obtain a page of the delivery notes, sorted by date and code.
+     *
+     * Note that if the farmer, the trader or the product are null, they will
+     * not be included on the filters.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param from The start date to get the delivery notes.
+     * @param to The end date to get the delivery notes.
+     * @param afterKey The key of the last delivery note of the previous page,
+     * or null to get the first page.
+     * @param limit The maximum number of delivery notes on the page.
+     * @return The page with the delivery notes.
+     */
+    public Page<DeliveryNoteData> page(Customer farmer, Customer trader, Product product, Date from, Date to, PageKey afterKey, int limit);
+
+    /**
+     * Calculate the totals of the delivery notes, without obtaining them.
+     *
+     * Note that if the farmer, the trader or the product are null, they will
+     * not be included on the filters.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param from The start date to get the delivery notes.
+     * @param to The end date to get the delivery notes.
+     * @return The totals of the delivery notes.
+     */
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to);
+
+    /**
+     * Go through all the delivery notes, sorted by date and code, in batches.
+     *
+     * Note that if the farmer, the trader or the product are null, they will
+     * not be included on the filters.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param from The start date to get the delivery notes.
+     * @param to The end date to get the delivery notes.
+     * @param batchSize The number of delivery notes on each batch.
+     * @param batchConsumer Function which receives each batch of delivery
+     * notes.
+     */
+    public void stream(Customer farmer, Customer trader, Product product, Date from, Date to, int batchSize, Consumer<List<DeliveryNoteData>> batchConsumer);
+
     /**
      * Update the given delivery note with its associated data.
      *
@@ -52,4 +118,31 @@ public interface DeliveryNoteRepository extends Repository {
      */
     public boolean update(DeliveryNoteData deliveryNoteData);
 
+    /**
+     * Close all the given delivery notes at once.
+     *
+     * @param deliveryNotes The delivery notes to close.
+     * @return Whether all the delivery notes have been closed or not.
+     */
+    public boolean close(List<DeliveryNoteData> deliveryNotes);
+
+    /**
+     * Check whether any saved delivery note of the given customer is waiting
+     * to be written, so it is not listed yet.
+     *
+     * @param customer The farmer or trader of the delivery notes.
+     * @return Whether the customer has pending delivery notes.
+     */
+    public boolean hasPendingWrites(Customer customer);
+
+    /**
+     * Obtain the date since which the delivery notes can be read right now,
+     * since only the recent ones are kept while the database cannot be
+     * reached.
+     *
+     * @return The date of the oldest readable delivery notes, or null when all
+     * of them can be read.
+     */
+    public Date getAvailableSince();
+
 }
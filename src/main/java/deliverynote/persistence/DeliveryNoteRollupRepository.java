@@ -0,0 +1,65 @@
+package deliverynote.persistence;
+
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteRollup;
+import deliverynote.application.DeliveryNoteTotals;
+import java.util.ArrayList;
+import java.util.Date;
+import product.application.Product;
+import shared.persistence.Repository;
+
+/**
+ * Represents the repository model for the daily delivery note rollups.
+ */
+public interface DeliveryNoteRollupRepository extends Repository {
+
+    /**
+     * Add the given change to the rollup of its day, farmer, trader and
+     * product, creating the rollup if it does not exist.
+     *
+     * @param change The values to add, which are negative to subtract them.
+     */
+    public void add(DeliveryNoteRollup change);
+
+    /**
+     * Obtain the daily rollups between the given dates, sorted by day.
+     *
+     * Note that if the farmer, the trader or the product are null, they will
+     * not be included on the filters.
+     *
+     * @param farmer The farmer customer to get the rollups.
+     * @param trader The trader customer to get the rollups.
+     * @param product The product to get the rollups.
+     * @param from The start date to get the rollups.
+     * @param to The end date to get the rollups.
+     * @return A list with the daily rollups.
+     */
+    public ArrayList<DeliveryNoteRollup> get(Customer farmer, Customer trader, Product product, Date from, Date to);
+
+    /**
+     * Calculate the totals of the delivery notes between the given dates,
+     * closed or not, from the daily rollups.
+     *
+     * Note that if the farmer, the trader or the product are null, they will
+     * not be included on the filters.
+     *
+     * @param farmer The farmer customer to get the totals.
+     * @param trader The trader customer to get the totals.
+     * @param product The product to get the totals.
+     * @param from The start date to get the totals.
+     * @param to The end date to get the totals.
+     * @return The totals of the delivery notes.
+     */
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to);
+
+    /**
+     * Replace all the rollups with the ones calculated from the stored
+     * delivery notes.
+     *
+     * Note that the changes added while the rollups are being rebuilt may be
+     * lost, including the ones added by other stations, so it must be run on
+     * demand while no other station is saving delivery notes.
+     */
+    public void rebuild();
+
+}
@@ -0,0 +1,573 @@
+package deliverynote.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import customer.application.Customer;
+import customer.persistence.CustomerRepository;
+import deliverynote.application.DeliveryNote;
+import deliverynote.application.DeliveryNoteData;
+import deliverynote.application.DeliveryNoteDataAttribute;
+import deliverynote.application.DeliveryNoteRollup;
+import deliverynote.application.DeliveryNoteTotals;
+import deliverynote.persistence.DeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRollupRepository;
+import deliverynote.persistence.mongo.DeliveryNoteDataDecoder;
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import product.application.Product;
+import product.persistence.ProductRepository;
+import shared.application.LazyFile;
+import shared.persistence.AsyncRepository;
+import shared.persistence.IdentityMap;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the delivery note collection on the embedded database.
+ */
+public class EmbeddedDeliveryNoteRepository extends EmbeddedRepository implements DeliveryNoteRepository {
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedDeliveryNoteRepository() throws NotDefinedDatabaseContextException {
+        super("deliverynote");
+        super.createIndex(true, "code");
+        super.createIndex(false, "isClosed", "isDeleted", "date", "code");
+        super.createIndex(false, "farmer", "date");
+        super.createIndex(false, "trader", "date");
+        super.createIndex(false, "product", "date");
+    }
+
+    /**
+     * Obtain the filter for the delivery note code.
+     *
+     * @param code The delivery note code.
+     * @return A filter indicating that the query must only obtain the delivery
+     * note which contains the given delivery note code.
+     */
+    private Bson getDeliveryNoteCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * Obtain the filter for non-closed invoices.
+     *
+     * @return A filter indicating that the query must only obtain the delivery
+     * notes which are not closed.
+     */
+    private Bson isNotClosedFilter() {
+        return Filters.eq("isClosed", false);
+    }
+
+    /**
+     * It creates a document from a delivery note.
+     *
+     * Note that the document does not reference the PDF file yet, since it is
+     * stored when the document is written.
+     *
+     * @param deliveryNote The delivery note entity.
+     * @return A document with the given delivery note data.
+     */
+    private Document createDocumentFrom(DeliveryNote deliveryNote) {
+        Document document = new Document();
+
+        document.append("code", deliveryNote.getCode());
+        document.append("date", deliveryNote.getDate());
+        document.append("farmer", deliveryNote.getFarmer().getCode());
+        document.append("trader", deliveryNote.getTrader().getCode());
+        document.append("product", deliveryNote.getProduct().getCode());
+        document.append("numBoxes", deliveryNote.calculateTotalBoxes());
+        document.append("numPallets", deliveryNote.calculateTotalPallets());
+        document.append("netWeight", deliveryNote.calculateNetWeight());
+        document.append("isClosed", false);
+        document.append("isDeleted", false);
+        document.append("price", 0.0);
+
+        return document;
+    }
+
+    /**
+     * It creates a document from a delivery note data.
+     *
+     * @param deliveryNoteData The delivery note data entity.
+     * @return A document with the given delivery note data if it has been
+     * created, otherwise null.
+     */
+    private Document createDocumentFrom(DeliveryNoteData deliveryNoteData) {
+        Document document = new Document();
+
+        String fileHash = super.storeFile(deliveryNoteData.getFile());
+        if (fileHash == null) {
+            return null;
+        }
+
+        document.append("code", deliveryNoteData.getCode());
+        document.append("date", deliveryNoteData.getDate());
+        document.append("farmer", deliveryNoteData.getFarmer().getCode());
+        document.append("trader", deliveryNoteData.getTrader().getCode());
+        document.append("product", deliveryNoteData.getProduct().getCode());
+        document.append("fileHash", fileHash);
+        document.append("numBoxes", deliveryNoteData.getNumBoxes());
+        document.append("numPallets", deliveryNoteData.getNumPallets());
+        document.append("netWeight", deliveryNoteData.getNetWeight());
+        document.append("isClosed", deliveryNoteData.isClosed());
+        document.append("isDeleted", deliveryNoteData.isDeleted());
+        document.append("price", deliveryNoteData.getPrice());
+
+        return document;
+    }
+
+    /**
+     * Find all the customers which match with the given codes.
+     *
+     * @param codes The codes of the customers to find.
+     * @return A list with the found customers.
+     */
+    private List<Customer> findCustomers(List<Integer> codes) {
+        try {
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            return customerRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customers cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Find all the products which match with the given codes.
+     *
+     * @param codes The codes of the products to find.
+     * @return A list with the found products.
+     */
+    private List<Product> findProducts(List<String> codes) {
+        try {
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
+            return productRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Products cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * It creates the delivery notes from a list of documents.
+     *
+     * Note that the customers and products referenced by all the documents
+     * are loaded at once, doing one query per entity type concurrently, and
+     * then each document is decoded straight into a delivery note.
+     *
+     * @param documents The documents obtained from the collection.
+     * @return A list with the delivery notes based on the data obtained from
+     * the given documents.
+     */
+    private ArrayList<DeliveryNoteData> createDeliveryNotesFrom(List<RawBsonDocument> documents) {
+        IdentityMap<Integer, Customer> customers = new IdentityMap<>(Customer::getCode, this::findCustomers);
+        IdentityMap<String, Product> products = new IdentityMap<>(Product::getCode, this::findProducts);
+
+        for (RawBsonDocument document : documents) {
+            customers.collect(document.getInt32("farmer").getValue());
+            customers.collect(document.getInt32("trader").getValue());
+            products.collect(document.getString("product").getValue());
+        }
+
+        CompletableFuture<Void> productsResolution = AsyncRepository.run(products::resolve);
+        customers.resolve();
+        AsyncRepository.await(productsResolution);
+
+        DeliveryNoteDataDecoder decoder = new DeliveryNoteDataDecoder(customers, products, code -> new LazyFile(() -> super.findFile(this.getDeliveryNoteCodeFilter(code))));
+
+        ArrayList<DeliveryNoteData> deliveryNotes = new ArrayList<>();
+        for (RawBsonDocument document : documents) {
+            deliveryNotes.add(document.decode(decoder));
+        }
+
+        return deliveryNotes;
+    }
+
+    /**
+     * It creates the update for a changed attribute of the delivery note.
+     *
+     * @param attribute The changed attribute.
+     * @param deliveryNoteData The delivery note.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(DeliveryNoteDataAttribute attribute, DeliveryNoteData deliveryNoteData) {
+        switch (attribute) {
+            case PRICE:
+                return Updates.set("price", deliveryNoteData.getPrice());
+            case IS_CLOSED:
+                return Updates.set("isClosed", deliveryNoteData.isClosed());
+            case IS_DELETED:
+                return Updates.set("isDeleted", deliveryNoteData.isDeleted());
+            default:
+                throw new IllegalArgumentException(String.format("The delivery note attribute %s cannot be updated.", attribute));
+        }
+    }
+
+    /**
+     * Obtain the price of a stored delivery note.
+     *
+     * @param document The stored document.
+     * @return The price, converted when it was stored as a string.
+     */
+    private double getPrice(Document document) {
+        Object price = document.get("price");
+        return price instanceof String ? Double.parseDouble((String) price) : super.getNumber(document, "price").doubleValue();
+    }
+
+    /**
+     * It creates the change to apply to the daily rollups when a delivery
+     * note is updated.
+     *
+     * Only the price and the removal state of a delivery note can change, so
+     * they are compared with the stored ones.
+     *
+     * @param deliveryNoteData The updated delivery note data.
+     * @param storedDocument The stored document, with the price and the
+     * removal state before the update.
+     * @return The change to add to the rollup of the delivery note.
+     */
+    private DeliveryNoteRollup createRollupChangeFor(DeliveryNoteData deliveryNoteData, Document storedDocument) {
+        double oldPrice = this.getPrice(storedDocument);
+
+        boolean wasCounted = !storedDocument.getBoolean("isDeleted", false);
+        boolean isCounted = !deliveryNoteData.isDeleted();
+
+        // It is -1 when the delivery note is removed, otherwise 0.
+        int countChange = (isCounted ? 1 : 0) - (wasCounted ? 1 : 0);
+
+        int netWeight = deliveryNoteData.getNetWeight();
+        double oldAmount = wasCounted ? netWeight * oldPrice : 0;
+        double newAmount = isCounted ? netWeight * deliveryNoteData.getPrice() : 0;
+
+        return new DeliveryNoteRollup(deliveryNoteData.getDate(), deliveryNoteData.getFarmer().getCode(), deliveryNoteData.getTrader().getCode(), deliveryNoteData.getProduct().getCode(), countChange, countChange * netWeight, countChange * deliveryNoteData.getNumBoxes(), countChange * deliveryNoteData.getNumPallets(), newAmount - oldAmount);
+    }
+
+    /**
+     * Add the given change to the daily rollups.
+     *
+     * The rollups can be rebuilt from the delivery notes, so a change which
+     * cannot be added does not make the delivery note write fail.
+     *
+     * @param change The change to add.
+     */
+    private void addToRollups(DeliveryNoteRollup change) {
+        try {
+            DeliveryNoteRollupRepository deliveryNoteRollupRepository = RepositoryProvider.get(DeliveryNoteRollupRepository.class);
+            deliveryNoteRollupRepository.add(change);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery note rollups not updated because the database has not been found", ex);
+        } catch (UncheckedIOException ex) {
+            String className = EmbeddedDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Delivery note rollups not updated, so they must be rebuilt", ex);
+        }
+    }
+
+    /**
+     * Write a delivery note to the database, storing its PDF file and adding
+     * it to the daily rollups.
+     *
+     * A delivery note whose code is already stored is not added to the
+     * rollups again.
+     *
+     * @param document The delivery note document, without the file hash.
+     * @param file The delivery note PDF file.
+     * @return Whether the delivery note has been written.
+     */
+    private boolean write(Document document, File file) {
+        String fileHash = super.storeFile(file);
+        if (fileHash == null) {
+            return false;
+        }
+
+        document.append("fileHash", fileHash);
+
+        try {
+            super.insertUniqueOne(document);
+        } catch (DuplicatedEntityException ex) {
+            Logger.getLogger(EmbeddedDeliveryNoteRepository.class.getName()).log(Level.FINE, "Delivery note already written", ex);
+            return true;
+        }
+
+        // New delivery notes have no price yet.
+        DeliveryNoteRollup change = new DeliveryNoteRollup(document.getDate("date"), document.getInteger("farmer"), document.getInteger("trader"), document.getString("product"), 1, document.getInteger("netWeight"), document.getInteger("numBoxes"), document.getInteger("numPallets"), 0);
+        this.addToRollups(change);
+
+        return true;
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed delivery notes
+     * between the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param productCode The product code, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * delivery notes which match the given parameters.
+     */
+    private Bson getPendingDeliveryNotesFilter(Integer farmerCode, Integer traderCode, String productCode, Date from, Date to) {
+        Bson isNotDeletedFilter = Filters.eq("isDeleted", false);
+        Bson isNotClosedFilter = this.isNotClosedFilter();
+        Bson fromDate = Filters.gte("date", from);
+        Bson toDate = Filters.lte("date", to);
+
+        Bson filters = Filters.and(isNotDeletedFilter, isNotClosedFilter, fromDate, toDate);
+
+        if (farmerCode != null) {
+            Bson farmerFilter = Filters.eq("farmer", farmerCode);
+            filters = Filters.and(filters, farmerFilter);
+        }
+
+        if (traderCode != null) {
+            Bson traderFilter = Filters.eq("trader", traderCode);
+            filters = Filters.and(filters, traderFilter);
+        }
+
+        if (productCode != null) {
+            Bson productFilter = Filters.eq("product", productCode);
+            filters = Filters.and(filters, productFilter);
+        }
+
+        return filters;
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed delivery notes
+     * between the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param product The product, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * delivery notes which match the given parameters.
+     */
+    private Bson getPendingDeliveryNotesFilter(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        String productCode = product == null ? null : product.getCode();
+        return this.getPendingDeliveryNotesFilter(farmerCode, traderCode, productCode, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliveryNoteData find(int code) {
+        Bson deliveryNoteCodeFilter = this.getDeliveryNoteCodeFilter(code);
+        Bson isNotClosedFilter = this.isNotClosedFilter();
+        Bson filters = Filters.and(deliveryNoteCodeFilter, isNotClosedFilter);
+
+        ArrayList<RawBsonDocument> foundDeliveryNoteDocuments = super.find(filters, null, RawBsonDocument.class);
+
+        if (foundDeliveryNoteDocuments.isEmpty()) {
+            return null;
+        } else {
+            List<RawBsonDocument> foundDeliveryNoteDocument = foundDeliveryNoteDocuments.subList(0, 1);
+            return this.createDeliveryNotesFrom(foundDeliveryNoteDocument).get(0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<DeliveryNoteData> find(List<Integer> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Bson deliveryNoteCodesFilter = Filters.in("code", codes);
+        Bson isNotClosedFilter = this.isNotClosedFilter();
+        Bson filters = Filters.and(deliveryNoteCodesFilter, isNotClosedFilter);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, null, RawBsonDocument.class);
+        return this.createDeliveryNotesFrom(foundDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<DeliveryNoteData> get(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, null, RawBsonDocument.class);
+        return this.createDeliveryNotesFrom(foundDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<DeliveryNoteData> page(Customer farmer, Customer trader, Product product, Date from, Date to, PageKey afterKey, int limit) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+        if (afterKey != null) {
+            filters = Filters.and(filters, super.getAfterKeyFilter(afterKey));
+        }
+
+        // Obtain one more delivery note to know whether there is a next page.
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, null, super.getPageSort(), limit + 1, RawBsonDocument.class);
+
+        boolean hasNextPage = foundDocuments.size() > limit;
+        if (hasNextPage) {
+            foundDocuments.remove(limit);
+        }
+
+        ArrayList<DeliveryNoteData> deliveryNotes = this.createDeliveryNotesFrom(foundDocuments);
+
+        PageKey nextKey = null;
+        if (hasNextPage) {
+            DeliveryNoteData lastDeliveryNote = deliveryNotes.get(deliveryNotes.size() - 1);
+            nextKey = new PageKey(lastDeliveryNote.getDate(), lastDeliveryNote.getCode());
+        }
+
+        return new Page<>(deliveryNotes, nextKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+
+        int numBoxes = 0;
+        int netWeight = 0;
+        double totalImport = 0;
+        for (Document document : super.find(filters, Projections.include("numBoxes", "netWeight", "price"))) {
+            int documentNetWeight = super.getNumber(document, "netWeight").intValue();
+
+            numBoxes += super.getNumber(document, "numBoxes").intValue();
+            netWeight += documentNetWeight;
+            totalImport += documentNetWeight * this.getPrice(document);
+        }
+
+        return new DeliveryNoteTotals(numBoxes, netWeight, (float) totalImport);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stream(Customer farmer, Customer trader, Product product, Date from, Date to, int batchSize, Consumer<List<DeliveryNoteData>> batchConsumer) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+        super.stream(filters, null, super.getPageSort(), batchSize, RawBsonDocument.class, documents -> batchConsumer.accept(this.createDeliveryNotesFrom(documents)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(DeliveryNote deliveryNote) {
+        Document document = this.createDocumentFrom(deliveryNote);
+        this.write(document, deliveryNote.getFile());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(DeliveryNoteData deliveryNoteData) {
+        Bson deliveryNoteCodeFilter = this.getDeliveryNoteCodeFilter(deliveryNoteData.getCode());
+
+        // The stored price and removal state are needed to know how much the rollups change.
+        Set<DeliveryNoteDataAttribute> changedAttributes = deliveryNoteData.getChangedAttributes();
+        boolean changesRollups = changedAttributes.isEmpty() || changedAttributes.contains(DeliveryNoteDataAttribute.PRICE) || changedAttributes.contains(DeliveryNoteDataAttribute.IS_DELETED);
+        ArrayList<Document> storedDocuments = changesRollups ? super.find(deliveryNoteCodeFilter, Projections.include("price", "isDeleted")) : new ArrayList<>();
+
+        boolean isUpdated = super.updateChanges(deliveryNoteCodeFilter, deliveryNoteData, attribute -> this.createUpdateFor(attribute, deliveryNoteData), () -> this.createDocumentFrom(deliveryNoteData));
+        if (isUpdated && !storedDocuments.isEmpty()) {
+            DeliveryNoteRollup change = this.createRollupChangeFor(deliveryNoteData, storedDocuments.get(0));
+            this.addToRollups(change);
+        }
+
+        return isUpdated;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean close(List<DeliveryNoteData> deliveryNotes) {
+        if (deliveryNotes.isEmpty()) {
+            return true;
+        }
+
+        ArrayList<Integer> deliveryNoteCodes = new ArrayList<>();
+        for (DeliveryNoteData deliveryNote : deliveryNotes) {
+            deliveryNoteCodes.add(deliveryNote.getCode());
+        }
+
+        Bson deliveryNoteCodesFilter = Filters.in("code", deliveryNoteCodes);
+        Bson isClosedUpdate = Updates.set("isClosed", true);
+        int numMatchedDeliveryNotes = super.updateMany(deliveryNoteCodesFilter, isClosedUpdate);
+
+        boolean areClosed = numMatchedDeliveryNotes == deliveryNoteCodes.size();
+        if (areClosed) {
+            for (DeliveryNoteData deliveryNote : deliveryNotes) {
+                deliveryNote.clearChanges();
+            }
+        }
+
+        return areClosed;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the delivery notes are written at once to the embedded
+     * database, so there are never pending ones.
+     */
+    @Override
+    public boolean hasPendingWrites(Customer customer) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Date getAvailableSince() {
+        return null;
+    }
+
+}
@@ -0,0 +1,238 @@
+package deliverynote.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteRollup;
+import deliverynote.application.DeliveryNoteTotals;
+import deliverynote.persistence.DeliveryNoteRollupRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import product.application.Product;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the daily delivery note rollup collection on the embedded
+ * database.
+ *
+ * Each document sums the non-removed delivery notes of a day, a farmer, a
+ * trader and a product, so period queries do not need to read the delivery
+ * notes.
+ */
+public class EmbeddedDeliveryNoteRollupRepository extends EmbeddedRepository implements DeliveryNoteRollupRepository {
+
+    /**
+     * Name of the rollup collection.
+     */
+    private static final String COLLECTION_NAME = "deliverynoterollup";
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedDeliveryNoteRollupRepository() throws NotDefinedDatabaseContextException {
+        super(COLLECTION_NAME);
+        super.createIndex(true, "day", "farmer", "trader", "product");
+        super.createIndex(false, "farmer", "day");
+        super.createIndex(false, "trader", "day");
+        super.createIndex(false, "product", "day");
+    }
+
+    /**
+     * It creates a rollup from a document.
+     *
+     * @param document A document obtained from the collection.
+     * @return A rollup object based on the data obtained from the given
+     * document.
+     */
+    private DeliveryNoteRollup createRollupFrom(Document document) {
+        int numDeliveryNotes = super.getNumber(document, "numDeliveryNotes").intValue();
+        int netWeight = super.getNumber(document, "netWeight").intValue();
+        int numBoxes = super.getNumber(document, "numBoxes").intValue();
+        int numPallets = super.getNumber(document, "numPallets").intValue();
+        double amount = super.getNumber(document, "amount").doubleValue();
+
+        return new DeliveryNoteRollup(document.getDate("day"), document.getInteger("farmer"), document.getInteger("trader"), document.getString("product"), numDeliveryNotes, netWeight, numBoxes, numPallets, amount);
+    }
+
+    /**
+     * Obtain the filter for the rollup of a day, a farmer, a trader and a
+     * product.
+     *
+     * @param rollup The rollup.
+     * @return A filter indicating that the query must only obtain the rollup
+     * with the same keys as the given one.
+     */
+    private Bson getRollupKeyFilter(DeliveryNoteRollup rollup) {
+        return Filters.and(Filters.eq("day", rollup.getDay()), Filters.eq("farmer", rollup.getFarmer()), Filters.eq("trader", rollup.getTrader()), Filters.eq("product", rollup.getProduct()));
+    }
+
+    /**
+     * Obtain the filter for the rollups between the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param productCode The product code, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the rollups
+     * which match the given parameters.
+     */
+    private Bson getPeriodFilter(Integer farmerCode, Integer traderCode, String productCode, Date from, Date to) {
+        Bson fromDay = Filters.gte("day", DeliveryNoteRollup.getDayOf(from));
+        Bson toDay = Filters.lte("day", DeliveryNoteRollup.getDayOf(to));
+
+        Bson filters = Filters.and(fromDay, toDay);
+
+        if (farmerCode != null) {
+            filters = Filters.and(filters, Filters.eq("farmer", farmerCode));
+        }
+
+        if (traderCode != null) {
+            filters = Filters.and(filters, Filters.eq("trader", traderCode));
+        }
+
+        if (productCode != null) {
+            filters = Filters.and(filters, Filters.eq("product", productCode));
+        }
+
+        return filters;
+    }
+
+    /**
+     * Obtain the filter for the rollups between the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param product The product, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the rollups
+     * which match the given parameters.
+     */
+    private Bson getPeriodFilter(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        String productCode = product == null ? null : product.getCode();
+        return this.getPeriodFilter(farmerCode, traderCode, productCode, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(DeliveryNoteRollup change) {
+        Bson increments = Updates.combine(
+                Updates.inc("numDeliveryNotes", change.getNumDeliveryNotes()),
+                Updates.inc("netWeight", change.getNetWeight()),
+                Updates.inc("numBoxes", change.getNumBoxes()),
+                Updates.inc("numPallets", change.getNumPallets()),
+                Updates.inc("amount", change.getAmount()));
+
+        super.updateOrInsertOne(this.getRollupKeyFilter(change), increments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<DeliveryNoteRollup> get(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson periodFilter = this.getPeriodFilter(farmer, trader, product, from, to);
+        // A zero limit obtains all the rollups.
+        ArrayList<Document> foundDocuments = super.find(periodFilter, Projections.excludeId(), Sorts.ascending("day"), 0, Document.class);
+
+        ArrayList<DeliveryNoteRollup> rollups = new ArrayList<>();
+        for (Document document : foundDocuments) {
+            rollups.add(this.createRollupFrom(document));
+        }
+
+        return rollups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson periodFilter = this.getPeriodFilter(farmer, trader, product, from, to);
+
+        int numBoxes = 0;
+        int netWeight = 0;
+        double amount = 0;
+        for (Document document : super.find(periodFilter, Projections.include("numBoxes", "netWeight", "amount"))) {
+            numBoxes += super.getNumber(document, "numBoxes").intValue();
+            netWeight += super.getNumber(document, "netWeight").intValue();
+            amount += super.getNumber(document, "amount").doubleValue();
+        }
+
+        return new DeliveryNoteTotals(numBoxes, netWeight, (float) amount);
+    }
+
+    /**
+     * Obtain the price of a stored delivery note.
+     *
+     * @param deliveryNote The stored delivery note document.
+     * @return The price, converted when it was stored as a string.
+     */
+    private double getPrice(Document deliveryNote) {
+        Object price = deliveryNote.get("price");
+        return price instanceof String ? Double.parseDouble((String) price) : super.getNumber(deliveryNote, "price").doubleValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rebuild() {
+        BsonDocument notDeletedFilter = super.toBsonDocument(Filters.ne("isDeleted", true));
+        List<BsonDocument> deliveryNotes = super.getCollection("deliverynote").find(notDeletedFilter, null, null, 0);
+
+        Map<List<Object>, Document> rollups = new LinkedHashMap<>();
+        for (Document deliveryNote : super.decode(deliveryNotes, Document.class)) {
+            Date day = DeliveryNoteRollup.getDayOf(deliveryNote.getDate("date"));
+            List<Object> rollupKey = Arrays.asList(day, deliveryNote.get("farmer"), deliveryNote.get("trader"), deliveryNote.get("product"));
+
+            Document rollup = rollups.computeIfAbsent(rollupKey, key -> new Document("day", day)
+                    .append("farmer", deliveryNote.get("farmer"))
+                    .append("trader", deliveryNote.get("trader"))
+                    .append("product", deliveryNote.get("product"))
+                    .append("numDeliveryNotes", 0)
+                    .append("netWeight", 0)
+                    .append("numBoxes", 0)
+                    .append("numPallets", 0)
+                    .append("amount", 0.0));
+
+            int netWeight = super.getNumber(deliveryNote, "netWeight").intValue();
+
+            rollup.put("numDeliveryNotes", rollup.getInteger("numDeliveryNotes") + 1);
+            rollup.put("netWeight", rollup.getInteger("netWeight") + netWeight);
+            rollup.put("numBoxes", rollup.getInteger("numBoxes") + super.getNumber(deliveryNote, "numBoxes").intValue());
+            rollup.put("numPallets", rollup.getInteger("numPallets") + super.getNumber(deliveryNote, "numPallets").intValue());
+            rollup.put("amount", rollup.getDouble("amount") + netWeight * this.getPrice(deliveryNote));
+        }
+
+        // The rollups replace the collection at once, keeping its indexes.
+        super.replaceAll(new ArrayList<>(rollups.values()));
+    }
+
+}
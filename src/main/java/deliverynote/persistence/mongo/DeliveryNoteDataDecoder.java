@@ -0,0 +1,133 @@
+package deliverynote.persistence.mongo;
+
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteData;
+import deliverynote.application.DeliveryNoteDataAttribute;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.codecs.DecoderContext;
+import product.application.Product;
+import shared.application.LazyFile;
+import shared.persistence.IdentityMap;
+import shared.persistence.mongo.MongoDecoder;
+
+/**
+ * Creates delivery notes from the documents of the delivery note collection.
+ *
+ * Note that the referenced customers and products are taken from the given
+ * identity maps, so they must have been loaded before decoding.
+ */
+public class DeliveryNoteDataDecoder extends MongoDecoder<DeliveryNoteData> {
+
+    /**
+     * Loaded customers.
+     */
+    private final IdentityMap<Integer, Customer> customers;
+
+    /**
+     * Loaded products.
+     */
+    private final IdentityMap<String, Product> products;
+
+    /**
+     * Function which creates the file handle of a delivery note code.
+     */
+    private final Function<Integer, LazyFile> files;
+
+    /**
+     * Constructor.
+     *
+     * @param customers The loaded customers.
+     * @param products The loaded products.
+     * @param files Function which creates the file handle of a delivery note
+     * code.
+     */
+    public DeliveryNoteDataDecoder(IdentityMap<Integer, Customer> customers, IdentityMap<String, Product> products, Function<Integer, LazyFile> files) {
+        this.customers = customers;
+        this.products = products;
+        this.files = files;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliveryNoteData decode(BsonReader reader, DecoderContext decoderContext) {
+        Integer code = null;
+        Date date = null;
+        Integer farmerCode = null;
+        Integer traderCode = null;
+        String productCode = null;
+        Integer numPallets = null;
+        Integer numBoxes = null;
+        Integer netWeight = null;
+        Double price = null;
+        Boolean isClosed = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readInteger(reader);
+                    break;
+                case "date":
+                    date = super.readDate(reader);
+                    break;
+                case "farmer":
+                    farmerCode = super.readInteger(reader);
+                    break;
+                case "trader":
+                    traderCode = super.readInteger(reader);
+                    break;
+                case "product":
+                    productCode = super.readString(reader);
+                    break;
+                case "numPallets":
+                    numPallets = super.readInteger(reader);
+                    break;
+                case "numBoxes":
+                    numBoxes = super.readInteger(reader);
+                    break;
+                case "netWeight":
+                    netWeight = super.readInteger(reader);
+                    break;
+                case "price":
+                    price = super.readDouble(reader);
+                    break;
+                case "isClosed":
+                    isClosed = super.readBoolean(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        int deliveryNoteCode = super.orDefault(code, 0);
+
+        Map<DeliveryNoteDataAttribute, Object> attributes = new HashMap<>();
+        attributes.put(DeliveryNoteDataAttribute.CODE, deliveryNoteCode);
+        attributes.put(DeliveryNoteDataAttribute.DATE, date);
+        attributes.put(DeliveryNoteDataAttribute.FARMER, this.customers.get(farmerCode));
+        attributes.put(DeliveryNoteDataAttribute.TRADER, this.customers.get(traderCode));
+        attributes.put(DeliveryNoteDataAttribute.PRODUCT, this.products.get(productCode));
+        attributes.put(DeliveryNoteDataAttribute.FILE, this.files.apply(deliveryNoteCode));
+        attributes.put(DeliveryNoteDataAttribute.NUM_PALLETS, super.orDefault(numPallets, 0));
+        attributes.put(DeliveryNoteDataAttribute.NUM_BOXES, super.orDefault(numBoxes, 0));
+        attributes.put(DeliveryNoteDataAttribute.NET_WEIGHT, super.orDefault(netWeight, 0));
+        attributes.put(DeliveryNoteDataAttribute.PRICE, super.orDefault(price, 0.0).floatValue());
+        attributes.put(DeliveryNoteDataAttribute.IS_CLOSED, super.orDefault(isClosed, false));
+        attributes.put(DeliveryNoteDataAttribute.IS_DELETED, super.orDefault(isDeleted, false));
+
+        return DeliveryNoteData.from(attributes);
+    }
+
+}
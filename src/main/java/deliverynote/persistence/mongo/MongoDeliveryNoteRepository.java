@@ -1,36 +1,93 @@
 package deliverynote.persistence.mongo;
 
+import com.mongodb.MongoException;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import customer.application.Customer;
+import customer.persistence.CustomerRepository;
 import deliverynote.application.DeliveryNote;
 import deliverynote.application.DeliveryNoteData;
 import deliverynote.application.DeliveryNoteDataAttribute;
+import deliverynote.application.DeliveryNoteRollup;
+import deliverynote.application.DeliveryNoteTotals;
 import deliverynote.persistence.DeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRollupRepository;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import product.application.Product;
-import shared.persistence.Base64Converter;
+import product.persistence.ProductRepository;
+import shared.application.LazyFile;
+import shared.persistence.AsyncRepository;
+import shared.persistence.IdentityMap;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import shared.persistence.mongo.MongoDecoder;
+import shared.persistence.mongo.MongoLocalReplica;
 import shared.persistence.mongo.MongoRepository;
+import shared.persistence.mongo.MongoWriteJournal;
 
 /**
  * Interacts with the delivery note collection on the Mongo database.
  */
 public class MongoDeliveryNoteRepository extends MongoRepository implements DeliveryNoteRepository {
 
+    /**
+     * Journal of the saved delivery notes which are written to the database
+     * on the background, or null if it cannot be opened.
+     */
+    private final MongoWriteJournal journal;
+
     /**
      * Constructor.
      *
+     * Note that the delivery notes left on the journal by a previous run are
+     * written to the database on the background.
+     *
      * @throws NotDefinedDatabaseContextException Thrown when there is not a
      * connected database to the system.
      */
     public MongoDeliveryNoteRepository() throws NotDefinedDatabaseContextException {
         super("deliverynote");
+        this.journal = this.openJournal();
+    }
+
+    /**
+     * Open the journal of the saved delivery notes.
+     *
+     * @return The journal, otherwise null.
+     */
+    private MongoWriteJournal openJournal() {
+        try {
+            return new MongoWriteJournal("deliverynote", this::write);
+        } catch (IOException ex) {
+            String className = MongoDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Delivery notes are written straight to the database because the journal cannot be opened", ex);
+        }
+
+        return null;
     }
 
     /**
@@ -55,26 +112,32 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
     }
 
     /**
-     * It creates a Mongo document from a delivery note and the PDF file.
+     * Obtain the projection used to query delivery notes.
+     *
+     * @return A projection indicating that the query must not obtain the
+     * delivery note file, which is loaded on demand.
+     */
+    private Bson withoutFileProjection() {
+        return Projections.exclude("file");
+    }
+
+    /**
+     * It creates a Mongo document from a delivery note.
+     *
+     * Note that the document does not reference the PDF file yet, since it is
+     * stored when the document is written.
      *
      * @param deliveryNote The delivery note entity.
-     * @return A document with the given delivery note data if it has been
-     * created, otherwise null.
+     * @return A document with the given delivery note data.
      */
     private Document createDocumentFrom(DeliveryNote deliveryNote) {
         Document document = new Document();
 
-        Map<String, String> fileAttributes = Base64Converter.encode(deliveryNote.getFile());
-        if (fileAttributes == null) {
-            return null;
-        }
-
         document.append("code", deliveryNote.getCode());
         document.append("date", deliveryNote.getDate());
         document.append("farmer", deliveryNote.getFarmer().getCode());
         document.append("trader", deliveryNote.getTrader().getCode());
         document.append("product", deliveryNote.getProduct().getCode());
-        document.append("file", fileAttributes);
         document.append("numBoxes", deliveryNote.calculateTotalBoxes());
         document.append("numPallets", deliveryNote.calculateTotalPallets());
         document.append("netWeight", deliveryNote.calculateNetWeight());
@@ -95,8 +158,8 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
     private Document createDocumentFrom(DeliveryNoteData deliveryNoteData) {
         Document document = new Document();
 
-        Map<String, String> fileAttributes = Base64Converter.encode(deliveryNoteData.getFile());
-        if (fileAttributes == null) {
+        String fileHash = super.storeFile(deliveryNoteData.getFile());
+        if (fileHash == null) {
             return null;
         }
 
@@ -105,7 +168,7 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
         document.append("farmer", deliveryNoteData.getFarmer().getCode());
         document.append("trader", deliveryNoteData.getTrader().getCode());
         document.append("product", deliveryNoteData.getProduct().getCode());
-        document.append("file", fileAttributes);
+        document.append("fileHash", fileHash);
         document.append("numBoxes", deliveryNoteData.getNumBoxes());
         document.append("numPallets", deliveryNoteData.getNumPallets());
         document.append("netWeight", deliveryNoteData.getNetWeight());
@@ -117,32 +180,277 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
     }
 
     /**
-     * It creates a delivery note from a Mongo document.
+     * Find all the customers which match with the given codes.
+     *
+     * @param codes The codes of the customers to find.
+     * @return A list with the found customers.
+     */
+    private List<Customer> findCustomers(List<Integer> codes) {
+        try {
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            return customerRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customers cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Find all the products which match with the given codes.
+     *
+     * @param codes The codes of the products to find.
+     * @return A list with the found products.
+     */
+    private List<Product> findProducts(List<String> codes) {
+        try {
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
+            return productRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Products cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * It creates the delivery notes from a list of Mongo documents.
+     *
+     * Note that the customers and products referenced by all the documents
+     * are loaded at once, doing one query per entity type concurrently, and
+     * then each document is decoded straight into a delivery note.
+     *
+     * @param documents The documents obtained from the Mongo collection.
+     * @return A list with the delivery notes based on the data obtained from
+     * the given documents.
+     */
+    private ArrayList<DeliveryNoteData> createDeliveryNotesFrom(List<RawBsonDocument> documents) {
+        IdentityMap<Integer, Customer> customers = new IdentityMap<>(Customer::getCode, this::findCustomers);
+        IdentityMap<String, Product> products = new IdentityMap<>(Product::getCode, this::findProducts);
+
+        for (RawBsonDocument document : documents) {
+            customers.collect(MongoDecoder.getInteger(document, "farmer"));
+            customers.collect(MongoDecoder.getInteger(document, "trader"));
+            products.collect(MongoDecoder.getString(document, "product"));
+        }
+
+        CompletableFuture<Void> productsResolution = AsyncRepository.run(products::resolve);
+        customers.resolve();
+        AsyncRepository.await(productsResolution);
+
+        DeliveryNoteDataDecoder decoder = new DeliveryNoteDataDecoder(customers, products, code -> new LazyFile(() -> super.findFile(this.getDeliveryNoteCodeFilter(code))));
+
+        ArrayList<DeliveryNoteData> deliveryNotes = new ArrayList<>();
+        for (RawBsonDocument document : documents) {
+            deliveryNotes.add(document.decode(decoder));
+        }
+
+        return deliveryNotes;
+    }
+
+    /**
+     * It creates the update for a changed attribute of the delivery note.
      *
-     * @param document A document obtained from the Mongo collection.
-     * @return A delivery note object based on the data obtained from the given
-     * document.
+     * @param attribute The changed attribute.
+     * @param deliveryNoteData The delivery note.
+     * @return An update which sets the field associated with the given
+     * attribute.
      */
-    private DeliveryNoteData createDeliveryNoteFrom(Document document) {
-        // Create a delivery note data entry.
-        // Filter by date interval, customer, product
-        Map<DeliveryNoteDataAttribute, Object> attributes = new HashMap<>();
-        attributes.put(DeliveryNoteDataAttribute.CODE, document.get("code"));
-        attributes.put(DeliveryNoteDataAttribute.DATE, document.get("date"));
-        attributes.put(DeliveryNoteDataAttribute.FARMER, document.get("farmer"));
-        attributes.put(DeliveryNoteDataAttribute.TRADER, document.get("trader"));
-        attributes.put(DeliveryNoteDataAttribute.PRODUCT, document.get("product"));
-        attributes.put(DeliveryNoteDataAttribute.FILE, document.get("file"));
-        attributes.put(DeliveryNoteDataAttribute.NUM_BOXES, document.get("numBoxes"));
-        attributes.put(DeliveryNoteDataAttribute.NUM_PALLETS, document.get("numPallets"));
-        attributes.put(DeliveryNoteDataAttribute.NET_WEIGHT, document.get("netWeight"));
-        attributes.put(DeliveryNoteDataAttribute.IS_CLOSED, document.get("isClosed"));
-        attributes.put(DeliveryNoteDataAttribute.IS_DELETED, document.get("isDeleted"));
+    private Bson createUpdateFor(DeliveryNoteDataAttribute attribute, DeliveryNoteData deliveryNoteData) {
+        switch (attribute) {
+            case PRICE:
+                return Updates.set("price", deliveryNoteData.getPrice());
+            case IS_CLOSED:
+                return Updates.set("isClosed", deliveryNoteData.isClosed());
+            case IS_DELETED:
+                return Updates.set("isDeleted", deliveryNoteData.isDeleted());
+            default:
+                throw new IllegalArgumentException(String.format("The delivery note attribute %s cannot be updated.", attribute));
+        }
+    }
+
+    /**
+     * It creates the change to apply to the daily rollups when a delivery
+     * note is updated.
+     *
+     * Only the price and the removal state of a delivery note can change, so
+     * they are compared with the stored ones.
+     *
+     * @param deliveryNoteData The updated delivery note data.
+     * @param storedDocument The stored document, with the price and the
+     * removal state before the update.
+     * @return The change to add to the rollup of the delivery note.
+     */
+    private DeliveryNoteRollup createRollupChangeFor(DeliveryNoteData deliveryNoteData, Document storedDocument) {
+        Object storedPrice = storedDocument.get("price");
+        double oldPrice = storedPrice instanceof String ? Double.parseDouble((String) storedPrice) : super.getNumber(storedDocument, "price").doubleValue();
 
-        double price = (double) document.get("price");
-        attributes.put(DeliveryNoteDataAttribute.PRICE, (float) price);
+        boolean wasCounted = !storedDocument.getBoolean("isDeleted", false);
+        boolean isCounted = !deliveryNoteData.isDeleted();
 
-        return DeliveryNoteData.from(attributes);
+        // It is -1 when the delivery note is removed, otherwise 0.
+        int countChange = (isCounted ? 1 : 0) - (wasCounted ? 1 : 0);
+
+        int netWeight = deliveryNoteData.getNetWeight();
+        double oldAmount = wasCounted ? netWeight * oldPrice : 0;
+        double newAmount = isCounted ? netWeight * deliveryNoteData.getPrice() : 0;
+
+        return new DeliveryNoteRollup(deliveryNoteData.getDate(), deliveryNoteData.getFarmer().getCode(), deliveryNoteData.getTrader().getCode(), deliveryNoteData.getProduct().getCode(), countChange, countChange * netWeight, countChange * deliveryNoteData.getNumBoxes(), countChange * deliveryNoteData.getNumPallets(), newAmount - oldAmount);
+    }
+
+    /**
+     * Add the given change to the daily rollups.
+     *
+     * The rollups can be rebuilt from the delivery notes, so a change which
+     * cannot be added does not make the delivery note write fail.
+     *
+     * @param change The change to add.
+     */
+    private void addToRollups(DeliveryNoteRollup change) {
+        try {
+            DeliveryNoteRollupRepository deliveryNoteRollupRepository = RepositoryProvider.get(DeliveryNoteRollupRepository.class);
+            deliveryNoteRollupRepository.add(change);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery note rollups not updated because the database has not been found", ex);
+        } catch (MongoException ex) {
+            String className = MongoDeliveryNoteRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Delivery note rollups not updated, so they must be rebuilt", ex);
+        }
+    }
+
+    /**
+     * Write a journaled delivery note to the database, storing its PDF file
+     * and adding it to the daily rollups.
+     *
+     * A delivery note whose code is already stored, with the same date and
+     * file, was written before the application finished, so it is not added
+     * to the rollups again. Otherwise its code has been taken by another
+     * delivery note, so it can never be written.
+     *
+     * @param document The delivery note document, without the file hash.
+     * @param file The delivery note PDF file.
+     * @return Whether the delivery note has been written.
+     * @throws DuplicatedEntityException Thrown when the code has been taken
+     * by another delivery note.
+     */
+    private boolean write(Document document, File file) throws DuplicatedEntityException {
+        String fileHash = super.storeFile(file);
+        if (fileHash == null) {
+            return false;
+        }
+
+        document.append("fileHash", fileHash);
+
+        Lock rollupChangeLock = MongoDeliveryNoteRollupRepository.getChangeLock();
+        rollupChangeLock.lock();
+        try {
+            try {
+                super.insertUniqueOne(document);
+            } catch (DuplicatedEntityException ex) {
+                if (super.isStored(document, "date", "fileHash")) {
+                    Logger.getLogger(MongoDeliveryNoteRepository.class.getName()).log(Level.FINE, "Journaled delivery note already written", ex);
+                    return true;
+                }
+
+                throw ex;
+            }
+
+            // New delivery notes have no price yet.
+            DeliveryNoteRollup change = new DeliveryNoteRollup(document.getDate("date"), document.getInteger("farmer"), document.getInteger("trader"), document.getString("product"), 1, document.getInteger("netWeight"), document.getInteger("numBoxes"), document.getInteger("numPallets"), 0);
+            this.addToRollups(change);
+        } finally {
+            rollupChangeLock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed delivery notes
+     * between the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param productCode The product code, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * delivery notes which match the given parameters.
+     */
+    private Bson getPendingDeliveryNotesFilter(Integer farmerCode, Integer traderCode, String productCode, Date from, Date to) {
+        Bson isNotDeletedFilter = Filters.eq("isDeleted", false);
+        Bson isNotClosedFilter = this.isNotClosedFilter();
+        Bson fromDate = Filters.gte("date", from);
+        Bson toDate = Filters.lte("date", to);
+
+        Bson filters = Filters.and(isNotDeletedFilter, isNotClosedFilter, fromDate, toDate);
+
+        if (farmerCode != null) {
+            Bson farmerFilter = Filters.eq("farmer", farmerCode);
+            filters = Filters.and(filters, farmerFilter);
+        }
+
+        if (traderCode != null) {
+            Bson traderFilter = Filters.eq("trader", traderCode);
+            filters = Filters.and(filters, traderFilter);
+        }
+
+        if (productCode != null) {
+            Bson productFilter = Filters.eq("product", productCode);
+            filters = Filters.and(filters, productFilter);
+        }
+
+        return filters;
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed delivery notes
+     * between the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param product The product, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * delivery notes which match the given parameters.
+     */
+    private Bson getPendingDeliveryNotesFilter(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        String productCode = product == null ? null : product.getCode();
+        return this.getPendingDeliveryNotesFilter(farmerCode, traderCode, productCode, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        indexes.add(new IndexModel(Indexes.ascending("isClosed", "isDeleted", "date", "code")));
+        indexes.add(new IndexModel(Indexes.ascending("farmer", "date")));
+        indexes.add(new IndexModel(Indexes.ascending("trader", "date")));
+        indexes.add(new IndexModel(Indexes.ascending("product", "date")));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(Filters.and(this.getDeliveryNoteCodeFilter(0), this.isNotClosedFilter()));
+        queryShapes.add(this.getPendingDeliveryNotesFilter((Customer) null, null, null, new Date(), new Date()));
+        queryShapes.add(this.getPendingDeliveryNotesFilter(0, null, null, new Date(), new Date()));
+        queryShapes.add(this.getPendingDeliveryNotesFilter(null, 0, null, new Date(), new Date()));
+        queryShapes.add(this.getPendingDeliveryNotesFilter(null, null, "", new Date(), new Date()));
+        return queryShapes;
     }
 
     /**
@@ -162,13 +470,13 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
         Bson isNotClosedFilter = this.isNotClosedFilter();
         Bson filters = Filters.and(deliveryNoteCodeFilter, isNotClosedFilter);
 
-        ArrayList<Document> foundDeliveryNoteDocuments = super.find(filters);
+        ArrayList<RawBsonDocument> foundDeliveryNoteDocuments = super.find(filters, this.withoutFileProjection(), RawBsonDocument.class);
 
         if (foundDeliveryNoteDocuments.isEmpty()) {
             return null;
         } else {
-            Document foundDeliveryNoteDocument = foundDeliveryNoteDocuments.get(0);
-            return this.createDeliveryNoteFrom(foundDeliveryNoteDocument);
+            List<RawBsonDocument> foundDeliveryNoteDocument = foundDeliveryNoteDocuments.subList(0, 1);
+            return this.createDeliveryNotesFrom(foundDeliveryNoteDocument).get(0);
         }
     }
 
@@ -176,47 +484,140 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<DeliveryNoteData> get(Customer farmer, Customer trader, Product product, Date from, Date to) {
-        Bson isNotDeletedFilter = Filters.eq("isDeleted", false);
+    public ArrayList<DeliveryNoteData> find(List<Integer> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Bson deliveryNoteCodesFilter = Filters.in("code", codes);
         Bson isNotClosedFilter = this.isNotClosedFilter();
-        Bson fromDate = Filters.gte("date", from);
-        Bson toDate = Filters.lte("date", to);
+        Bson filters = Filters.and(deliveryNoteCodesFilter, isNotClosedFilter);
 
-        Bson filters = Filters.and(isNotDeletedFilter, isNotClosedFilter, fromDate, toDate);
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, this.withoutFileProjection(), RawBsonDocument.class);
+        return this.createDeliveryNotesFrom(foundDocuments);
+    }
 
-        if (farmer != null) {
-            Bson farmerFilter = Filters.eq("farmer", farmer.getCode());
-            filters = Filters.and(filters, farmerFilter);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<DeliveryNoteData> get(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, this.withoutFileProjection(), RawBsonDocument.class);
+        return this.createDeliveryNotesFrom(foundDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<DeliveryNoteData> page(Customer farmer, Customer trader, Product product, Date from, Date to, PageKey afterKey, int limit) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+        if (afterKey != null) {
+            filters = Filters.and(filters, super.getAfterKeyFilter(afterKey));
         }
 
-        if (trader != null) {
-            Bson traderFilter = Filters.eq("trader", trader.getCode());
-            filters = Filters.and(filters, traderFilter);
+        // Obtain one more delivery note to know whether there is a next page.
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, this.withoutFileProjection(), super.getPageSort(), limit + 1, RawBsonDocument.class);
+
+        boolean hasNextPage = foundDocuments.size() > limit;
+        if (hasNextPage) {
+            foundDocuments.remove(limit);
         }
 
-        if (product != null) {
-            Bson productFilter = Filters.eq("product", product.getCode());
-            filters = Filters.and(filters, productFilter);
+        ArrayList<DeliveryNoteData> deliveryNotes = this.createDeliveryNotesFrom(foundDocuments);
+
+        PageKey nextKey = null;
+        if (hasNextPage) {
+            DeliveryNoteData lastDeliveryNote = deliveryNotes.get(deliveryNotes.size() - 1);
+            nextKey = new PageKey(lastDeliveryNote.getDate(), lastDeliveryNote.getCode());
         }
 
-        ArrayList<Document> foundDocuments = super.find(filters);
+        return new Page<>(deliveryNotes, nextKey);
+    }
 
-        ArrayList<DeliveryNoteData> deliveryNotes = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            DeliveryNoteData deliveryNote = this.createDeliveryNoteFrom(document);
-            deliveryNotes.add(deliveryNote);
+    /**
+     * Sum the boxes, the net weight and the import of the delivery notes
+     * which match the given filters one by one, like the totals aggregation
+     * does, which is used while the database cannot be reached.
+     *
+     * @param filters The query filters.
+     * @return A list with the totals document.
+     */
+    private ArrayList<Document> sumTotals(Bson filters) {
+        int numBoxes = 0;
+        int netWeight = 0;
+        double totalImport = 0;
+        for (Document document : super.find(filters, Projections.include("numBoxes", "netWeight", "price"))) {
+            int documentNetWeight = super.getNumber(document, "netWeight").intValue();
+            Object price = document.get("price");
+
+            numBoxes += super.getNumber(document, "numBoxes").intValue();
+            netWeight += documentNetWeight;
+            totalImport += documentNetWeight * (price instanceof String ? Double.parseDouble((String) price) : super.getNumber(document, "price").doubleValue());
         }
 
-        return deliveryNotes;
+        Document totals = new Document("numBoxes", numBoxes).append("netWeight", netWeight).append("totalImport", totalImport);
+        return new ArrayList<>(Arrays.asList(totals));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+
+        // Some prices were stored as strings, so they are converted before multiplying.
+        Document deliveryNoteImport = new Document("$multiply", Arrays.asList("$netWeight", new Document("$toDouble", "$price")));
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(filters),
+                Aggregates.group(null,
+                        Accumulators.sum("numBoxes", "$numBoxes"),
+                        Accumulators.sum("netWeight", "$netWeight"),
+                        Accumulators.sum("totalImport", deliveryNoteImport)));
+
+        ArrayList<Document> results = super.aggregate(pipeline, () -> this.sumTotals(filters));
+        if (results.isEmpty()) {
+            return new DeliveryNoteTotals(0, 0, 0);
+        }
+
+        Document totals = results.get(0);
+        return new DeliveryNoteTotals(super.getNumber(totals, "numBoxes").intValue(), super.getNumber(totals, "netWeight").intValue(), super.getNumber(totals, "totalImport").floatValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stream(Customer farmer, Customer trader, Product product, Date from, Date to, int batchSize, Consumer<List<DeliveryNoteData>> batchConsumer) {
+        Bson filters = this.getPendingDeliveryNotesFilter(farmer, trader, product, from, to);
+        super.stream(filters, this.withoutFileProjection(), super.getPageSort(), batchSize, RawBsonDocument.class, documents -> batchConsumer.accept(this.createDeliveryNotesFrom(documents)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the delivery note is written to the local journal, and it is
+     * written to the database on the background, so it is not listed until
+     * then.
+     */
+    @Override
     public void save(DeliveryNote deliveryNote) {
         Document document = this.createDocumentFrom(deliveryNote);
-        this.insertOne(document);
+
+        if (this.journal == null) {
+            try {
+                this.write(document, deliveryNote.getFile());
+            } catch (DuplicatedEntityException ex) {
+                String message = String.format("The delivery note %d cannot be written because another one has the same code", deliveryNote.getCode());
+                Logger.getLogger(MongoDeliveryNoteRepository.class.getName()).log(Level.SEVERE, message, ex);
+            }
+        } else {
+            this.journal.add(document, deliveryNote.getFile());
+        }
     }
 
     /**
@@ -225,7 +626,77 @@ public class MongoDeliveryNoteRepository extends MongoRepository implements Deli
     @Override
     public boolean update(DeliveryNoteData deliveryNoteData) {
         Bson deliveryNoteCodeFilter = this.getDeliveryNoteCodeFilter(deliveryNoteData.getCode());
-        return super.replaceOne(deliveryNoteCodeFilter, this.createDocumentFrom(deliveryNoteData));
+
+        // The stored price and removal state are needed to know how much the rollups change.
+        Set<DeliveryNoteDataAttribute> changedAttributes = deliveryNoteData.getChangedAttributes();
+        boolean changesRollups = changedAttributes.isEmpty() || changedAttributes.contains(DeliveryNoteDataAttribute.PRICE) || changedAttributes.contains(DeliveryNoteDataAttribute.IS_DELETED);
+        Lock rollupChangeLock = MongoDeliveryNoteRollupRepository.getChangeLock();
+        rollupChangeLock.lock();
+        try {
+            ArrayList<Document> storedDocuments = changesRollups ? super.find(deliveryNoteCodeFilter, Projections.include("price", "isDeleted")) : new ArrayList<>();
+
+            boolean isUpdated = super.updateChanges(deliveryNoteCodeFilter, deliveryNoteData, attribute -> this.createUpdateFor(attribute, deliveryNoteData), () -> this.createDocumentFrom(deliveryNoteData));
+            if (isUpdated && !storedDocuments.isEmpty()) {
+                DeliveryNoteRollup change = this.createRollupChangeFor(deliveryNoteData, storedDocuments.get(0));
+                this.addToRollups(change);
+            }
+
+            return isUpdated;
+        } finally {
+            rollupChangeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean close(List<DeliveryNoteData> deliveryNotes) {
+        if (deliveryNotes.isEmpty()) {
+            return true;
+        }
+
+        ArrayList<Integer> deliveryNoteCodes = new ArrayList<>();
+        for (DeliveryNoteData deliveryNote : deliveryNotes) {
+            deliveryNoteCodes.add(deliveryNote.getCode());
+        }
+
+        Bson deliveryNoteCodesFilter = Filters.in("code", deliveryNoteCodes);
+        Bson isClosedUpdate = Updates.set("isClosed", true);
+        int numMatchedDeliveryNotes = super.updateMany(deliveryNoteCodesFilter, isClosedUpdate);
+
+        boolean areClosed = numMatchedDeliveryNotes == deliveryNoteCodes.size();
+        if (areClosed) {
+            for (DeliveryNoteData deliveryNote : deliveryNotes) {
+                deliveryNote.clearChanges();
+            }
+        }
+
+        return areClosed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingWrites(Customer customer) {
+        if (this.journal == null) {
+            return false;
+        }
+
+        int customerCode = customer.getCode();
+        return this.journal.hasPending(document -> Objects.equals(document.getInteger("farmer"), customerCode) || Objects.equals(document.getInteger("trader"), customerCode));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the local copy of the collection is read while the database
+     * cannot be reached, which only holds the recent delivery notes.
+     */
+    @Override
+    public Date getAvailableSince() {
+        return MongoLocalReplica.isOffline() ? MongoLocalReplica.getCopiedSince("deliverynote") : null;
     }
 
 }
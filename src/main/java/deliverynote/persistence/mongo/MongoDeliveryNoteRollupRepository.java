@@ -0,0 +1,306 @@
+package deliverynote.persistence.mongo;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteRollup;
+import deliverynote.application.DeliveryNoteTotals;
+import deliverynote.persistence.DeliveryNoteRollupRepository;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import product.application.Product;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import shared.persistence.mongo.MongoRepository;
+
+/**
+ * Interacts with the daily delivery note rollup collection on the Mongo
+ * database.
+ *
+ * Each document sums the non-removed delivery notes of a day, a farmer, a
+ * trader and a product, so period queries do not need to read the delivery
+ * notes.
+ */
+public class MongoDeliveryNoteRollupRepository extends MongoRepository implements DeliveryNoteRollupRepository {
+
+    /**
+     * Name of the rollup collection.
+     */
+    private static final String COLLECTION_NAME = "deliverynoterollup";
+
+    /**
+     * Lock held while the rollups are rebuilt, so the delivery note writes
+     * of this process which change the rollups wait until the rebuild
+     * finishes. The writes of other stations are not held back.
+     */
+    private static final ReentrantReadWriteLock REBUILD_LOCK = new ReentrantReadWriteLock(true);
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public MongoDeliveryNoteRollupRepository() throws NotDefinedDatabaseContextException {
+        super(COLLECTION_NAME);
+    }
+
+    /**
+     * Obtain the lock which must be held while a delivery note is written
+     * along with its rollup change.
+     *
+     * Note that a rebuild replaces the whole collection with the rollups
+     * calculated from the delivery notes read at its start, so a change done
+     * meanwhile would be lost. The lock only covers this process.
+     *
+     * @return The lock of the rollup changes.
+     */
+    static Lock getChangeLock() {
+        return REBUILD_LOCK.readLock();
+    }
+
+    /**
+     * It creates a rollup from a Mongo document.
+     *
+     * @param document A document obtained from the Mongo collection.
+     * @return A rollup object based on the data obtained from the given
+     * document.
+     */
+    private DeliveryNoteRollup createRollupFrom(Document document) {
+        int numDeliveryNotes = super.getNumber(document, "numDeliveryNotes").intValue();
+        int netWeight = super.getNumber(document, "netWeight").intValue();
+        int numBoxes = super.getNumber(document, "numBoxes").intValue();
+        int numPallets = super.getNumber(document, "numPallets").intValue();
+        double amount = super.getNumber(document, "amount").doubleValue();
+
+        return new DeliveryNoteRollup(document.getDate("day"), document.getInteger("farmer"), document.getInteger("trader"), document.getString("product"), numDeliveryNotes, netWeight, numBoxes, numPallets, amount);
+    }
+
+    /**
+     * Obtain the filter for the rollup of a day, a farmer, a trader and a
+     * product.
+     *
+     * @param rollup The rollup.
+     * @return A filter indicating that the query must only obtain the rollup
+     * with the same keys as the given one.
+     */
+    private Bson getRollupKeyFilter(DeliveryNoteRollup rollup) {
+        return Filters.and(Filters.eq("day", rollup.getDay()), Filters.eq("farmer", rollup.getFarmer()), Filters.eq("trader", rollup.getTrader()), Filters.eq("product", rollup.getProduct()));
+    }
+
+    /**
+     * Obtain the filter for the rollups between the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param productCode The product code, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the rollups
+     * which match the given parameters.
+     */
+    private Bson getPeriodFilter(Integer farmerCode, Integer traderCode, String productCode, Date from, Date to) {
+        Bson fromDay = Filters.gte("day", DeliveryNoteRollup.getDayOf(from));
+        Bson toDay = Filters.lte("day", DeliveryNoteRollup.getDayOf(to));
+
+        Bson filters = Filters.and(fromDay, toDay);
+
+        if (farmerCode != null) {
+            filters = Filters.and(filters, Filters.eq("farmer", farmerCode));
+        }
+
+        if (traderCode != null) {
+            filters = Filters.and(filters, Filters.eq("trader", traderCode));
+        }
+
+        if (productCode != null) {
+            filters = Filters.and(filters, Filters.eq("product", productCode));
+        }
+
+        return filters;
+    }
+
+    /**
+     * Obtain the filter for the rollups between the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param product The product, or null to not filter by product.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the rollups
+     * which match the given parameters.
+     */
+    private Bson getPeriodFilter(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        String productCode = product == null ? null : product.getCode();
+        return this.getPeriodFilter(farmerCode, traderCode, productCode, from, to);
+    }
+
+    /**
+     * Obtain the expression which calculates the start of the day of the
+     * delivery note date, on the local time zone.
+     *
+     * @return An aggregation expression with the delivery note day.
+     */
+    private Document getDeliveryNoteDayExpression() {
+        String timezone = TimeZone.getDefault().getID();
+        Document localDate = new Document("date", "$date").append("timezone", timezone);
+
+        Document dateParts = new Document("year", new Document("$year", localDate))
+                .append("month", new Document("$month", localDate))
+                .append("day", new Document("$dayOfMonth", localDate))
+                .append("timezone", timezone);
+
+        return new Document("$dateFromParts", dateParts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("day", "farmer", "trader", "product"), new IndexOptions().unique(true)));
+        indexes.add(new IndexModel(Indexes.ascending("farmer", "day")));
+        indexes.add(new IndexModel(Indexes.ascending("trader", "day")));
+        indexes.add(new IndexModel(Indexes.ascending("product", "day")));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        Date now = new Date();
+
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getRollupKeyFilter(new DeliveryNoteRollup(now, 0, 0, "", 0, 0, 0, 0, 0)));
+        queryShapes.add(this.getPeriodFilter((Customer) null, null, null, now, now));
+        queryShapes.add(this.getPeriodFilter(0, null, null, now, now));
+        return queryShapes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(DeliveryNoteRollup change) {
+        Bson increments = Updates.combine(
+                Updates.inc("numDeliveryNotes", change.getNumDeliveryNotes()),
+                Updates.inc("netWeight", change.getNetWeight()),
+                Updates.inc("numBoxes", change.getNumBoxes()),
+                Updates.inc("numPallets", change.getNumPallets()),
+                Updates.inc("amount", change.getAmount()));
+
+        super.updateOrInsertOne(this.getRollupKeyFilter(change), increments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<DeliveryNoteRollup> get(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson periodFilter = this.getPeriodFilter(farmer, trader, product, from, to);
+        // A zero limit obtains all the rollups.
+        ArrayList<Document> foundDocuments = super.find(periodFilter, Projections.excludeId(), Sorts.ascending("day"), 0, Document.class);
+
+        ArrayList<DeliveryNoteRollup> rollups = new ArrayList<>();
+        for (Document document : foundDocuments) {
+            rollups.add(this.createRollupFrom(document));
+        }
+
+        return rollups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DeliveryNoteTotals getTotals(Customer farmer, Customer trader, Product product, Date from, Date to) {
+        Bson periodFilter = this.getPeriodFilter(farmer, trader, product, from, to);
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(periodFilter),
+                Aggregates.group(null,
+                        Accumulators.sum("numBoxes", "$numBoxes"),
+                        Accumulators.sum("netWeight", "$netWeight"),
+                        Accumulators.sum("amount", "$amount")));
+
+        ArrayList<Document> results = super.aggregate(pipeline);
+        if (results.isEmpty()) {
+            return new DeliveryNoteTotals(0, 0, 0);
+        }
+
+        Document totals = results.get(0);
+        return new DeliveryNoteTotals(super.getNumber(totals, "numBoxes").intValue(), super.getNumber(totals, "netWeight").intValue(), super.getNumber(totals, "amount").floatValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that only the delivery note writes of this process wait until the
+     * rebuild finishes, so their rollup changes are not overwritten. The
+     * changes added by other stations meanwhile are lost, so it must be run
+     * on demand while no other station is saving delivery notes.
+     */
+    @Override
+    public void rebuild() {
+        Document rollupKey = new Document("day", this.getDeliveryNoteDayExpression())
+                .append("farmer", "$farmer")
+                .append("trader", "$trader")
+                .append("product", "$product");
+
+        // Some prices were stored as strings, so they are converted before multiplying.
+        Document deliveryNoteAmount = new Document("$multiply", Arrays.asList("$netWeight", new Document("$toDouble", "$price")));
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.ne("isDeleted", true)),
+                Aggregates.group(rollupKey,
+                        Accumulators.sum("numDeliveryNotes", 1),
+                        Accumulators.sum("netWeight", "$netWeight"),
+                        Accumulators.sum("numBoxes", "$numBoxes"),
+                        Accumulators.sum("numPallets", "$numPallets"),
+                        Accumulators.sum("amount", deliveryNoteAmount)),
+                Aggregates.project(Projections.fields(
+                        Projections.excludeId(),
+                        Projections.computed("day", "$_id.day"),
+                        Projections.computed("farmer", "$_id.farmer"),
+                        Projections.computed("trader", "$_id.trader"),
+                        Projections.computed("product", "$_id.product"),
+                        Projections.include("numDeliveryNotes", "netWeight", "numBoxes", "numPallets", "amount"))),
+                Aggregates.out(COLLECTION_NAME));
+
+        // The output replaces the collection at once, keeping its indexes.
+        REBUILD_LOCK.writeLock().lock();
+        try {
+            super.aggregateFrom("deliverynote", pipeline);
+        } finally {
+            REBUILD_LOCK.writeLock().unlock();
+        }
+    }
+
+}
@@ -2,16 +2,18 @@ package deliverynote.presentation.panels;
 
 import container.application.Pallet;
 import container.application.usecases.ListPallets;
-import container.persistence.mongo.MongoContainerRepository;
+import container.persistence.ContainerRepository;
 import customer.application.Customer;
+import customer.application.CustomerSummary;
 import customer.application.usecases.ObtainCustomers;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.application.usecases.ShowCustomer;
+import customer.persistence.CustomerRepository;
 import deliverynote.application.DeliveryNote;
 import deliverynote.application.DeliveryNoteAttribute;
 import deliverynote.application.usecases.CreateDeliveryNote;
 import deliverynote.application.utils.DeliveryNoteGenerator;
 import deliverynote.application.utils.DeliveryNoteValidationState;
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRepository;
 import java.awt.GridLayout;
 import java.io.File;
 import java.io.IOException;
@@ -19,6 +21,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ComboBoxModel;
@@ -27,14 +30,18 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileSystemView;
+import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
 import product.application.Product;
 import product.application.usecases.ListProducts;
-import product.persistence.mongo.MongoProductRepository;
-import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
+import product.persistence.ProductRepository;
 import shared.application.Pair;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.AsyncRepository;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -42,7 +49,7 @@ import shared.presentation.utils.Downloader;
 import shared.presentation.utils.Printer;
 import template.application.Template;
 import template.application.usecases.ShowTemplate;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 import weighing.presentation.panels.WeighingsPanel;
 
 /**
@@ -71,59 +78,91 @@ public class GenerateDeliveryNotePanel extends javax.swing.JPanel {
     }
 
     /**
-     * Obtain all the customers data by executing the use case.
+     * Obtain all the customers data by executing the use case asynchronously.
      *
      * @param getFarmers Whether we must get the farmers or not.
-     * @return A list with all the customers on the system based on the given
-     * filter.
+     * @return A future with the list of all the customers on the system based
+     * on the given filter.
      */
-    private ArrayList<Customer> obtainCustomers(boolean getFarmers) {
+    private CompletableFuture<ArrayList<CustomerSummary>> obtainCustomers(boolean getFarmers) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
-            ObtainCustomers obtainCustomers = new ObtainCustomers(customerRepository);
-            return obtainCustomers.execute(getFarmers);
+            AsyncRepository<CustomerRepository> customerRepository = RepositoryProvider.getAsync(CustomerRepository.class);
+            return customerRepository.call(repository -> {
+                ObtainCustomers obtainCustomers = new ObtainCustomers(repository);
+                return obtainCustomers.execute(getFarmers);
+            });
         } catch (NotDefinedDatabaseContextException ex) {
             String className = GenerateDeliveryNotePanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Customers cannot be shown because the database has not been found", ex);
         }
 
-        return new ArrayList<>();
+        return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+
+    /**
+     * Obtain the customer selected on a customer input by executing the use
+     * case.
+     *
+     * @param selectedItem The item selected on the customer input.
+     * @return The found customer, otherwise null.
+     */
+    private Customer getSelectedCustomer(Object selectedItem) {
+        if (!(selectedItem instanceof CustomerSummary)) {
+            return null;
+        }
+
+        try {
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            ShowCustomer showCustomer = new ShowCustomer(customerRepository);
+            return showCustomer.execute(((CustomerSummary) selectedItem).getCode());
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = GenerateDeliveryNotePanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customer cannot be shown because the database has not been found", ex);
+        }
+
+        return null;
     }
 
     /**
-     * Obtain all the pallets data by executing the use case.
+     * Obtain all the pallets data by executing the use case asynchronously.
      *
-     * @return A list with all non-removed pallets on the system.
+     * @return A future with the list of all non-removed pallets on the system.
      */
-    private ArrayList<Pallet> getPallets() {
+    private CompletableFuture<ArrayList<Pallet>> getPallets() {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
-            ListPallets listPallets = new ListPallets(containerRepository);
-            return listPallets.execute(false);
+            AsyncRepository<ContainerRepository> containerRepository = RepositoryProvider.getAsync(ContainerRepository.class);
+            return containerRepository.call(repository -> {
+                ListPallets listPallets = new ListPallets(repository);
+                return listPallets.execute(false);
+            });
         } catch (NotDefinedDatabaseContextException ex) {
             String className = WeighingsPanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Pallets cannot be shown because the database has not been found", ex);
         }
 
-        return null;
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
 
     /**
-     * Obtain all the non-removed products data by executing the use case.
+     * Obtain all the non-removed products data by executing the use case
+     * asynchronously.
      *
-     * @return A list with all non-removed products on the system.
+     * @return A future with the list of all non-removed products on the
+     * system.
      */
-    private ArrayList<Product> getProducts() {
+    private CompletableFuture<ArrayList<Product>> getProducts() {
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
-            ListProducts listProducts = new ListProducts(productRepository);
-            return listProducts.execute(false);
+            AsyncRepository<ProductRepository> productRepository = RepositoryProvider.getAsync(ProductRepository.class);
+            return productRepository.call(repository -> {
+                ListProducts listProducts = new ListProducts(repository);
+                return listProducts.execute(false);
+            });
         } catch (NotDefinedDatabaseContextException ex) {
             String className = GenerateDeliveryNotePanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Products cannot be shown because the database has not been found", ex);
         }
 
-        return new ArrayList<>();
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
 
     /**
@@ -135,7 +174,7 @@ public class GenerateDeliveryNotePanel extends javax.swing.JPanel {
      */
     private Template getTemplate(int code) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             ShowTemplate showTemplate = new ShowTemplate(templateRepository);
             return showTemplate.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -185,27 +224,49 @@ public class GenerateDeliveryNotePanel extends javax.swing.JPanel {
 
     /**
      * Initialize inputs.
+     *
+     * Note that the customers, products and pallets are obtained concurrently
+     * and set on their inputs once all of them have been obtained, so the
+     * panel is shown without waiting for them.
      */
     private void initializeInputs() {
-        // Farmers input.
-        Vector<Customer> farmers = new Vector<>(this.obtainCustomers(true));
-        farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(farmers));
-        AutoCompleteDecorator.decorate(farmerInput);
-
-        // Traders input.
-        Vector<Customer> traders = new Vector<>(this.obtainCustomers(false));
-        traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(traders));
-        AutoCompleteDecorator.decorate(traderInput);
-
-        // Product input.
-        Vector<Product> products = new Vector<>(this.getProducts());
-        productInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Product>(products));
-        AutoCompleteDecorator.decorate(productInput);
-
-        // Pallets input.
-        Vector<Pallet> pallets = new Vector<>(this.getPallets());
-        palletInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Pallet>(pallets));
-        AutoCompleteDecorator.decorate(palletInput);
+        farmerInput.setModel(new DefaultComboBoxModel<>());
+        traderInput.setModel(new DefaultComboBoxModel<>());
+        productInput.setModel(new DefaultComboBoxModel<>());
+        palletInput.setModel(new DefaultComboBoxModel<>());
+
+        CompletableFuture<ArrayList<CustomerSummary>> farmersLookup = this.obtainCustomers(true);
+        CompletableFuture<ArrayList<CustomerSummary>> tradersLookup = this.obtainCustomers(false);
+        CompletableFuture<ArrayList<Product>> productsLookup = this.getProducts();
+        CompletableFuture<ArrayList<Pallet>> palletsLookup = this.getPallets();
+
+        CompletableFuture.allOf(farmersLookup, tradersLookup, productsLookup, palletsLookup).thenRunAsync(() -> {
+            // Farmers input.
+            Vector<CustomerSummary> farmers = new Vector<>(farmersLookup.join());
+            farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(farmers));
+            AutoCompleteDecorator.decorate(farmerInput);
+
+            // Traders input.
+            Vector<CustomerSummary> traders = new Vector<>(tradersLookup.join());
+            traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(traders));
+            AutoCompleteDecorator.decorate(traderInput);
+
+            // Product input.
+            Vector<Product> products = new Vector<>(productsLookup.join());
+            productInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Product>(products));
+            AutoCompleteDecorator.decorate(productInput);
+
+            // Pallets input.
+            Vector<Pallet> pallets = new Vector<>(palletsLookup.join());
+            palletInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Pallet>(pallets));
+            AutoCompleteDecorator.decorate(palletInput);
+
+            this.weighingsPanel.setPallet((Pallet) palletInput.getSelectedItem());
+        }, SwingUtilities::invokeLater).exceptionally(ex -> {
+            String className = GenerateDeliveryNotePanel.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Customers, products and pallets cannot be shown", ex);
+            return null;
+        });
 
         // Number of pallets input.
         SpinnerNumberModel numPalletsSpinnerNumberModel = new SpinnerNumberModel(0, 0, 4, 1);
@@ -250,13 +311,15 @@ public class GenerateDeliveryNotePanel extends javax.swing.JPanel {
      *
      * @param attributes Map containing the value for each delivery note
      * attribute.
+     * @param reserveCode Whether the generated code must be reserved or not.
      * @return A pair indicating the delivery note and its validation state.
      */
-    private Pair<DeliveryNote, DeliveryNoteValidationState> createDeliveryNote(Map<DeliveryNoteAttribute, Object> attributes) {
+    private Pair<DeliveryNote, DeliveryNoteValidationState> createDeliveryNote(Map<DeliveryNoteAttribute, Object> attributes, boolean reserveCode) {
         try {
-            MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
-            CreateDeliveryNote createDeliveryNote = new CreateDeliveryNote(deliveryNoteRepository);
-            return createDeliveryNote.execute(attributes);
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            CreateDeliveryNote createDeliveryNote = new CreateDeliveryNote(deliveryNoteRepository, sequenceRepository);
+            return createDeliveryNote.execute(attributes, reserveCode);
         } catch (NotDefinedDatabaseContextException ex) {
             String className = GenerateDeliveryNotePanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Delivery note cannot be created because the database has not been found", ex);
@@ -287,15 +350,15 @@ public class GenerateDeliveryNotePanel extends javax.swing.JPanel {
         }
 
         Map<DeliveryNoteAttribute, Object> newDeliveryNoteAttributes = new HashMap<>();
-        newDeliveryNoteAttributes.put(DeliveryNoteAttribute.FARMER, farmerInput.getSelectedItem());
-        newDeliveryNoteAttributes.put(DeliveryNoteAttribute.TRADER, traderInput.getSelectedItem());
+        newDeliveryNoteAttributes.put(DeliveryNoteAttribute.FARMER, this.getSelectedCustomer(farmerInput.getSelectedItem()));
+        newDeliveryNoteAttributes.put(DeliveryNoteAttribute.TRADER, this.getSelectedCustomer(traderInput.getSelectedItem()));
         newDeliveryNoteAttributes.put(DeliveryNoteAttribute.PRODUCT, productInput.getSelectedItem());
         newDeliveryNoteAttributes.put(DeliveryNoteAttribute.TEMPLATE, this.getTemplate(templateCode));
         newDeliveryNoteAttributes.put(DeliveryNoteAttribute.PALLET, palletInput.getSelectedItem());
         newDeliveryNoteAttributes.put(DeliveryNoteAttribute.NUM_PALLETS, numPalletsInput.getValue());
         newDeliveryNoteAttributes.put(DeliveryNoteAttribute.WEIGHINGS, weighingsPanel.getWeighings());
 
-        Pair<DeliveryNote, DeliveryNoteValidationState> deliveryNotePair = this.createDeliveryNote(newDeliveryNoteAttributes);
+        Pair<DeliveryNote, DeliveryNoteValidationState> deliveryNotePair = this.createDeliveryNote(newDeliveryNoteAttributes, register);
 
         DeliveryNoteValidationState state = deliveryNotePair.getSecond();
         if (state != DeliveryNoteValidationState.VALID) {
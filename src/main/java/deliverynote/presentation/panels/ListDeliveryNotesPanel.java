@@ -1,24 +1,37 @@
 package deliverynote.presentation.panels;
 
 import customer.application.Customer;
+import customer.application.CustomerSummary;
 import customer.application.usecases.ObtainCustomers;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.application.usecases.ShowCustomer;
+import customer.persistence.CustomerRepository;
 import deliverynote.application.DeliveryNoteData;
+import deliverynote.application.DeliveryNoteTotals;
+import deliverynote.application.usecases.CalculateDeliveryNoteTotals;
+import deliverynote.application.usecases.CheckDeliveryNotesAvailability;
+import deliverynote.application.usecases.CheckPendingDeliveryNotes;
+import deliverynote.application.usecases.FindDeliveryNote;
 import deliverynote.application.usecases.ListDeliveryNotes;
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRepository;
 import deliverynote.presentation.utils.ListDeliveryNotesTableModel;
 import invoice.application.Invoice;
 import invoice.application.InvoiceAttribute;
 import invoice.application.usecases.CreateInvoice;
 import invoice.application.utils.InvoiceGenerator;
-import invoice.persistence.mongo.MongoInvoiceRepository;
+import invoice.persistence.InvoiceRepository;
 import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ComboBoxModel;
@@ -28,16 +41,24 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import javax.swing.JScrollBar;
+import javax.swing.SwingUtilities;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumn;
 import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
 import product.application.Product;
 import product.application.usecases.ListProducts;
-import product.persistence.mongo.MongoProductRepository;
+import product.persistence.ProductRepository;
 import shared.application.Pair;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.AsyncRepository;
+import shared.persistence.ChangeNotifier;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -47,10 +68,41 @@ import shared.presentation.localization.LocalizationKey;
  */
 public class ListDeliveryNotesPanel extends javax.swing.JPanel {
 
+    /**
+     * Number of delivery notes obtained on each page.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Function which obtains the page after the given key for the current
+     * listing, or null if nothing has been listed yet.
+     */
+    private Function<PageKey, Page<DeliveryNoteData>> pageLoader;
+
+    /**
+     * Key after which the next page of the current listing starts, or null if
+     * all the pages have been obtained.
+     */
+    private PageKey nextPageKey;
+
+    /**
+     * Function which calculates the totals of the current listing, or null if
+     * nothing has been listed yet.
+     */
+    private Supplier<DeliveryNoteTotals> totalsCalculator;
+
+    /**
+     * Listener which refreshes the table row of each delivery note changed on
+     * the database while the panel is shown.
+     */
+    private final Consumer<Object> changeListener;
+
     /**
      * Constructor.
      */
     public ListDeliveryNotesPanel() {
+        this.changeListener = code -> this.refreshDeliveryNote(((Number) code).intValue());
+
         initComponents();
         initializeFormLabels();
         initializeInputs();
@@ -101,22 +153,40 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
 
     /**
      * Initialize inputs.
+     *
+     * Note that the customers and products are obtained concurrently and set
+     * on their inputs once all of them have been obtained, so the panel is
+     * shown without waiting for them.
      */
     private void initializeInputs() {
-        // Farmers input.
-        Vector<Customer> farmers = new Vector<>(this.obtainCustomers(true));
-        farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(farmers));
-        AutoCompleteDecorator.decorate(farmerInput);
-
-        // Traders input.
-        Vector<Customer> traders = new Vector<>(this.obtainCustomers(false));
-        traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(traders));
-        AutoCompleteDecorator.decorate(traderInput);
-
-        // Product input.
-        Vector<Product> products = new Vector<>(this.getProducts());
-        productInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Product>(products));
-        AutoCompleteDecorator.decorate(productInput);
+        farmerInput.setModel(new DefaultComboBoxModel<>());
+        traderInput.setModel(new DefaultComboBoxModel<>());
+        productInput.setModel(new DefaultComboBoxModel<>());
+
+        CompletableFuture<ArrayList<CustomerSummary>> farmersLookup = this.obtainCustomers(true);
+        CompletableFuture<ArrayList<CustomerSummary>> tradersLookup = this.obtainCustomers(false);
+        CompletableFuture<ArrayList<Product>> productsLookup = this.getProducts();
+
+        CompletableFuture.allOf(farmersLookup, tradersLookup, productsLookup).thenRunAsync(() -> {
+            // Farmers input.
+            Vector<CustomerSummary> farmers = new Vector<>(farmersLookup.join());
+            farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(farmers));
+            AutoCompleteDecorator.decorate(farmerInput);
+
+            // Traders input.
+            Vector<CustomerSummary> traders = new Vector<>(tradersLookup.join());
+            traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(traders));
+            AutoCompleteDecorator.decorate(traderInput);
+
+            // Product input.
+            Vector<Product> products = new Vector<>(productsLookup.join());
+            productInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Product>(products));
+            AutoCompleteDecorator.decorate(productInput);
+        }, SwingUtilities::invokeLater).exceptionally(ex -> {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Customers and products cannot be shown", ex);
+            return null;
+        });
 
         // End date, which will be now.
         Calendar currentDate = Calendar.getInstance();
@@ -132,58 +202,90 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
     }
 
     /**
-     * Obtain all the customers data by executing the use case.
+     * Obtain all the customers data by executing the use case asynchronously.
      *
      * @param getFarmers Whether we must get the farmers or not.
-     * @return A list with all the customers on the system based on the given
-     * filter.
+     * @return A future with the list of all the customers on the system based
+     * on the given filter.
      */
-    private ArrayList<Customer> obtainCustomers(boolean getFarmers) {
+    private CompletableFuture<ArrayList<CustomerSummary>> obtainCustomers(boolean getFarmers) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
-            ObtainCustomers obtainCustomers = new ObtainCustomers(customerRepository);
-            return obtainCustomers.execute(getFarmers);
+            AsyncRepository<CustomerRepository> customerRepository = RepositoryProvider.getAsync(CustomerRepository.class);
+            return customerRepository.call(repository -> {
+                ObtainCustomers obtainCustomers = new ObtainCustomers(repository);
+                return obtainCustomers.execute(getFarmers);
+            });
         } catch (NotDefinedDatabaseContextException ex) {
             String className = GenerateDeliveryNotePanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Customers cannot be shown because the database has not been found", ex);
         }
 
-        return new ArrayList<>();
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
 
     /**
-     * Obtain all the non-removed products data by executing the use case.
+     * Obtain the customer selected on a customer input by executing the use
+     * case.
      *
-     * @return A list with all non-removed products on the system.
+     * @param selectedItem The item selected on the customer input.
+     * @return The found customer, otherwise null.
      */
-    private ArrayList<Product> getProducts() {
+    private Customer getSelectedCustomer(Object selectedItem) {
+        if (!(selectedItem instanceof CustomerSummary)) {
+            return null;
+        }
+
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
-            ListProducts listProducts = new ListProducts(productRepository);
-            return listProducts.execute(false);
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            ShowCustomer showCustomer = new ShowCustomer(customerRepository);
+            return showCustomer.execute(((CustomerSummary) selectedItem).getCode());
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customer cannot be shown because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain all the non-removed products data by executing the use case
+     * asynchronously.
+     *
+     * @return A future with the list of all non-removed products on the
+     * system.
+     */
+    private CompletableFuture<ArrayList<Product>> getProducts() {
+        try {
+            AsyncRepository<ProductRepository> productRepository = RepositoryProvider.getAsync(ProductRepository.class);
+            return productRepository.call(repository -> {
+                ListProducts listProducts = new ListProducts(repository);
+                return listProducts.execute(false);
+            });
         } catch (NotDefinedDatabaseContextException ex) {
             String className = GenerateDeliveryNotePanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Products cannot be shown because the database has not been found", ex);
         }
 
-        return new ArrayList<>();
+        return CompletableFuture.completedFuture(new ArrayList<>());
     }
 
     /**
-     * Obtain all the delivery notes data by executing the use case.
+     * Obtain a page of delivery notes data by executing the use case.
      *
      * @param farmer The farmer customer to get the delivery notes.
      * @param trader The trader customer to get the delivery notes.
      * @param product The product to get the delivery notes.
      * @param start The start date to get the delivery notes.
      * @param end The end date to get the delivery notes.
-     * @return A list with all available delivery notes data on the system.
+     * @param afterKey The key of the last delivery note of the previous page,
+     * or null to get the first page.
+     * @return A page with the delivery notes data.
      */
-    private ArrayList<DeliveryNoteData> getDeliveryNotesData(Customer farmer, Customer trader, Product product, Date start, Date end) {
+    private Page<DeliveryNoteData> getDeliveryNotesPage(Customer farmer, Customer trader, Product product, Date start, Date end, PageKey afterKey) {
         try {
-            MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
             ListDeliveryNotes listDeliveryNotes = new ListDeliveryNotes(deliveryNoteRepository);
-            return listDeliveryNotes.execute(farmer, trader, product, start, end);
+            return listDeliveryNotes.execute(farmer, trader, product, start, end, afterKey, PAGE_SIZE);
         } catch (NotDefinedDatabaseContextException ex) {
             String className = ListDeliveryNotesPanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Delivery notes cannot be shown because the database has not been found", ex);
@@ -192,6 +294,54 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
         return null;
     }
 
+    /**
+     * Calculate the delivery notes totals by executing the use case.
+     *
+     * @param farmer The farmer customer to get the delivery notes.
+     * @param trader The trader customer to get the delivery notes.
+     * @param product The product to get the delivery notes.
+     * @param start The start date to get the delivery notes.
+     * @param end The end date to get the delivery notes.
+     * @return The totals of the delivery notes.
+     */
+    private DeliveryNoteTotals calculateTotals(Customer farmer, Customer trader, Product product, Date start, Date end) {
+        try {
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            CalculateDeliveryNoteTotals calculateDeliveryNoteTotals = new CalculateDeliveryNoteTotals(deliveryNoteRepository);
+            return calculateDeliveryNoteTotals.execute(farmer, trader, product, start, end);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery notes totals cannot be shown because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the next page of the current listing and append it to the table.
+     */
+    private void loadNextPage() {
+        Page<DeliveryNoteData> page = this.pageLoader.apply(this.nextPageKey);
+        this.nextPageKey = null;
+        if (page == null) {
+            return;
+        }
+
+        ListDeliveryNotesTableModel tableModel = (ListDeliveryNotesTableModel) table.getModel();
+        tableModel.appendDeliveryNotesData(page.getItems());
+
+        this.nextPageKey = page.getNextKey();
+    }
+
+    /**
+     * Obtain all the pages of the current listing not obtained yet.
+     */
+    private void loadRemainingPages() {
+        while (this.nextPageKey != null) {
+            this.loadNextPage();
+        }
+    }
+
     /**
      * Generate the column names for the table.
      *
@@ -225,8 +375,10 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
             @Override
             public void tableChanged(TableModelEvent event) {
                 int eventType = event.getType();
-                if (eventType == TableModelEvent.DELETE || eventType == TableModelEvent.UPDATE) {
-                    setTotalValues(tableModel.getDeliveryNotesData());
+                // The price column is updated once the new price has been stored.
+                boolean isPriceUpdated = eventType == TableModelEvent.UPDATE && event.getColumn() == 6;
+                if (eventType == TableModelEvent.DELETE || isPriceUpdated) {
+                    updateTotalValues();
                 }
             }
         });
@@ -241,31 +393,35 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
         TableColumn actionsColumn = table.getColumn(columnNames.get(8));
         JComboBox comboBox = new JComboBox(actions);
         actionsColumn.setCellEditor(new DefaultCellEditor(comboBox));
+
+        // Obtain the next page when the end of the table is reached.
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(event -> {
+            JScrollBar scrollBar = (JScrollBar) event.getAdjustable();
+            boolean isEndReached = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+
+            if (isEndReached && !event.getValueIsAdjusting() && this.nextPageKey != null) {
+                this.loadNextPage();
+            }
+        });
     }
 
     /**
-     * Based on the given data, calculate the total net weight, the total boxes
-     * quantity and the total import. Then, set the value on its corresponding
+     * Calculate the total net weight, the total boxes quantity and the total
+     * import of the current listing. Then, set the value on its corresponding
      * panel field.
      *
-     * @param deliveryNotesData The delivery notes data.
+     * The totals are calculated by the database, so they include the delivery
+     * notes which have not been obtained yet.
      */
-    private void setTotalValues(ArrayList<DeliveryNoteData> deliveryNotesData) {
-        int totalNumBoxes = 0;
-        int totalNetWeight = 0;
-        float totalImport = 0;
-
-        for (DeliveryNoteData deliveryNoteData : deliveryNotesData) {
-            totalNumBoxes += deliveryNoteData.getNumBoxes();
-            totalNetWeight += deliveryNoteData.getNetWeight();
-
-            float cost = deliveryNoteData.getNetWeight() * deliveryNoteData.getPrice();
-            totalImport += cost;
+    private void updateTotalValues() {
+        DeliveryNoteTotals totals = this.totalsCalculator == null ? null : this.totalsCalculator.get();
+        if (totals == null) {
+            return;
         }
 
-        this.totalNetWeightValue.setText(Integer.toString(totalNetWeight));
-        this.totalNumBoxesValue.setText(Integer.toString(totalNumBoxes));
-        this.totalImportValue.setText(Float.toString(totalImport));
+        this.totalNetWeightValue.setText(Integer.toString(totals.getNetWeight()));
+        this.totalNumBoxesValue.setText(Integer.toString(totals.getNumBoxes()));
+        this.totalImportValue.setText(Float.toString(totals.getTotalImport()));
     }
 
     /**
@@ -279,6 +435,116 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
         this.invoiceButton.setEnabled(canGenerateInvoices);
     }
 
+    /**
+     * Check whether all the delivery notes since the given date can be read,
+     * since only the recent ones are kept while the database cannot be
+     * reached.
+     *
+     * @param start The start date to get the delivery notes.
+     * @return The date of the oldest readable delivery notes when the older
+     * ones are also requested, otherwise null.
+     */
+    private Date getAvailableSince(Date start) {
+        try {
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            CheckDeliveryNotesAvailability checkDeliveryNotesAvailability = new CheckDeliveryNotesAvailability(deliveryNoteRepository);
+            return checkDeliveryNotesAvailability.execute(start);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery notes availability cannot be checked because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the message which warns that only the delivery notes since the
+     * given date are shown.
+     *
+     * @param availableSince The date of the oldest readable delivery notes.
+     * @return The localized message.
+     */
+    private String getPartialListingMessage(Date availableSince) {
+        DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+        String message = Localization.getLocalization(LocalizationKey.PARTIAL_DELIVERY_NOTES_MESSAGE);
+        return String.format(message, dateFormat.format(availableSince));
+    }
+
+    /**
+     * Check whether any saved delivery note of the given customer has not been
+     * written to the database yet.
+     *
+     * @param customer The farmer or trader of the delivery notes.
+     * @return Whether the customer has pending delivery notes.
+     */
+    private boolean hasPendingDeliveryNotes(Customer customer) {
+        try {
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            CheckPendingDeliveryNotes checkPendingDeliveryNotes = new CheckPendingDeliveryNotes(deliveryNoteRepository);
+            return checkPendingDeliveryNotes.execute(customer);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Pending delivery notes cannot be checked because the database has not been found", ex);
+        }
+
+        return false;
+    }
+
+    /**
+     * Find the delivery note with the given code by executing the use case.
+     *
+     * @param code The delivery note code.
+     * @return The found delivery note, otherwise null.
+     */
+    private DeliveryNoteData findDeliveryNote(int code) {
+        try {
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            FindDeliveryNote findDeliveryNote = new FindDeliveryNote(deliveryNoteRepository);
+            return findDeliveryNote.execute(code);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListDeliveryNotesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery note cannot be refreshed because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Refresh the table row of the delivery note with the given code, after it
+     * has been changed on the database.
+     *
+     * Note that it is called from the thread which watches the changes, so
+     * the table is updated on the event dispatch thread.
+     *
+     * @param code The delivery note code.
+     */
+    private void refreshDeliveryNote(int code) {
+        DeliveryNoteData deliveryNoteData = this.findDeliveryNote(code);
+
+        SwingUtilities.invokeLater(() -> {
+            ListDeliveryNotesTableModel tableModel = (ListDeliveryNotesTableModel) table.getModel();
+            tableModel.refreshDeliveryNoteData(code, deliveryNoteData);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        ChangeNotifier.addListener(DeliveryNoteRepository.class, this.changeListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeNotify() {
+        ChangeNotifier.removeListener(DeliveryNoteRepository.class, this.changeListener);
+        super.removeNotify();
+    }
+
     @SuppressWarnings("unchecked")
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
     private void initComponents() {
@@ -511,29 +777,30 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void listDeliveryNotesButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_listDeliveryNotesButtonActionPerformed
-        Customer farmer = null;
-        if (isSelectedFarmer.isSelected()) {
-            farmer = (Customer) farmerInput.getSelectedItem();
-        }
-
-        Customer trader = null;
-        if (isSelectedTrader.isSelected()) {
-            trader = (Customer) traderInput.getSelectedItem();
-        }
-
-        Product product = null;
-        if (isSelectedProduct.isSelected()) {
-            product = (Product) productInput.getSelectedItem();
-        }
+        Customer farmer = isSelectedFarmer.isSelected() ? this.getSelectedCustomer(farmerInput.getSelectedItem()) : null;
+        Customer trader = isSelectedTrader.isSelected() ? this.getSelectedCustomer(traderInput.getSelectedItem()) : null;
+        Product product = isSelectedProduct.isSelected() ? (Product) productInput.getSelectedItem() : null;
 
         Date startDate = startDateInput.getDate();
         Date endDate = endDateInput.getDate();
 
-        ArrayList<DeliveryNoteData> deliveryNotesData = this.getDeliveryNotesData(farmer, trader, product, startDate, endDate);
-        this.setTotalValues(deliveryNotesData);
-
+        // Forget the old listing before cleaning the table, so its totals are not calculated again.
+        this.totalsCalculator = null;
         ListDeliveryNotesTableModel tableModel = (ListDeliveryNotesTableModel) table.getModel();
-        tableModel.addDeliveryNotesData(deliveryNotesData);
+        tableModel.addDeliveryNotesData(new ArrayList<>());
+
+        this.totalsCalculator = () -> this.calculateTotals(farmer, trader, product, startDate, endDate);
+        this.updateTotalValues();
+
+        this.pageLoader = afterKey -> this.getDeliveryNotesPage(farmer, trader, product, startDate, endDate, afterKey);
+        this.nextPageKey = null;
+        this.loadNextPage();
+
+        // The older delivery notes are left out while the database cannot be reached.
+        Date availableSince = this.getAvailableSince(startDate);
+        if (availableSince != null) {
+            JOptionPane.showMessageDialog(this, this.getPartialListingMessage(availableSince));
+        }
     }//GEN-LAST:event_listDeliveryNotesButtonActionPerformed
 
     private void isSelectedFarmerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_isSelectedFarmerActionPerformed
@@ -555,6 +822,9 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
     }//GEN-LAST:event_isSelectedTraderActionPerformed
 
     private void invoiceButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_invoiceButtonActionPerformed
+        // The invoice includes the delivery notes of all the pages.
+        this.loadRemainingPages();
+
         ListDeliveryNotesTableModel tableModel = (ListDeliveryNotesTableModel) table.getModel();
 
         // Clone delivery notes data in order to modify the data, as the arraylist
@@ -572,7 +842,7 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
         int templateCode = 0;
         Customer customer = null;
         if (this.isSelectedFarmer.isSelected()) {
-            customer = (Customer) farmerInput.getSelectedItem();
+            customer = this.getSelectedCustomer(farmerInput.getSelectedItem());
 
             if (invoiceTemplateByCustomer.containsKey(customer.getTin())) {
                 templateCode = invoiceTemplateByCustomer.get(customer.getTin());
@@ -582,7 +852,7 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
         }
 
         if (this.isSelectedTrader.isSelected()) {
-            customer = (Customer) traderInput.getSelectedItem();
+            customer = this.getSelectedCustomer(traderInput.getSelectedItem());
 
             if (invoiceTemplateByCustomer.containsKey(customer.getTin())) {
                 templateCode = invoiceTemplateByCustomer.get(customer.getTin());
@@ -591,6 +861,19 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
             }
         }
 
+        // The delivery notes which have not been written yet would be left out.
+        if (customer != null && this.hasPendingDeliveryNotes(customer)) {
+            JOptionPane.showMessageDialog(this, Localization.getLocalization(LocalizationKey.PENDING_DELIVERY_NOTES_MESSAGE));
+            return;
+        }
+
+        Date availableSince = this.getAvailableSince(startPeriod);
+        if (availableSince != null) {
+            String message = Localization.getLocalization(LocalizationKey.INVOICE_NOT_GENERATED_MESSAGE);
+            JOptionPane.showMessageDialog(this, String.format("%s. %s", message, this.getPartialListingMessage(availableSince)));
+            return;
+        }
+
         Map<InvoiceAttribute, Object> invoiceAttributes = new HashMap<>();
         invoiceAttributes.put(InvoiceAttribute.DELIVERY_NOTES, deliveryNotesData);
         invoiceAttributes.put(InvoiceAttribute.START_PERIOD, startPeriod);
@@ -599,8 +882,9 @@ public class ListDeliveryNotesPanel extends javax.swing.JPanel {
 
         String message;
         try {
-            MongoInvoiceRepository invoiceRepository = new MongoInvoiceRepository();
-            CreateInvoice createInvoice = new CreateInvoice(invoiceRepository);
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            CreateInvoice createInvoice = new CreateInvoice(invoiceRepository, sequenceRepository);
             Invoice invoice = createInvoice.execute(invoiceAttributes);
 
             InvoiceGenerator invoiceGenerator = new InvoiceGenerator();
@@ -3,12 +3,14 @@ package deliverynote.presentation.utils;
 import deliverynote.application.DeliveryNoteData;
 import deliverynote.application.usecases.RemoveDeliveryNote;
 import deliverynote.application.usecases.UpdateDeliveryNote;
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRepository;
 import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Objects;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,6 +18,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JTable;
 import javax.swing.filechooser.FileSystemView;
 import javax.swing.table.DefaultTableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -116,7 +119,7 @@ public class ListDeliveryNotesTableModel extends DefaultTableModel {
      */
     public void removeDeliveryNote(DeliveryNoteData deliveryNoteData, int tableRow) {
         try {
-            MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
             RemoveDeliveryNote removeDeliveryNote = new RemoveDeliveryNote(deliveryNoteRepository);
             boolean isDeleted = removeDeliveryNote.execute(deliveryNoteData);
 
@@ -165,36 +168,107 @@ public class ListDeliveryNotesTableModel extends DefaultTableModel {
         super.setRowCount(0);
 
         for (DeliveryNoteData deliveryNoteData : this.deliveryNotesData) {
-            // Column 1: Delivery note data generation datetime.
-            String pattern = "dd-MM-yyyy HH:mm:ss";
-            DateFormat df = new SimpleDateFormat(pattern);
-            Date date = deliveryNoteData.getDate();
-            String formattedDate = df.format(date);
+            this.addRowFor(deliveryNoteData);
+        }
+    }
+
+    /**
+     * Append the delivery notes data of the next page to the table.
+     *
+     * @param deliveryNotesData The delivery notes data of the page.
+     */
+    public void appendDeliveryNotesData(ArrayList<DeliveryNoteData> deliveryNotesData) {
+        for (DeliveryNoteData deliveryNoteData : deliveryNotesData) {
+            this.deliveryNotesData.add(deliveryNoteData);
+            this.addRowFor(deliveryNoteData);
+        }
+    }
+
+    /**
+     * Obtain the table row values for the given delivery note data.
+     *
+     * @param deliveryNoteData The delivery note data.
+     * @return The row values, without the chosen action.
+     */
+    private Object[] getRowValuesFor(DeliveryNoteData deliveryNoteData) {
+        // Column 1: Delivery note data generation datetime.
+        String pattern = "dd-MM-yyyy HH:mm:ss";
+        DateFormat df = new SimpleDateFormat(pattern);
+        Date date = deliveryNoteData.getDate();
+        String formattedDate = df.format(date);
+
+        // Column 2: Delivery note data farmer.
+        String farmerCustomerCode = deliveryNoteData.getFarmer().toString();
+
+        // Column 3: Delivery note data trader.
+        String traderCustomerCode = deliveryNoteData.getTrader().toString();
+
+        // Column 4: Delivery note data product.
+        String productCode = deliveryNoteData.getProduct().toString();
+
+        // Column 5: Delivery note boxes quantity.
+        int numBoxes = deliveryNoteData.getNumBoxes();
 
-            // Column 2: Delivery note data farmer.
-            String farmerCustomerCode = deliveryNoteData.getFarmer().toString();
+        // Column 6: Delivery note net weight.
+        int netWeight = deliveryNoteData.getNetWeight();
 
-            // Column 3: Delivery note data trader.
-            String traderCustomerCode = deliveryNoteData.getTrader().toString();
+        // Column 7: Price.
+        float price = deliveryNoteData.getPrice();
 
-            // Column 4: Delivery note data product.
-            String productCode = deliveryNoteData.getProduct().toString();
+        // Column 8: Import.
+        float imp = price * netWeight;
 
-            // Column 5: Delivery note boxes quantity.
-            int numBoxes = deliveryNoteData.getNumBoxes();
+        return new Object[]{formattedDate, farmerCustomerCode, traderCustomerCode, productCode, numBoxes, netWeight, price, imp};
+    }
 
-            // Column 6: Delivery note net weight.
-            int netWeight = deliveryNoteData.getNetWeight();
+    /**
+     * Add a table row with the given delivery note data.
+     *
+     * @param deliveryNoteData The delivery note data.
+     */
+    private void addRowFor(DeliveryNoteData deliveryNoteData) {
+        Object[] rowValues = Arrays.copyOf(this.getRowValuesFor(deliveryNoteData), 9);
 
-            // Column 7: Price.
-            float price = deliveryNoteData.getPrice();
+        // The last item indicates that we have to choose the action to execute.
+        // The price (next to last column) is not initialized.
+        this.addRow(rowValues);
+    }
 
-            // Column 8: Import.
-            float imp = price * netWeight;
+    /**
+     * Refresh the row of the delivery note with the given code, after it has
+     * been changed on the database.
+     *
+     * Note that the delivery notes which are not loaded on the table are
+     * ignored, and the removed or closed ones disappear from it.
+     *
+     * @param code The delivery note code.
+     * @param deliveryNoteData The stored delivery note data, which is null
+     * when it is closed.
+     */
+    public void refreshDeliveryNoteData(int code, DeliveryNoteData deliveryNoteData) {
+        int row = 0;
+        while (row < this.deliveryNotesData.size() && this.deliveryNotesData.get(row).getCode() != code) {
+            row++;
+        }
+
+        if (row == this.deliveryNotesData.size()) {
+            return;
+        }
 
-            // The last item indicates that we have to choose the action to execute.
-            // The price (next to last column) is not initialized.
-            this.addRow(new Object[]{formattedDate, farmerCustomerCode, traderCustomerCode, productCode, numBoxes, netWeight, price, imp, null});
+        if (deliveryNoteData == null || deliveryNoteData.isDeleted() || deliveryNoteData.isClosed()) {
+            this.deliveryNotesData.remove(row); // Remove it before from here, so the listener has the updated data.
+            super.removeRow(row);
+            return;
+        }
+
+        this.deliveryNotesData.set(row, deliveryNoteData);
+
+        // Only the changed cells are set, so the listener is not called for the unchanged ones.
+        Object[] rowValues = this.getRowValuesFor(deliveryNoteData);
+        for (int column = 0; column < rowValues.length; column++) {
+            if (!Objects.equals(super.getValueAt(row, column), rowValues[column])) {
+                super.setValueAt(rowValues[column], row, column);
+            }
         }
     }
 
@@ -243,7 +317,7 @@ public class ListDeliveryNotesTableModel extends DefaultTableModel {
             deliveryNoteData.setPrice(newPrice);
 
             try {
-                MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
+                DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
                 UpdateDeliveryNote updateDeliveryNote = new UpdateDeliveryNote(deliveryNoteRepository);
                 updateDeliveryNote.execute(deliveryNoteData);
             } catch (NotDefinedDatabaseContextException ex) {
@@ -7,11 +7,13 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Map;
+import shared.application.LazyFile;
+import shared.application.TrackedEntity;
 
 /**
  * Represents the data of the invoice entity.
  */
-public class Invoice {
+public class Invoice extends TrackedEntity<InvoiceAttribute> {
 
     /**
      * The invoice code.
@@ -44,9 +46,9 @@ public class Invoice {
     private Customer customer;
 
     /**
-     * A PDF file containing the invoice file.
+     * A PDF file containing the invoice file, loaded on demand.
      */
-    private File file;
+    private LazyFile file;
 
     /**
      * The invoice total amount.
@@ -82,7 +84,8 @@ public class Invoice {
      * @param isClosed Whether the invoice is closed or not.
      * @param isDeleted Whether the invoice is deleted or not.
      */
-    private Invoice(int code, Date date, ArrayList<DeliveryNoteData> deliveryNotes, Date startPeriod, Date endPeriod, Customer customer, File file, double totalAmount, int totalWeight, boolean isClosed, boolean isDeleted) {
+    private Invoice(int code, Date date, ArrayList<DeliveryNoteData> deliveryNotes, Date startPeriod, Date endPeriod, Customer customer, LazyFile file, double totalAmount, int totalWeight, boolean isClosed, boolean isDeleted) {
+        super(InvoiceAttribute.class);
         this.code = code;
         this.date = date == null ? Date.from(Instant.now()) : date;
         this.deliveryNotes = deliveryNotes;
@@ -193,7 +196,7 @@ public class Invoice {
      * @return A PDF file containing the invoice file.
      */
     public File getFile() {
-        return this.file;
+        return this.file.get();
     }
 
     /**
@@ -238,7 +241,8 @@ public class Invoice {
      * @param file A PDF containing the invoice file.
      */
     public void setFile(File file) {
-        this.file = file;
+        this.file = LazyFile.of(file);
+        this.markChanged(InvoiceAttribute.FILE);
     }
 
     /**
@@ -248,6 +252,7 @@ public class Invoice {
      */
     public void setTotal(float totalAmount) {
         this.totalAmount = totalAmount;
+        this.markChanged(InvoiceAttribute.TOTAL_AMOUNT);
     }
 
     /**
@@ -257,6 +262,7 @@ public class Invoice {
      */
     public void setTotalWeight(int totalWeight) {
         this.totalWeight = totalWeight;
+        this.markChanged(InvoiceAttribute.TOTAL_WEIGHT);
     }
 
     /**
@@ -266,6 +272,7 @@ public class Invoice {
      */
     public void setIsClosed(boolean isClosed) {
         this.isClosed = isClosed;
+        this.markChanged(InvoiceAttribute.IS_CLOSED);
     }
 
     /**
@@ -275,6 +282,7 @@ public class Invoice {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(InvoiceAttribute.IS_DELETED);
     }
 
     /**
@@ -290,7 +298,7 @@ public class Invoice {
         Date startPeriod = (Date) attributes.get(InvoiceAttribute.START_PERIOD);
         Date endPeriod = (Date) attributes.get(InvoiceAttribute.END_PERIOD);
         Customer customer = (Customer) attributes.get(InvoiceAttribute.CUSTOMER);
-        File file = (File) attributes.get(InvoiceAttribute.FILE);
+        LazyFile file = LazyFile.from(attributes.get(InvoiceAttribute.FILE));
         double totalAmount = (double) attributes.getOrDefault(InvoiceAttribute.TOTAL_AMOUNT, 0.0);
         int totalWeight = (int) attributes.getOrDefault(InvoiceAttribute.TOTAL_WEIGHT, 0);
         boolean isClosed = (boolean) attributes.getOrDefault(InvoiceAttribute.IS_CLOSED, false);
@@ -0,0 +1,50 @@
+package invoice.application;
+
+/**
+ * Invoice totals class.
+ *
+ * It contains the sums of a set of invoices, which are calculated by the
+ * repository without obtaining the invoices.
+ */
+public class InvoiceTotals {
+
+    /**
+     * Total amount.
+     */
+    private final double totalAmount;
+
+    /**
+     * Total weight.
+     */
+    private final int totalWeight;
+
+    /**
+     * Constructor.
+     *
+     * @param totalAmount Total amount.
+     * @param totalWeight Total weight.
+     */
+    public InvoiceTotals(double totalAmount, int totalWeight) {
+        this.totalAmount = totalAmount;
+        this.totalWeight = totalWeight;
+    }
+
+    /**
+     * Retrieve the total amount.
+     *
+     * @return The total amount.
+     */
+    public double getTotalAmount() {
+        return this.totalAmount;
+    }
+
+    /**
+     * Retrieve the total weight.
+     *
+     * @return The total weight.
+     */
+    public int getTotalWeight() {
+        return this.totalWeight;
+    }
+
+}
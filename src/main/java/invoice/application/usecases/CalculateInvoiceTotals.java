@@ -0,0 +1,41 @@
+package invoice.application.usecases;
+
+import customer.application.Customer;
+import invoice.application.InvoiceTotals;
+import invoice.persistence.InvoiceRepository;
+import java.util.Date;
+import shared.persistence.PersistenceMetrics;
+
+/**
+ * Calculate invoice totals use case.
+ */
+public class CalculateInvoiceTotals {
+
+    /**
+     * @see InvoiceRepository
+     */
+    private final InvoiceRepository invoiceRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param invoiceRepository Invoice repository.
+     */
+    public CalculateInvoiceTotals(InvoiceRepository invoiceRepository) {
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    /**
+     * Calculate the totals of the listed invoices.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param start The start date to get the invoices.
+     * @param end The end date to get the invoices.
+     * @return The totals of the invoices.
+     */
+    public InvoiceTotals execute(Customer farmer, Customer trader, Date start, Date end) {
+        return PersistenceMetrics.measure("CalculateInvoiceTotals", () -> invoiceRepository.getTotals(farmer, trader, start, end));
+    }
+
+}
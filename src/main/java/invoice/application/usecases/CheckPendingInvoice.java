@@ -0,0 +1,36 @@
+package invoice.application.usecases;
+
+import invoice.application.Invoice;
+import invoice.persistence.InvoiceRepository;
+
+/**
+ * Check pending invoice use case.
+ */
+public class CheckPendingInvoice {
+
+    /**
+     * @see InvoiceRepository
+     */
+    private InvoiceRepository invoiceRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param invoiceRepository Invoice repository.
+     */
+    public CheckPendingInvoice(InvoiceRepository invoiceRepository) {
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    /**
+     * Check whether the given saved invoice has not been written yet, so it
+     * cannot be closed.
+     *
+     * @param invoice The invoice.
+     * @return Whether the invoice is pending.
+     */
+    public boolean execute(Invoice invoice) {
+        return invoiceRepository.hasPendingWrites(invoice);
+    }
+
+}
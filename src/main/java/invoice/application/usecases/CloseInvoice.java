@@ -1,20 +1,17 @@
 package invoice.application.usecases;
 
 import deliverynote.application.DeliveryNoteData;
-import deliverynote.persistence.DeliveryNoteRepository;
 import invoice.application.Invoice;
 import invoice.persistence.InvoiceRepository;
+import java.util.ArrayList;
+import java.util.List;
+import shared.persistence.PersistenceMetrics;
 
 /**
  * Create invoice use case.
  */
 public class CloseInvoice {
 
-    /**
-     * @see DeliveryNoteRepository
-     */
-    private DeliveryNoteRepository deliveryNoteRepository;
-
     /**
      * @see InvoiceRepository
      */
@@ -24,32 +21,50 @@ public class CloseInvoice {
      * Constructor.
      *
      * @param invoiceRepository Invoice repository.
-     * @param deliveryNoteRepository Delivery note repository.
      */
-    public CloseInvoice(InvoiceRepository invoiceRepository, DeliveryNoteRepository deliveryNoteRepository) {
+    public CloseInvoice(InvoiceRepository invoiceRepository) {
         this.invoiceRepository = invoiceRepository;
-        this.deliveryNoteRepository = deliveryNoteRepository;
     }
 
     /**
      * Execute the invoice closing.
      *
+     * Note that the invoice and its delivery notes are closed at once, so
+     * either all of them are closed or none of them. The repository writes
+     * the changed flags, so they are set before and restored when the
+     * closing fails.
+     *
      * @param invoice The invoice.
      * @return Whether the invoice has been closed or not.
      */
     public boolean execute(Invoice invoice) {
+        List<DeliveryNoteData> deliveryNotes = invoice.getDeliveryNotes();
+
         // Close the delivery notes of the invoice.
-        for (DeliveryNoteData deliveryNote : invoice.getDeliveryNotes()) {
+        List<Boolean> wereClosed = new ArrayList<>();
+        for (DeliveryNoteData deliveryNote : deliveryNotes) {
+            wereClosed.add(deliveryNote.isClosed());
             deliveryNote.setIsClosed(true);
-            boolean isUpdated = deliveryNoteRepository.update(deliveryNote);
-            if (!isUpdated) {
-                return false;
-            }
         }
 
         // Close invoice.
+        boolean wasClosed = invoice.isClosed();
         invoice.setIsClosed(true);
-        return invoiceRepository.update(invoice);
+
+        boolean isClosed = false;
+        try {
+            isClosed = PersistenceMetrics.measure("CloseInvoice", () -> invoiceRepository.close(invoice));
+        } finally {
+            if (!isClosed) {
+                for (int i = 0; i < deliveryNotes.size(); i++) {
+                    deliveryNotes.get(i).setIsClosed(wereClosed.get(i));
+                }
+
+                invoice.setIsClosed(wasClosed);
+            }
+        }
+
+        return isClosed;
     }
 
 }
@@ -7,6 +7,7 @@ import invoice.application.utils.InvoiceValidator;
 import invoice.persistence.InvoiceRepository;
 import java.util.Map;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
 
 /**
  * Create invoice use case.
@@ -18,13 +19,20 @@ public class CreateInvoice {
      */
     private InvoiceRepository invoiceRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param invoiceRepository Invoice repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public CreateInvoice(InvoiceRepository invoiceRepository) {
+    public CreateInvoice(InvoiceRepository invoiceRepository, SequenceRepository sequenceRepository) {
         this.invoiceRepository = invoiceRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -39,7 +47,7 @@ public class CreateInvoice {
     public Invoice execute(Map<InvoiceAttribute, Object> newInvoiceAttributes) {
         boolean isCodeManuallyAdded = newInvoiceAttributes.containsKey(InvoiceAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedInvoiceCode = CodeAutoGenerator.generate(invoiceRepository);
+            int generatedInvoiceCode = CodeAutoGenerator.generate(sequenceRepository, "invoice");
             newInvoiceAttributes.put(InvoiceAttribute.CODE, generatedInvoiceCode);
         }
 
@@ -0,0 +1,36 @@
+package invoice.application.usecases;
+
+import invoice.application.Invoice;
+import invoice.persistence.InvoiceRepository;
+import shared.persistence.PersistenceMetrics;
+
+/**
+ * Find invoice use case.
+ */
+public class FindInvoice {
+
+    /**
+     * @see InvoiceRepository
+     */
+    private InvoiceRepository invoiceRepository;
+
+    /**
+     * Constructor.
+     *
+     * @param invoiceRepository Invoice repository.
+     */
+    public FindInvoice(InvoiceRepository invoiceRepository) {
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    /**
+     * Find the invoice which contains the given code.
+     *
+     * @param code The code of the invoice to find.
+     * @return The found invoice, otherwise null.
+     */
+    public Invoice execute(int code) {
+        return PersistenceMetrics.measure("FindInvoice", () -> invoiceRepository.find(code));
+    }
+
+}
@@ -5,6 +5,9 @@ import invoice.application.Invoice;
 import invoice.persistence.InvoiceRepository;
 import java.util.ArrayList;
 import java.util.Date;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.PersistenceMetrics;
 
 /**
  * List invoices use case.
@@ -35,7 +38,23 @@ public class ListInvoices {
      * @return A list with all invoices.
      */
     public ArrayList<Invoice> execute(Customer farmer, Customer trader, Date start, Date end) {
-        return invoiceRepository.get(farmer, trader, start, end);
+        return PersistenceMetrics.measure("ListInvoices", () -> invoiceRepository.get(farmer, trader, start, end));
+    }
+
+    /**
+     * List a page of invoices, sorted by date and code.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param start The start date to get the invoices.
+     * @param end The end date to get the invoices.
+     * @param afterKey The key of the last invoice of the previous page, or
+     * null to get the first page.
+     * @param limit The maximum number of invoices on the page.
+     * @return The page with the invoices.
+     */
+    public Page<Invoice> execute(Customer farmer, Customer trader, Date start, Date end, PageKey afterKey, int limit) {
+        return PersistenceMetrics.measure("ListInvoices", () -> invoiceRepository.page(farmer, trader, start, end, afterKey, limit));
     }
 
 }
@@ -12,7 +12,7 @@ import com.github.jhonnymertz.wkhtmltopdf.wrapper.params.Param;
 import deliverynote.application.DeliveryNoteData;
 import invoice.application.Invoice;
 import invoice.application.usecases.SaveInvoice;
-import invoice.persistence.mongo.MongoInvoiceRepository;
+import invoice.persistence.InvoiceRepository;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -35,11 +35,12 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import subtotal.application.Subtotal;
 import template.application.Template;
 import template.application.usecases.ShowTemplate;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 import variable.application.EntityAttribute;
 import static variable.application.EntityAttribute.FARMER_CUSTOMER_ADDRESS;
 import static variable.application.EntityAttribute.FARMER_CUSTOMER_CITY;
@@ -52,7 +53,7 @@ import static variable.application.EntityAttribute.FARMER_CUSTOMER_ZIPCODE;
 import variable.application.SubtotalVariable;
 import variable.application.Variable;
 import variable.application.usecases.ListVariables;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 
 /**
  * Represents the class responsible of generating the invoice.
@@ -99,7 +100,7 @@ public class InvoiceGenerator {
      */
     private Template getTemplate(int code) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             ShowTemplate showTemplate = new ShowTemplate(templateRepository);
             return showTemplate.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -263,7 +264,7 @@ public class InvoiceGenerator {
         ArrayList<Variable> variables = new ArrayList<>();
 
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             ListVariables listVariables = new ListVariables(variableRepository);
             variables = listVariables.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -476,7 +477,7 @@ public class InvoiceGenerator {
 
         // Call to use case.
         try {
-            MongoInvoiceRepository invoiceRepository = new MongoInvoiceRepository();
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
             SaveInvoice saveInvoice = new SaveInvoice(invoiceRepository);
             saveInvoice.execute(invoice);
         } catch (NotDefinedDatabaseContextException ex) {
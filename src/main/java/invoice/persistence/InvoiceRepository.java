@@ -2,8 +2,13 @@ package invoice.persistence;
 
 import customer.application.Customer;
 import invoice.application.Invoice;
+import invoice.application.InvoiceTotals;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
 import shared.persistence.Repository;
 
 /**
@@ -11,6 +16,14 @@ import shared.persistence.Repository;
  */
 public interface InvoiceRepository extends Repository {
 
+    /**
+     * Find the invoice which contains the given code.
+     *
+     * @param code The code of the invoice to find.
+     * @return The found invoice, otherwise null.
+     */
+    public Invoice find(int code);
+
     /**
      * List all the invoices.
      *
@@ -25,6 +38,52 @@ public interface InvoiceRepository extends Repository {
      */
     public ArrayList<Invoice> get(Customer farmer, Customer trader, Date from, Date to);
 
+    /**
+     * Obtain a page of the invoices, sorted by date and code.
+     *
+     * Note that if the farmer or the trader are null, they will not be
+     * included on the filters.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param from The start date to get the invoices.
+     * @param to The end date to get the invoices.
+     * @param afterKey The key of the last invoice of the previous page, or
+     * null to get the first page.
+     * @param limit The maximum number of invoices on the page.
+     * @return The page with the invoices.
+     */
+    public Page<Invoice> page(Customer farmer, Customer trader, Date from, Date to, PageKey afterKey, int limit);
+
+    /**
+     * Calculate the totals of the invoices, without obtaining them.
+     *
+     * Note that if the farmer or the trader are null, they will not be
+     * included on the filters.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param from The start date to get the invoices.
+     * @param to The end date to get the invoices.
+     * @return The totals of the invoices.
+     */
+    public InvoiceTotals getTotals(Customer farmer, Customer trader, Date from, Date to);
+
+    /**
+     * Go through all the invoices, sorted by date and code, in batches.
+     *
+     * Note that if the farmer or the trader are null, they will not be
+     * included on the filters.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param from The start date to get the invoices.
+     * @param to The end date to get the invoices.
+     * @param batchSize The number of invoices on each batch.
+     * @param batchConsumer Function which receives each batch of invoices.
+     */
+    public void stream(Customer farmer, Customer trader, Date from, Date to, int batchSize, Consumer<List<Invoice>> batchConsumer);
+
     /**
      * Save the invoice.
      *
@@ -40,4 +99,23 @@ public interface InvoiceRepository extends Repository {
      */
     public boolean update(Invoice invoice);
 
+    /**
+     * Close the given invoice along with all its delivery notes.
+     *
+     * Note that either all of them are closed or none of them.
+     *
+     * @param invoice The invoice.
+     * @return Whether the invoice has been closed or not.
+     */
+    public boolean close(Invoice invoice);
+
+    /**
+     * Check whether the given saved invoice is waiting to be written, so it
+     * cannot be changed yet.
+     *
+     * @param invoice The invoice.
+     * @return Whether the invoice is pending.
+     */
+    public boolean hasPendingWrites(Invoice invoice);
+
 }
@@ -0,0 +1,413 @@
+package invoice.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import customer.application.Customer;
+import customer.persistence.CustomerRepository;
+import deliverynote.application.DeliveryNoteData;
+import deliverynote.persistence.DeliveryNoteRepository;
+import invoice.application.Invoice;
+import invoice.application.InvoiceAttribute;
+import invoice.application.InvoiceTotals;
+import invoice.persistence.InvoiceRepository;
+import invoice.persistence.mongo.InvoiceDecoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import shared.application.LazyFile;
+import shared.persistence.AsyncRepository;
+import shared.persistence.IdentityMap;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the invoice collection on the embedded database.
+ */
+public class EmbeddedInvoiceRepository extends EmbeddedRepository implements InvoiceRepository {
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedInvoiceRepository() throws NotDefinedDatabaseContextException {
+        super("invoice");
+        super.createIndex(true, "code");
+        super.createIndex(false, "isClosed", "isDeleted", "date", "code");
+        super.createIndex(false, "customer", "date");
+    }
+
+    /**
+     * Obtain the filter for the invoice code.
+     *
+     * @param code The invoice code.
+     * @return A filter indicating that the query must only obtain the invoice
+     * which contains the given invoice code.
+     */
+    private Bson getInvoiceCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * Obtain the filter for non-closed invoices.
+     *
+     * @return A filter indicating that the query must only obtain the invoices
+     * which are not closed.
+     */
+    private Bson isNotClosedFilter() {
+        return Filters.eq("isClosed", false);
+    }
+
+    /**
+     * It creates a document from an invoice.
+     *
+     * @param invoice The invoice.
+     * @return A document with the given invoice data if it has been created,
+     * otherwise null.
+     */
+    private Document createDocumentFrom(Invoice invoice) {
+        String fileHash = super.storeFile(invoice.getFile());
+        if (fileHash == null) {
+            return null;
+        }
+
+        Document document = this.createDocumentWithoutFileFrom(invoice);
+        return document == null ? null : document.append("fileHash", fileHash);
+    }
+
+    /**
+     * It creates a document from an invoice, without storing its PDF
+     * file.
+     *
+     * @param invoice The invoice.
+     * @return A document with the given invoice data if it has been created,
+     * otherwise null.
+     */
+    private Document createDocumentWithoutFileFrom(Invoice invoice) {
+        Document document = new Document();
+
+        Customer customer = invoice.getCustomer();
+        if (customer == null) {
+            return null;
+        }
+
+        ArrayList<Integer> deliveryNoteCodes = new ArrayList<>();
+        for (DeliveryNoteData deliveryNote : invoice.getDeliveryNotes()) {
+            deliveryNoteCodes.add(deliveryNote.getCode());
+        }
+
+        document.append("code", invoice.getCode());
+        document.append("date", invoice.getDate());
+        document.append("deliveryNotes", deliveryNoteCodes);
+        document.append("startPeriod", invoice.getStartPeriod());
+        document.append("endPeriod", invoice.getEndPeriod());
+        document.append("customer", customer.getCode());
+        document.append("totalAmount", invoice.getTotal());
+        document.append("totalWeight", invoice.getTotalWeight());
+        document.append("isClosed", invoice.isClosed());
+        document.append("isDeleted", invoice.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * It creates the invoices from a list of documents.
+     *
+     * Note that the delivery notes and customers referenced by all the
+     * documents are loaded at once, doing one query per entity type
+     * concurrently, and then each document is decoded straight into an
+     * invoice.
+     *
+     * @param documents The documents obtained from the collection.
+     * @return A list with the invoices based on the data obtained from the
+     * given documents.
+     */
+    private ArrayList<Invoice> createInvoicesFrom(List<RawBsonDocument> documents) {
+        IdentityMap<Integer, DeliveryNoteData> deliveryNotes = new IdentityMap<>(DeliveryNoteData::getCode, this::findDeliveryNotes);
+        IdentityMap<Integer, Customer> customers = new IdentityMap<>(Customer::getCode, this::findCustomers);
+
+        for (RawBsonDocument document : documents) {
+            for (BsonValue deliveryNoteCode : document.getArray("deliveryNotes")) {
+                deliveryNotes.collect(deliveryNoteCode.asNumber().intValue());
+            }
+
+            customers.collect(document.getInt32("customer").getValue());
+        }
+
+        CompletableFuture<Void> customersResolution = AsyncRepository.run(customers::resolve);
+        deliveryNotes.resolve();
+        AsyncRepository.await(customersResolution);
+
+        InvoiceDecoder decoder = new InvoiceDecoder(deliveryNotes, customers, code -> new LazyFile(() -> super.findFile(this.getInvoiceCodeFilter(code))));
+
+        ArrayList<Invoice> invoices = new ArrayList<>();
+        for (RawBsonDocument document : documents) {
+            invoices.add(document.decode(decoder));
+        }
+
+        return invoices;
+    }
+
+    /**
+     * Find all the delivery notes which match with the given codes.
+     *
+     * @param codes The codes of the delivery notes to find.
+     * @return A list with the found delivery notes.
+     */
+    private List<DeliveryNoteData> findDeliveryNotes(List<Integer> codes) {
+        try {
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            return deliveryNoteRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery notes cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * Find all the customers which match with the given codes.
+     *
+     * @param codes The codes of the customers to find.
+     * @return A list with the found customers.
+     */
+    private List<Customer> findCustomers(List<Integer> codes) {
+        try {
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            return customerRepository.find(codes);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customers cannot be obtained because the database has not been found", ex);
+        }
+
+        return new ArrayList<>();
+    }
+
+    /**
+     * It creates the update for a changed attribute of the invoice.
+     *
+     * @param attribute The changed attribute.
+     * @param invoice The invoice.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(InvoiceAttribute attribute, Invoice invoice) {
+        switch (attribute) {
+            case FILE:
+                return Updates.set("fileHash", super.storeFile(invoice.getFile()));
+            case TOTAL_AMOUNT:
+                return Updates.set("totalAmount", invoice.getTotal());
+            case TOTAL_WEIGHT:
+                return Updates.set("totalWeight", invoice.getTotalWeight());
+            case IS_CLOSED:
+                return Updates.set("isClosed", invoice.isClosed());
+            case IS_DELETED:
+                return Updates.set("isDeleted", invoice.isDeleted());
+            default:
+                throw new IllegalArgumentException(String.format("The invoice attribute %s cannot be updated.", attribute));
+        }
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed invoices between
+     * the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * invoices which match the given parameters.
+     */
+    private Bson getPendingInvoicesFilter(Integer farmerCode, Integer traderCode, Date from, Date to) {
+        Bson isNotDeletedFilter = Filters.eq("isDeleted", false);
+        Bson isNotClosedFilter = this.isNotClosedFilter();
+        Bson fromDate = Filters.gte("date", from);
+        Bson toDate = Filters.lte("date", to);
+
+        Bson filters = Filters.and(isNotDeletedFilter, isNotClosedFilter, fromDate, toDate);
+
+        if (farmerCode != null) {
+            Bson farmerFilter = Filters.eq("customer", farmerCode);
+            filters = Filters.and(filters, farmerFilter);
+        }
+
+        if (traderCode != null) {
+            Bson traderFilter = Filters.eq("customer", traderCode);
+            filters = Filters.and(filters, traderFilter);
+        }
+
+        return filters;
+    }
+
+    /**
+     * Obtain the filter for the non-removed and non-closed invoices between
+     * the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * invoices which match the given parameters.
+     */
+    private Bson getPendingInvoicesFilter(Customer farmer, Customer trader, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        return this.getPendingInvoicesFilter(farmerCode, traderCode, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Invoice find(int code) {
+        Bson invoiceCodeFilter = this.getInvoiceCodeFilter(code);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(invoiceCodeFilter, null, RawBsonDocument.class);
+        if (foundDocuments.isEmpty()) {
+            return null;
+        }
+
+        return this.createInvoicesFrom(foundDocuments.subList(0, 1)).get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Invoice> get(Customer farmer, Customer trader, Date from, Date to) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, null, RawBsonDocument.class);
+        return this.createInvoicesFrom(foundDocuments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<Invoice> page(Customer farmer, Customer trader, Date from, Date to, PageKey afterKey, int limit) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+        if (afterKey != null) {
+            filters = Filters.and(filters, super.getAfterKeyFilter(afterKey));
+        }
+
+        // Obtain one more invoice to know whether there is a next page.
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, null, super.getPageSort(), limit + 1, RawBsonDocument.class);
+
+        boolean hasNextPage = foundDocuments.size() > limit;
+        if (hasNextPage) {
+            foundDocuments.remove(limit);
+        }
+
+        ArrayList<Invoice> invoices = this.createInvoicesFrom(foundDocuments);
+
+        PageKey nextKey = null;
+        if (hasNextPage) {
+            Invoice lastInvoice = invoices.get(invoices.size() - 1);
+            nextKey = new PageKey(lastInvoice.getDate(), lastInvoice.getCode());
+        }
+
+        return new Page<>(invoices, nextKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InvoiceTotals getTotals(Customer farmer, Customer trader, Date from, Date to) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+
+        double totalAmount = 0;
+        int totalWeight = 0;
+        for (Document document : super.find(filters, Projections.include("totalAmount", "totalWeight"))) {
+            totalAmount += super.getNumber(document, "totalAmount").doubleValue();
+            totalWeight += super.getNumber(document, "totalWeight").intValue();
+        }
+
+        return new InvoiceTotals(totalAmount, totalWeight);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stream(Customer farmer, Customer trader, Date from, Date to, int batchSize, Consumer<List<Invoice>> batchConsumer) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+        super.stream(filters, null, super.getPageSort(), batchSize, RawBsonDocument.class, documents -> batchConsumer.accept(this.createInvoicesFrom(documents)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void save(Invoice invoice) {
+        Document document = this.createDocumentFrom(invoice);
+        if (document != null) {
+            super.insertOne(document);
+        }
+
+        invoice.clearChanges();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Invoice invoice) {
+        Bson invoiceCodeFilter = this.getInvoiceCodeFilter(invoice.getCode());
+        return super.updateChanges(invoiceCodeFilter, invoice, attribute -> this.createUpdateFor(attribute, invoice), () -> this.createDocumentFrom(invoice));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean close(Invoice invoice) {
+        DeliveryNoteRepository deliveryNoteRepository;
+        try {
+            deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Invoice not closed because the database has not been found", ex);
+            return false;
+        }
+
+        return super.inTransaction(() -> deliveryNoteRepository.close(invoice.getDeliveryNotes()) && this.update(invoice));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the invoices are written at once to the embedded database,
+     * so there are never pending ones.
+     */
+    @Override
+    public boolean hasPendingWrites(Invoice invoice) {
+        return false;
+    }
+
+}
@@ -0,0 +1,133 @@
+package invoice.persistence.mongo;
+
+import customer.application.Customer;
+import deliverynote.application.DeliveryNoteData;
+import invoice.application.Invoice;
+import invoice.application.InvoiceAttribute;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.codecs.DecoderContext;
+import shared.application.LazyFile;
+import shared.persistence.IdentityMap;
+import shared.persistence.mongo.MongoDecoder;
+
+/**
+ * Creates invoices from the documents of the invoice collection.
+ *
+ * Note that the referenced delivery notes and customers are taken from the
+ * given identity maps, so they must have been loaded before decoding.
+ */
+public class InvoiceDecoder extends MongoDecoder<Invoice> {
+
+    /**
+     * Loaded delivery notes.
+     */
+    private final IdentityMap<Integer, DeliveryNoteData> deliveryNotes;
+
+    /**
+     * Loaded customers.
+     */
+    private final IdentityMap<Integer, Customer> customers;
+
+    /**
+     * Function which creates the file handle of an invoice code.
+     */
+    private final Function<Integer, LazyFile> files;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryNotes The loaded delivery notes.
+     * @param customers The loaded customers.
+     * @param files Function which creates the file handle of an invoice code.
+     */
+    public InvoiceDecoder(IdentityMap<Integer, DeliveryNoteData> deliveryNotes, IdentityMap<Integer, Customer> customers, Function<Integer, LazyFile> files) {
+        this.deliveryNotes = deliveryNotes;
+        this.customers = customers;
+        this.files = files;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Invoice decode(BsonReader reader, DecoderContext decoderContext) {
+        Integer code = null;
+        Date date = null;
+        ArrayList<DeliveryNoteData> invoiceDeliveryNotes = new ArrayList<>();
+        Date startPeriod = null;
+        Date endPeriod = null;
+        Integer customerCode = null;
+        Double totalAmount = null;
+        Integer totalWeight = null;
+        Boolean isClosed = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readInteger(reader);
+                    break;
+                case "date":
+                    date = super.readDate(reader);
+                    break;
+                case "deliveryNotes":
+                    for (int deliveryNoteCode : super.readIntegerList(reader)) {
+                        DeliveryNoteData deliveryNote = this.deliveryNotes.get(deliveryNoteCode);
+                        if (deliveryNote != null) {
+                            invoiceDeliveryNotes.add(deliveryNote);
+                        }
+                    }
+                    break;
+                case "startPeriod":
+                    startPeriod = super.readDate(reader);
+                    break;
+                case "endPeriod":
+                    endPeriod = super.readDate(reader);
+                    break;
+                case "customer":
+                    customerCode = super.readInteger(reader);
+                    break;
+                case "totalAmount":
+                    totalAmount = super.readDouble(reader);
+                    break;
+                case "totalWeight":
+                    totalWeight = super.readInteger(reader);
+                    break;
+                case "isClosed":
+                    isClosed = super.readBoolean(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        int invoiceCode = super.orDefault(code, 0);
+
+        Map<InvoiceAttribute, Object> attributes = new HashMap<>();
+        attributes.put(InvoiceAttribute.CODE, invoiceCode);
+        attributes.put(InvoiceAttribute.DATE, date);
+        attributes.put(InvoiceAttribute.DELIVERY_NOTES, invoiceDeliveryNotes);
+        attributes.put(InvoiceAttribute.START_PERIOD, startPeriod);
+        attributes.put(InvoiceAttribute.END_PERIOD, endPeriod);
+        attributes.put(InvoiceAttribute.CUSTOMER, this.customers.get(customerCode));
+        attributes.put(InvoiceAttribute.FILE, this.files.apply(invoiceCode));
+        attributes.put(InvoiceAttribute.TOTAL_AMOUNT, super.orDefault(totalAmount, 0.0));
+        attributes.put(InvoiceAttribute.TOTAL_WEIGHT, super.orDefault(totalWeight, 0));
+        attributes.put(InvoiceAttribute.IS_CLOSED, super.orDefault(isClosed, false));
+        attributes.put(InvoiceAttribute.IS_DELETED, super.orDefault(isDeleted, false));
+
+        return Invoice.from(attributes);
+    }
+
+}
@@ -1,41 +1,86 @@
 package invoice.persistence.mongo;
 
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import customer.application.Customer;
-import customer.application.usecases.ShowCustomer;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.persistence.CustomerRepository;
 import deliverynote.application.DeliveryNoteData;
-import deliverynote.application.usecases.FindDeliveryNote;
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRepository;
 import invoice.application.Invoice;
 import invoice.application.InvoiceAttribute;
+import invoice.application.InvoiceTotals;
 import invoice.persistence.InvoiceRepository;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
-import shared.persistence.Base64Converter;
+import shared.application.LazyFile;
+import shared.persistence.AsyncRepository;
+import shared.persistence.IdentityMap;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import shared.persistence.mongo.MongoDecoder;
 import shared.persistence.mongo.MongoRepository;
+import shared.persistence.mongo.MongoWriteJournal;
 
 /**
  * Interacts with the invoice collection on the Mongo database.
  */
 public class MongoInvoiceRepository extends MongoRepository implements InvoiceRepository {
 
+    /**
+     * Journal of the saved invoices which are written to the database on the
+     * background, or null if it cannot be opened.
+     */
+    private final MongoWriteJournal journal;
+
     /**
      * Constructor.
      *
+     * Note that the invoices left on the journal by a previous run are
+     * written to the database on the background.
+     *
      * @throws NotDefinedDatabaseContextException Thrown when there is not a
      * connected database to the system.
      */
     public MongoInvoiceRepository() throws NotDefinedDatabaseContextException {
         super("invoice");
+        this.journal = this.openJournal();
+    }
+
+    /**
+     * Open the journal of the saved invoices.
+     *
+     * @return The journal, otherwise null.
+     */
+    private MongoWriteJournal openJournal() {
+        try {
+            return new MongoWriteJournal("invoice", this::write);
+        } catch (IOException ex) {
+            String className = MongoInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Invoices are written straight to the database because the journal cannot be opened", ex);
+        }
+
+        return null;
     }
 
     /**
@@ -59,6 +104,16 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
         return Filters.eq("isClosed", false);
     }
 
+    /**
+     * Obtain the projection used to query invoices.
+     *
+     * @return A projection indicating that the query must not obtain the
+     * invoice file, which is loaded on demand.
+     */
+    private Bson withoutFileProjection() {
+        return Projections.exclude("file");
+    }
+
     /**
      * It creates a Mongo document from an invoice.
      *
@@ -67,6 +122,24 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
      * otherwise null.
      */
     private Document createDocumentFrom(Invoice invoice) {
+        String fileHash = super.storeFile(invoice.getFile());
+        if (fileHash == null) {
+            return null;
+        }
+
+        Document document = this.createDocumentWithoutFileFrom(invoice);
+        return document == null ? null : document.append("fileHash", fileHash);
+    }
+
+    /**
+     * It creates a Mongo document from an invoice, without storing its PDF
+     * file.
+     *
+     * @param invoice The invoice.
+     * @return A document with the given invoice data if it has been created,
+     * otherwise null.
+     */
+    private Document createDocumentWithoutFileFrom(Invoice invoice) {
         Document document = new Document();
 
         Customer customer = invoice.getCustomer();
@@ -74,11 +147,6 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
             return null;
         }
 
-        Map<String, String> invoiceFileAttributes = Base64Converter.encode(invoice.getFile());
-        if (invoiceFileAttributes == null) {
-            return null;
-        }
-
         ArrayList<Integer> deliveryNoteCodes = new ArrayList<>();
         for (DeliveryNoteData deliveryNote : invoice.getDeliveryNotes()) {
             deliveryNoteCodes.add(deliveryNote.getCode());
@@ -90,7 +158,6 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
         document.append("startPeriod", invoice.getStartPeriod());
         document.append("endPeriod", invoice.getEndPeriod());
         document.append("customer", customer.getCode());
-        document.append("file", invoiceFileAttributes);
         document.append("totalAmount", invoice.getTotal());
         document.append("totalWeight", invoice.getTotalWeight());
         document.append("isClosed", invoice.isClosed());
@@ -100,93 +167,116 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
     }
 
     /**
-     * It creates an invoice from a Mongo document.
+     * It creates the invoices from a list of Mongo documents.
+     *
+     * Note that the delivery notes and customers referenced by all the
+     * documents are loaded at once, doing one query per entity type
+     * concurrently, and then each document is decoded straight into an
+     * invoice.
      *
-     * @param document A document obtained from the Mongo collection.
-     * @return An invoice object based on the data obtained from the given
-     * document.
+     * @param documents The documents obtained from the Mongo collection.
+     * @return A list with the invoices based on the data obtained from the
+     * given documents.
      */
-    private Invoice createInvoiceFrom(Document document) {
-        ArrayList<Integer> deliveryNoteCodes = (ArrayList<Integer>) document.get("deliveryNotes");
-        ArrayList<DeliveryNoteData> deliveryNotes = new ArrayList<>();
-        for (int deliveryNoteCode : deliveryNoteCodes) {
-            DeliveryNoteData deliveryNote = this.findDeliveryNote(deliveryNoteCode);
-            if (deliveryNote != null) {
-                deliveryNotes.add(deliveryNote);
+    private ArrayList<Invoice> createInvoicesFrom(List<RawBsonDocument> documents) {
+        IdentityMap<Integer, DeliveryNoteData> deliveryNotes = new IdentityMap<>(DeliveryNoteData::getCode, this::findDeliveryNotes);
+        IdentityMap<Integer, Customer> customers = new IdentityMap<>(Customer::getCode, this::findCustomers);
+
+        for (RawBsonDocument document : documents) {
+            for (int deliveryNoteCode : MongoDecoder.getIntegerList(document, "deliveryNotes")) {
+                deliveryNotes.collect(deliveryNoteCode);
             }
+
+            customers.collect(MongoDecoder.getInteger(document, "customer"));
         }
 
-        Customer customer = this.findCustomer((int) document.get("customer"));
+        CompletableFuture<Void> customersResolution = AsyncRepository.run(customers::resolve);
+        deliveryNotes.resolve();
+        AsyncRepository.await(customersResolution);
 
-        Map<String, String> fileAttributes = (Map<String, String>) document.get("file");
-        File file = Base64Converter.decode(fileAttributes);
+        InvoiceDecoder decoder = new InvoiceDecoder(deliveryNotes, customers, code -> new LazyFile(() -> super.findFile(this.getInvoiceCodeFilter(code))));
 
-        // Create an invoice entry.
-        Map<InvoiceAttribute, Object> attributes = new HashMap<>();
-        attributes.put(InvoiceAttribute.CODE, document.get("code"));
-        attributes.put(InvoiceAttribute.DATE, document.get("date"));
-        attributes.put(InvoiceAttribute.DELIVERY_NOTES, deliveryNotes);
-        attributes.put(InvoiceAttribute.START_PERIOD, document.get("startPeriod"));
-        attributes.put(InvoiceAttribute.END_PERIOD, document.get("endPeriod"));
-        attributes.put(InvoiceAttribute.CUSTOMER, customer);
-        attributes.put(InvoiceAttribute.FILE, file);
-        attributes.put(InvoiceAttribute.TOTAL_AMOUNT, document.get("totalAmount"));
-        attributes.put(InvoiceAttribute.TOTAL_WEIGHT, document.get("totalWeight"));
-        attributes.put(InvoiceAttribute.IS_CLOSED, document.get("isClosed"));
-        attributes.put(InvoiceAttribute.IS_DELETED, document.get("isDeleted"));
+        ArrayList<Invoice> invoices = new ArrayList<>();
+        for (RawBsonDocument document : documents) {
+            invoices.add(document.decode(decoder));
+        }
 
-        return Invoice.from(attributes);
+        return invoices;
     }
 
     /**
-     * Find delivery note associated with the given code.
+     * Find all the delivery notes which match with the given codes.
      *
-     * @param code The code of the delivery note to find.
-     * @return The found delivery note, otherwise null.
+     * @param codes The codes of the delivery notes to find.
+     * @return A list with the found delivery notes.
      */
-    private DeliveryNoteData findDeliveryNote(int code) {
+    private List<DeliveryNoteData> findDeliveryNotes(List<Integer> codes) {
         try {
-            MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
-            FindDeliveryNote findDeliveryNote = new FindDeliveryNote(deliveryNoteRepository);
-            return findDeliveryNote.execute(code);
+            DeliveryNoteRepository deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+            return deliveryNoteRepository.find(codes);
         } catch (NotDefinedDatabaseContextException ex) {
-            Logger.getLogger(MongoDeliveryNoteRepository.class.getName()).log(Level.SEVERE, null, ex);
+            String className = MongoInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Delivery notes cannot be obtained because the database has not been found", ex);
         }
 
-        return null;
+        return new ArrayList<>();
     }
 
     /**
-     * Find customer associated with the given code.
+     * Find all the customers which match with the given codes.
      *
-     * @param code The code of the customer to find.
-     * @return The found customer, otherwise null.
+     * @param codes The codes of the customers to find.
+     * @return A list with the found customers.
      */
-    private Customer findCustomer(int code) {
+    private List<Customer> findCustomers(List<Integer> codes) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
-            ShowCustomer showCustomer = new ShowCustomer(customerRepository);
-            return showCustomer.execute(code);
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            return customerRepository.find(codes);
         } catch (NotDefinedDatabaseContextException ex) {
-            Logger.getLogger(MongoInvoiceRepository.class.getName()).log(Level.SEVERE, null, ex);
+            String className = MongoInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customers cannot be obtained because the database has not been found", ex);
         }
 
-        return null;
+        return new ArrayList<>();
     }
 
     /**
-     * {@inheritDoc}
+     * It creates the update for a changed attribute of the invoice.
+     *
+     * @param attribute The changed attribute.
+     * @param invoice The invoice.
+     * @return An update which sets the field associated with the given
+     * attribute.
      */
-    @Override
-    public int count() {
-        return super.count();
+    private Bson createUpdateFor(InvoiceAttribute attribute, Invoice invoice) {
+        switch (attribute) {
+            case FILE:
+                return Updates.set("fileHash", super.storeFile(invoice.getFile()));
+            case TOTAL_AMOUNT:
+                return Updates.set("totalAmount", invoice.getTotal());
+            case TOTAL_WEIGHT:
+                return Updates.set("totalWeight", invoice.getTotalWeight());
+            case IS_CLOSED:
+                return Updates.set("isClosed", invoice.isClosed());
+            case IS_DELETED:
+                return Updates.set("isDeleted", invoice.isDeleted());
+            default:
+                throw new IllegalArgumentException(String.format("The invoice attribute %s cannot be updated.", attribute));
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Obtain the filter for the non-removed and non-closed invoices between
+     * the given dates.
+     *
+     * @param farmerCode The farmer code, or null to not filter by farmer.
+     * @param traderCode The trader code, or null to not filter by trader.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * invoices which match the given parameters.
      */
-    @Override
-    public ArrayList<Invoice> get(Customer farmer, Customer trader, Date from, Date to) {
+    private Bson getPendingInvoicesFilter(Integer farmerCode, Integer traderCode, Date from, Date to) {
         Bson isNotDeletedFilter = Filters.eq("isDeleted", false);
         Bson isNotClosedFilter = this.isNotClosedFilter();
         Bson fromDate = Filters.gte("date", from);
@@ -194,34 +284,210 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
 
         Bson filters = Filters.and(isNotDeletedFilter, isNotClosedFilter, fromDate, toDate);
 
-        if (farmer != null) {
-            Bson farmerFilter = Filters.eq("customer", farmer.getCode());
+        if (farmerCode != null) {
+            Bson farmerFilter = Filters.eq("customer", farmerCode);
             filters = Filters.and(filters, farmerFilter);
         }
 
-        if (trader != null) {
-            Bson traderFilter = Filters.eq("customer", trader.getCode());
+        if (traderCode != null) {
+            Bson traderFilter = Filters.eq("customer", traderCode);
             filters = Filters.and(filters, traderFilter);
         }
 
-        ArrayList<Document> foundDocuments = super.find(filters);
+        return filters;
+    }
 
-        ArrayList<Invoice> invoices = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            Invoice invoice = this.createInvoiceFrom(document);
-            invoices.add(invoice);
+    /**
+     * Obtain the filter for the non-removed and non-closed invoices between
+     * the given dates.
+     *
+     * @param farmer The farmer customer, or null to not filter by farmer.
+     * @param trader The trader customer, or null to not filter by trader.
+     * @param from The start date.
+     * @param to The end date.
+     * @return A filter indicating that the query must only obtain the pending
+     * invoices which match the given parameters.
+     */
+    private Bson getPendingInvoicesFilter(Customer farmer, Customer trader, Date from, Date to) {
+        Integer farmerCode = farmer == null ? null : farmer.getCode();
+        Integer traderCode = trader == null ? null : trader.getCode();
+        return this.getPendingInvoicesFilter(farmerCode, traderCode, from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        indexes.add(new IndexModel(Indexes.ascending("isClosed", "isDeleted", "date", "code")));
+        indexes.add(new IndexModel(Indexes.ascending("customer", "date")));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getInvoiceCodeFilter(0));
+        queryShapes.add(this.getPendingInvoicesFilter((Customer) null, null, new Date(), new Date()));
+        queryShapes.add(this.getPendingInvoicesFilter(0, null, new Date(), new Date()));
+        return queryShapes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Invoice find(int code) {
+        Bson invoiceCodeFilter = this.getInvoiceCodeFilter(code);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(invoiceCodeFilter, this.withoutFileProjection(), RawBsonDocument.class);
+        if (foundDocuments.isEmpty()) {
+            return null;
         }
 
-        return invoices;
+        return this.createInvoicesFrom(foundDocuments.subList(0, 1)).get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Invoice> get(Customer farmer, Customer trader, Date from, Date to) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, this.withoutFileProjection(), RawBsonDocument.class);
+        return this.createInvoicesFrom(foundDocuments);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
+    public Page<Invoice> page(Customer farmer, Customer trader, Date from, Date to, PageKey afterKey, int limit) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+        if (afterKey != null) {
+            filters = Filters.and(filters, super.getAfterKeyFilter(afterKey));
+        }
+
+        // Obtain one more invoice to know whether there is a next page.
+        ArrayList<RawBsonDocument> foundDocuments = super.find(filters, this.withoutFileProjection(), super.getPageSort(), limit + 1, RawBsonDocument.class);
+
+        boolean hasNextPage = foundDocuments.size() > limit;
+        if (hasNextPage) {
+            foundDocuments.remove(limit);
+        }
+
+        ArrayList<Invoice> invoices = this.createInvoicesFrom(foundDocuments);
+
+        PageKey nextKey = null;
+        if (hasNextPage) {
+            Invoice lastInvoice = invoices.get(invoices.size() - 1);
+            nextKey = new PageKey(lastInvoice.getDate(), lastInvoice.getCode());
+        }
+
+        return new Page<>(invoices, nextKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InvoiceTotals getTotals(Customer farmer, Customer trader, Date from, Date to) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(filters),
+                Aggregates.group(null,
+                        Accumulators.sum("totalAmount", "$totalAmount"),
+                        Accumulators.sum("totalWeight", "$totalWeight")));
+
+        ArrayList<Document> results = super.aggregate(pipeline);
+        if (results.isEmpty()) {
+            return new InvoiceTotals(0, 0);
+        }
+
+        Document totals = results.get(0);
+        return new InvoiceTotals(super.getNumber(totals, "totalAmount").doubleValue(), super.getNumber(totals, "totalWeight").intValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stream(Customer farmer, Customer trader, Date from, Date to, int batchSize, Consumer<List<Invoice>> batchConsumer) {
+        Bson filters = this.getPendingInvoicesFilter(farmer, trader, from, to);
+        super.stream(filters, this.withoutFileProjection(), super.getPageSort(), batchSize, RawBsonDocument.class, documents -> batchConsumer.accept(this.createInvoicesFrom(documents)));
+    }
+
+    /**
+     * Write a journaled invoice to the database, storing its PDF file.
+     *
+     * An invoice whose code is already stored, with the same date and file,
+     * was written before the application finished. Otherwise its code has
+     * been taken by another invoice, so it can never be written.
+     *
+     * @param document The invoice document, without the file hash.
+     * @param file The invoice PDF file.
+     * @return Whether the invoice has been written.
+     * @throws DuplicatedEntityException Thrown when the code has been taken
+     * by another invoice.
+     */
+    private boolean write(Document document, File file) throws DuplicatedEntityException {
+        String fileHash = super.storeFile(file);
+        if (fileHash == null) {
+            return false;
+        }
+
+        try {
+            super.insertUniqueOne(document.append("fileHash", fileHash));
+        } catch (DuplicatedEntityException ex) {
+            if (super.isStored(document, "date", "fileHash")) {
+                Logger.getLogger(MongoInvoiceRepository.class.getName()).log(Level.FINE, "Journaled invoice already written", ex);
+                return true;
+            }
+
+            throw ex;
+        }
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the invoice is written to the local journal, and it is
+     * written to the database on the background, so it is not listed until
+     * then.
+     */
+    @Override
     public void save(Invoice invoice) {
-        Document document = this.createDocumentFrom(invoice);
-        this.insertOne(document);
+        Document document = this.createDocumentWithoutFileFrom(invoice);
+
+        if (this.journal == null) {
+            try {
+                this.write(document, invoice.getFile());
+            } catch (DuplicatedEntityException ex) {
+                String message = String.format("The invoice %d cannot be written because another one has the same code", invoice.getCode());
+                Logger.getLogger(MongoInvoiceRepository.class.getName()).log(Level.SEVERE, message, ex);
+            }
+        } else {
+            this.journal.add(document, invoice.getFile());
+        }
+
+        invoice.clearChanges();
     }
 
     /**
@@ -230,6 +496,46 @@ public class MongoInvoiceRepository extends MongoRepository implements InvoiceRe
     @Override
     public boolean update(Invoice invoice) {
         Bson invoiceCodeFilter = this.getInvoiceCodeFilter(invoice.getCode());
-        return super.replaceOne(invoiceCodeFilter, this.createDocumentFrom(invoice));
+        return super.updateChanges(invoiceCodeFilter, invoice, attribute -> this.createUpdateFor(attribute, invoice), () -> this.createDocumentFrom(invoice));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that an invoice which is still on the journal has no stored
+     * document to close yet, so it is not closed.
+     */
+    @Override
+    public boolean close(Invoice invoice) {
+        if (this.hasPendingWrites(invoice)) {
+            String message = String.format("Invoice %d not closed because it has not been written yet", invoice.getCode());
+            Logger.getLogger(MongoInvoiceRepository.class.getName()).log(Level.INFO, message);
+            return false;
+        }
+
+        DeliveryNoteRepository deliveryNoteRepository;
+        try {
+            deliveryNoteRepository = RepositoryProvider.get(DeliveryNoteRepository.class);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoInvoiceRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Invoice not closed because the database has not been found", ex);
+            return false;
+        }
+
+        return super.inTransaction(() -> deliveryNoteRepository.close(invoice.getDeliveryNotes()) && this.update(invoice));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingWrites(Invoice invoice) {
+        if (this.journal == null) {
+            return false;
+        }
+
+        int invoiceCode = invoice.getCode();
+        return this.journal.hasPending(document -> Objects.equals(document.getInteger("code"), invoiceCode));
     }
+
 }
@@ -1,16 +1,24 @@
 package invoice.presentation.panels;
 
+import customer.persistence.CustomerRepository;
+import invoice.persistence.InvoiceRepository;
 import invoice.presentation.utils.ListInvoicesTableModel;
 import customer.application.Customer;
+import customer.application.CustomerSummary;
 import customer.application.usecases.ObtainCustomers;
-import customer.persistence.mongo.MongoCustomerRepository;
+import customer.application.usecases.ShowCustomer;
 import invoice.application.Invoice;
+import invoice.application.InvoiceTotals;
+import invoice.application.usecases.CalculateInvoiceTotals;
+import invoice.application.usecases.FindInvoice;
 import invoice.application.usecases.ListInvoices;
-import invoice.persistence.mongo.MongoInvoiceRepository;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ComboBoxModel;
@@ -19,12 +27,18 @@ import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JScrollBar;
+import javax.swing.SwingUtilities;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumn;
 import org.jdesktop.swingx.autocomplete.AutoCompleteDecorator;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.ChangeNotifier;
+import shared.persistence.Page;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -34,10 +48,41 @@ import shared.presentation.localization.LocalizationKey;
  */
 public class ListInvoicesPanel extends javax.swing.JPanel {
 
+    /**
+     * Number of invoices obtained on each page.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Function which obtains the page after the given key for the current
+     * listing, or null if nothing has been listed yet.
+     */
+    private Function<PageKey, Page<Invoice>> pageLoader;
+
+    /**
+     * Key after which the next page of the current listing starts, or null if
+     * all the pages have been obtained.
+     */
+    private PageKey nextPageKey;
+
+    /**
+     * Function which calculates the totals of the current listing, or null if
+     * nothing has been listed yet.
+     */
+    private Supplier<InvoiceTotals> totalsCalculator;
+
+    /**
+     * Listener which refreshes the table row of each invoice changed on
+     * the database while the panel is shown.
+     */
+    private final Consumer<Object> changeListener;
+
     /**
      * Constructor.
      */
     public ListInvoicesPanel() {
+        this.changeListener = code -> this.refreshInvoice(((Number) code).intValue());
+
         initComponents();
         initializeFormLabels();
         initializeInputs();
@@ -89,13 +134,13 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
      */
     private void initializeInputs() {
         // Farmers input.
-        Vector<Customer> farmers = new Vector<>(this.obtainCustomers(true));
-        farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(farmers));
+        Vector<CustomerSummary> farmers = new Vector<>(this.obtainCustomers(true));
+        farmerInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(farmers));
         AutoCompleteDecorator.decorate(farmerInput);
 
         // Traders input.
-        Vector<Customer> traders = new Vector<>(this.obtainCustomers(false));
-        traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<Customer>(traders));
+        Vector<CustomerSummary> traders = new Vector<>(this.obtainCustomers(false));
+        traderInput.setModel((ComboBoxModel) new DefaultComboBoxModel<CustomerSummary>(traders));
         AutoCompleteDecorator.decorate(traderInput);
 
         // End date, which will be now.
@@ -118,9 +163,9 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
      * @return A list with all the customers on the system based on the given
      * filter.
      */
-    private ArrayList<Customer> obtainCustomers(boolean getFarmers) {
+    private ArrayList<CustomerSummary> obtainCustomers(boolean getFarmers) {
         try {
-            MongoCustomerRepository customerRepository = new MongoCustomerRepository();
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
             ObtainCustomers obtainCustomers = new ObtainCustomers(customerRepository);
             return obtainCustomers.execute(getFarmers);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -132,19 +177,45 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
     }
 
     /**
-     * Obtain all the invoices by executing the use case.
+     * Obtain the customer selected on a customer input by executing the use
+     * case.
+     *
+     * @param selectedItem The item selected on the customer input.
+     * @return The found customer, otherwise null.
+     */
+    private Customer getSelectedCustomer(Object selectedItem) {
+        if (!(selectedItem instanceof CustomerSummary)) {
+            return null;
+        }
+
+        try {
+            CustomerRepository customerRepository = RepositoryProvider.get(CustomerRepository.class);
+            ShowCustomer showCustomer = new ShowCustomer(customerRepository);
+            return showCustomer.execute(((CustomerSummary) selectedItem).getCode());
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListInvoicesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Customer cannot be shown because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain a page of invoices by executing the use case.
      *
      * @param farmer The farmer customer to get the invoices.
      * @param trader The trader customer to get the invoices.
      * @param start The start date to get the invoices.
      * @param end The end date to get the invoices.
-     * @return A list with all available invoices on the system.
+     * @param afterKey The key of the last invoice of the previous page, or
+     * null to get the first page.
+     * @return A page with the invoices.
      */
-    private ArrayList<Invoice> getInvoices(Customer farmer, Customer trader, Date start, Date end) {
+    private Page<Invoice> getInvoicesPage(Customer farmer, Customer trader, Date start, Date end, PageKey afterKey) {
         try {
-            MongoInvoiceRepository invoiceRepository = new MongoInvoiceRepository();
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
             ListInvoices listInvoices = new ListInvoices(invoiceRepository);
-            return listInvoices.execute(farmer, trader, start, end);
+            return listInvoices.execute(farmer, trader, start, end, afterKey, PAGE_SIZE);
         } catch (NotDefinedDatabaseContextException ex) {
             String className = ListInvoicesPanel.class.getName();
             Logger.getLogger(className).log(Level.INFO, "Invoices cannot be shown because the database has not been found", ex);
@@ -153,6 +224,44 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
         return null;
     }
 
+    /**
+     * Calculate the invoices totals by executing the use case.
+     *
+     * @param farmer The farmer customer to get the invoices.
+     * @param trader The trader customer to get the invoices.
+     * @param start The start date to get the invoices.
+     * @param end The end date to get the invoices.
+     * @return The totals of the invoices.
+     */
+    private InvoiceTotals calculateTotals(Customer farmer, Customer trader, Date start, Date end) {
+        try {
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
+            CalculateInvoiceTotals calculateInvoiceTotals = new CalculateInvoiceTotals(invoiceRepository);
+            return calculateInvoiceTotals.execute(farmer, trader, start, end);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListInvoicesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Invoices totals cannot be shown because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the next page of the current listing and append it to the table.
+     */
+    private void loadNextPage() {
+        Page<Invoice> page = this.pageLoader.apply(this.nextPageKey);
+        this.nextPageKey = null;
+        if (page == null) {
+            return;
+        }
+
+        ListInvoicesTableModel tableModel = (ListInvoicesTableModel) table.getModel();
+        tableModel.appendInvoices(page.getItems());
+
+        this.nextPageKey = page.getNextKey();
+    }
+
     /**
      * Generate the column names for the table.
      *
@@ -184,8 +293,9 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
             @Override
             public void tableChanged(TableModelEvent event) {
                 int eventType = event.getType();
-                if (eventType == TableModelEvent.DELETE || eventType == TableModelEvent.UPDATE) {
-                    setTotalsAndCommissionsFor(tableModel.getInvoices());
+                // Only removed or closed invoices change the totals.
+                if (eventType == TableModelEvent.DELETE) {
+                    updateTotalsAndCommissions();
                 }
             }
         });
@@ -205,24 +315,35 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
         // Resize first column.
         TableColumn codeColumn = table.getColumn(columnNames.get(0));
         codeColumn.setPreferredWidth(3);
+
+        // Obtain the next page when the end of the table is reached.
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(event -> {
+            JScrollBar scrollBar = (JScrollBar) event.getAdjustable();
+            boolean isEndReached = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+
+            if (isEndReached && !event.getValueIsAdjusting() && this.nextPageKey != null) {
+                this.loadNextPage();
+            }
+        });
     }
 
     /**
-     * Based on the given data, calculate the total amount, total weight and
-     * commissions for company and individual. Then, set the value on its
+     * Calculate the total amount, total weight and commissions for company
+     * and individual of the current listing. Then, set the value on its
      * corresponding panel field.
      *
-     * @param invoices The invoices.
+     * The totals are calculated by the database, so they include the invoices
+     * which have not been obtained yet.
      */
-    private void setTotalsAndCommissionsFor(ArrayList<Invoice> invoices) {
-        double totalAmount = 0;
-        int totalWeight = 0;
-
-        for (Invoice invoice : invoices) {
-            totalAmount += invoice.getTotal();
-            totalWeight += invoice.getTotalWeight();
+    private void updateTotalsAndCommissions() {
+        InvoiceTotals totals = this.totalsCalculator == null ? null : this.totalsCalculator.get();
+        if (totals == null) {
+            return;
         }
 
+        double totalAmount = totals.getTotalAmount();
+        int totalWeight = totals.getTotalWeight();
+
         // Invoices total amount.
         String formattedTotalAmount = String.format("%.2f €", totalAmount);
         this.invoicesTotalAmountValue.setText(formattedTotalAmount);
@@ -244,6 +365,61 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
         this.invoicesTotalWeightValue.setText(formattedTotalWeight);
     }
 
+    /**
+     * Find the invoice with the given code by executing the use case.
+     *
+     * @param code The invoice code.
+     * @return The found invoice, otherwise null.
+     */
+    private Invoice findInvoice(int code) {
+        try {
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
+            FindInvoice findInvoice = new FindInvoice(invoiceRepository);
+            return findInvoice.execute(code);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = ListInvoicesPanel.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Invoice cannot be refreshed because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Refresh the table row of the invoice with the given code, after it
+     * has been changed on the database.
+     *
+     * Note that it is called from the thread which watches the changes, so
+     * the table is updated on the event dispatch thread.
+     *
+     * @param code The invoice code.
+     */
+    private void refreshInvoice(int code) {
+        Invoice invoice = this.findInvoice(code);
+
+        SwingUtilities.invokeLater(() -> {
+            ListInvoicesTableModel tableModel = (ListInvoicesTableModel) table.getModel();
+            tableModel.refreshInvoice(code, invoice);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        ChangeNotifier.addListener(InvoiceRepository.class, this.changeListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeNotify() {
+        ChangeNotifier.removeListener(InvoiceRepository.class, this.changeListener);
+        super.removeNotify();
+    }
+
     @SuppressWarnings("unchecked")
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
     private void initComponents() {
@@ -447,24 +623,23 @@ public class ListInvoicesPanel extends javax.swing.JPanel {
     }// </editor-fold>//GEN-END:initComponents
 
     private void listDeliveryNotesButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_listDeliveryNotesButtonActionPerformed
-        Customer farmer = null;
-        if (isSelectedFarmer.isSelected()) {
-            farmer = (Customer) farmerInput.getSelectedItem();
-        }
-
-        Customer trader = null;
-        if (isSelectedTrader.isSelected()) {
-            trader = (Customer) traderInput.getSelectedItem();
-        }
+        Customer farmer = isSelectedFarmer.isSelected() ? this.getSelectedCustomer(farmerInput.getSelectedItem()) : null;
+        Customer trader = isSelectedTrader.isSelected() ? this.getSelectedCustomer(traderInput.getSelectedItem()) : null;
 
         Date startDate = startDateInput.getDate();
         Date endDate = endDateInput.getDate();
 
-        ArrayList<Invoice> invoices = this.getInvoices(farmer, trader, startDate, endDate);
-        this.setTotalsAndCommissionsFor(invoices);
-
+        // Forget the old listing before cleaning the table, so its totals are not calculated again.
+        this.totalsCalculator = null;
         ListInvoicesTableModel tableModel = (ListInvoicesTableModel) table.getModel();
-        tableModel.setInvoices(invoices);
+        tableModel.setInvoices(new ArrayList<>());
+
+        this.totalsCalculator = () -> this.calculateTotals(farmer, trader, startDate, endDate);
+        this.updateTotalsAndCommissions();
+
+        this.pageLoader = afterKey -> this.getInvoicesPage(farmer, trader, startDate, endDate, afterKey);
+        this.nextPageKey = null;
+        this.loadNextPage();
     }//GEN-LAST:event_listDeliveryNotesButtonActionPerformed
 
     private void isSelectedFarmerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_isSelectedFarmerActionPerformed
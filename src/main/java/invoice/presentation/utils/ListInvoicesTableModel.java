@@ -1,10 +1,10 @@
 package invoice.presentation.utils;
 
-import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
 import invoice.application.Invoice;
+import invoice.application.usecases.CheckPendingInvoice;
 import invoice.application.usecases.CloseInvoice;
 import invoice.application.usecases.RemoveInvoice;
-import invoice.persistence.mongo.MongoInvoiceRepository;
+import invoice.persistence.InvoiceRepository;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
 import java.io.File;
@@ -14,7 +14,9 @@ import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Objects;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -28,6 +30,7 @@ import javax.swing.filechooser.FileSystemView;
 import javax.swing.table.DefaultTableModel;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.printing.PDFPageable;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -139,7 +142,7 @@ public class ListInvoicesTableModel extends DefaultTableModel {
      */
     public void removeInvoice(Invoice invoice, int tableRow) {
         try {
-            MongoInvoiceRepository invoiceRepository = new MongoInvoiceRepository();
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
             RemoveInvoice removeInvoice = new RemoveInvoice(invoiceRepository);
             boolean isDeleted = removeInvoice.execute(invoice);
 
@@ -168,9 +171,16 @@ public class ListInvoicesTableModel extends DefaultTableModel {
      */
     public void closeInvoice(Invoice invoice, int tableRow) {
         try {
-            MongoInvoiceRepository invoiceRepository = new MongoInvoiceRepository();
-            MongoDeliveryNoteRepository deliveryNoteRepository = new MongoDeliveryNoteRepository();
-            CloseInvoice closeInvoice = new CloseInvoice(invoiceRepository, deliveryNoteRepository);
+            InvoiceRepository invoiceRepository = RepositoryProvider.get(InvoiceRepository.class);
+
+            // The invoice has no stored document to close until it is written.
+            CheckPendingInvoice checkPendingInvoice = new CheckPendingInvoice(invoiceRepository);
+            if (checkPendingInvoice.execute(invoice)) {
+                JOptionPane.showMessageDialog(table, Localization.getLocalization(LocalizationKey.PENDING_INVOICE_MESSAGE));
+                return;
+            }
+
+            CloseInvoice closeInvoice = new CloseInvoice(invoiceRepository);
             boolean isDeleted = closeInvoice.execute(invoice);
 
             String message;
@@ -225,39 +235,109 @@ public class ListInvoicesTableModel extends DefaultTableModel {
         super.setRowCount(0);
 
         for (Invoice invoice : this.invoices) {
-            // Column 1: Invoice code.
-            int invoiceCode = invoice.getCode();
+            this.addRowFor(invoice);
+        }
+    }
+
+    /**
+     * Append the invoices of the next page to the table.
+     *
+     * @param invoices The invoices of the page.
+     */
+    public void appendInvoices(ArrayList<Invoice> invoices) {
+        for (Invoice invoice : invoices) {
+            this.invoices.add(invoice);
+            this.addRowFor(invoice);
+        }
+    }
+
+    /**
+     * Obtain the table row values for the given invoice.
+     *
+     * @param invoice The invoice.
+     * @return The row values, without the chosen action.
+     */
+    private Object[] getRowValuesFor(Invoice invoice) {
+        // Column 1: Invoice code.
+        int invoiceCode = invoice.getCode();
+
+        // Column 2: Invoice generation datetime.
+        String pattern = "dd-MM-yyyy HH:mm:ss";
+        DateFormat df = new SimpleDateFormat(pattern);
+        Date date = invoice.getDate();
+        String formattedDate = df.format(date);
+
+        // Column 3: Invoice customer.
+        String customer = invoice.getCustomer().toString();
+
+        // Column 4: Invoice period.
+        Date start = invoice.getStartPeriod();
+        Date end = invoice.getEndPeriod();
+
+        String datePattern = "dd/MM/yyyy";
+        DateFormat dateFormat = new SimpleDateFormat(datePattern);
 
-            // Column 2: Invoice generation datetime.
-            String pattern = "dd-MM-yyyy HH:mm:ss";
-            DateFormat df = new SimpleDateFormat(pattern);
-            Date date = invoice.getDate();
-            String formattedDate = df.format(date);
+        String formattedStartDate = dateFormat.format(start);
+        String formattedEndDate = dateFormat.format(end);
 
-            // Column 3: Invoice customer.
-            String customer = invoice.getCustomer().toString();
+        String period = String.format("%s - %s", formattedStartDate, formattedEndDate);
 
-            // Column 4: Invoice period.
-            Date start = invoice.getStartPeriod();
-            Date end = invoice.getEndPeriod();
+        // Column 5: Invoice total amount.
+        double invoiceTotalAmount = invoice.getTotal();
 
-            String datePattern = "dd/MM/yyyy";
-            DateFormat dateFormat = new SimpleDateFormat(datePattern);
+        // Column 6: Invoice total weight.
+        int invoiceTotalWeight = invoice.getTotalWeight();
 
-            String formattedStartDate = dateFormat.format(start);
-            String formattedEndDate = dateFormat.format(end);
+        return new Object[]{invoiceCode, formattedDate, customer, period, invoiceTotalAmount, invoiceTotalWeight};
+    }
+
+    /**
+     * Add a table row with the given invoice.
+     *
+     * @param invoice The invoice.
+     */
+    private void addRowFor(Invoice invoice) {
+        Object[] rowValues = Arrays.copyOf(this.getRowValuesFor(invoice), 7);
+
+        // The last item indicates that we have to choose the action to execute.
+        // The price (next to last column) is not initialized.
+        this.addRow(rowValues);
+    }
+
+    /**
+     * Refresh the row of the invoice with the given code, after it has been
+     * changed on the database.
+     *
+     * Note that the invoices which are not loaded on the table are ignored,
+     * and the removed or closed ones disappear from it.
+     *
+     * @param code The invoice code.
+     * @param invoice The stored invoice, otherwise null.
+     */
+    public void refreshInvoice(int code, Invoice invoice) {
+        int row = 0;
+        while (row < this.invoices.size() && this.invoices.get(row).getCode() != code) {
+            row++;
+        }
 
-            String period = String.format("%s - %s", formattedStartDate, formattedEndDate);
+        if (row == this.invoices.size()) {
+            return;
+        }
 
-            // Column 5: Invoice total amount.
-            double invoiceTotalAmount = invoice.getTotal();
+        if (invoice == null || invoice.isDeleted() || invoice.isClosed()) {
+            this.invoices.remove(row); // Remove it before from here, so the listener has the updated data.
+            super.removeRow(row);
+            return;
+        }
 
-            // Column 6: Invoice total weight.
-            int invoiceTotalWeight = invoice.getTotalWeight();
+        this.invoices.set(row, invoice);
 
-            // The last item indicates that we have to choose the action to execute.
-            // The price (next to last column) is not initialized.
-            this.addRow(new Object[]{invoiceCode, formattedDate, customer, period, invoiceTotalAmount, invoiceTotalWeight, null});
+        // Only the changed cells are set, so the listener is not called for the unchanged ones.
+        Object[] rowValues = this.getRowValuesFor(invoice);
+        for (int column = 0; column < rowValues.length; column++) {
+            if (!Objects.equals(super.getValueAt(row, column), rowValues[column])) {
+                super.setValueAt(rowValues[column], row, column);
+            }
         }
     }
 
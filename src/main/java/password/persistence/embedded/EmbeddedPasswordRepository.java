@@ -0,0 +1,101 @@
+package password.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import java.util.ArrayList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import password.application.Password;
+import password.persistence.PasswordRepository;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the password collection on the embedded database.
+ */
+public class EmbeddedPasswordRepository extends EmbeddedRepository implements PasswordRepository {
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedPasswordRepository() throws NotDefinedDatabaseContextException {
+        super("password");
+        super.createIndex(true, "username");
+    }
+
+    /**
+     * It creates a document from a password entity.
+     *
+     * @param password The password entity.
+     * @return A document with the given password data if it has been created,
+     * otherwise null.
+     */
+    private Document createDocumentFrom(Password password) {
+        Document document = new Document();
+        document.append("username", password.getUsername());
+        document.append("password", password.getPassword());
+
+        return document;
+    }
+
+    /**
+     * It creates a password object from a document.
+     *
+     * @param document A document obtained from the collection.
+     * @return A password object based on the data obtained from the given
+     * document.
+     */
+    private Password createPasswordFrom(Document document) {
+        String username = (String) document.get("username");
+        String password = (String) document.get("password");
+
+        return Password.from(username, password);
+    }
+
+    /**
+     * Obtain the filter for the password username.
+     *
+     * @param username The username.
+     * @return A filter indicating that the query must only obtain the password
+     * of the given username.
+     */
+    private Bson getUsernameFilter(String username) {
+        return Filters.eq("username", username);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Password get(String username) {
+        Bson usernameFilter = this.getUsernameFilter(username);
+
+        ArrayList<Document> foundPasswordDocuments = super.find(usernameFilter);
+        if (foundPasswordDocuments.isEmpty()) {
+            return null;
+        }
+
+        Document foundPasswordDocument = foundPasswordDocuments.get(0);
+        return this.createPasswordFrom(foundPasswordDocument);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean set(Password password) {
+        Bson usernameFilter = this.getUsernameFilter(password.getUsername());
+        return super.upsertOne(usernameFilter, this.createDocumentFrom(password));
+    }
+
+}
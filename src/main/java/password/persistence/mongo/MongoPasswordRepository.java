@@ -1,7 +1,11 @@
 package password.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import java.util.ArrayList;
+import java.util.List;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import password.application.Password;
@@ -53,6 +57,37 @@ public class MongoPasswordRepository extends MongoRepository implements Password
         return Password.from(username, password);
     }
 
+    /**
+     * Obtain the filter for the password username.
+     *
+     * @param username The username.
+     * @return A filter indicating that the query must only obtain the password
+     * of the given username.
+     */
+    private Bson getUsernameFilter(String username) {
+        return Filters.eq("username", username);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("username"), new IndexOptions().unique(true)));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getUsernameFilter(""));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -66,7 +101,7 @@ public class MongoPasswordRepository extends MongoRepository implements Password
      */
     @Override
     public Password get(String username) {
-        Bson usernameFilter = Filters.eq("username", username);
+        Bson usernameFilter = this.getUsernameFilter(username);
 
         ArrayList<Document> foundPasswordDocuments = super.find(usernameFilter);
         if (foundPasswordDocuments.isEmpty()) {
@@ -82,7 +117,7 @@ public class MongoPasswordRepository extends MongoRepository implements Password
      */
     @Override
     public boolean set(Password password) {
-        Bson usernameFilter = Filters.eq("username", password.getUsername());
+        Bson usernameFilter = this.getUsernameFilter(password.getUsername());
         return super.upsertOne(usernameFilter, this.createDocumentFrom(password));
     }
 
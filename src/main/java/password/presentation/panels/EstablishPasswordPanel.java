@@ -6,7 +6,8 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import password.application.usecases.EstablishPassword;
-import password.persistence.mongo.MongoPasswordRepository;
+import password.persistence.PasswordRepository;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -99,7 +100,7 @@ public class EstablishPasswordPanel extends javax.swing.JPanel {
         char[] password = passwordValue.getPassword();
 
         try {
-            MongoPasswordRepository passwordRepository = new MongoPasswordRepository();
+            PasswordRepository passwordRepository = RepositoryProvider.get(PasswordRepository.class);
             EstablishPassword establishPassword = new EstablishPassword(passwordRepository);
             boolean isPasswordEstablished = establishPassword.execute(password);
 
@@ -1,11 +1,12 @@
 package product.application;
 
 import java.util.Map;
+import shared.application.TrackedEntity;
 
 /**
  * Product entity class.
  */
-public class Product {
+public class Product extends TrackedEntity<ProductAttribute> {
 
     /**
      * Product code.
@@ -30,6 +31,7 @@ public class Product {
      * @param isDeleted Whether the customer is deleted or not.
      */
     private Product(String code, String name, boolean isDeleted) {
+        super(ProductAttribute.class);
         this.code = code;
         this.name = name;
         this.isDeleted = isDeleted;
@@ -69,6 +71,7 @@ public class Product {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(ProductAttribute.ISDELETED);
     }
 
     /**
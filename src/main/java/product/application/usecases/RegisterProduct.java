@@ -6,6 +6,7 @@ import product.application.ProductAttribute;
 import product.application.utils.ProductValidationState;
 import product.application.utils.ProductValidator;
 import product.persistence.ProductRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Register product use case.
@@ -39,7 +40,12 @@ public class RegisterProduct {
 
         ProductValidationState productValidationState = ProductValidator.isValid(product, productRepository);
         if (productValidationState == ProductValidationState.VALID) {
-            productRepository.register(product);
+            try {
+                productRepository.register(product);
+            } catch (DuplicatedEntityException ex) {
+                // Another station has registered the same product after the validation.
+                return ProductValidationState.DUPLICATED;
+            }
         }
 
         return productValidationState;
@@ -19,15 +19,7 @@ public class DuplicatedProductValidator {
      * @return true if the product is duplicated, otherwise false.
      */
     public static boolean isDuplicated(Product product, ProductRepository productRepository) {
-        String productCode = product.getCode();
-
-        for (String code : productRepository.getCodeList()) {
-            if (code.equals(productCode)) {
-                return true;
-            }
-        }
-
-        return false;
+        return productRepository.hasCode(product.getCode());
     }
 
 }
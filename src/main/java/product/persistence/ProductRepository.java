@@ -1,8 +1,10 @@
 package product.persistence;
 
 import java.util.ArrayList;
+import java.util.List;
 import product.application.Product;
 import shared.persistence.Repository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 
 /**
  * Represents the repository model for the product entity.
@@ -18,11 +20,21 @@ public interface ProductRepository extends Repository {
     public Product find(String code);
 
     /**
-     * Get the code from all products from the repository.
+     * Find all the products which match with the given codes in one query.
      *
-     * @return A list with all the retrieved product codes.
+     * @param codes The codes of the products to find.
+     * @return A list with the found products.
      */
-    public ArrayList<String> getCodeList();
+    public ArrayList<Product> find(List<String> codes);
+
+    /**
+     * Check whether there is a product with the given code, even if it has been
+     * removed.
+     *
+     * @param code The product code.
+     * @return true if there is a product with the given code, otherwise false.
+     */
+    public boolean hasCode(String code);
 
     /**
      * Obtain all the products registered on the system, even if they have been
@@ -37,8 +49,10 @@ public interface ProductRepository extends Repository {
      * Register the given product.
      *
      * @param product The product to register.
+     * @throws DuplicatedEntityException Thrown when another product has
+     * the same unique key.
      */
-    public void register(Product product);
+    public void register(Product product) throws DuplicatedEntityException;
 
     /**
      * Update the given product with its associated data.
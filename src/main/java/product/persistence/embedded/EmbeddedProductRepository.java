@@ -0,0 +1,181 @@
+package product.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import product.application.Product;
+import product.application.ProductAttribute;
+import product.persistence.ProductRepository;
+import product.persistence.mongo.ProductCodec;
+import shared.persistence.EntityCache;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the product collection on the embedded database.
+ */
+public class EmbeddedProductRepository extends EmbeddedRepository implements ProductRepository {
+
+    /**
+     * Recently used products, indexed by their code.
+     */
+    private final EntityCache<String, Product> cache;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedProductRepository() throws NotDefinedDatabaseContextException {
+        super("product", new ProductCodec());
+        super.createIndex(true, "code");
+        this.cache = new EntityCache<>("product");
+    }
+
+    /**
+     * It creates a document from a product.
+     *
+     * @param product The product to get the data.
+     * @return A document with the given product data.
+     */
+    private Document createDocumentFrom(Product product) {
+        Document document = new Document();
+
+        document.append("code", product.getCode());
+        document.append("name", product.getName());
+        document.append("isDeleted", product.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * It creates the update for a changed attribute of the product.
+     *
+     * @param attribute The changed attribute.
+     * @param product The product.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(ProductAttribute attribute, Product product) {
+        if (attribute == ProductAttribute.ISDELETED) {
+            return Updates.set("isDeleted", product.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The product attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * Find the stored product associated with the given code.
+     *
+     * @param code The product code.
+     * @return The found product, otherwise null.
+     */
+    private Product findStored(String code) {
+        Bson productCodeFilter = this.getProductCodeFilter(code);
+        ArrayList<Product> foundProducts = super.find(productCodeFilter, Product.class);
+
+        return foundProducts.isEmpty() ? null : foundProducts.get(0);
+    }
+
+    /**
+     * Find the stored products associated with the given codes.
+     *
+     * @param codes The product codes.
+     * @return A list with the found products.
+     */
+    private List<Product> findStored(List<String> codes) {
+        Bson productCodesFilter = Filters.in("code", codes);
+        return super.find(productCodesFilter, Product.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product find(String code) {
+        return this.cache.get(code, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Product> find(List<String> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return this.cache.getAll(codes, Product::getCode, this::findStored);
+    }
+
+    /**
+     * Obtain the filter for the product code.
+     *
+     * @param code The product code.
+     * @return A filter indicating that the query must only obtain the product
+     * which contains the given product code.
+     */
+    private Bson getProductCodeFilter(String code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasCode(String code) {
+        return super.exists(this.getProductCodeFilter(code));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Product> get(boolean includeRemoved) {
+        ArrayList<Product> products = super.find(Product.class);
+
+        if (!includeRemoved) {
+            products.removeIf(product -> product.isDeleted());
+        }
+
+        return products;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(Product product) throws DuplicatedEntityException {
+        Document document = this.createDocumentFrom(product);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(product.getCode());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Product product) {
+        Bson productCodeFilter = this.getProductCodeFilter(product.getCode());
+
+        try {
+            return super.updateChanges(productCodeFilter, product, attribute -> this.createUpdateFor(attribute, product), () -> this.createDocumentFrom(product));
+        } finally {
+            this.cache.invalidate(product.getCode());
+        }
+    }
+
+}
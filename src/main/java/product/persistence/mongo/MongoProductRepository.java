@@ -1,14 +1,19 @@
 package product.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import product.application.Product;
 import product.application.ProductAttribute;
 import product.persistence.ProductRepository;
+import shared.persistence.EntityCache;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 
@@ -17,6 +22,11 @@ import shared.persistence.mongo.MongoRepository;
  */
 public class MongoProductRepository extends MongoRepository implements ProductRepository {
 
+    /**
+     * Recently used products, indexed by their code.
+     */
+    private final EntityCache<String, Product> cache;
+
     /**
      * Constructor.
      *
@@ -24,7 +34,8 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
      * connected database to the system.
      */
     public MongoProductRepository() throws NotDefinedDatabaseContextException {
-        super("product");
+        super("product", new ProductCodec());
+        this.cache = new EntityCache<>("product");
     }
 
     /**
@@ -44,19 +55,43 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
     }
 
     /**
-     * It creates a product a Mongo document.
+     * It creates the update for a changed attribute of the product.
+     *
+     * @param attribute The changed attribute.
+     * @param product The product.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(ProductAttribute attribute, Product product) {
+        if (attribute == ProductAttribute.ISDELETED) {
+            return Updates.set("isDeleted", product.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The product attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * Find the stored product associated with the given code.
      *
-     * @param document A document obtained from the Mongo collection.
-     * @return A product object based on the data obtained from the given
-     * document.
+     * @param code The product code.
+     * @return The found product, otherwise null.
      */
-    private Product createProductFrom(Document document) {
-        Map<ProductAttribute, Object> attributes = new HashMap<>();
-        attributes.put(ProductAttribute.CODE, document.get("code"));
-        attributes.put(ProductAttribute.NAME, document.get("name"));
-        attributes.put(ProductAttribute.ISDELETED, document.get("isDeleted"));
+    private Product findStored(String code) {
+        Bson productCodeFilter = this.getProductCodeFilter(code);
+        ArrayList<Product> foundProducts = super.find(productCodeFilter, Product.class);
 
-        return Product.from(attributes);
+        return foundProducts.isEmpty() ? null : foundProducts.get(0);
+    }
+
+    /**
+     * Find the stored products associated with the given codes.
+     *
+     * @param codes The product codes.
+     * @return A list with the found products.
+     */
+    private List<Product> findStored(List<String> codes) {
+        Bson productCodesFilter = Filters.in("code", codes);
+        return super.find(productCodesFilter, Product.class);
     }
 
     /**
@@ -64,15 +99,19 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
      */
     @Override
     public Product find(String code) {
-        Bson productCodeFilter = this.getProductCodeFilter(code);
-        ArrayList<Document> foundProductDocuments = super.find(productCodeFilter);
+        return this.cache.get(code, this::findStored);
+    }
 
-        if (foundProductDocuments.isEmpty()) {
-            return null;
-        } else {
-            Document foundProductDocument = foundProductDocuments.get(0);
-            return this.createProductFrom(foundProductDocument);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Product> find(List<String> codes) {
+        if (codes.isEmpty()) {
+            return new ArrayList<>();
         }
+
+        return this.cache.getAll(codes, Product::getCode, this::findStored);
     }
 
     /**
@@ -86,6 +125,26 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
         return Filters.eq("code", code);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getProductCodeFilter(""));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -98,8 +157,8 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<String> getCodeList() {
-        return super.distinct("code", String.class);
+    public boolean hasCode(String code) {
+        return super.exists(this.getProductCodeFilter(code));
     }
 
     /**
@@ -107,15 +166,10 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
      */
     @Override
     public ArrayList<Product> get(boolean includeRemoved) {
-        ArrayList<Document> foundDocuments = super.find();
-
-        ArrayList<Product> products = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            Product product = this.createProductFrom(document);
+        ArrayList<Product> products = super.find(Product.class);
 
-            if (includeRemoved || !product.isDeleted()) {
-                products.add(product);
-            }
+        if (!includeRemoved) {
+            products.removeIf(product -> product.isDeleted());
         }
 
         return products;
@@ -125,9 +179,10 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
      * {@inheritDoc}
      */
     @Override
-    public void register(Product product) {
+    public void register(Product product) throws DuplicatedEntityException {
         Document document = this.createDocumentFrom(product);
-        super.insertOne(document);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(product.getCode());
     }
 
     /**
@@ -136,7 +191,12 @@ public class MongoProductRepository extends MongoRepository implements ProductRe
     @Override
     public boolean update(Product product) {
         Bson productCodeFilter = this.getProductCodeFilter(product.getCode());
-        return super.replaceOne(productCodeFilter, this.createDocumentFrom(product));
+
+        try {
+            return super.updateChanges(productCodeFilter, product, attribute -> this.createUpdateFor(attribute, product), () -> this.createDocumentFrom(product));
+        } finally {
+            this.cache.invalidate(product.getCode());
+        }
     }
 
 }
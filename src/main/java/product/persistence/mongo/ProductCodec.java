@@ -0,0 +1,74 @@
+package product.persistence.mongo;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import product.application.Product;
+import product.application.ProductAttribute;
+import shared.persistence.mongo.MongoCodec;
+
+/**
+ * Converts products to and from the documents of the product collection.
+ */
+public class ProductCodec extends MongoCodec<Product> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Product decode(BsonReader reader, DecoderContext decoderContext) {
+        String code = null;
+        String name = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readString(reader);
+                    break;
+                case "name":
+                    name = super.readString(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Map<ProductAttribute, Object> attributes = new HashMap<>();
+        attributes.put(ProductAttribute.CODE, code);
+        attributes.put(ProductAttribute.NAME, super.orDefault(name, ""));
+        attributes.put(ProductAttribute.ISDELETED, super.orDefault(isDeleted, false));
+
+        return Product.from(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(BsonWriter writer, Product product, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        super.writeString(writer, "code", product.getCode());
+        super.writeString(writer, "name", product.getName());
+        writer.writeBoolean("isDeleted", product.isDeleted());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Product> getEncoderClass() {
+        return Product.class;
+    }
+
+}
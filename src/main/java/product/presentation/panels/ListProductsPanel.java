@@ -7,9 +7,10 @@ import java.util.logging.Logger;
 import javax.swing.table.TableColumn;
 import product.application.Product;
 import product.application.usecases.ListProducts;
-import product.persistence.mongo.MongoProductRepository;
+import product.persistence.ProductRepository;
 import product.presentation.utils.ListProductsMouseAdapter;
 import product.presentation.utils.ListProductsTableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -35,7 +36,7 @@ public class ListProductsPanel extends javax.swing.JPanel {
      */
     private ArrayList<Product> getProducts() {
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
             ListProducts listProducts = new ListProducts(productRepository);
             return listProducts.execute(true);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -11,7 +11,8 @@ import javax.swing.SpinnerNumberModel;
 import product.application.ProductAttribute;
 import product.application.usecases.RegisterProduct;
 import product.application.utils.ProductValidationState;
-import product.persistence.mongo.MongoProductRepository;
+import product.persistence.ProductRepository;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -93,7 +94,7 @@ public class RegisterProductPanel extends javax.swing.JPanel {
      */
     private void registerProduct(Map<ProductAttribute, Object> newProductAttributes) {
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
             RegisterProduct registerProduct = new RegisterProduct(productRepository);
             ProductValidationState state = registerProduct.execute(newProductAttributes);
 
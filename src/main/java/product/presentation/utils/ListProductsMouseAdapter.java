@@ -8,7 +8,8 @@ import javax.swing.JTable;
 import javax.swing.table.TableModel;
 import product.application.usecases.RemoveProduct;
 import product.application.usecases.RestoreProduct;
-import product.persistence.mongo.MongoProductRepository;
+import product.persistence.ProductRepository;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -41,7 +42,7 @@ public class ListProductsMouseAdapter extends MouseAdapter {
      */
     private boolean removeProduct(String code) {
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
             RemoveProduct removeProduct = new RemoveProduct(productRepository);
             return removeProduct.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -60,7 +61,7 @@ public class ListProductsMouseAdapter extends MouseAdapter {
      */
     private boolean restoreProduct(String code) {
         try {
-            MongoProductRepository productRepository = new MongoProductRepository();
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
             RestoreProduct restoreProduct = new RestoreProduct(productRepository);
             return restoreProduct.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
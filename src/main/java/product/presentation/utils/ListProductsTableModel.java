@@ -8,7 +8,8 @@ import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
 import product.application.ProductAttribute;
 import product.application.usecases.EditProduct;
-import product.persistence.mongo.MongoProductRepository;
+import product.persistence.ProductRepository;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -63,7 +64,7 @@ public class ListProductsTableModel extends DefaultTableModel {
         try {
             Map<ProductAttribute, Object> productAttributes = this.getProductAttributes(newValue, row, column);
 
-            MongoProductRepository productRepository = new MongoProductRepository();
+            ProductRepository productRepository = RepositoryProvider.get(ProductRepository.class);
             EditProduct editProduct = new EditProduct(productRepository);
             editProduct.execute(productAttributes);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -0,0 +1,89 @@
+package shared.application;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+/**
+ * Represents a file which is only materialized when it is needed.
+ *
+ * Stored files can be large, so the entities keep this handle instead of the
+ * file itself and the content is only loaded the first time it is requested.
+ */
+public class LazyFile {
+
+    /**
+     * Loaded file.
+     */
+    private File file;
+
+    /**
+     * Whether the file has been already loaded or not.
+     */
+    private boolean isLoaded;
+
+    /**
+     * Loads the file.
+     */
+    private final Supplier<File> loader;
+
+    /**
+     * Constructor.
+     *
+     * @param loader Function which loads the file when it is requested.
+     */
+    public LazyFile(Supplier<File> loader) {
+        this.file = null;
+        this.isLoaded = false;
+        this.loader = loader;
+    }
+
+    /**
+     * Retrieve the file, loading it if it has not been loaded yet.
+     *
+     * @return The file, otherwise null if it cannot be loaded.
+     */
+    public synchronized File get() {
+        if (!this.isLoaded) {
+            this.file = this.loader.get();
+            this.isLoaded = true;
+        }
+
+        return this.file;
+    }
+
+    /**
+     * Whether the file has been already loaded or not.
+     *
+     * @return true if the file has been loaded, otherwise false.
+     */
+    public synchronized boolean isLoaded() {
+        return this.isLoaded;
+    }
+
+    /**
+     * Create a handle for an already available file.
+     *
+     * @param file The file.
+     * @return The created file handle.
+     */
+    public static LazyFile of(File file) {
+        LazyFile lazyFile = new LazyFile(() -> file);
+        lazyFile.get();
+        return lazyFile;
+    }
+
+    /**
+     * Create a file handle from the given attribute value.
+     *
+     * @param value A file handle or a file.
+     * @return The file handle associated with the given value.
+     */
+    public static LazyFile from(Object value) {
+        if (value instanceof LazyFile) {
+            return (LazyFile) value;
+        }
+
+        return LazyFile.of((File) value);
+    }
+
+}
@@ -0,0 +1,56 @@
+package shared.application;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Represents an entity which keeps track of the attributes changed since it
+ * was loaded or last stored.
+ *
+ * Repositories use the changed attributes to only update those fields.
+ *
+ * @param <A> The entity attributes type.
+ */
+public abstract class TrackedEntity<A extends Enum<A>> {
+
+    /**
+     * Attributes changed since the entity was loaded or last stored.
+     */
+    private final Set<A> changedAttributes;
+
+    /**
+     * Constructor.
+     *
+     * @param attributeType The class of the entity attributes type.
+     */
+    protected TrackedEntity(Class<A> attributeType) {
+        this.changedAttributes = EnumSet.noneOf(attributeType);
+    }
+
+    /**
+     * Mark the given attribute as changed.
+     *
+     * @param attribute The changed attribute.
+     */
+    protected synchronized void markChanged(A attribute) {
+        this.changedAttributes.add(attribute);
+    }
+
+    /**
+     * Retrieve the attributes changed since the entity was loaded or last
+     * stored.
+     *
+     * @return A set with the changed attributes.
+     */
+    public synchronized Set<A> getChangedAttributes() {
+        return EnumSet.copyOf(this.changedAttributes);
+    }
+
+    /**
+     * Forget the changed attributes, once they have been stored.
+     */
+    public synchronized void clearChanges() {
+        this.changedAttributes.clear();
+    }
+
+}
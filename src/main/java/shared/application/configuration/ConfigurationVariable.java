@@ -57,4 +57,28 @@ public enum ConfigurationVariable {
      * customers and "trader" will do the same for trader customers.
      */
     INVOICE_TEMPLATE_BY_CUSTOMER,
+    /**
+     * The number of codes reserved at once for each auto generated code
+     * sequence.
+     */
+    CODE_BLOCK_SIZE,
+    /**
+     * The maximum number of entities kept in memory for each cached
+     * repository.
+     */
+    CACHE_SIZE,
+    /**
+     * The number of seconds a cached entity is kept in memory.
+     */
+    CACHE_TIME_TO_LIVE,
+    /**
+     * The number of seconds between two logged summaries of the persistence
+     * metrics, where 0 disables the log.
+     */
+    METRICS_LOG_INTERVAL,
+    /**
+     * The number of milliseconds above which a query is captured with its
+     * execution plan, where 0 disables the capture.
+     */
+    SLOW_QUERY_THRESHOLD,
 }
@@ -1,22 +1,83 @@
 package shared.application.utils;
 
-import shared.persistence.Repository;
+import java.util.HashMap;
+import java.util.Map;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.SequenceRepository;
 
 /**
- * It is responsible of auto generating a code based on the given repository.
+ * It is responsible of auto generating a code based on the given sequence.
+ *
+ * Codes are reserved in blocks whose size is indicated by the
+ * "CODE_BLOCK_SIZE" application configuration variable, so only one request
+ * to the sequence repository is done per block. With blocks of more than one
+ * code, the codes not used before the application finishes are lost.
  */
 public class CodeAutoGenerator {
 
     /**
-     * Generate a numeric code based on the number of items on the given
-     * repository.
+     * Next code to hand out for each sequence.
+     */
+    private static final Map<String, Integer> nextCodes = new HashMap<>();
+
+    /**
+     * Last code of the reserved block for each sequence.
+     */
+    private static final Map<String, Integer> lastCodes = new HashMap<>();
+
+    /**
+     * Obtain the number of codes to reserve at once.
+     *
+     * @return The configured block size, which is 1 by default.
+     */
+    private static int getBlockSize() {
+        Integer blockSize = ApplicationConfiguration.getConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE);
+        return blockSize == null || blockSize < 1 ? 1 : blockSize;
+    }
+
+    /**
+     * Generate a numeric code from the given sequence.
      *
-     * @param repository The repository.
+     * @param sequenceRepository The sequence repository.
+     * @param sequence The sequence name.
      * @return An auto generated numeric code.
      */
-    public static int generate(Repository repository) {
-        int itemsCount = repository.count();
-        return itemsCount + 1;
+    public static synchronized int generate(SequenceRepository sequenceRepository, String sequence) {
+        Integer nextCode = nextCodes.get(sequence);
+        Integer lastCode = lastCodes.get(sequence);
+
+        if (nextCode == null || nextCode > lastCode) {
+            int blockSize = CodeAutoGenerator.getBlockSize();
+            lastCode = sequenceRepository.reserve(sequence, blockSize);
+            nextCode = lastCode - blockSize + 1;
+            lastCodes.put(sequence, lastCode);
+        }
+
+        nextCodes.put(sequence, nextCode + 1);
+        return nextCode;
+    }
+
+    /**
+     * Obtain the code which will be generated next from the given sequence,
+     * without reserving it.
+     *
+     * Note that another client may take that code before, so it must only be
+     * used for previews.
+     *
+     * @param sequenceRepository The sequence repository.
+     * @param sequence The sequence name.
+     * @return The next numeric code.
+     */
+    public static synchronized int preview(SequenceRepository sequenceRepository, String sequence) {
+        Integer nextCode = nextCodes.get(sequence);
+        Integer lastCode = lastCodes.get(sequence);
+
+        if (nextCode == null || nextCode > lastCode) {
+            return sequenceRepository.current(sequence) + 1;
+        }
+
+        return nextCode;
     }
 
 }
@@ -0,0 +1,140 @@
+package shared.persistence;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous variant of a repository, whose operations are run on a
+ * bounded pool of threads shared by all the repositories.
+ *
+ * Pending operations wait on the pool queue instead of holding a thread each,
+ * so independent lookups run concurrently without blocking the caller, like
+ * the Swing event dispatch thread. Operations started from a pool thread are
+ * run inline, so a pool thread never waits for another queued operation.
+ *
+ * @param <T> The repository type.
+ */
+public class AsyncRepository<T extends Repository> {
+
+    /**
+     * Number of threads which run the repository operations.
+     */
+    private static final int NUM_THREADS = 8;
+
+    /**
+     * Number of created pool threads, used to name them.
+     */
+    private static final AtomicInteger numThreads = new AtomicInteger();
+
+    /**
+     * Whether the current thread belongs to the pool.
+     */
+    private static final ThreadLocal<Boolean> isPoolThread = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Pool which runs the repository operations.
+     */
+    private static final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS, runnable -> {
+        Thread thread = new Thread(() -> {
+            isPoolThread.set(true);
+            runnable.run();
+        }, "repository-" + numThreads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The wrapped repository.
+     */
+    private final T repository;
+
+    /**
+     * Constructor.
+     *
+     * @param repository The repository whose operations are run
+     * asynchronously.
+     */
+    public AsyncRepository(T repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Run the given operation on the repository asynchronously.
+     *
+     * @param <R> The operation result type.
+     * @param operation The operation, which receives the repository.
+     * @return A future completed with the operation result, or with the
+     * exception thrown by it.
+     */
+    public <R> CompletableFuture<R> call(Function<T, R> operation) {
+        return AsyncRepository.supply(() -> operation.apply(this.repository));
+    }
+
+    /**
+     * Run the given task on the repository pool, or inline when it is called
+     * from a pool thread.
+     *
+     * Note that the round trips done by the task are counted for the use
+     * case which submits it.
+     *
+     * @param <R> The task result type.
+     * @param task The task.
+     * @return A future completed with the task result, or with the exception
+     * thrown by it.
+     */
+    private static <R> CompletableFuture<R> supply(Supplier<R> task) {
+        if (!isPoolThread.get()) {
+            return CompletableFuture.supplyAsync(PersistenceMetrics.propagate(task), executor);
+        }
+
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            future.complete(task.get());
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    /**
+     * Run the given task on the repository pool, for example to resolve some
+     * references while the caller resolves others.
+     *
+     * @param task The task.
+     * @return A future completed when the task finishes.
+     */
+    public static CompletableFuture<Void> run(Runnable task) {
+        return AsyncRepository.supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wait for the given future to be completed.
+     *
+     * @param <R> The result type.
+     * @param future The future.
+     * @return The future result.
+     * @throws RuntimeException The exception thrown by the operation, as it
+     * would have been thrown by a synchronous call.
+     */
+    public static <R> R await(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the listeners which must be notified when an entity is changed
+ * on the database, including the changes done by other running applications.
+ *
+ * Listeners are called from the thread which detects the change, so the ones
+ * updating the user interface must hand the update over to the Swing event
+ * dispatch thread.
+ */
+public class ChangeNotifier {
+
+    /**
+     * Listeners of each repository model, which receive the key of the
+     * changed entity.
+     */
+    private static final Map<Class<? extends Repository>, List<Consumer<Object>>> listeners = new HashMap<>();
+
+    /**
+     * Add a listener for the changes on the entities of the given repository
+     * model.
+     *
+     * @param model The repository model.
+     * @param listener The listener, which receives the key of the changed
+     * entity.
+     */
+    public static synchronized void addListener(Class<? extends Repository> model, Consumer<Object> listener) {
+        listeners.computeIfAbsent(model, key -> new ArrayList<>()).add(listener);
+    }
+
+    /**
+     * Remove a listener added for the given repository model.
+     *
+     * @param model The repository model.
+     * @param listener The listener to remove.
+     */
+    public static synchronized void removeListener(Class<? extends Repository> model, Consumer<Object> listener) {
+        List<Consumer<Object>> modelListeners = listeners.get(model);
+        if (modelListeners != null) {
+            modelListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Notify the listeners of the given repository model that an entity has
+     * been changed.
+     *
+     * @param model The repository model.
+     * @param key The key of the changed entity.
+     */
+    public static void notifyChange(Class<? extends Repository> model, Object key) {
+        List<Consumer<Object>> modelListeners;
+        synchronized (ChangeNotifier.class) {
+            modelListeners = new ArrayList<>(listeners.getOrDefault(model, new ArrayList<>()));
+        }
+
+        for (Consumer<Object> listener : modelListeners) {
+            listener.accept(key);
+        }
+    }
+
+}
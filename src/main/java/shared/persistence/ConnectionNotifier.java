@@ -0,0 +1,180 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the listeners which must be notified when the state of the
+ * connection to the database changes, or the number of saved documents which
+ * are waiting to be written to the database or can never be written.
+ *
+ * Listeners are called from the thread which detects the change, so the ones
+ * updating the user interface must hand the update over to the Swing event
+ * dispatch thread.
+ */
+public class ConnectionNotifier {
+
+    /**
+     * Listeners of the connection state.
+     */
+    private static final List<Consumer<ConnectionState>> listeners = new ArrayList<>();
+
+    /**
+     * Current connection state.
+     */
+    private static ConnectionState state = ConnectionState.CONNECTED;
+
+    /**
+     * Number of saved documents waiting to be written, indexed by their
+     * journal.
+     */
+    private static final Map<String, Integer> pendingWrites = new HashMap<>();
+
+    /**
+     * Number of saved documents which can never be written, indexed by their
+     * journal.
+     */
+    private static final Map<String, Integer> rejectedWrites = new HashMap<>();
+
+    /**
+     * Journals whose last write to the database failed.
+     */
+    private static final Set<String> stalledJournals = new HashSet<>();
+
+    /**
+     * Add a listener for the changes of the connection state.
+     *
+     * @param listener The listener, which receives the new state.
+     */
+    public static synchronized void addListener(Consumer<ConnectionState> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener of the connection state.
+     *
+     * @param listener The listener to remove.
+     */
+    public static synchronized void removeListener(Consumer<ConnectionState> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Obtain the current connection state.
+     *
+     * @return The connection state.
+     */
+    public static synchronized ConnectionState getState() {
+        return state;
+    }
+
+    /**
+     * Obtain the number of saved documents waiting to be written to the
+     * database.
+     *
+     * @return The number of pending writes of all the journals.
+     */
+    public static synchronized int getPendingWrites() {
+        int count = 0;
+        for (int journalCount : pendingWrites.values()) {
+            count += journalCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Obtain the number of saved documents which can never be written to the
+     * database.
+     *
+     * @return The number of rejected writes of all the journals.
+     */
+    public static synchronized int getRejectedWrites() {
+        int count = 0;
+        for (int journalCount : rejectedWrites.values()) {
+            count += journalCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Check whether the pending writes of any journal cannot be written to
+     * the database right now.
+     *
+     * @return Whether any journal is stalled.
+     */
+    public static synchronized boolean isWriteStalled() {
+        return !stalledJournals.isEmpty();
+    }
+
+    /**
+     * Notify the given state to the listeners.
+     *
+     * @param notifiedState The connection state.
+     */
+    private static void notifyListeners(ConnectionState notifiedState) {
+        List<Consumer<ConnectionState>> stateListeners;
+        synchronized (ConnectionNotifier.class) {
+            stateListeners = new ArrayList<>(listeners);
+        }
+
+        for (Consumer<ConnectionState> listener : stateListeners) {
+            listener.accept(notifiedState);
+        }
+    }
+
+    /**
+     * Change the connection state, notifying the listeners when it is
+     * different from the current one.
+     *
+     * @param newState The new connection state.
+     */
+    public static void setState(ConnectionState newState) {
+        synchronized (ConnectionNotifier.class) {
+            if (state == newState) {
+                return;
+            }
+
+            state = newState;
+        }
+
+        ConnectionNotifier.notifyListeners(newState);
+    }
+
+    /**
+     * Change the pending and rejected writes of the given journal, notifying
+     * the listeners with the current state when they are different from the
+     * previous ones.
+     *
+     * @param journal The journal name.
+     * @param count The number of saved documents waiting to be written.
+     * @param rejected The number of saved documents which can never be
+     * written.
+     * @param stalled Whether the last write to the database failed.
+     */
+    public static void setPendingWrites(String journal, int count, int rejected, boolean stalled) {
+        ConnectionState currentState;
+        synchronized (ConnectionNotifier.class) {
+            Integer previousCount = count == 0 ? pendingWrites.remove(journal) : pendingWrites.put(journal, count);
+            Integer previousRejected = rejected == 0 ? rejectedWrites.remove(journal) : rejectedWrites.put(journal, rejected);
+            boolean wasStalled = stalled ? !stalledJournals.add(journal) : stalledJournals.remove(journal);
+
+            boolean isCountUnchanged = (previousCount == null ? 0 : previousCount) == count;
+            boolean isRejectedUnchanged = (previousRejected == null ? 0 : previousRejected) == rejected;
+            if (isCountUnchanged && isRejectedUnchanged && wasStalled == stalled) {
+                return;
+            }
+
+            currentState = state;
+        }
+
+        ConnectionNotifier.notifyListeners(currentState);
+    }
+
+}
@@ -0,0 +1,22 @@
+package shared.persistence;
+
+/**
+ * Represents the state of the connection to the database, as shown to the
+ * user.
+ */
+public enum ConnectionState {
+
+    /**
+     * The database can be reached.
+     */
+    CONNECTED,
+    /**
+     * The database could not be reached and it is being tried again.
+     */
+    RECONNECTING,
+    /**
+     * The database cannot be reached, so the operations fail fast or read the
+     * local copies.
+     */
+    DISCONNECTED;
+}
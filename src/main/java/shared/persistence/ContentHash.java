@@ -0,0 +1,44 @@
+package shared.persistence;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates the hash which identifies a file content.
+ */
+public class ContentHash {
+
+    /**
+     * Algorithm used to calculate the content hash.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Create the message digest used to calculate the content hash.
+     *
+     * @return The message digest.
+     */
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Obtain the content hash from the given digest.
+     *
+     * @param digest The message digest which has processed the content.
+     * @return The hexadecimal content hash.
+     */
+    public static String from(MessageDigest digest) {
+        StringBuilder hash = new StringBuilder();
+        for (byte digestByte : digest.digest()) {
+            hash.append(String.format("%02x", digestByte));
+        }
+
+        return hash.toString();
+    }
+
+}
@@ -0,0 +1,351 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+
+/**
+ * Keeps the most recently used entities of a repository in memory, so the
+ * entities which rarely change are not requested to the database again and
+ * again.
+ *
+ * The cache size is bounded by the "CACHE_SIZE" application configuration
+ * variable, evicting the least recently used entity when it is full, and each
+ * entity expires after the seconds indicated by the "CACHE_TIME_TO_LIVE"
+ * variable. A size of 0 disables the cache. The owner repository must
+ * invalidate the entities it writes.
+ *
+ * @param <K> The entity key type.
+ * @param <V> The entity type.
+ */
+public class EntityCache<K, V> {
+
+    /**
+     * Default maximum number of cached entities.
+     */
+    private static final int DEFAULT_SIZE = 500;
+
+    /**
+     * Default number of seconds an entity is kept on the cache.
+     */
+    private static final int DEFAULT_TIME_TO_LIVE = 300;
+
+    /**
+     * Created caches, indexed by their name.
+     */
+    private static final Map<String, EntityCache<?, ?>> caches = new LinkedHashMap<>();
+
+    /**
+     * Represents a cached entity.
+     *
+     * @param <V> The entity type.
+     */
+    private static class CachedEntity<V> {
+
+        /**
+         * The cached entity.
+         */
+        private final V entity;
+
+        /**
+         * Time, in milliseconds, when the entity expires.
+         */
+        private final long expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param entity The cached entity.
+         * @param expiration Time, in milliseconds, when the entity expires.
+         */
+        private CachedEntity(V entity, long expiration) {
+            this.entity = entity;
+            this.expiration = expiration;
+        }
+
+    }
+
+    /**
+     * Cache name, usually the repository collection.
+     */
+    private final String name;
+
+    /**
+     * Cached entities, indexed by their key and ordered from the least to the
+     * most recently used.
+     */
+    private final LinkedHashMap<K, CachedEntity<V>> entries;
+
+    /**
+     * Number of invalidations done, so the entities loaded while an
+     * invalidation happens are not cached.
+     */
+    private long generation;
+
+    /**
+     * Number of requested entities which were found on the cache.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * Number of requested entities which were loaded from the repository.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Constructor.
+     *
+     * @param name The cache name, usually the repository collection.
+     */
+    public EntityCache(String name) {
+        this.name = name;
+        this.entries = new LinkedHashMap<K, CachedEntity<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedEntity<V>> eldest) {
+                return this.size() > EntityCache.getMaxSize();
+            }
+        };
+        this.generation = 0;
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+
+        synchronized (caches) {
+            caches.put(name, this);
+        }
+    }
+
+    /**
+     * Obtain the maximum number of entities to keep on each cache.
+     *
+     * @return The configured cache size.
+     */
+    private static int getMaxSize() {
+        Integer size = ApplicationConfiguration.getConfigurationVariable(ConfigurationVariable.CACHE_SIZE);
+        return size == null || size < 0 ? DEFAULT_SIZE : size;
+    }
+
+    /**
+     * Obtain the time an entity is kept on the cache.
+     *
+     * @return The configured time to live, in milliseconds.
+     */
+    private static long getTimeToLive() {
+        Integer timeToLive = ApplicationConfiguration.getConfigurationVariable(ConfigurationVariable.CACHE_TIME_TO_LIVE);
+        return (timeToLive == null || timeToLive < 0 ? DEFAULT_TIME_TO_LIVE : timeToLive) * 1000L;
+    }
+
+    /**
+     * Obtain the caches created on the system.
+     *
+     * @return A list with the created caches.
+     */
+    public static List<EntityCache<?, ?>> getCaches() {
+        synchronized (caches) {
+            return new ArrayList<>(caches.values());
+        }
+    }
+
+    /**
+     * Remove all the entities of the cache with the given name, for example
+     * when the entities it holds reference another changed entity.
+     *
+     * @param name The cache name.
+     */
+    public static void invalidateAll(String name) {
+        EntityCache<?, ?> cache;
+        synchronized (caches) {
+            cache = caches.get(name);
+        }
+
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Obtain the cached entity for the given key, if it has not expired.
+     *
+     * @param key The entity key.
+     * @return The cached entity, otherwise null.
+     */
+    private synchronized V lookup(K key) {
+        CachedEntity<V> entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiration < System.currentTimeMillis()) {
+            this.entries.remove(key);
+            return null;
+        }
+
+        return entry.entity;
+    }
+
+    /**
+     * Add the loaded entities, unless an invalidation happened while they
+     * were being loaded.
+     *
+     * @param loadedEntities The loaded entities, indexed by their key.
+     * @param loadGeneration The generation when the load started.
+     */
+    private synchronized void store(Map<K, V> loadedEntities, long loadGeneration) {
+        if (EntityCache.getMaxSize() == 0 || loadGeneration != this.generation) {
+            return;
+        }
+
+        long expiration = System.currentTimeMillis() + EntityCache.getTimeToLive();
+        for (Map.Entry<K, V> loadedEntity : loadedEntities.entrySet()) {
+            this.entries.put(loadedEntity.getKey(), new CachedEntity<>(loadedEntity.getValue(), expiration));
+        }
+    }
+
+    /**
+     * Obtain the current generation.
+     *
+     * @return The number of invalidations done.
+     */
+    private synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Obtain the entity associated to the given key, loading it from the
+     * repository when it is not cached.
+     *
+     * @param key The entity key.
+     * @param loader Function which loads the entity from the repository.
+     * @return The found entity, otherwise null.
+     */
+    public V get(K key, Function<K, V> loader) {
+        V entity = this.lookup(key);
+        if (entity != null) {
+            this.hits.incrementAndGet();
+            return entity;
+        }
+
+        this.misses.incrementAndGet();
+        long loadGeneration = this.getGeneration();
+        entity = loader.apply(key);
+
+        if (entity != null) {
+            Map<K, V> loadedEntities = new LinkedHashMap<>();
+            loadedEntities.put(key, entity);
+            this.store(loadedEntities, loadGeneration);
+        }
+
+        return entity;
+    }
+
+    /**
+     * Obtain the entities associated to the given keys, loading the ones
+     * which are not cached from the repository in one request.
+     *
+     * @param keys The entity keys.
+     * @param keyExtractor Function which obtains the key of an entity.
+     * @param loader Function which loads all the entities matching the given
+     * keys.
+     * @return A list with the found entities.
+     */
+    public ArrayList<V> getAll(List<K> keys, Function<V, K> keyExtractor, Function<List<K>, List<V>> loader) {
+        ArrayList<V> foundEntities = new ArrayList<>();
+        List<K> missingKeys = new ArrayList<>();
+
+        for (K key : keys) {
+            V entity = this.lookup(key);
+            if (entity == null) {
+                missingKeys.add(key);
+            } else {
+                foundEntities.add(entity);
+            }
+        }
+
+        this.hits.addAndGet(foundEntities.size());
+        if (missingKeys.isEmpty()) {
+            return foundEntities;
+        }
+
+        this.misses.addAndGet(missingKeys.size());
+        long loadGeneration = this.getGeneration();
+
+        Map<K, V> loadedEntities = new LinkedHashMap<>();
+        for (V entity : loader.apply(missingKeys)) {
+            loadedEntities.put(keyExtractor.apply(entity), entity);
+        }
+
+        this.store(loadedEntities, loadGeneration);
+        foundEntities.addAll(loadedEntities.values());
+
+        return foundEntities;
+    }
+
+    /**
+     * Remove the entity associated to the given key, so it is loaded again
+     * from the repository the next time it is requested.
+     *
+     * @param key The entity key.
+     */
+    public synchronized void invalidate(K key) {
+        this.entries.remove(key);
+        this.generation++;
+    }
+
+    /**
+     * Remove all the cached entities.
+     */
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+        this.generation++;
+    }
+
+    /**
+     * Obtain the cache name.
+     *
+     * @return The cache name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Obtain the number of cached entities.
+     *
+     * @return The number of entities on the cache.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Obtain the number of requested entities which were found on the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Obtain the number of requested entities which were loaded from the
+     * repository.
+     *
+     * @return The number of cache misses.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%s cache: %d entities, %d hits, %d misses", this.name, this.size(), this.getHits(), this.getMisses());
+    }
+
+}
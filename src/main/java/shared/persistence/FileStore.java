@@ -0,0 +1,43 @@
+package shared.persistence;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Represents the store for the files managed by the system.
+ *
+ * Files are addressed by the SHA-256 hash of their content, so identical
+ * files are only stored once.
+ */
+public interface FileStore extends Repository {
+
+    /**
+     * Store the given file.
+     *
+     * @param file The file to store.
+     * @return The content hash of the stored file, otherwise null if it cannot
+     * be stored.
+     */
+    public String store(File file);
+
+    /**
+     * Store the content read from the given stream.
+     *
+     * @param content The stream with the file content.
+     * @param extension The file extension, including the point.
+     * @return The content hash of the stored file, otherwise null if it cannot
+     * be stored.
+     */
+    public String store(InputStream content, String extension);
+
+    /**
+     * Load the file associated with the given content hash on a temporary
+     * file.
+     *
+     * @param hash The content hash.
+     * @return The temporary file containing the stored content, otherwise null
+     * if it cannot be found.
+     */
+    public File load(String hash);
+
+}
@@ -0,0 +1,119 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Keeps the entities loaded during a single repository request, indexed by
+ * their key.
+ *
+ * The keys referenced by a set of results are collected first and then
+ * resolved at once, so each entity type costs one query no matter how many
+ * results reference it.
+ *
+ * @param <K> The entity key type.
+ * @param <V> The entity type.
+ */
+public class IdentityMap<K, V> {
+
+    /**
+     * Loaded entities, indexed by their key.
+     */
+    private final Map<K, V> entities;
+
+    /**
+     * Collected keys which have not been loaded yet.
+     */
+    private final Set<K> pendingKeys;
+
+    /**
+     * Obtains the key of an entity.
+     */
+    private final Function<V, K> keyExtractor;
+
+    /**
+     * Loads all the entities matching the given keys.
+     */
+    private final Function<List<K>, List<V>> loader;
+
+    /**
+     * Constructor.
+     *
+     * @param keyExtractor Function which obtains the key of an entity.
+     * @param loader Function which loads all the entities matching the given
+     * keys in one query.
+     */
+    public IdentityMap(Function<V, K> keyExtractor, Function<List<K>, List<V>> loader) {
+        this.entities = new HashMap<>();
+        this.pendingKeys = new LinkedHashSet<>();
+        this.keyExtractor = keyExtractor;
+        this.loader = loader;
+    }
+
+    /**
+     * Collect the given key, so its entity is loaded on the next resolution.
+     *
+     * @param key The entity key.
+     */
+    public void collect(K key) {
+        if (key != null && !this.entities.containsKey(key)) {
+            this.pendingKeys.add(key);
+        }
+    }
+
+    /**
+     * Load all the entities for the collected keys.
+     *
+     * Note that keys without a matching entity are resolved to null, so they
+     * are not requested again.
+     */
+    public void resolve() {
+        if (this.pendingKeys.isEmpty()) {
+            return;
+        }
+
+        List<K> keys = new ArrayList<>(this.pendingKeys);
+        this.pendingKeys.clear();
+
+        for (K key : keys) {
+            this.entities.put(key, null);
+        }
+
+        for (V entity : this.loader.apply(keys)) {
+            this.entities.put(this.keyExtractor.apply(entity), entity);
+        }
+    }
+
+    /**
+     * Add an already loaded entity.
+     *
+     * @param entity The entity.
+     */
+    public void put(V entity) {
+        K key = this.keyExtractor.apply(entity);
+        this.entities.put(key, entity);
+        this.pendingKeys.remove(key);
+    }
+
+    /**
+     * Obtain the entity associated to the given key.
+     *
+     * Note that the collected keys are resolved before, if needed.
+     *
+     * @param key The entity key.
+     * @return The found entity, otherwise null.
+     */
+    public V get(K key) {
+        if (this.pendingKeys.contains(key)) {
+            this.resolve();
+        }
+
+        return this.entities.get(key);
+    }
+
+}
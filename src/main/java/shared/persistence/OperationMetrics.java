@@ -0,0 +1,242 @@
+package shared.persistence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of one kind of database operation on a collection, like the finds
+ * on the delivery note collection.
+ *
+ * The latencies are kept on a histogram whose buckets are bounded by
+ * {@link #LATENCY_BUCKETS_MS}, plus a last bucket for the slower operations.
+ */
+public class OperationMetrics {
+
+    /**
+     * Upper bounds (in milliseconds) of the latency histogram buckets.
+     */
+    public static final long[] LATENCY_BUCKETS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    /**
+     * Collection name.
+     */
+    private final String collection;
+
+    /**
+     * Operation name, like the database command name.
+     */
+    private final String operation;
+
+    /**
+     * Number of operations run, including the failed ones.
+     */
+    private long count;
+
+    /**
+     * Number of failed operations.
+     */
+    private long failures;
+
+    /**
+     * Total time (in nanoseconds) spent on the operations.
+     */
+    private long totalNanos;
+
+    /**
+     * Time (in nanoseconds) spent on the slowest operation.
+     */
+    private long maxNanos;
+
+    /**
+     * Number of documents returned or written by the operations.
+     */
+    private long documents;
+
+    /**
+     * Number of bytes sent to the database.
+     */
+    private long bytesSent;
+
+    /**
+     * Number of bytes received from the database.
+     */
+    private long bytesReceived;
+
+    /**
+     * Number of operations on each latency histogram bucket.
+     */
+    private final long[] latencyHistogram;
+
+    /**
+     * Constructor.
+     *
+     * @param collection The collection name.
+     * @param operation The operation name.
+     */
+    OperationMetrics(String collection, String operation) {
+        this.collection = collection;
+        this.operation = operation;
+        this.latencyHistogram = new long[LATENCY_BUCKETS_MS.length + 1];
+    }
+
+    /**
+     * Record a run operation.
+     *
+     * @param elapsedNanos The time (in nanoseconds) spent on the operation.
+     * @param numDocuments The number of documents returned or written.
+     * @param numBytesSent The number of bytes sent to the database.
+     * @param numBytesReceived The number of bytes received from the
+     * database.
+     * @param hasFailed Whether the operation has failed.
+     */
+    synchronized void record(long elapsedNanos, int numDocuments, long numBytesSent, long numBytesReceived, boolean hasFailed) {
+        this.count++;
+        this.failures += hasFailed ? 1 : 0;
+        this.totalNanos += elapsedNanos;
+        this.maxNanos = Math.max(this.maxNanos, elapsedNanos);
+        this.documents += numDocuments;
+        this.bytesSent += numBytesSent;
+        this.bytesReceived += numBytesReceived;
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MS.length && elapsedMillis >= LATENCY_BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+
+        this.latencyHistogram[bucket]++;
+    }
+
+    /**
+     * Obtain the collection name.
+     *
+     * @return The collection name.
+     */
+    public String getCollection() {
+        return this.collection;
+    }
+
+    /**
+     * Obtain the operation name.
+     *
+     * @return The operation name.
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Obtain the number of operations run, including the failed ones.
+     *
+     * @return The number of operations.
+     */
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Obtain the number of failed operations.
+     *
+     * @return The number of failures.
+     */
+    public synchronized long getFailures() {
+        return this.failures;
+    }
+
+    /**
+     * Obtain the total time spent on the operations.
+     *
+     * @return The total time, in milliseconds.
+     */
+    public synchronized double getTotalMillis() {
+        return this.totalNanos / 1e6;
+    }
+
+    /**
+     * Obtain the average time spent on each operation.
+     *
+     * @return The average time, in milliseconds.
+     */
+    public synchronized double getAverageMillis() {
+        return this.count == 0 ? 0 : this.totalNanos / 1e6 / this.count;
+    }
+
+    /**
+     * Obtain the time spent on the slowest operation.
+     *
+     * @return The maximum time, in milliseconds.
+     */
+    public synchronized double getMaxMillis() {
+        return this.maxNanos / 1e6;
+    }
+
+    /**
+     * Obtain the time under which 95 out of 100 operations finished, estimated
+     * from the latency histogram.
+     *
+     * @return The upper bound of the bucket containing the 95th percentile,
+     * in milliseconds, or the maximum time for the last bucket.
+     */
+    public synchronized double getPercentile95Millis() {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(this.count * 0.95);
+
+        long numOperations = 0;
+        for (int bucket = 0; bucket < LATENCY_BUCKETS_MS.length; bucket++) {
+            numOperations += this.latencyHistogram[bucket];
+            if (numOperations >= threshold) {
+                return LATENCY_BUCKETS_MS[bucket];
+            }
+        }
+
+        return this.getMaxMillis();
+    }
+
+    /**
+     * Obtain the number of documents returned or written by the operations.
+     *
+     * @return The number of documents.
+     */
+    public synchronized long getDocuments() {
+        return this.documents;
+    }
+
+    /**
+     * Obtain the number of bytes sent to the database.
+     *
+     * @return The number of sent bytes.
+     */
+    public synchronized long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * Obtain the number of bytes received from the database.
+     *
+     * @return The number of received bytes.
+     */
+    public synchronized long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    /**
+     * Obtain the number of operations on each latency histogram bucket.
+     *
+     * @return A copy of the histogram, whose last bucket counts the
+     * operations slower than the last bound.
+     */
+    public synchronized long[] getLatencyHistogram() {
+        return this.latencyHistogram.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%s.%s: %d ops (%d failed), avg %.1f ms, p95 <= %.0f ms, max %.1f ms, %d docs, %d B sent, %d B received", this.collection, this.operation, this.count, this.failures, this.getAverageMillis(), this.getPercentile95Millis(), this.getMaxMillis(), this.documents, this.bytesSent, this.bytesReceived);
+    }
+
+}
@@ -0,0 +1,62 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+
+/**
+ * Represents a page of a listing sorted by date and code.
+ *
+ * @param <T> The entity type.
+ */
+public class Page<T> {
+
+    /**
+     * Entities on the page.
+     */
+    private final ArrayList<T> items;
+
+    /**
+     * Key of the last entity on the page, or null if it is the last page.
+     */
+    private final PageKey nextKey;
+
+    /**
+     * Constructor.
+     *
+     * @param items The entities on the page.
+     * @param nextKey The key to obtain the next page, or null if it is the
+     * last page.
+     */
+    public Page(ArrayList<T> items, PageKey nextKey) {
+        this.items = items;
+        this.nextKey = nextKey;
+    }
+
+    /**
+     * Retrieve the entities on the page.
+     *
+     * @return A list with the entities.
+     */
+    public ArrayList<T> getItems() {
+        return this.items;
+    }
+
+    /**
+     * Retrieve the key to obtain the next page.
+     *
+     * @return The key of the last entity on the page, otherwise null if it is
+     * the last page.
+     */
+    public PageKey getNextKey() {
+        return this.nextKey;
+    }
+
+    /**
+     * Check whether there are more entities after this page.
+     *
+     * @return Whether there is a next page or not.
+     */
+    public boolean hasNext() {
+        return this.nextKey != null;
+    }
+
+}
@@ -0,0 +1,65 @@
+package shared.persistence;
+
+import com.mongodb.client.model.Filters;
+import java.util.Date;
+import org.bson.conversions.Bson;
+
+/**
+ * Represents the position of an entity on a listing sorted by date and code,
+ * which is used to obtain the entities placed after it.
+ */
+public class PageKey {
+
+    /**
+     * Entity date.
+     */
+    private final Date date;
+
+    /**
+     * Entity code.
+     */
+    private final int code;
+
+    /**
+     * Constructor.
+     *
+     * @param date The entity date.
+     * @param code The entity code.
+     */
+    public PageKey(Date date, int code) {
+        this.date = date;
+        this.code = code;
+    }
+
+    /**
+     * Retrieve the entity date.
+     *
+     * @return The entity date.
+     */
+    public Date getDate() {
+        return this.date;
+    }
+
+    /**
+     * Retrieve the entity code.
+     *
+     * @return The entity code.
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Obtain the filter for the entities placed after this key on a listing
+     * sorted by date and code.
+     *
+     * @return A filter indicating that the query must only obtain the
+     * documents whose date and code are greater than the key ones.
+     */
+    public Bson getAfterFilter() {
+        Bson laterDate = Filters.gt("date", this.date);
+        Bson sameDateGreaterCode = Filters.and(Filters.eq("date", this.date), Filters.gt("code", this.code));
+        return Filters.or(laterDate, sameDateGreaterCode);
+    }
+
+}
@@ -0,0 +1,295 @@
+package shared.persistence;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+
+/**
+ * Collects the latency, documents and bytes of each kind of database
+ * operation, and the round trips done by the measured use cases.
+ *
+ * The metrics are exposed through JMX, under the
+ * "shared.persistence:type=PersistenceMetrics" name, and a summary is logged
+ * every "METRICS_LOG_INTERVAL" seconds, where 0 disables the log.
+ */
+public class PersistenceMetrics {
+
+    /**
+     * Name of the registered management bean.
+     */
+    private static final String BEAN_NAME = "shared.persistence:type=PersistenceMetrics";
+
+    /**
+     * Default number of seconds between two logged summaries.
+     */
+    private static final int DEFAULT_LOG_INTERVAL = 300;
+
+    /**
+     * Metrics of each kind of operation, indexed by the collection and the
+     * operation names.
+     */
+    private static final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Metrics of each measured use case, indexed by its name.
+     */
+    private static final Map<String, UseCaseMetrics> useCases = new ConcurrentHashMap<>();
+
+    /**
+     * Use case being run on the current thread, if any.
+     */
+    private static final ThreadLocal<UseCaseMetrics> currentUseCase = new ThreadLocal<>();
+
+    /**
+     * Number of database round trips done.
+     */
+    private static final AtomicLong roundTrips = new AtomicLong();
+
+    /**
+     * Executor which logs the summaries, or null if it has not been started.
+     */
+    private static ScheduledExecutorService summaryLogger = null;
+
+    /**
+     * Management bean which exposes the metrics through JMX.
+     */
+    private static class Bean implements PersistenceMetricsMXBean {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getRoundTrips() {
+            return roundTrips.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<OperationMetrics> getOperations() {
+            return PersistenceMetrics.getOperations();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<UseCaseMetrics> getUseCases() {
+            return PersistenceMetrics.getUseCases();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getSummary() {
+            return PersistenceMetrics.getSummary();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset() {
+            PersistenceMetrics.reset();
+        }
+
+    }
+
+    /**
+     * Obtain the number of seconds between two logged summaries.
+     *
+     * @return The configured log interval.
+     */
+    private static int getLogInterval() {
+        Integer logInterval = ApplicationConfiguration.getConfigurationVariable(ConfigurationVariable.METRICS_LOG_INTERVAL);
+        return logInterval == null || logInterval < 0 ? DEFAULT_LOG_INTERVAL : logInterval;
+    }
+
+    /**
+     * Expose the metrics through JMX and start logging their summary
+     * periodically.
+     *
+     * Note that calling it again has no effect.
+     */
+    public static synchronized void start() {
+        if (summaryLogger != null) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(BEAN_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Bean(), name);
+            }
+        } catch (JMException ex) {
+            Logger.getLogger(PersistenceMetrics.class.getName()).log(Level.WARNING, "Persistence metrics cannot be exposed through JMX", ex);
+        }
+
+        summaryLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int logInterval = PersistenceMetrics.getLogInterval();
+        if (logInterval > 0) {
+            summaryLogger.scheduleAtFixedRate(() -> Logger.getLogger(PersistenceMetrics.class.getName()).log(Level.INFO, PersistenceMetrics.getSummary()), logInterval, logInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Record a database operation, which is also counted as a round trip of
+     * the use case being run on the current thread.
+     *
+     * @param collection The collection name.
+     * @param operation The operation name.
+     * @param elapsedNanos The time (in nanoseconds) spent on the operation.
+     * @param numDocuments The number of documents returned or written.
+     * @param numBytesSent The number of bytes sent to the database.
+     * @param numBytesReceived The number of bytes received from the
+     * database.
+     * @param hasFailed Whether the operation has failed.
+     */
+    public static void record(String collection, String operation, long elapsedNanos, int numDocuments, long numBytesSent, long numBytesReceived, boolean hasFailed) {
+        String key = collection + "." + operation;
+        OperationMetrics metrics = operations.computeIfAbsent(key, k -> new OperationMetrics(collection, operation));
+        metrics.record(elapsedNanos, numDocuments, numBytesSent, numBytesReceived, hasFailed);
+
+        roundTrips.incrementAndGet();
+
+        UseCaseMetrics useCase = currentUseCase.get();
+        if (useCase != null) {
+            useCase.addRoundTrip();
+        }
+    }
+
+    /**
+     * Run an invocation of the given use case, counting the database round
+     * trips it does.
+     *
+     * Note that a use case run by another measured use case is counted as
+     * part of the outer one.
+     *
+     * @param <T> The result type.
+     * @param name The use case name.
+     * @param execution The use case execution.
+     * @return The result of the execution.
+     */
+    public static <T> T measure(String name, Supplier<T> execution) {
+        if (currentUseCase.get() != null) {
+            return execution.get();
+        }
+
+        UseCaseMetrics useCase = useCases.computeIfAbsent(name, UseCaseMetrics::new);
+        useCase.addInvocation();
+
+        currentUseCase.set(useCase);
+        try {
+            return execution.get();
+        } finally {
+            currentUseCase.remove();
+        }
+    }
+
+    /**
+     * Wrap the given task, so the round trips it does on another thread are
+     * counted for the use case being run on the current thread.
+     *
+     * @param <T> The result type.
+     * @param task The task.
+     * @return The wrapped task.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        UseCaseMetrics useCase = currentUseCase.get();
+        if (useCase == null) {
+            return task;
+        }
+
+        return () -> {
+            UseCaseMetrics previousUseCase = currentUseCase.get();
+            currentUseCase.set(useCase);
+            try {
+                return task.get();
+            } finally {
+                currentUseCase.set(previousUseCase);
+            }
+        };
+    }
+
+    /**
+     * Obtain the metrics of each kind of operation, from the most to the
+     * least time consuming one.
+     *
+     * @return A list with the operation metrics.
+     */
+    public static List<OperationMetrics> getOperations() {
+        List<OperationMetrics> sortedOperations = new ArrayList<>(operations.values());
+        sortedOperations.sort(Comparator.comparingDouble(OperationMetrics::getTotalMillis).reversed());
+        return sortedOperations;
+    }
+
+    /**
+     * Obtain the metrics of each measured use case, from the one with the
+     * most round trips per invocation.
+     *
+     * @return A list with the use case metrics.
+     */
+    public static List<UseCaseMetrics> getUseCases() {
+        List<UseCaseMetrics> sortedUseCases = new ArrayList<>(useCases.values());
+        sortedUseCases.sort(Comparator.comparingDouble(UseCaseMetrics::getRoundTripsPerInvocation).reversed());
+        return sortedUseCases;
+    }
+
+    /**
+     * Obtain a text summary of the metrics, including the hits of the entity
+     * caches, which save round trips.
+     *
+     * @return The metrics summary.
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Persistence metrics: %d round trips", roundTrips.get()));
+
+        for (OperationMetrics operation : PersistenceMetrics.getOperations()) {
+            summary.append(System.lineSeparator()).append("  ").append(operation);
+        }
+
+        for (UseCaseMetrics useCase : PersistenceMetrics.getUseCases()) {
+            summary.append(System.lineSeparator()).append("  ").append(useCase);
+        }
+
+        for (EntityCache<?, ?> cache : EntityCache.getCaches()) {
+            summary.append(System.lineSeparator()).append("  ").append(cache);
+        }
+
+        return summary.toString();
+    }
+
+    /**
+     * Discard all the recorded metrics.
+     */
+    public static void reset() {
+        operations.clear();
+        useCases.clear();
+        roundTrips.set(0);
+    }
+
+}
@@ -0,0 +1,43 @@
+package shared.persistence;
+
+import java.util.List;
+
+/**
+ * Management interface which exposes the persistence metrics through JMX.
+ */
+public interface PersistenceMetricsMXBean {
+
+    /**
+     * Obtain the number of database round trips done.
+     *
+     * @return The number of round trips.
+     */
+    public long getRoundTrips();
+
+    /**
+     * Obtain the metrics of each kind of operation on each collection.
+     *
+     * @return A list with the operation metrics.
+     */
+    public List<OperationMetrics> getOperations();
+
+    /**
+     * Obtain the metrics of each measured use case.
+     *
+     * @return A list with the use case metrics.
+     */
+    public List<UseCaseMetrics> getUseCases();
+
+    /**
+     * Obtain a text summary of the metrics, like the logged one.
+     *
+     * @return The metrics summary.
+     */
+    public String getSummary();
+
+    /**
+     * Discard all the recorded metrics.
+     */
+    public void reset();
+
+}
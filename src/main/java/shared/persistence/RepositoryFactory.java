@@ -0,0 +1,22 @@
+package shared.persistence;
+
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Represents the way to create a repository implementation.
+ *
+ * @param <T> The repository type.
+ */
+@FunctionalInterface
+public interface RepositoryFactory<T extends Repository> {
+
+    /**
+     * Create the repository.
+     *
+     * @return The created repository.
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public T create() throws NotDefinedDatabaseContextException;
+
+}
@@ -0,0 +1,131 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Registry which hands out the repository instances used by the system.
+ *
+ * Each repository is created once, the first time it is requested, and then
+ * shared by every caller. Repositories are stateless wrappers over the shared
+ * storage backend, so they can be safely used from several threads.
+ */
+public class RepositoryProvider {
+
+    /**
+     * Factories used to create each repository, indexed by the repository
+     * model.
+     */
+    private static final Map<Class<? extends Repository>, RepositoryFactory<? extends Repository>> factories = new HashMap<>();
+
+    /**
+     * Created repositories, indexed by the repository model.
+     */
+    private static final Map<Class<? extends Repository>, Repository> repositories = new HashMap<>();
+
+    /**
+     * Storage used by the registered repositories, otherwise null.
+     */
+    private static StorageBackend storageBackend = null;
+
+    /**
+     * Set the storage used by the repositories, opening it.
+     *
+     * Note that the previous storage, if any, is closed and the repositories
+     * created for it are released.
+     *
+     * @param backend The storage backend.
+     */
+    public static synchronized void setStorageBackend(StorageBackend backend) {
+        RepositoryProvider.shutdown();
+
+        backend.open();
+        storageBackend = backend;
+    }
+
+    /**
+     * Start the background tasks of the storage used by the repositories.
+     */
+    public static synchronized void startBackgroundTasks() {
+        if (storageBackend != null) {
+            storageBackend.startBackgroundTasks();
+        }
+    }
+
+    /**
+     * Register the factory to create the implementation of the given
+     * repository model.
+     *
+     * @param <T> The repository type.
+     * @param type The repository model.
+     * @param factory The factory which creates the repository implementation.
+     */
+    public static synchronized <T extends Repository> void register(Class<T> type, RepositoryFactory<T> factory) {
+        factories.put(type, factory);
+        repositories.remove(type);
+    }
+
+    /**
+     * Obtain the repository associated to the given repository model.
+     *
+     * @param <T> The repository type.
+     * @param type The repository model.
+     * @return The shared repository instance.
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public static synchronized <T extends Repository> T get(Class<T> type) throws NotDefinedDatabaseContextException {
+        Repository repository = repositories.get(type);
+
+        if (repository == null) {
+            RepositoryFactory<? extends Repository> factory = factories.get(type);
+            if (factory == null) {
+                throw new IllegalArgumentException(String.format("There is not any repository registered for %s.", type.getName()));
+            }
+
+            repository = factory.create();
+            repositories.put(type, repository);
+        }
+
+        return type.cast(repository);
+    }
+
+    /**
+     * Obtain the asynchronous variant of the repository associated to the
+     * given repository model.
+     *
+     * @param <T> The repository type.
+     * @param type The repository model.
+     * @return The asynchronous variant of the shared repository instance.
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public static <T extends Repository> AsyncRepository<T> getAsync(Class<T> type) throws NotDefinedDatabaseContextException {
+        return new AsyncRepository<>(RepositoryProvider.get(type));
+    }
+
+    /**
+     * Obtain the repository models which have a registered factory.
+     *
+     * @return A list with the registered repository models.
+     */
+    public static synchronized List<Class<? extends Repository>> getRegisteredModels() {
+        return new ArrayList<>(factories.keySet());
+    }
+
+    /**
+     * Release all the created repositories and close the storage backend.
+     */
+    public static synchronized void shutdown() {
+        repositories.clear();
+
+        if (storageBackend != null) {
+            storageBackend.close();
+            storageBackend = null;
+        }
+    }
+
+}
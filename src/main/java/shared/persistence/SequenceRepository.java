@@ -0,0 +1,30 @@
+package shared.persistence;
+
+/**
+ * Represents the repository model for the code sequences.
+ *
+ * Note that the number of elements on this repository is the number of
+ * sequences.
+ */
+public interface SequenceRepository extends Repository {
+
+    /**
+     * Reserve a block of consecutive values on the given sequence atomically.
+     *
+     * @param sequence The sequence name.
+     * @param blockSize The number of values to reserve.
+     * @return The last value of the reserved block, so the block goes from
+     * this value minus the block size plus one to this value.
+     */
+    public int reserve(String sequence, int blockSize);
+
+    /**
+     * Obtain the last reserved value on the given sequence, without reserving
+     * any value.
+     *
+     * @param sequence The sequence name.
+     * @return The last reserved value.
+     */
+    public int current(String sequence);
+
+}
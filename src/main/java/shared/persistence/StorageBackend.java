@@ -0,0 +1,26 @@
+package shared.persistence;
+
+/**
+ * Represents the storage where the repositories keep their entities, which is
+ * chosen when the application starts.
+ */
+public interface StorageBackend {
+
+    /**
+     * Open the storage, so the repositories registered for it can be
+     * created.
+     */
+    public void open();
+
+    /**
+     * Start the maintenance tasks which the storage runs on background
+     * threads.
+     */
+    public void startBackgroundTasks();
+
+    /**
+     * Close the storage, releasing its connections and files.
+     */
+    public void close();
+
+}
@@ -0,0 +1,96 @@
+package shared.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the database round trips done by a use case.
+ */
+public class UseCaseMetrics {
+
+    /**
+     * Use case name.
+     */
+    private final String name;
+
+    /**
+     * Number of use case invocations.
+     */
+    private final AtomicLong invocations;
+
+    /**
+     * Number of database round trips done by all the invocations.
+     */
+    private final AtomicLong roundTrips;
+
+    /**
+     * Constructor.
+     *
+     * @param name The use case name.
+     */
+    UseCaseMetrics(String name) {
+        this.name = name;
+        this.invocations = new AtomicLong();
+        this.roundTrips = new AtomicLong();
+    }
+
+    /**
+     * Record an invocation of the use case.
+     */
+    void addInvocation() {
+        this.invocations.incrementAndGet();
+    }
+
+    /**
+     * Record a database round trip done by the use case.
+     */
+    void addRoundTrip() {
+        this.roundTrips.incrementAndGet();
+    }
+
+    /**
+     * Obtain the use case name.
+     *
+     * @return The use case name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Obtain the number of use case invocations.
+     *
+     * @return The number of invocations.
+     */
+    public long getInvocations() {
+        return this.invocations.get();
+    }
+
+    /**
+     * Obtain the number of database round trips done by all the invocations.
+     *
+     * @return The number of round trips.
+     */
+    public long getRoundTrips() {
+        return this.roundTrips.get();
+    }
+
+    /**
+     * Obtain the average number of database round trips done by each
+     * invocation.
+     *
+     * @return The round trips per invocation.
+     */
+    public double getRoundTripsPerInvocation() {
+        long numInvocations = this.invocations.get();
+        return numInvocations == 0 ? 0 : (double) this.roundTrips.get() / numInvocations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %d invocations, %.1f round trips each", this.name, this.getInvocations(), this.getRoundTripsPerInvocation());
+    }
+
+}
@@ -0,0 +1,781 @@
+package shared.persistence.embedded;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+import shared.persistence.exceptions.DuplicatedEntityException;
+
+/**
+ * Collection of documents kept in memory and stored on a local file, which is
+ * queried and updated with the same filters, projections, sorts and updates
+ * as a Mongo collection.
+ *
+ * The documents are stored one per line, as extended JSON so the BSON types
+ * are kept. Each write appends the new version of the written documents and
+ * forces it to disk, and the file is compacted when it holds too many old
+ * versions. The queries use the declared indexes to find the candidate
+ * documents instead of scanning the whole collection. All the operations are
+ * synchronized, so the collection can be used from several threads.
+ *
+ * A collection without a file is only kept in memory, for example to run the
+ * application without any storage.
+ */
+public class EmbeddedCollection {
+
+    /**
+     * Settings to write the stored documents, keeping the BSON types.
+     */
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    /**
+     * Field which marks a stored line as the removal of the document with its
+     * identifier.
+     */
+    private static final String REMOVED_FIELD = "_removed";
+
+    /**
+     * Number of stored lines per document above which the file is compacted.
+     */
+    private static final int COMPACTION_RATIO = 2;
+
+    /**
+     * Minimum number of stored lines to compact the file.
+     */
+    private static final int MIN_COMPACTION_LINES = 1000;
+
+    /**
+     * Collection name.
+     */
+    private final String name;
+
+    /**
+     * File where the documents are stored, or null if they are only kept in
+     * memory.
+     */
+    private final Path file;
+
+    /**
+     * Stored documents, indexed by their identifier.
+     */
+    private final Map<BsonValue, BsonDocument> documents;
+
+    /**
+     * Insertion position of the stored documents, indexed by their identifier,
+     * used to return the indexed documents in the stored order.
+     */
+    private final Map<BsonValue, Long> positions;
+
+    /**
+     * Declared indexes, starting with the unique one on the identifier.
+     */
+    private final List<EmbeddedIndex> indexes;
+
+    /**
+     * Position of the next inserted document.
+     */
+    private long nextPosition;
+
+    /**
+     * Number of lines on the file, including the old versions of the
+     * documents.
+     */
+    private int numStoredLines;
+
+    /**
+     * File channel used to append the written documents, opened on the first
+     * write.
+     */
+    private FileChannel channel;
+
+    /**
+     * Constructor.
+     *
+     * The documents already stored on the file are loaded.
+     *
+     * @param name The collection name.
+     * @param file The file where the documents are stored, or null to only
+     * keep them in memory.
+     * @throws IOException Thrown when the file cannot be read.
+     */
+    public EmbeddedCollection(String name, Path file) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.documents = new LinkedHashMap<>();
+        this.positions = new HashMap<>();
+        this.indexes = new ArrayList<>();
+        this.indexes.add(new EmbeddedIndex(Collections.singletonList("_id"), true));
+
+        if (file != null && Files.exists(file)) {
+            this.load();
+        }
+    }
+
+    /**
+     * Load the documents stored on the file, keeping the last version of each
+     * one.
+     *
+     * Note that a line which cannot be parsed, for example because the
+     * application finished while writing it, is skipped.
+     *
+     * @throws IOException Thrown when the file cannot be read or compacted.
+     */
+    private void load() throws IOException {
+        for (String line : Files.readAllLines(this.file, StandardCharsets.UTF_8)) {
+            BsonDocument document;
+            try {
+                document = BsonDocument.parse(line);
+            } catch (JsonParseException ex) {
+                continue;
+            }
+
+            this.numStoredLines++;
+            BsonValue id = document.get("_id");
+            if (document.getBoolean(REMOVED_FIELD, BsonBoolean.FALSE).getValue()) {
+                this.remove(id);
+            } else {
+                this.put(id, document);
+            }
+        }
+
+        if (this.needsCompaction()) {
+            this.write();
+        }
+    }
+
+    /**
+     * Check whether the file holds too many old versions of the documents.
+     *
+     * @return Whether the file must be compacted.
+     */
+    private boolean needsCompaction() {
+        return this.numStoredLines > MIN_COMPACTION_LINES && this.numStoredLines > COMPACTION_RATIO * this.documents.size();
+    }
+
+    /**
+     * Write all the documents to the file, replacing it at once so a failed
+     * write keeps the previous documents.
+     *
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    private void write() throws IOException {
+        if (this.file == null) {
+            this.numStoredLines = this.documents.size();
+            return;
+        }
+
+        Files.createDirectories(this.file.getParent());
+        Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            for (BsonDocument document : this.documents.values()) {
+                writer.write(document.toJson(JSON_SETTINGS));
+                writer.newLine();
+            }
+        }
+
+        // The appends must go to the new file, so the channel is opened again on the next write.
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+
+        Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.numStoredLines = this.documents.size();
+    }
+
+    /**
+     * Append the given document versions to the file and force them to disk.
+     *
+     * @param lines The documents to append.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    private void append(List<BsonDocument> lines) {
+        if (this.file == null) {
+            return;
+        }
+
+        try {
+            if (this.channel == null) {
+                Files.createDirectories(this.file.getParent());
+                this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (BsonDocument line : lines) {
+                text.append(line.toJson(JSON_SETTINGS)).append('\n');
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer);
+            }
+
+            this.channel.force(false);
+            this.numStoredLines += lines.size();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("The %s collection cannot be written", this.name), ex);
+        }
+    }
+
+    /**
+     * Compact the file when it holds too many old versions of the documents.
+     *
+     * Note that a failed compaction keeps the current file, which is
+     * compacted on a later write.
+     *
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    private void compactIfNeeded() {
+        if (!this.needsCompaction()) {
+            return;
+        }
+
+        try {
+            this.write();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("The %s collection cannot be compacted", this.name), ex);
+        }
+    }
+
+    /**
+     * Store the given document in memory, replacing the previous version with
+     * the same identifier.
+     *
+     * @param id The document identifier.
+     * @param document The document.
+     */
+    private void put(BsonValue id, BsonDocument document) {
+        BsonDocument previousDocument = this.documents.put(id, document);
+
+        for (EmbeddedIndex index : this.indexes) {
+            if (previousDocument != null) {
+                index.remove(id, previousDocument);
+            }
+
+            index.add(id, document);
+        }
+
+        if (previousDocument == null) {
+            this.positions.put(id, this.nextPosition++);
+        }
+    }
+
+    /**
+     * Remove the document with the given identifier from memory.
+     *
+     * @param id The document identifier.
+     */
+    private void remove(BsonValue id) {
+        BsonDocument previousDocument = this.documents.remove(id);
+        if (previousDocument == null) {
+            return;
+        }
+
+        for (EmbeddedIndex index : this.indexes) {
+            index.remove(id, previousDocument);
+        }
+
+        this.positions.remove(id);
+    }
+
+    /**
+     * Check that the given document does not break any unique index.
+     *
+     * @param id The document identifier.
+     * @param document The document to store.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same key on a unique index.
+     */
+    private void checkUniqueIndexes(BsonValue id, BsonDocument document) throws DuplicatedEntityException {
+        for (EmbeddedIndex index : this.indexes) {
+            BsonArray duplicatedKey = index.findDuplicatedKey(id, document);
+            if (duplicatedKey != null) {
+                String message = String.format("The document cannot be stored on the %s collection: duplicated key %s on the %s index", this.name, duplicatedKey, index.getFields());
+                throw new DuplicatedEntityException(message, null);
+            }
+        }
+    }
+
+    /**
+     * Find the stored documents which may match the given filter, using the
+     * index which narrows it the most.
+     *
+     * @param filter The query filter.
+     * @return The candidate documents, in the stored order.
+     */
+    private List<BsonDocument> findCandidates(BsonDocument filter) {
+        Map<String, EmbeddedIndex.Condition> conditions = EmbeddedIndex.getConditions(filter);
+
+        EmbeddedIndex bestIndex = null;
+        int bestSelectivity = 0;
+        for (EmbeddedIndex index : this.indexes) {
+            int selectivity = index.getSelectivity(conditions);
+            if (selectivity > bestSelectivity) {
+                bestIndex = index;
+                bestSelectivity = selectivity;
+            }
+        }
+
+        Set<BsonValue> ids = bestIndex == null ? null : bestIndex.find(conditions);
+        if (ids == null) {
+            return new ArrayList<>(this.documents.values());
+        }
+
+        List<BsonValue> sortedIds = new ArrayList<>(ids);
+        sortedIds.sort(Comparator.comparing(this.positions::get));
+
+        List<BsonDocument> candidates = new ArrayList<>();
+        for (BsonValue id : sortedIds) {
+            candidates.add(this.documents.get(id));
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Find the stored documents which match the given filter.
+     *
+     * @param filter The query filter.
+     * @return The matching documents, in the stored order.
+     */
+    private List<BsonDocument> findMatching(BsonDocument filter) {
+        List<BsonDocument> matchingDocuments = new ArrayList<>();
+        for (BsonDocument document : this.findCandidates(filter)) {
+            if (EmbeddedQuery.matches(document, filter)) {
+                matchingDocuments.add(document);
+            }
+        }
+
+        return matchingDocuments;
+    }
+
+    /**
+     * Obtain the collection name.
+     *
+     * @return The collection name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Declare an index on the given fields, indexing the stored documents.
+     *
+     * Note that an index which already exists is kept.
+     *
+     * @param isUnique Whether two documents cannot have the same values on
+     * the indexed fields.
+     * @param fields The indexed fields.
+     * @throws DuplicatedEntityException Thrown when the index is unique and
+     * two stored documents have the same values, in which case the index is
+     * not created.
+     */
+    public synchronized void createIndex(boolean isUnique, String... fields) throws DuplicatedEntityException {
+        List<String> indexedFields = Arrays.asList(fields);
+        for (EmbeddedIndex index : this.indexes) {
+            if (index.getFields().equals(indexedFields) && index.isUnique() == isUnique) {
+                return;
+            }
+        }
+
+        EmbeddedIndex index = new EmbeddedIndex(indexedFields, isUnique);
+        for (Map.Entry<BsonValue, BsonDocument> document : this.documents.entrySet()) {
+            index.add(document.getKey(), document.getValue());
+        }
+
+        for (Map.Entry<BsonValue, BsonDocument> document : this.documents.entrySet()) {
+            BsonArray duplicatedKey = index.findDuplicatedKey(document.getKey(), document.getValue());
+            if (duplicatedKey != null) {
+                String message = String.format("The unique index %s cannot be created on the %s collection: duplicated key %s", indexedFields, this.name, duplicatedKey);
+                throw new DuplicatedEntityException(message, null);
+            }
+        }
+
+        this.indexes.add(index);
+    }
+
+    /**
+     * Replace all the documents of the collection, storing them on the file.
+     *
+     * @param replacingDocuments The new documents, which must have an
+     * identifier.
+     * @throws IOException Thrown when the file cannot be written, in which
+     * case the previous documents are kept.
+     */
+    public synchronized void replaceAll(List<BsonDocument> replacingDocuments) throws IOException {
+        Map<BsonValue, BsonDocument> previousDocuments = new LinkedHashMap<>(this.documents);
+
+        this.clear();
+        for (BsonDocument document : replacingDocuments) {
+            this.put(document.get("_id"), document);
+        }
+
+        try {
+            this.write();
+        } catch (IOException ex) {
+            this.clear();
+            for (Map.Entry<BsonValue, BsonDocument> document : previousDocuments.entrySet()) {
+                this.put(document.getKey(), document.getValue());
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Remove all the documents from memory.
+     */
+    private void clear() {
+        this.documents.clear();
+        this.positions.clear();
+        for (EmbeddedIndex index : this.indexes) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Insert the given document.
+     *
+     * @param document The document to insert, which obtains a new identifier
+     * when it has none.
+     * @return The write result.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same identifier or the same key on a unique index.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    public synchronized EmbeddedWriteResult insert(BsonDocument document) throws DuplicatedEntityException {
+        EmbeddedWriteResult result = new EmbeddedWriteResult(0);
+        this.store(result, Collections.singletonList(null), Collections.singletonList(EmbeddedCollection.withId(document.clone(), document.get("_id"))));
+        return result;
+    }
+
+    /**
+     * Create a document with the given identifier as first field followed by
+     * the fields of the given document.
+     *
+     * @param document The document.
+     * @param id The identifier, or null to create a new one.
+     * @return The document with the identifier.
+     */
+    private static BsonDocument withId(BsonDocument document, BsonValue id) {
+        BsonDocument documentWithId = new BsonDocument("_id", id == null ? new BsonObjectId() : id);
+        for (Map.Entry<String, BsonValue> field : document.entrySet()) {
+            if (!field.getKey().equals("_id")) {
+                documentWithId.put(field.getKey(), field.getValue());
+            }
+        }
+
+        return documentWithId;
+    }
+
+    /**
+     * Create the document inserted by an upsert, with the fields the filter
+     * must be equal to.
+     *
+     * @param filter The query filter.
+     * @return The document with the equality fields of the filter.
+     */
+    private static BsonDocument createUpsertDocument(BsonDocument filter) {
+        BsonDocument document = new BsonDocument();
+        for (Map.Entry<String, EmbeddedIndex.Condition> condition : EmbeddedIndex.getConditions(filter).entrySet()) {
+            BsonValue equalValue = condition.getValue().getEqualValue();
+            if (equalValue != null) {
+                EmbeddedUpdate.setValue(document, condition.getKey(), equalValue);
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * Store the given new versions of the documents, which must not break any
+     * unique index.
+     *
+     * @param result The write result, where the stored documents are added.
+     * @param previousDocuments The previous versions of the documents, which
+     * are null for the new ones.
+     * @param newDocuments The new versions of the documents.
+     * @throws DuplicatedEntityException Thrown when a document has the same
+     * key as another one on a unique index.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    private void store(EmbeddedWriteResult result, List<BsonDocument> previousDocuments, List<BsonDocument> newDocuments) throws DuplicatedEntityException {
+        for (int i = 0; i < newDocuments.size(); i++) {
+            BsonValue id = newDocuments.get(i).get("_id");
+            if (previousDocuments.get(i) == null && this.documents.containsKey(id)) {
+                String message = String.format("The document cannot be stored on the %s collection: duplicated identifier %s", this.name, id);
+                throw new DuplicatedEntityException(message, null);
+            }
+
+            this.checkUniqueIndexes(id, newDocuments.get(i));
+        }
+
+        if (newDocuments.isEmpty()) {
+            return;
+        }
+
+        this.append(newDocuments);
+
+        for (int i = 0; i < newDocuments.size(); i++) {
+            BsonDocument newDocument = newDocuments.get(i);
+            BsonValue id = newDocument.get("_id");
+
+            this.put(id, newDocument);
+            result.add(id, previousDocuments.get(i) == null ? null : previousDocuments.get(i).clone(), newDocument.clone());
+        }
+
+        this.compactIfNeeded();
+    }
+
+    /**
+     * Update the documents which match the given filter.
+     *
+     * @param filter The query filter.
+     * @param update The update operators.
+     * @param isMulti Whether all the matching documents are updated, or only
+     * the first one.
+     * @param isUpsert Whether a document is inserted when there is no
+     * matching document.
+     * @return The write result, which only contains the documents that have
+     * changed.
+     * @throws DuplicatedEntityException Thrown when an updated document has
+     * the same key as another one on a unique index, in which case nothing is
+     * updated.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    public synchronized EmbeddedWriteResult update(BsonDocument filter, BsonDocument update, boolean isMulti, boolean isUpsert) throws DuplicatedEntityException {
+        List<BsonDocument> matchingDocuments = this.findMatching(filter);
+        if (!isMulti && matchingDocuments.size() > 1) {
+            matchingDocuments = matchingDocuments.subList(0, 1);
+        }
+
+        EmbeddedWriteResult result = new EmbeddedWriteResult(matchingDocuments.size());
+        List<BsonDocument> previousDocuments = new ArrayList<>();
+        List<BsonDocument> newDocuments = new ArrayList<>();
+
+        if (matchingDocuments.isEmpty() && isUpsert) {
+            BsonDocument insertedDocument = EmbeddedCollection.createUpsertDocument(filter);
+            EmbeddedUpdate.apply(insertedDocument, update, true);
+
+            previousDocuments.add(null);
+            newDocuments.add(EmbeddedCollection.withId(insertedDocument, insertedDocument.get("_id")));
+        }
+
+        for (BsonDocument document : matchingDocuments) {
+            BsonDocument updatedDocument = document.clone();
+            EmbeddedUpdate.apply(updatedDocument, update, false);
+
+            if (!updatedDocument.get("_id").equals(document.get("_id"))) {
+                throw new IllegalArgumentException("The document identifier cannot be updated.");
+            }
+
+            if (!updatedDocument.equals(document)) {
+                previousDocuments.add(document);
+                newDocuments.add(updatedDocument);
+            }
+        }
+
+        this.store(result, previousDocuments, newDocuments);
+        return result;
+    }
+
+    /**
+     * Replace the first document which matches the given filter, keeping its
+     * identifier.
+     *
+     * @param filter The query filter.
+     * @param replacement The new document.
+     * @param isUpsert Whether the document is inserted when there is no
+     * matching document.
+     * @return The write result, which only contains the document if it has
+     * changed.
+     * @throws DuplicatedEntityException Thrown when the new document has the
+     * same key as another one on a unique index.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    public synchronized EmbeddedWriteResult replace(BsonDocument filter, BsonDocument replacement, boolean isUpsert) throws DuplicatedEntityException {
+        List<BsonDocument> matchingDocuments = this.findMatching(filter);
+
+        EmbeddedWriteResult result = new EmbeddedWriteResult(Math.min(matchingDocuments.size(), 1));
+        List<BsonDocument> previousDocuments = new ArrayList<>();
+        List<BsonDocument> newDocuments = new ArrayList<>();
+
+        if (!matchingDocuments.isEmpty()) {
+            BsonDocument document = matchingDocuments.get(0);
+            BsonDocument newDocument = EmbeddedCollection.withId(replacement.clone(), document.get("_id"));
+
+            if (!newDocument.equals(document)) {
+                previousDocuments.add(document);
+                newDocuments.add(newDocument);
+            }
+        } else if (isUpsert) {
+            BsonValue id = replacement.containsKey("_id") ? replacement.get("_id") : EmbeddedCollection.createUpsertDocument(filter).get("_id");
+
+            previousDocuments.add(null);
+            newDocuments.add(EmbeddedCollection.withId(replacement.clone(), id));
+        }
+
+        this.store(result, previousDocuments, newDocuments);
+        return result;
+    }
+
+    /**
+     * Restore the given previous versions of the documents, undoing the
+     * writes done on them.
+     *
+     * @param previousDocuments The previous versions of the documents,
+     * indexed by their identifier, which are null for the documents which did
+     * not exist.
+     * @throws UncheckedIOException Thrown when the file cannot be written.
+     */
+    public synchronized void restore(Map<BsonValue, BsonDocument> previousDocuments) {
+        List<BsonDocument> lines = new ArrayList<>();
+        for (Map.Entry<BsonValue, BsonDocument> previousDocument : previousDocuments.entrySet()) {
+            BsonDocument document = previousDocument.getValue();
+            lines.add(document == null ? new BsonDocument("_id", previousDocument.getKey()).append(REMOVED_FIELD, BsonBoolean.TRUE) : document);
+        }
+
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        this.append(lines);
+
+        for (Map.Entry<BsonValue, BsonDocument> previousDocument : previousDocuments.entrySet()) {
+            if (previousDocument.getValue() == null) {
+                this.remove(previousDocument.getKey());
+            } else {
+                this.put(previousDocument.getKey(), previousDocument.getValue().clone());
+            }
+        }
+    }
+
+    /**
+     * Find the documents which match the given filter.
+     *
+     * @param filter The query filter.
+     * @param projection The fields to include or exclude, or null to obtain
+     * the whole documents.
+     * @param sort The sort criteria, or null to keep the stored order.
+     * @param limit The maximum number of documents to obtain, or 0 to obtain
+     * all of them.
+     * @return A list with copies of the found documents.
+     */
+    public synchronized List<BsonDocument> find(BsonDocument filter, BsonDocument projection, BsonDocument sort, int limit) {
+        List<BsonDocument> foundDocuments = this.findMatching(filter);
+
+        if (sort != null) {
+            foundDocuments.sort(EmbeddedQuery.createComparator(sort));
+        }
+
+        List<BsonDocument> projectedDocuments = new ArrayList<>();
+        for (BsonDocument document : foundDocuments) {
+            if (limit > 0 && projectedDocuments.size() == limit) {
+                break;
+            }
+
+            projectedDocuments.add(EmbeddedQuery.project(document, projection));
+        }
+
+        return projectedDocuments;
+    }
+
+    /**
+     * Count the documents which match the given filter.
+     *
+     * @param filter The query filter.
+     * @param limit The maximum number of documents to count, or 0 to count
+     * all of them.
+     * @return The number of matching documents, up to the limit.
+     */
+    public synchronized int count(BsonDocument filter, int limit) {
+        int numDocuments = 0;
+        for (BsonDocument document : this.findCandidates(filter)) {
+            if (limit > 0 && numDocuments == limit) {
+                break;
+            }
+
+            if (EmbeddedQuery.matches(document, filter)) {
+                numDocuments++;
+            }
+        }
+
+        return numDocuments;
+    }
+
+    /**
+     * Obtain the different values of the given field on the documents which
+     * match the given filter.
+     *
+     * Note that the elements of an array field are obtained as different
+     * values, like on the Mongo database.
+     *
+     * @param field The field name.
+     * @param filter The query filter.
+     * @return A list with the different field values.
+     */
+    public synchronized List<BsonValue> distinct(String field, BsonDocument filter) {
+        Set<BsonValue> values = new LinkedHashSet<>();
+        for (BsonDocument document : this.findMatching(filter)) {
+            BsonValue value = EmbeddedQuery.getValue(document, field);
+            if (value == null) {
+                continue;
+            }
+
+            if (value.isArray()) {
+                values.addAll(value.asArray());
+            } else {
+                values.add(value);
+            }
+        }
+
+        return new ArrayList<>(values);
+    }
+
+    /**
+     * Obtain the number of stored documents.
+     *
+     * @return The number of documents on the collection.
+     */
+    public synchronized int size() {
+        return this.documents.size();
+    }
+
+    /**
+     * Close the file, which is opened again on the next write.
+     *
+     * @throws IOException Thrown when the file cannot be closed.
+     */
+    public synchronized void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package shared.persistence.embedded;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Manages the embedded database, whose collections are stored as files on a
+ * local directory.
+ *
+ * Note that only one embedded database is opened for the whole application,
+ * so all the repositories share the same collections. A database without a
+ * directory is only kept in memory, and it can wait some time on each
+ * operation to behave like a remote database.
+ */
+public class EmbeddedDatabase {
+
+    /**
+     * Embedded database instance.
+     */
+    private static EmbeddedDatabase INSTANCE = null;
+
+    /**
+     * Directory where the collections are stored, or null if they are only
+     * kept in memory.
+     */
+    private final Path directory;
+
+    /**
+     * Time (in milliseconds) waited on each operation.
+     */
+    private final long latency;
+
+    /**
+     * Opened collections, indexed by their name.
+     */
+    private final Map<String, EmbeddedCollection> collections;
+
+    /**
+     * Lock held by the running transaction, so only one transaction is run at
+     * once.
+     */
+    private final ReentrantLock transactionLock;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory where the collections are stored, or
+     * null to only keep them in memory.
+     * @param latency The time (in milliseconds) waited on each operation.
+     */
+    private EmbeddedDatabase(Path directory, long latency) {
+        this.directory = directory;
+        this.latency = latency;
+        this.collections = new HashMap<>();
+        this.transactionLock = new ReentrantLock();
+    }
+
+    /**
+     * Set the embedded database instance stored on the given directory.
+     *
+     * Note that the previous instance, if any, is closed.
+     *
+     * @param directory The directory where the collections are stored.
+     */
+    public static synchronized void setInstance(Path directory) {
+        EmbeddedDatabase.close();
+        INSTANCE = new EmbeddedDatabase(directory, 0);
+    }
+
+    /**
+     * Set an embedded database instance which is only kept in memory, so it
+     * starts empty.
+     *
+     * Note that the previous instance, if any, is closed.
+     *
+     * @param latency The time (in milliseconds) waited on each operation, to
+     * simulate the round trip to a remote database.
+     */
+    public static synchronized void setInMemoryInstance(long latency) {
+        EmbeddedDatabase.close();
+        INSTANCE = new EmbeddedDatabase(null, latency);
+    }
+
+    /**
+     * Get the embedded database instance.
+     *
+     * @return The embedded database used by the system.
+     * @throws NotDefinedDatabaseContextException Thrown when the instance has
+     * not been already created.
+     */
+    public static synchronized EmbeddedDatabase getInstance() throws NotDefinedDatabaseContextException {
+        if (INSTANCE == null) {
+            throw new NotDefinedDatabaseContextException("The embedded database has not been defined.");
+        }
+
+        return INSTANCE;
+    }
+
+    /**
+     * Close the files of all the opened collections.
+     */
+    public static synchronized void close() {
+        if (INSTANCE == null) {
+            return;
+        }
+
+        synchronized (INSTANCE) {
+            for (EmbeddedCollection collection : INSTANCE.collections.values()) {
+                try {
+                    collection.close();
+                } catch (IOException ex) {
+                    String message = String.format("The %s collection cannot be closed", collection.getName());
+                    Logger.getLogger(EmbeddedDatabase.class.getName()).log(Level.WARNING, message, ex);
+                }
+            }
+
+            INSTANCE.collections.clear();
+        }
+
+        INSTANCE = null;
+    }
+
+    /**
+     * Obtain the directory where the collections are stored.
+     *
+     * @return The database directory, otherwise null if the collections are
+     * only kept in memory.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Obtain the collection with the given name, opening it the first time.
+     *
+     * @param name The collection name.
+     * @return The collection.
+     * @throws UncheckedIOException Thrown when the collection file cannot be
+     * read.
+     */
+    public synchronized EmbeddedCollection getCollection(String name) {
+        EmbeddedCollection collection = this.collections.get(name);
+
+        if (collection == null) {
+            try {
+                Path file = this.directory == null ? null : this.directory.resolve(name + ".json");
+                collection = new EmbeddedCollection(name, file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(String.format("The %s collection cannot be read", name), ex);
+            }
+
+            this.collections.put(name, collection);
+        }
+
+        return collection;
+    }
+
+    /**
+     * Wait the latency of the database, if any, before running an operation.
+     */
+    void simulateLatency() {
+        if (this.latency <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(this.latency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Obtain the lock held by the running transaction.
+     *
+     * @return The transaction lock.
+     */
+    ReentrantLock getTransactionLock() {
+        return this.transactionLock;
+    }
+
+}
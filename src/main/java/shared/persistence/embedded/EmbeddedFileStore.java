@@ -0,0 +1,196 @@
+package shared.persistence.embedded;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import shared.persistence.ContentHash;
+import shared.persistence.FileStore;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Stores the files on a directory of the embedded database.
+ *
+ * Each file is stored with its content hash and its extension as file name,
+ * so the same content is only stored once.
+ */
+public class EmbeddedFileStore implements FileStore {
+
+    /**
+     * Name of the directory where the files are stored.
+     */
+    private static final String DIRECTORY_NAME = "files";
+
+    /**
+     * Prefix of the files being written, which are not stored yet.
+     */
+    private static final String PENDING_PREFIX = "pending-";
+
+    /**
+     * Directory where the files are stored.
+     */
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedFileStore() throws NotDefinedDatabaseContextException {
+        this.directory = EmbeddedDatabase.getInstance().getDirectory().resolve(DIRECTORY_NAME);
+    }
+
+    /**
+     * Obtain the extension of the given file.
+     *
+     * @param file The file.
+     * @return The file extension, including the point.
+     */
+    private String getExtension(File file) {
+        String fileName = file.getName();
+        int lastPointIndex = fileName.lastIndexOf(".");
+        return fileName.substring(lastPointIndex);
+    }
+
+    /**
+     * Find the stored file associated with the given content hash.
+     *
+     * @param hash The content hash.
+     * @return The path of the stored file, otherwise null.
+     * @throws IOException Thrown when the directory cannot be read.
+     */
+    private Path findFile(String hash) throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return null;
+        }
+
+        try (DirectoryStream<Path> storedFiles = Files.newDirectoryStream(this.directory, hash + ".*")) {
+            for (Path storedFile : storedFiles) {
+                return storedFile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Store the content read from the given stream, copying it to a pending
+     * file which is then renamed after its content hash, or discarded if it
+     * was already stored.
+     *
+     * @param content The stream with the file content.
+     * @param extension The file extension, including the point.
+     * @return The content hash of the stored file.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    private String write(InputStream content, String extension) throws IOException {
+        Files.createDirectories(this.directory);
+
+        MessageDigest digest = ContentHash.createDigest();
+        Path pendingFile = Files.createTempFile(this.directory, PENDING_PREFIX, extension);
+
+        try {
+            try (InputStream digestContent = new DigestInputStream(content, digest)) {
+                Files.copy(digestContent, pendingFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String hash = ContentHash.from(digest);
+            if (this.findFile(hash) == null) {
+                Files.move(pendingFile, this.directory.resolve(hash + extension), StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            return hash;
+        } finally {
+            Files.deleteIfExists(pendingFile);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        if (!Files.isDirectory(this.directory)) {
+            return 0;
+        }
+
+        int count = 0;
+        try (DirectoryStream<Path> storedFiles = Files.newDirectoryStream(this.directory)) {
+            for (Path storedFile : storedFiles) {
+                if (!storedFile.getFileName().toString().startsWith(PENDING_PREFIX)) {
+                    count++;
+                }
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(EmbeddedFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String store(File file) {
+        if (file == null) {
+            return null;
+        }
+
+        try (InputStream content = Files.newInputStream(file.toPath())) {
+            return this.write(content, this.getExtension(file));
+        } catch (IOException ex) {
+            Logger.getLogger(EmbeddedFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String store(InputStream content, String extension) {
+        try {
+            return this.write(content, extension);
+        } catch (IOException ex) {
+            Logger.getLogger(EmbeddedFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File load(String hash) {
+        try {
+            Path storedFile = this.findFile(hash);
+            if (storedFile == null) {
+                return null;
+            }
+
+            String fileName = storedFile.getFileName().toString();
+            Path temp = Files.createTempFile(null, fileName.substring(hash.length()));
+            File tmpFile = temp.toFile();
+            tmpFile.deleteOnExit();
+
+            Files.copy(storedFile, temp, StandardCopyOption.REPLACE_EXISTING);
+            return tmpFile;
+        } catch (IOException ex) {
+            Logger.getLogger(EmbeddedFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,490 @@
+package shared.persistence.embedded;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonMaxKey;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+
+/**
+ * Ordered index on some fields of an embedded collection, which obtains the
+ * documents that may match a filter without scanning the whole collection.
+ *
+ * The index keys are compared following the Mongo sort order, so a filter
+ * with equality conditions on the first indexed fields, and optionally a
+ * range on the next one, is answered from contiguous ranges of keys. Like on
+ * the Mongo database, a document is indexed by each element of an array
+ * field, and a missing field is indexed as null.
+ */
+class EmbeddedIndex {
+
+    /**
+     * Conditions of a filter on a single field, which can be answered by an
+     * index.
+     */
+    static class Condition {
+
+        /**
+         * Value the field must be equal to, otherwise null.
+         */
+        private BsonValue equalValue;
+
+        /**
+         * Values the field must be equal to one of, otherwise null.
+         */
+        private List<BsonValue> values;
+
+        /**
+         * Lower bound of the field value, otherwise null.
+         */
+        private BsonValue lowerBound;
+
+        /**
+         * Whether the lower bound is included.
+         */
+        private boolean isLowerBoundIncluded;
+
+        /**
+         * Upper bound of the field value, otherwise null.
+         */
+        private BsonValue upperBound;
+
+        /**
+         * Whether the upper bound is included.
+         */
+        private boolean isUpperBoundIncluded;
+
+        /**
+         * Add the given field condition.
+         *
+         * Note that only the first condition of each kind is kept, so the
+         * documents found with the index may still not match the filter.
+         *
+         * @param condition The field condition, which is either a value or a
+         * document of query operators.
+         */
+        private void add(BsonValue condition) {
+            boolean isOperatorCondition = condition.isDocument() && !condition.asDocument().isEmpty() && condition.asDocument().getFirstKey().startsWith("$");
+            if (!isOperatorCondition) {
+                this.addEquality(condition);
+                return;
+            }
+
+            for (Map.Entry<String, BsonValue> operator : condition.asDocument().entrySet()) {
+                BsonValue operand = operator.getValue();
+
+                switch (operator.getKey()) {
+                    case "$eq":
+                        this.addEquality(operand);
+                        break;
+                    case "$in":
+                        if (this.values == null) {
+                            this.values = new ArrayList<>(operand.asArray().getValues());
+                        }
+                        break;
+                    case "$gt":
+                    case "$gte":
+                        if (this.lowerBound == null) {
+                            this.lowerBound = operand;
+                            this.isLowerBoundIncluded = operator.getKey().equals("$gte");
+                        }
+                        break;
+                    case "$lt":
+                    case "$lte":
+                        if (this.upperBound == null) {
+                            this.upperBound = operand;
+                            this.isUpperBoundIncluded = operator.getKey().equals("$lte");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Add an equality condition with the given value.
+         *
+         * @param value The value the field must be equal to.
+         */
+        private void addEquality(BsonValue value) {
+            if (this.values == null) {
+                this.equalValue = value;
+                this.values = Collections.singletonList(value);
+            }
+        }
+
+        /**
+         * Obtain the value the field must be equal to.
+         *
+         * @return The value of the equality condition, otherwise null.
+         */
+        BsonValue getEqualValue() {
+            return this.equalValue;
+        }
+
+        /**
+         * Check whether the condition restricts the field to some values.
+         *
+         * @return Whether there is an equality condition.
+         */
+        private boolean hasValues() {
+            return this.values != null;
+        }
+
+        /**
+         * Check whether the condition restricts the field to a range.
+         *
+         * @return Whether there is a lower or an upper bound.
+         */
+        private boolean hasRange() {
+            return this.lowerBound != null || this.upperBound != null;
+        }
+
+    }
+
+    /**
+     * Maximum number of key prefixes looked up for a filter, above which the
+     * index is not used.
+     */
+    private static final int MAX_LOOKUPS = 256;
+
+    /**
+     * Order of the index keys, which compares their values one by one and
+     * places a key before the longer ones it is a prefix of.
+     */
+    private static final Comparator<List<BsonValue>> KEY_ORDER = (key, other) -> {
+        for (int i = 0; i < Math.min(key.size(), other.size()); i++) {
+            int comparison = EmbeddedQuery.compare(key.get(i), other.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return Integer.compare(key.size(), other.size());
+    };
+
+    /**
+     * Indexed fields.
+     */
+    private final List<String> fields;
+
+    /**
+     * Whether two documents cannot have the same key.
+     */
+    private final boolean isUnique;
+
+    /**
+     * Identifiers of the indexed documents, indexed by their key.
+     */
+    private final NavigableMap<List<BsonValue>, Set<BsonValue>> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param fields The indexed fields.
+     * @param isUnique Whether two documents cannot have the same key.
+     */
+    EmbeddedIndex(List<String> fields, boolean isUnique) {
+        this.fields = new ArrayList<>(fields);
+        this.isUnique = isUnique;
+        this.entries = new TreeMap<>(KEY_ORDER);
+    }
+
+    /**
+     * Obtain the conditions of the given filter which can be answered by an
+     * index, which are the ones on its fields or on the fields of its $and
+     * subfilters.
+     *
+     * @param filter The query filter.
+     * @return The conditions, indexed by the field name.
+     */
+    static Map<String, Condition> getConditions(BsonDocument filter) {
+        Map<String, Condition> conditions = new HashMap<>();
+        EmbeddedIndex.collectConditions(filter, conditions);
+        return conditions;
+    }
+
+    /**
+     * Add the conditions of the given filter to the given ones.
+     *
+     * @param filter The query filter.
+     * @param conditions The conditions, indexed by the field name.
+     */
+    private static void collectConditions(BsonDocument filter, Map<String, Condition> conditions) {
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            String key = entry.getKey();
+
+            if (key.equals("$and")) {
+                for (BsonValue subfilter : entry.getValue().asArray()) {
+                    EmbeddedIndex.collectConditions(subfilter.asDocument(), conditions);
+                }
+            } else if (!key.startsWith("$")) {
+                conditions.computeIfAbsent(key, field -> new Condition()).add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Obtain the indexed fields.
+     *
+     * @return The field names.
+     */
+    List<String> getFields() {
+        return this.fields;
+    }
+
+    /**
+     * Check whether two documents cannot have the same key.
+     *
+     * @return Whether the index is unique.
+     */
+    boolean isUnique() {
+        return this.isUnique;
+    }
+
+    /**
+     * Create a key made of the given one followed by the given value.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new key.
+     */
+    private static List<BsonValue> append(List<BsonValue> key, BsonValue value) {
+        List<BsonValue> newKey = new ArrayList<>(key);
+        newKey.add(value);
+        return newKey;
+    }
+
+    /**
+     * Obtain the values under which a document is indexed for the given
+     * field value.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @return The null value for a missing field, the array and its elements
+     * for an array, otherwise the value itself.
+     */
+    private static List<BsonValue> getIndexedValues(BsonValue value) {
+        if (value == null) {
+            return Collections.singletonList(BsonNull.VALUE);
+        }
+
+        if (!value.isArray()) {
+            return Collections.singletonList(value);
+        }
+
+        List<BsonValue> indexedValues = new ArrayList<>(value.asArray().getValues());
+        indexedValues.add(value);
+        return indexedValues;
+    }
+
+    /**
+     * Obtain the keys under which the given document is indexed.
+     *
+     * @param document The document.
+     * @return The different keys, one for each combination of the indexed
+     * values of its fields.
+     */
+    private Set<List<BsonValue>> getKeys(BsonDocument document) {
+        List<List<BsonValue>> keys = Collections.singletonList(new ArrayList<>());
+
+        for (String field : this.fields) {
+            List<List<BsonValue>> longerKeys = new ArrayList<>();
+            for (List<BsonValue> key : keys) {
+                for (BsonValue value : EmbeddedIndex.getIndexedValues(EmbeddedQuery.getValue(document, field))) {
+                    longerKeys.add(EmbeddedIndex.append(key, value));
+                }
+            }
+
+            keys = longerKeys;
+        }
+
+        Set<List<BsonValue>> differentKeys = new TreeSet<>(KEY_ORDER);
+        differentKeys.addAll(keys);
+        return differentKeys;
+    }
+
+    /**
+     * Add the given document to the index.
+     *
+     * @param id The document identifier.
+     * @param document The document.
+     */
+    void add(BsonValue id, BsonDocument document) {
+        for (List<BsonValue> key : this.getKeys(document)) {
+            this.entries.computeIfAbsent(key, indexedKey -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Remove the given document from the index.
+     *
+     * @param id The document identifier.
+     * @param document The document, as it was indexed.
+     */
+    void remove(BsonValue id, BsonDocument document) {
+        for (List<BsonValue> key : this.getKeys(document)) {
+            Set<BsonValue> ids = this.entries.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    this.entries.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find another document with the same key as the given one on a unique
+     * index.
+     *
+     * @param id The document identifier.
+     * @param document The document.
+     * @return The key of the other document, otherwise null when there is no
+     * other document or the index is not unique.
+     */
+    BsonArray findDuplicatedKey(BsonValue id, BsonDocument document) {
+        if (!this.isUnique) {
+            return null;
+        }
+
+        for (List<BsonValue> key : this.getKeys(document)) {
+            Set<BsonValue> ids = this.entries.get(key);
+            if (ids != null && (ids.size() > 1 || !ids.contains(id))) {
+                return new BsonArray(key);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the number of leading indexed fields whose values are fixed by
+     * the given conditions.
+     *
+     * @param conditions The filter conditions, indexed by the field name.
+     * @return The number of fields with an equality condition before the
+     * first one without it.
+     */
+    private int getNumEqualFields(Map<String, Condition> conditions) {
+        int numEqualFields = 0;
+        for (String field : this.fields) {
+            Condition condition = conditions.get(field);
+            if (condition == null || !condition.hasValues()) {
+                break;
+            }
+
+            numEqualFields++;
+        }
+
+        return numEqualFields;
+    }
+
+    /**
+     * Obtain how much the given conditions are narrowed by the index.
+     *
+     * @param conditions The filter conditions, indexed by the field name.
+     * @return Zero when the index cannot be used, otherwise a greater number
+     * the more fields are used.
+     */
+    int getSelectivity(Map<String, Condition> conditions) {
+        int numEqualFields = this.getNumEqualFields(conditions);
+
+        // A unique index whose fields are all fixed finds one document at most.
+        if (this.isUnique && numEqualFields == this.fields.size()) {
+            return Integer.MAX_VALUE;
+        }
+
+        boolean hasRange = false;
+        if (numEqualFields < this.fields.size()) {
+            Condition condition = conditions.get(this.fields.get(numEqualFields));
+            hasRange = condition != null && condition.hasRange();
+        }
+
+        return numEqualFields * 2 + (hasRange ? 1 : 0);
+    }
+
+    /**
+     * Find the documents which may match the given conditions.
+     *
+     * @param conditions The filter conditions, indexed by the field name.
+     * @return The identifiers of the documents whose key matches the
+     * conditions on the indexed fields, otherwise null if there are too many
+     * keys to look up.
+     */
+    Set<BsonValue> find(Map<String, Condition> conditions) {
+        int numEqualFields = this.getNumEqualFields(conditions);
+
+        List<List<BsonValue>> prefixes = Collections.singletonList(new ArrayList<>());
+        for (int i = 0; i < numEqualFields; i++) {
+            List<List<BsonValue>> longerPrefixes = new ArrayList<>();
+            for (List<BsonValue> prefix : prefixes) {
+                for (BsonValue value : conditions.get(this.fields.get(i)).values) {
+                    longerPrefixes.add(EmbeddedIndex.append(prefix, value));
+                }
+            }
+
+            if (longerPrefixes.size() > MAX_LOOKUPS) {
+                return null;
+            }
+
+            prefixes = longerPrefixes;
+        }
+
+        Condition range = numEqualFields < this.fields.size() ? conditions.get(this.fields.get(numEqualFields)) : null;
+
+        Set<BsonValue> ids = new LinkedHashSet<>();
+        for (List<BsonValue> prefix : prefixes) {
+            // A key followed by the max key is placed after all the longer keys which start with it.
+            List<BsonValue> fromKey = prefix;
+            boolean isFromKeyIncluded = true;
+            if (range != null && range.lowerBound != null) {
+                fromKey = EmbeddedIndex.append(prefix, range.lowerBound);
+                if (!range.isLowerBoundIncluded) {
+                    fromKey = EmbeddedIndex.append(fromKey, new BsonMaxKey());
+                    isFromKeyIncluded = false;
+                }
+            }
+
+            List<BsonValue> toKey = EmbeddedIndex.append(prefix, new BsonMaxKey());
+            boolean isToKeyIncluded = true;
+            if (range != null && range.upperBound != null) {
+                toKey = EmbeddedIndex.append(prefix, range.upperBound);
+                if (range.isUpperBoundIncluded) {
+                    toKey = EmbeddedIndex.append(toKey, new BsonMaxKey());
+                } else {
+                    isToKeyIncluded = false;
+                }
+            }
+
+            if (KEY_ORDER.compare(fromKey, toKey) > 0) {
+                continue;
+            }
+
+            for (Set<BsonValue> keyIds : this.entries.subMap(fromKey, isFromKeyIncluded, toKey, isToKeyIncluded).values()) {
+                ids.addAll(keyIds);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Remove all the documents from the index.
+     */
+    void clear() {
+        this.entries.clear();
+    }
+
+}
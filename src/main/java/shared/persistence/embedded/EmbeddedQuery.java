@@ -0,0 +1,525 @@
+package shared.persistence.embedded;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * Evaluates the Mongo query documents on the embedded collections, so the
+ * filters, projections and sorts built for the Mongo database obtain the same
+ * documents from an embedded collection.
+ *
+ * Only the query operators used by the repositories are supported: $and,
+ * $or, $nor, $eq, $ne, $gt, $gte, $lt, $lte, $in, $nin, $exists, $not and
+ * $regex. Like on the Mongo database, a condition on an array field matches
+ * when any of its elements matches, and values of different types are only
+ * equal when both are numbers with the same value.
+ */
+public class EmbeddedQuery {
+
+    /**
+     * Obtain the value of the given field.
+     *
+     * @param document The document.
+     * @param path The field name, which may be a dotted path to an embedded
+     * document field.
+     * @return The field value, otherwise null.
+     */
+    public static BsonValue getValue(BsonDocument document, String path) {
+        BsonValue value = document;
+        for (String field : path.split("\\.")) {
+            if (value == null || !value.isDocument()) {
+                return null;
+            }
+
+            value = value.asDocument().get(field);
+        }
+
+        return value;
+    }
+
+    /**
+     * Check whether the given document matches the given filter.
+     *
+     * @param document The document.
+     * @param filter The query filter.
+     * @return Whether the document matches all the filter conditions.
+     * @throws IllegalArgumentException Thrown when the filter uses a query
+     * operator which is not supported.
+     */
+    public static boolean matches(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+            String key = condition.getKey();
+            BsonValue operand = condition.getValue();
+
+            switch (key) {
+                case "$and":
+                    for (BsonValue subfilter : operand.asArray()) {
+                        if (!EmbeddedQuery.matches(document, subfilter.asDocument())) {
+                            return false;
+                        }
+                    }
+                    break;
+                case "$or":
+                    if (!EmbeddedQuery.matchesAny(document, operand.asArray())) {
+                        return false;
+                    }
+                    break;
+                case "$nor":
+                    if (EmbeddedQuery.matchesAny(document, operand.asArray())) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (key.startsWith("$")) {
+                        throw new IllegalArgumentException(String.format("The %s query operator is not supported.", key));
+                    }
+
+                    if (!EmbeddedQuery.matchesCondition(EmbeddedQuery.getValue(document, key), operand)) {
+                        return false;
+                    }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether the given document matches any of the given filters.
+     *
+     * @param document The document.
+     * @param filters The query filters.
+     * @return Whether the document matches at least one filter.
+     */
+    private static boolean matchesAny(BsonDocument document, BsonArray filters) {
+        for (BsonValue filter : filters) {
+            if (EmbeddedQuery.matches(document, filter.asDocument())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether the given condition is made of query operators.
+     *
+     * @param condition The field condition.
+     * @return Whether the condition is a document whose keys are operators.
+     */
+    private static boolean isOperatorCondition(BsonValue condition) {
+        return condition.isDocument() && !condition.asDocument().isEmpty() && condition.asDocument().getFirstKey().startsWith("$");
+    }
+
+    /**
+     * Check whether the given field value matches the given condition.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param condition The field condition, which is either a value or a
+     * document of query operators.
+     * @return Whether the value matches the condition.
+     */
+    private static boolean matchesCondition(BsonValue value, BsonValue condition) {
+        if (!EmbeddedQuery.isOperatorCondition(condition)) {
+            return EmbeddedQuery.isEqual(value, condition);
+        }
+
+        BsonDocument operators = condition.asDocument();
+        for (Map.Entry<String, BsonValue> operator : operators.entrySet()) {
+            if (!EmbeddedQuery.matchesOperator(value, operator.getKey(), operator.getValue(), operators)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether the given field value matches the given query operator.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param operator The query operator.
+     * @param operand The operator operand.
+     * @param operators All the operators of the condition, used to obtain the
+     * regular expression options.
+     * @return Whether the value matches the operator.
+     */
+    private static boolean matchesOperator(BsonValue value, String operator, BsonValue operand, BsonDocument operators) {
+        switch (operator) {
+            case "$eq":
+                return EmbeddedQuery.isEqual(value, operand);
+            case "$ne":
+                return !EmbeddedQuery.isEqual(value, operand);
+            case "$gt":
+                return EmbeddedQuery.anyElement(value, element -> EmbeddedQuery.isComparable(element, operand) && EmbeddedQuery.compare(element, operand) > 0);
+            case "$gte":
+                return EmbeddedQuery.anyElement(value, element -> EmbeddedQuery.isComparable(element, operand) && EmbeddedQuery.compare(element, operand) >= 0);
+            case "$lt":
+                return EmbeddedQuery.anyElement(value, element -> EmbeddedQuery.isComparable(element, operand) && EmbeddedQuery.compare(element, operand) < 0);
+            case "$lte":
+                return EmbeddedQuery.anyElement(value, element -> EmbeddedQuery.isComparable(element, operand) && EmbeddedQuery.compare(element, operand) <= 0);
+            case "$in":
+                return EmbeddedQuery.isEqualToAny(value, operand.asArray());
+            case "$nin":
+                return !EmbeddedQuery.isEqualToAny(value, operand.asArray());
+            case "$exists":
+                return (value != null) == operand.asBoolean().getValue();
+            case "$not":
+                return !EmbeddedQuery.matchesCondition(value, operand);
+            case "$regex":
+                return EmbeddedQuery.matchesRegularExpression(value, operand, operators.get("$options"));
+            case "$options":
+                return true;
+            default:
+                throw new IllegalArgumentException(String.format("The %s query operator is not supported.", operator));
+        }
+    }
+
+    /**
+     * Check whether the given value, or any of its elements if it is an
+     * array, matches the given predicate.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param predicate The predicate.
+     * @return Whether the value or any element matches.
+     */
+    private static boolean anyElement(BsonValue value, Predicate<BsonValue> predicate) {
+        if (value == null) {
+            return false;
+        }
+
+        if (value.isArray()) {
+            for (BsonValue element : value.asArray()) {
+                if (predicate.test(element)) {
+                    return true;
+                }
+            }
+        }
+
+        return predicate.test(value);
+    }
+
+    /**
+     * Check whether the given field value is equal to the given operand.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param operand The operand.
+     * @return Whether the value, or any of its elements, is equal to the
+     * operand. A null operand matches the fields which do not exist.
+     */
+    private static boolean isEqual(BsonValue value, BsonValue operand) {
+        if (operand.isNull()) {
+            return value == null || value.isNull();
+        }
+
+        return EmbeddedQuery.anyElement(value, element -> EmbeddedQuery.isSameValue(element, operand));
+    }
+
+    /**
+     * Check whether the given field value is equal to any of the given
+     * operands.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param operands The operands.
+     * @return Whether the value is equal to any operand.
+     */
+    private static boolean isEqualToAny(BsonValue value, BsonArray operands) {
+        for (BsonValue operand : operands) {
+            if (EmbeddedQuery.isEqual(value, operand)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether the given values are the same.
+     *
+     * @param value The first value.
+     * @param other The second value.
+     * @return Whether both values are equal, comparing the numbers by their
+     * value regardless of their type.
+     */
+    private static boolean isSameValue(BsonValue value, BsonValue other) {
+        if (value.isNumber() && other.isNumber()) {
+            return EmbeddedQuery.compare(value, other) == 0;
+        }
+
+        return value.equals(other);
+    }
+
+    /**
+     * Check whether the given field value matches the given regular
+     * expression.
+     *
+     * @param value The field value, or null if the field does not exist.
+     * @param expression The regular expression, either as a string or as a
+     * BSON regular expression.
+     * @param options The regular expression options, or null.
+     * @return Whether the value is a string which matches the expression.
+     */
+    private static boolean matchesRegularExpression(BsonValue value, BsonValue expression, BsonValue options) {
+        String pattern = expression.isRegularExpression() ? expression.asRegularExpression().getPattern() : expression.asString().getValue();
+        String flags = expression.isRegularExpression() ? expression.asRegularExpression().getOptions() : "";
+        if (options != null) {
+            flags += options.asString().getValue();
+        }
+
+        Pattern regularExpression = Pattern.compile(pattern, flags.contains("i") ? Pattern.CASE_INSENSITIVE : 0);
+        return EmbeddedQuery.anyElement(value, element -> element.isString() && regularExpression.matcher(element.asString().getValue()).find());
+    }
+
+    /**
+     * Obtain the rank of the given value type on the Mongo sort order.
+     *
+     * @param value The value, or null if the field does not exist.
+     * @return The type rank.
+     */
+    private static int getTypeRank(BsonValue value) {
+        if (value == null || value.isNull()) {
+            return 0;
+        }
+
+        if (value.isNumber() || value.isDecimal128()) {
+            return 1;
+        }
+
+        switch (value.getBsonType()) {
+            case MIN_KEY:
+                return -1;
+            case STRING:
+            case SYMBOL:
+                return 2;
+            case DOCUMENT:
+                return 3;
+            case ARRAY:
+                return 4;
+            case BINARY:
+                return 5;
+            case OBJECT_ID:
+                return 6;
+            case BOOLEAN:
+                return 7;
+            case DATE_TIME:
+                return 8;
+            case TIMESTAMP:
+                return 9;
+            case MAX_KEY:
+                return 11;
+            default:
+                return 10;
+        }
+    }
+
+    /**
+     * Check whether the given values can be compared by the range operators,
+     * which only match values of the same type.
+     *
+     * @param value The field value.
+     * @param operand The operand.
+     * @return Whether both values have the same type rank.
+     */
+    private static boolean isComparable(BsonValue value, BsonValue operand) {
+        return EmbeddedQuery.getTypeRank(value) == EmbeddedQuery.getTypeRank(operand);
+    }
+
+    /**
+     * Compare the given values following the Mongo sort order.
+     *
+     * @param value The first value, or null if the field does not exist.
+     * @param other The second value, or null if the field does not exist.
+     * @return A negative number, zero or a positive number when the first
+     * value is lower, equal or greater than the second one.
+     */
+    public static int compare(BsonValue value, BsonValue other) {
+        int typeComparison = Integer.compare(EmbeddedQuery.getTypeRank(value), EmbeddedQuery.getTypeRank(other));
+        if (typeComparison != 0 || value == null || value.isNull()) {
+            return typeComparison;
+        }
+
+        if (value.isNumber() || value.isDecimal128()) {
+            return EmbeddedQuery.toDecimal(value).compareTo(EmbeddedQuery.toDecimal(other));
+        }
+
+        switch (value.getBsonType()) {
+            case STRING:
+                return value.asString().getValue().compareTo(other.asString().getValue());
+            case OBJECT_ID:
+                return value.asObjectId().getValue().compareTo(other.asObjectId().getValue());
+            case BOOLEAN:
+                return Boolean.compare(value.asBoolean().getValue(), other.asBoolean().getValue());
+            case DATE_TIME:
+                return Long.compare(value.asDateTime().getValue(), other.asDateTime().getValue());
+            case TIMESTAMP:
+                return value.asTimestamp().compareTo(other.asTimestamp());
+            default:
+                return value.equals(other) ? 0 : value.toString().compareTo(other.toString());
+        }
+    }
+
+    /**
+     * Obtain the exact value of the given number.
+     *
+     * @param value The number, of any numeric type.
+     * @return The number as a decimal.
+     */
+    static BigDecimal toDecimal(BsonValue value) {
+        if (value.isDecimal128()) {
+            return value.asDecimal128().getValue().bigDecimalValue();
+        }
+
+        if (value.isDouble()) {
+            return BigDecimal.valueOf(value.asDouble().getValue());
+        }
+
+        return BigDecimal.valueOf(value.asNumber().longValue());
+    }
+
+    /**
+     * Create the comparator which sorts the documents by the given sort
+     * criteria.
+     *
+     * @param sort The sort criteria, with 1 for ascending fields and -1 for
+     * descending ones, or null to keep the stored order.
+     * @return The comparator.
+     */
+    public static Comparator<BsonDocument> createComparator(BsonDocument sort) {
+        return (document, other) -> {
+            if (sort == null) {
+                return 0;
+            }
+
+            for (Map.Entry<String, BsonValue> field : sort.entrySet()) {
+                int direction = field.getValue().isNumber() && field.getValue().asNumber().intValue() < 0 ? -1 : 1;
+                int comparison = EmbeddedQuery.compare(EmbeddedQuery.getValue(document, field.getKey()), EmbeddedQuery.getValue(other, field.getKey()));
+                if (comparison != 0) {
+                    return direction * comparison;
+                }
+            }
+
+            return 0;
+        };
+    }
+
+    /**
+     * Obtain the fields of the given document specified on the projection.
+     *
+     * @param document The document.
+     * @param projection The fields to include or exclude, which may be dotted
+     * paths to embedded document fields, or null to obtain the whole document.
+     * @return A new document with the projected fields.
+     * @throws IllegalArgumentException Thrown when the projection uses an
+     * expression which is not supported.
+     */
+    public static BsonDocument project(BsonDocument document, BsonDocument projection) {
+        if (projection == null || projection.isEmpty()) {
+            return document.clone();
+        }
+
+        List<String> includedFields = new ArrayList<>();
+        List<String> excludedFields = new ArrayList<>();
+        for (Map.Entry<String, BsonValue> field : projection.entrySet()) {
+            BsonValue value = field.getValue();
+            boolean isIncluded;
+            if (value.isBoolean()) {
+                isIncluded = value.asBoolean().getValue();
+            } else if (value.isNumber()) {
+                isIncluded = value.asNumber().intValue() != 0;
+            } else {
+                throw new IllegalArgumentException(String.format("The projection of the %s field is not supported.", field.getKey()));
+            }
+
+            (isIncluded ? includedFields : excludedFields).add(field.getKey());
+        }
+
+        BsonDocument projectedDocument;
+        if (includedFields.isEmpty() || (includedFields.size() == 1 && includedFields.contains("_id"))) {
+            projectedDocument = document.clone();
+            for (String field : excludedFields) {
+                EmbeddedQuery.exclude(projectedDocument, field);
+            }
+        } else {
+            projectedDocument = new BsonDocument();
+            if (!excludedFields.contains("_id") && document.containsKey("_id")) {
+                projectedDocument.put("_id", document.get("_id"));
+            }
+
+            for (String field : includedFields) {
+                EmbeddedQuery.include(document, projectedDocument, field);
+            }
+        }
+
+        return projectedDocument;
+    }
+
+    /**
+     * Copy the value of the given field to the projected document, creating
+     * the embedded documents of its path.
+     *
+     * Note that the paths through arrays are not supported, so their values
+     * are left out.
+     *
+     * @param document The document.
+     * @param projectedDocument The projected document.
+     * @param path The field name, which may be a dotted path to an embedded
+     * document field.
+     */
+    private static void include(BsonDocument document, BsonDocument projectedDocument, String path) {
+        int separatorIndex = path.indexOf('.');
+        String field = separatorIndex < 0 ? path : path.substring(0, separatorIndex);
+        BsonValue value = document.get(field);
+        if (value == null) {
+            return;
+        }
+
+        if (separatorIndex < 0) {
+            projectedDocument.put(field, value.isDocument() || value.isArray() ? EmbeddedQuery.cloneValue(value) : value);
+            return;
+        }
+
+        if (!value.isDocument()) {
+            return;
+        }
+
+        BsonValue projectedValue = projectedDocument.get(field);
+        BsonDocument projectedEmbeddedDocument = projectedValue != null && projectedValue.isDocument() ? projectedValue.asDocument() : new BsonDocument();
+        projectedDocument.put(field, projectedEmbeddedDocument);
+
+        EmbeddedQuery.include(value.asDocument(), projectedEmbeddedDocument, path.substring(separatorIndex + 1));
+    }
+
+    /**
+     * Remove the given field from the projected document.
+     *
+     * @param projectedDocument The projected document.
+     * @param path The field name, which may be a dotted path to an embedded
+     * document field.
+     */
+    private static void exclude(BsonDocument projectedDocument, String path) {
+        int separatorIndex = path.lastIndexOf('.');
+        BsonValue parent = separatorIndex < 0 ? projectedDocument : EmbeddedQuery.getValue(projectedDocument, path.substring(0, separatorIndex));
+        if (parent != null && parent.isDocument()) {
+            parent.asDocument().remove(path.substring(separatorIndex + 1));
+        }
+    }
+
+    /**
+     * Copy the given embedded document or array, so it can be modified
+     * without changing the stored document.
+     *
+     * @param value The document or array.
+     * @return The copy.
+     */
+    private static BsonValue cloneValue(BsonValue value) {
+        return value.isDocument() ? value.asDocument().clone() : value.asArray().clone();
+    }
+
+}
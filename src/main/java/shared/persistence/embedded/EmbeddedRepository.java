@@ -0,0 +1,760 @@
+package shared.persistence.embedded;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import shared.application.TrackedEntity;
+import shared.persistence.FileStore;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Represents the embedded repository for any entity.
+ *
+ * It offers the same operations as the Mongo repository, built with the same
+ * filters, updates and codecs, so each entity repository can be implemented
+ * on both databases alike.
+ */
+public abstract class EmbeddedRepository {
+
+    /**
+     * Writes of the transaction being run on the current thread, if any.
+     */
+    private static final ThreadLocal<List<Map.Entry<EmbeddedCollection, EmbeddedWriteResult>>> TRANSACTION_WRITES = new ThreadLocal<>();
+
+    /**
+     * Write on a collection, which may break a unique index.
+     */
+    @FunctionalInterface
+    private interface Write {
+
+        /**
+         * Run the write.
+         *
+         * @return The write result.
+         * @throws DuplicatedEntityException Thrown when a written document has
+         * the same key as another one on a unique index.
+         */
+        public EmbeddedWriteResult run() throws DuplicatedEntityException;
+
+    }
+
+    /**
+     * Embedded database instance.
+     */
+    private final EmbeddedDatabase database;
+
+    /**
+     * Embedded collection associated with the repository.
+     */
+    private final EmbeddedCollection collection;
+
+    /**
+     * Codecs used to encode the queries and to decode the documents.
+     */
+    private final CodecRegistry codecRegistry;
+
+    /**
+     * Constructor.
+     *
+     * @param collectionName The collection name which the repository will
+     * check.
+     * @param codecs The codecs used to decode the collection documents
+     * straight into entities.
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    protected EmbeddedRepository(String collectionName, Codec<?>... codecs) throws NotDefinedDatabaseContextException {
+        this.database = EmbeddedDatabase.getInstance();
+        this.collection = this.database.getCollection(collectionName);
+        this.codecRegistry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codecs), MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    /**
+     * Declare an index needed by the queries of the repository.
+     *
+     * A unique index which cannot be created, because some documents have the
+     * same values, is created as a non-unique one.
+     *
+     * @param isUnique Whether two documents cannot have the same values on
+     * the indexed fields.
+     * @param fields The indexed fields.
+     */
+    protected void createIndex(boolean isUnique, String... fields) {
+        try {
+            this.collection.createIndex(isUnique, fields);
+        } catch (DuplicatedEntityException ex) {
+            Logger.getLogger(EmbeddedRepository.class.getName()).log(Level.WARNING, ex.getMessage(), ex);
+
+            try {
+                this.collection.createIndex(false, fields);
+            } catch (DuplicatedEntityException unexpectedEx) {
+                throw new IllegalStateException(unexpectedEx);
+            }
+        }
+    }
+
+    /**
+     * Obtain the name of the associated embedded collection.
+     *
+     * @return The collection name.
+     */
+    protected String getCollectionName() {
+        return this.collection.getName();
+    }
+
+    /**
+     * Obtain the embedded collection with the given name, for example to
+     * aggregate it.
+     *
+     * @param collectionName The collection name.
+     * @return The collection.
+     */
+    protected EmbeddedCollection getCollection(String collectionName) {
+        return this.database.getCollection(collectionName);
+    }
+
+    /**
+     * Convert the given query document, like a filter or a sort, into a BSON
+     * document which can be evaluated on the collection.
+     *
+     * @param bson The query document, or null.
+     * @return The BSON document, otherwise null.
+     */
+    protected BsonDocument toBsonDocument(Bson bson) {
+        return bson == null ? null : bson.toBsonDocument(BsonDocument.class, this.codecRegistry);
+    }
+
+    /**
+     * Decode the given documents into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param documents The read documents.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the decoded documents.
+     */
+    protected <TResult> ArrayList<TResult> decode(List<BsonDocument> documents, Class<TResult> type) {
+        Codec<TResult> codec = this.codecRegistry.get(type);
+
+        ArrayList<TResult> results = new ArrayList<>();
+        for (BsonDocument document : documents) {
+            results.add(codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Decode the given values into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param values The read values.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the decoded values.
+     */
+    private <TResult> ArrayList<TResult> decodeValues(List<BsonValue> values, Class<TResult> type) {
+        Codec<TResult> codec = this.codecRegistry.get(type);
+
+        ArrayList<TResult> results = new ArrayList<>();
+        for (BsonValue value : values) {
+            BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument("value", value));
+            reader.readStartDocument();
+            reader.readName();
+            results.add(codec.decode(reader, DecoderContext.builder().build()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Count all the documents on the collection.
+     *
+     * @return The number of documents on the collection.
+     */
+    protected int count() {
+        this.database.simulateLatency();
+
+        return this.collection.size();
+    }
+
+    /**
+     * Count all the documents on the collection which match with the given
+     * filters.
+     *
+     * @param filters The filters.
+     * @return The number of documents on the collection which match the filters.
+     */
+    protected int count(Bson filters) {
+        this.database.simulateLatency();
+
+        return this.collection.count(this.toBsonDocument(filters), 0);
+    }
+
+    /**
+     * Count the documents on the collection which match with the given
+     * filters, stopping when the limit is reached.
+     *
+     * @param filters The filters.
+     * @param limit The maximum number of documents to count.
+     * @return The number of documents which match the filters, up to the
+     * limit.
+     */
+    protected int count(Bson filters, int limit) {
+        this.database.simulateLatency();
+
+        return this.collection.count(this.toBsonDocument(filters), limit);
+    }
+
+    /**
+     * Check whether there is any document on the collection which matches
+     * with the given filters.
+     *
+     * @param filters The filters.
+     * @return true if there is a matching document, otherwise false.
+     */
+    protected boolean exists(Bson filters) {
+        return this.count(filters, 1) > 0;
+    }
+
+    /**
+     * Obtain the numeric value of a document field, which may be of any
+     * numeric type.
+     *
+     * @param document The document.
+     * @param field The field name.
+     * @return The numeric value, or zero if the field does not exist.
+     */
+    protected Number getNumber(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    /**
+     * Create a list with the different values that the given field has.
+     *
+     * @param <TResult> The results type.
+     * @param field The field name.
+     * @param type The class of the field type.
+     * @return A list with the different field values.
+     */
+    protected <TResult extends Object> ArrayList<TResult> distinct(String field, Class<TResult> type) {
+        return this.distinct(field, new BsonDocument(), type);
+    }
+
+    /**
+     * Create a list with the different values that the given field has based on
+     * the received filters.
+     *
+     * @param <TResult> The results type.
+     * @param field The field name.
+     * @param filters The filters.
+     * @param type The class of the field type.
+     * @return A list with the different field values.
+     */
+    protected <TResult extends Object> ArrayList<TResult> distinct(String field, Bson filters, Class<TResult> type) {
+        this.database.simulateLatency();
+
+        return this.decodeValues(this.collection.distinct(field, this.toBsonDocument(filters)), type);
+    }
+
+    /**
+     * Find all the documents on the collection.
+     *
+     * @return A list with all found documents on the collection.
+     */
+    protected ArrayList<Document> find() {
+        return this.find(Document.class);
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters.
+     *
+     * @param filters The query filters.
+     * @return A list with all found documents on the collection.
+     */
+    protected ArrayList<Document> find(Bson filters) {
+        return this.find(filters, Document.class);
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * only obtaining the fields specified on the projection.
+     *
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @return A list with all found documents on the collection.
+     */
+    protected ArrayList<Document> find(Bson filters, Bson projection) {
+        return this.find(filters, projection, Document.class);
+    }
+
+    /**
+     * Find all the documents on the collection, decoding them into the given
+     * type.
+     *
+     * @param <TResult> The results type.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Class<TResult> type) {
+        return this.find(new BsonDocument(), type);
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * decoding them into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Class<TResult> type) {
+        return this.find(filters, null, type);
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * only obtaining the fields specified on the projection and decoding them
+     * into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Bson projection, Class<TResult> type) {
+        return this.find(filters, projection, null, 0, type);
+    }
+
+    /**
+     * Find the first documents on the collection which match the given
+     * filters, in the given order, decoding them into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param sort The sort criteria.
+     * @param limit The maximum number of documents to obtain.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Bson projection, Bson sort, int limit, Class<TResult> type) {
+        this.database.simulateLatency();
+
+        List<BsonDocument> documents = this.collection.find(this.toBsonDocument(filters), this.toBsonDocument(projection), this.toBsonDocument(sort), limit);
+        return this.decode(documents, type);
+    }
+
+    /**
+     * Stream all the documents on the collection which match the given
+     * filters, in the given order, handing them out in batches.
+     *
+     * Note that the documents are decoded batch by batch, so only one batch of
+     * entities is kept in memory at once.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param sort The sort criteria.
+     * @param batchSize The number of documents on each batch.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @param batchConsumer Function which receives each batch of documents.
+     */
+    protected <TResult> void stream(Bson filters, Bson projection, Bson sort, int batchSize, Class<TResult> type, Consumer<List<TResult>> batchConsumer) {
+        this.database.simulateLatency();
+
+        List<BsonDocument> documents = this.collection.find(this.toBsonDocument(filters), this.toBsonDocument(projection), this.toBsonDocument(sort), 0);
+
+        for (int start = 0; start < documents.size(); start += batchSize) {
+            List<BsonDocument> batch = documents.subList(start, Math.min(start + batchSize, documents.size()));
+            batchConsumer.accept(this.decode(batch, type));
+        }
+    }
+
+    /**
+     * Obtain the sort criteria used by the paginated listings.
+     *
+     * @return A sort indicating that the documents must be sorted by date and
+     * then by code.
+     */
+    protected Bson getPageSort() {
+        return Sorts.ascending("date", "code");
+    }
+
+    /**
+     * Obtain the filter for the documents placed after the given key on the
+     * paginated listings.
+     *
+     * @param afterKey The key of the last obtained document.
+     * @return A filter indicating that the query must only obtain the
+     * documents whose date and code are greater than the given key ones.
+     */
+    protected Bson getAfterKeyFilter(PageKey afterKey) {
+        return afterKey.getAfterFilter();
+    }
+
+    /**
+     * Find the file of the first document which matches the given filters.
+     *
+     * @param filters The query filters.
+     * @return The found file, otherwise null.
+     */
+    protected File findFile(Bson filters) {
+        this.database.simulateLatency();
+
+        List<BsonDocument> documents = this.collection.find(this.toBsonDocument(filters), this.toBsonDocument(Projections.include("fileHash")), null, 1);
+        if (documents.isEmpty() || !documents.get(0).isString("fileHash")) {
+            return null;
+        }
+
+        try {
+            FileStore fileStore = RepositoryProvider.get(FileStore.class);
+            return fileStore.load(documents.get(0).getString("fileHash").getValue());
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "File cannot be obtained because the database has not been found", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Store the given file on the file store.
+     *
+     * @param file The file to store.
+     * @return The content hash of the stored file, otherwise null.
+     */
+    protected String storeFile(File file) {
+        try {
+            FileStore fileStore = RepositoryProvider.get(FileStore.class);
+            return fileStore.store(file);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = EmbeddedRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "File cannot be stored because the database has not been found", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Record the given write on the transaction being run on the current
+     * thread, if any, so it can be undone.
+     *
+     * Note that the latency of the database is waited, as done before each
+     * read.
+     *
+     * @param result The write result.
+     * @return The same write result.
+     */
+    private EmbeddedWriteResult record(EmbeddedWriteResult result) {
+        this.database.simulateLatency();
+
+        List<Map.Entry<EmbeddedCollection, EmbeddedWriteResult>> transactionWrites = TRANSACTION_WRITES.get();
+        if (transactionWrites != null) {
+            transactionWrites.add(new AbstractMap.SimpleImmutableEntry<>(this.collection, result));
+        }
+
+        return result;
+    }
+
+    /**
+     * Run the given write, which is not expected to break a unique index.
+     *
+     * @param write The write.
+     * @return The write result.
+     * @throws IllegalStateException Thrown when a written document has the
+     * same key as another one on a unique index.
+     */
+    private EmbeddedWriteResult write(Write write) {
+        try {
+            return this.record(write.run());
+        } catch (DuplicatedEntityException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Insert the given document to the associated embedded collection.
+     *
+     * @param document The document to insert.
+     */
+    protected void insertOne(Document document) {
+        this.write(() -> this.collection.insert(this.toBsonDocument(document)));
+    }
+
+    /**
+     * Insert the given document to the associated embedded collection, which
+     * must not break any unique index.
+     *
+     * @param document The document to insert.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same value for a unique index.
+     */
+    protected void insertUniqueOne(Document document) throws DuplicatedEntityException {
+        this.record(this.collection.insert(this.toBsonDocument(document)));
+    }
+
+    /**
+     * Replaces the document which matches the filters.
+     *
+     * @param filters The query filters.
+     * @param document The document to update.
+     * @return Whether the document has been updated or not.
+     */
+    protected boolean replaceOne(Bson filters, Document document) {
+        EmbeddedWriteResult result = this.write(() -> this.collection.replace(this.toBsonDocument(filters), this.toBsonDocument(document), false));
+        return result.getModifiedCount() == 1;
+    }
+
+    /**
+     * Updates the document which matches the filters.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @return Whether the document has been updated or not.
+     */
+    protected boolean updateOne(Bson filters, Bson update) {
+        EmbeddedWriteResult result = this.write(() -> this.collection.update(this.toBsonDocument(filters), this.toBsonDocument(update), false, false));
+        return result.getModifiedCount() == 1;
+    }
+
+    /**
+     * Updates the document which matches the filters, inserting it when there
+     * is no matching document.
+     *
+     * @param filters The query filters, whose equality fields are set on the
+     * inserted document.
+     * @param update The update to apply.
+     */
+    protected void updateOrInsertOne(Bson filters, Bson update) {
+        this.write(() -> this.collection.update(this.toBsonDocument(filters), this.toBsonDocument(update), false, true));
+    }
+
+    /**
+     * Updates all the documents which match the filters in a single
+     * operation.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @return The number of documents which match the filters.
+     */
+    protected int updateMany(Bson filters, Bson update) {
+        EmbeddedWriteResult result = this.write(() -> this.collection.update(this.toBsonDocument(filters), this.toBsonDocument(update), true, false));
+        return result.getMatchedCount();
+    }
+
+    /**
+     * Updates the document which matches the filters and obtains it in a
+     * single atomic operation.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @param options The options, which indicate whether the document is
+     * obtained before or after the update.
+     * @return The found document, otherwise null.
+     */
+    protected Document findOneAndUpdate(Bson filters, Bson update, FindOneAndUpdateOptions options) {
+        EmbeddedWriteResult result = this.write(() -> this.collection.update(this.toBsonDocument(filters), this.toBsonDocument(update), false, options.isUpsert()));
+
+        if (!result.getWrittenDocuments().isEmpty()) {
+            BsonValue id = result.getWrittenDocuments().keySet().iterator().next();
+            BsonDocument document = options.getReturnDocument() == ReturnDocument.AFTER ? result.getWrittenDocuments().get(id) : result.getPreviousDocuments().get(id);
+            return document == null ? null : this.decode(Collections.singletonList(document), Document.class).get(0);
+        }
+
+        // The matching document has not changed, so it is the same before and after the update.
+        ArrayList<Document> foundDocuments = this.find(filters, null, null, 1, Document.class);
+        return foundDocuments.isEmpty() ? null : foundDocuments.get(0);
+    }
+
+    /**
+     * Updates the document which matches the filters with the changes done on
+     * the given entity.
+     *
+     * Note that only the changed attributes are set on the stored document.
+     * When the entity has no tracked changes, for example because it has been
+     * created from scratch, the whole document is replaced.
+     *
+     * @param <A> The entity attributes type.
+     * @param filters The query filters.
+     * @param entity The entity to update.
+     * @param attributeUpdate Function which obtains the update for a changed
+     * attribute.
+     * @param document Function which creates the whole document.
+     * @return Whether the document has been updated or not.
+     */
+    protected <A extends Enum<A>> boolean updateChanges(Bson filters, TrackedEntity<A> entity, Function<A, Bson> attributeUpdate, Supplier<Document> document) {
+        Set<A> changedAttributes = entity.getChangedAttributes();
+
+        boolean isUpdated;
+        if (changedAttributes.isEmpty()) {
+            isUpdated = this.replaceOne(filters, document.get());
+        } else {
+            List<Bson> updates = new ArrayList<>();
+            for (A attribute : changedAttributes) {
+                updates.add(attributeUpdate.apply(attribute));
+            }
+
+            isUpdated = this.updateOne(filters, Updates.combine(updates));
+        }
+
+        if (isUpdated) {
+            entity.clearChanges();
+        }
+
+        return isUpdated;
+    }
+
+    /**
+     * Updates the document which matches the filters with the changes done on
+     * the given entity, which must not break any unique index.
+     *
+     * @param <A> The entity attributes type.
+     * @param filters The query filters.
+     * @param entity The entity to update.
+     * @param attributeUpdate Function which obtains the update for a changed
+     * attribute.
+     * @param document Function which creates the whole document.
+     * @return Whether the document has been updated or not.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same value for a unique index.
+     */
+    protected <A extends Enum<A>> boolean updateUniqueChanges(Bson filters, TrackedEntity<A> entity, Function<A, Bson> attributeUpdate, Supplier<Document> document) throws DuplicatedEntityException {
+        try {
+            return this.updateChanges(filters, entity, attributeUpdate, document);
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof DuplicatedEntityException) {
+                throw (DuplicatedEntityException) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Upserts the document which matches the filters.
+     *
+     * @param filters The query filters.
+     * @param document The document to update.
+     * @return Whether the document has been upserted or not.
+     */
+    protected boolean upsertOne(Bson filters, Document document) {
+        EmbeddedWriteResult result = this.write(() -> this.collection.replace(this.toBsonDocument(filters), this.toBsonDocument(document), true));
+
+        boolean hasBeenInserted = result.getUpsertedId() != null;
+        boolean hasBeenModified = result.getModifiedCount() == 1;
+
+        return hasBeenInserted || hasBeenModified;
+    }
+
+    /**
+     * Replace all the documents of the associated embedded collection, for
+     * example to rebuild it from another one.
+     *
+     * Note that the replacement is not undone when a transaction fails.
+     *
+     * @param documents The new documents, which obtain a new identifier.
+     * @throws UncheckedIOException Thrown when the collection file cannot be
+     * written, in which case the previous documents are kept.
+     */
+    protected void replaceAll(List<Document> documents) {
+        List<BsonDocument> replacingDocuments = new ArrayList<>();
+        for (Document document : documents) {
+            BsonDocument replacingDocument = new BsonDocument("_id", new BsonObjectId());
+            replacingDocument.putAll(this.toBsonDocument(document));
+            replacingDocuments.add(replacingDocument);
+        }
+
+        try {
+            this.collection.replaceAll(replacingDocuments);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(String.format("The %s collection cannot be written", this.getCollectionName()), ex);
+        }
+    }
+
+    /**
+     * Run the given operations inside a transaction.
+     *
+     * Only one transaction is run at once, and the writes done by the
+     * repositories on the current thread while the operations are running
+     * are undone unless the operations succeed. Nested calls join the running
+     * transaction.
+     *
+     * @param operations The operations to run, which indicate whether they
+     * have succeeded or not.
+     * @return Whether the transaction has been committed or not.
+     */
+    protected boolean inTransaction(Supplier<Boolean> operations) {
+        if (TRANSACTION_WRITES.get() != null) {
+            return operations.get();
+        }
+
+        List<Map.Entry<EmbeddedCollection, EmbeddedWriteResult>> transactionWrites = new ArrayList<>();
+        ReentrantLock transactionLock = this.database.getTransactionLock();
+        transactionLock.lock();
+
+        boolean isSuccessful = false;
+        try {
+            TRANSACTION_WRITES.set(transactionWrites);
+            isSuccessful = operations.get();
+            return isSuccessful;
+        } catch (RuntimeException ex) {
+            String className = EmbeddedRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Transaction not committed", ex);
+            return false;
+        } finally {
+            TRANSACTION_WRITES.remove();
+
+            try {
+                if (!isSuccessful) {
+                    // The writes are undone from the last one, so each document gets its version before the transaction.
+                    for (int i = transactionWrites.size() - 1; i >= 0; i--) {
+                        Map.Entry<EmbeddedCollection, EmbeddedWriteResult> write = transactionWrites.get(i);
+                        write.getKey().restore(write.getValue().getPreviousDocuments());
+                    }
+                }
+            } finally {
+                transactionLock.unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package shared.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.SequenceRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Interacts with the counters collection on the embedded database.
+ *
+ * Each sequence is named after the collection whose codes it generates, and
+ * it is initialized with the greatest code stored on that collection.
+ */
+public class EmbeddedSequenceRepository extends EmbeddedRepository implements SequenceRepository {
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedSequenceRepository() throws NotDefinedDatabaseContextException {
+        super("counters");
+    }
+
+    /**
+     * Obtain the filter for the sequence name.
+     *
+     * @param sequence The sequence name.
+     * @return A filter indicating that the query must only obtain the counter
+     * of the given sequence.
+     */
+    private Bson getSequenceFilter(String sequence) {
+        return Filters.eq("_id", sequence);
+    }
+
+    /**
+     * Obtain the greatest code stored on the collection associated with the
+     * given sequence.
+     *
+     * @param sequence The sequence name.
+     * @return The greatest code, otherwise 0 if the collection is empty.
+     */
+    private int findLastCode(String sequence) {
+        BsonDocument projection = super.toBsonDocument(Projections.include("code"));
+        BsonDocument sort = super.toBsonDocument(Sorts.descending("code"));
+        List<BsonDocument> lastDocuments = super.getCollection(sequence).find(new BsonDocument(), projection, sort, 1);
+
+        return lastDocuments.isEmpty() ? 0 : lastDocuments.get(0).getInt32("code").getValue();
+    }
+
+    /**
+     * Create the counter for the given sequence if it does not exist.
+     *
+     * Note that another thread may create it at the same time, in which case
+     * its counter is kept.
+     *
+     * @param sequence The sequence name.
+     */
+    private void initialize(String sequence) {
+        Document counter = new Document("_id", sequence).append("value", this.findLastCode(sequence));
+
+        try {
+            super.insertUniqueOne(counter);
+        } catch (DuplicatedEntityException ex) {
+            // The counter has already been created.
+        }
+    }
+
+    /**
+     * Increment the counter of the given sequence.
+     *
+     * @param sequence The sequence name.
+     * @param blockSize The increment.
+     * @return The counter after the increment, otherwise null if the counter
+     * does not exist.
+     */
+    private Document increment(String sequence, int blockSize) {
+        Bson sequenceFilter = this.getSequenceFilter(sequence);
+        Bson increment = Updates.inc("value", blockSize);
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+
+        return super.findOneAndUpdate(sequenceFilter, increment, options);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int reserve(String sequence, int blockSize) {
+        Document counter = this.increment(sequence, blockSize);
+
+        if (counter == null) {
+            this.initialize(sequence);
+            counter = this.increment(sequence, blockSize);
+        }
+
+        return counter.getInteger("value");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int current(String sequence) {
+        Bson sequenceFilter = this.getSequenceFilter(sequence);
+        ArrayList<Document> foundCounters = super.find(sequenceFilter);
+
+        if (foundCounters.isEmpty()) {
+            return this.findLastCode(sequence);
+        }
+
+        return foundCounters.get(0).getInteger("value");
+    }
+
+}
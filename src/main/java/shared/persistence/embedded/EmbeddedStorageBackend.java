@@ -0,0 +1,61 @@
+package shared.persistence.embedded;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import shared.persistence.StorageBackend;
+
+/**
+ * Storage on an embedded database kept on the local disk, for the
+ * installations which run on a single station.
+ *
+ * It does not need any connection, so the documents are read from memory and
+ * each write is only forced to the local disk.
+ */
+public class EmbeddedStorageBackend implements StorageBackend {
+
+    /**
+     * Directory where the embedded databases are stored.
+     */
+    private static final Path DATABASES_DIRECTORY = Paths.get(System.getProperty("user.home"), ".fgen", "embedded");
+
+    /**
+     * Directory where the collections of the database are stored.
+     */
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param dbName The database name, which names its directory.
+     */
+    public EmbeddedStorageBackend(String dbName) {
+        this.directory = DATABASES_DIRECTORY.resolve(dbName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+        EmbeddedDatabase.setInstance(this.directory);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the embedded database does not run any background task, since
+     * the indexes are built when each collection is opened.
+     */
+    @Override
+    public void startBackgroundTasks() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        EmbeddedDatabase.close();
+    }
+
+}
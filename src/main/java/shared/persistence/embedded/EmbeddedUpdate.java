@@ -0,0 +1,137 @@
+package shared.persistence.embedded;
+
+import java.util.Map;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+
+/**
+ * Applies the Mongo update documents on the documents of the embedded
+ * collections.
+ *
+ * Only the update operators used by the repositories are supported: $set,
+ * $unset, $inc and $setOnInsert.
+ */
+public class EmbeddedUpdate {
+
+    /**
+     * Apply the given update on the given document.
+     *
+     * @param document The document, which is modified.
+     * @param update The update operators.
+     * @param isInsert Whether the document is being inserted by an upsert, so
+     * the $setOnInsert operator is applied.
+     * @throws IllegalArgumentException Thrown when the update uses an update
+     * operator which is not supported.
+     */
+    public static void apply(BsonDocument document, BsonDocument update, boolean isInsert) {
+        for (Map.Entry<String, BsonValue> operator : update.entrySet()) {
+            BsonDocument fields = operator.getValue().asDocument();
+
+            for (Map.Entry<String, BsonValue> field : fields.entrySet()) {
+                String path = field.getKey();
+                BsonValue operand = field.getValue();
+
+                switch (operator.getKey()) {
+                    case "$set":
+                        EmbeddedUpdate.setValue(document, path, operand);
+                        break;
+                    case "$setOnInsert":
+                        if (isInsert) {
+                            EmbeddedUpdate.setValue(document, path, operand);
+                        }
+                        break;
+                    case "$unset":
+                        EmbeddedUpdate.removeValue(document, path);
+                        break;
+                    case "$inc":
+                        EmbeddedUpdate.setValue(document, path, EmbeddedUpdate.add(EmbeddedQuery.getValue(document, path), operand));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("The %s update operator is not supported.", operator.getKey()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the value of the given field, creating the embedded documents of the
+     * path which do not exist.
+     *
+     * @param document The document.
+     * @param path The field name, which may be a dotted path to an embedded
+     * document field.
+     * @param value The new value.
+     */
+    public static void setValue(BsonDocument document, String path, BsonValue value) {
+        String[] fields = path.split("\\.");
+
+        BsonDocument parent = document;
+        for (int i = 0; i < fields.length - 1; i++) {
+            BsonValue child = parent.get(fields[i]);
+            if (child == null || !child.isDocument()) {
+                child = new BsonDocument();
+                parent.put(fields[i], child);
+            }
+
+            parent = child.asDocument();
+        }
+
+        parent.put(fields[fields.length - 1], value);
+    }
+
+    /**
+     * Remove the given field.
+     *
+     * @param document The document.
+     * @param path The field name, which may be a dotted path to an embedded
+     * document field.
+     */
+    private static void removeValue(BsonDocument document, String path) {
+        int lastPointIndex = path.lastIndexOf('.');
+        BsonValue parent = lastPointIndex < 0 ? document : EmbeddedQuery.getValue(document, path.substring(0, lastPointIndex));
+
+        if (parent != null && parent.isDocument()) {
+            parent.asDocument().remove(path.substring(lastPointIndex + 1));
+        }
+    }
+
+    /**
+     * Add the given numbers, keeping the widest type like the Mongo database.
+     *
+     * @param value The current field value, or null if the field does not
+     * exist.
+     * @param increment The increment.
+     * @return The sum, or the increment if the field does not exist.
+     * @throws IllegalArgumentException Thrown when the field is not a number.
+     */
+    private static BsonValue add(BsonValue value, BsonValue increment) {
+        if (value == null) {
+            return increment;
+        }
+
+        if (!value.isNumber() && !value.isDecimal128()) {
+            throw new IllegalArgumentException("Only numeric fields can be incremented.");
+        }
+
+        if (value.isDecimal128() || increment.isDecimal128()) {
+            return new BsonDecimal128(new Decimal128(EmbeddedQuery.toDecimal(value).add(EmbeddedQuery.toDecimal(increment))));
+        }
+
+        if (value.isDouble() || increment.isDouble()) {
+            return new BsonDouble(value.asNumber().doubleValue() + increment.asNumber().doubleValue());
+        }
+
+        long sum = value.asNumber().longValue() + increment.asNumber().longValue();
+        if (value.isInt32() && increment.isInt32() && sum == (int) sum) {
+            return new BsonInt32((int) sum);
+        }
+
+        return new BsonInt64(sum);
+    }
+
+}
@@ -0,0 +1,111 @@
+package shared.persistence.embedded;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * Result of a write done on an embedded collection.
+ *
+ * Besides the counts, it keeps the written documents along with their
+ * previous versions, so the write can be undone when a transaction fails.
+ */
+public class EmbeddedWriteResult {
+
+    /**
+     * Number of documents which matched the write filter.
+     */
+    private final int matchedCount;
+
+    /**
+     * Previous versions of the written documents, indexed by their
+     * identifier, which are null for the inserted documents.
+     */
+    private final Map<BsonValue, BsonDocument> previousDocuments;
+
+    /**
+     * Written documents, indexed by their identifier.
+     */
+    private final Map<BsonValue, BsonDocument> writtenDocuments;
+
+    /**
+     * Constructor.
+     *
+     * @param matchedCount The number of documents which matched the write
+     * filter.
+     */
+    EmbeddedWriteResult(int matchedCount) {
+        this.matchedCount = matchedCount;
+        this.previousDocuments = new LinkedHashMap<>();
+        this.writtenDocuments = new LinkedHashMap<>();
+    }
+
+    /**
+     * Record that the given document has been written.
+     *
+     * @param id The document identifier.
+     * @param previousDocument The previous version of the document, or null
+     * if it has been inserted.
+     * @param writtenDocument The written document.
+     */
+    void add(BsonValue id, BsonDocument previousDocument, BsonDocument writtenDocument) {
+        this.previousDocuments.put(id, previousDocument);
+        this.writtenDocuments.put(id, writtenDocument);
+    }
+
+    /**
+     * Obtain the number of documents which matched the write filter.
+     *
+     * @return The number of matched documents.
+     */
+    public int getMatchedCount() {
+        return this.matchedCount;
+    }
+
+    /**
+     * Obtain the number of documents which have been changed, excluding the
+     * inserted ones.
+     *
+     * @return The number of modified documents.
+     */
+    public int getModifiedCount() {
+        return this.getUpsertedId() == null ? this.writtenDocuments.size() : this.writtenDocuments.size() - 1;
+    }
+
+    /**
+     * Obtain the identifier of the document inserted by an upsert.
+     *
+     * @return The identifier of the inserted document, otherwise null.
+     */
+    public BsonValue getUpsertedId() {
+        for (Map.Entry<BsonValue, BsonDocument> previousDocument : this.previousDocuments.entrySet()) {
+            if (previousDocument.getValue() == null) {
+                return previousDocument.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the previous versions of the written documents.
+     *
+     * @return The previous documents, indexed by their identifier, which are
+     * null for the inserted documents.
+     */
+    public Map<BsonValue, BsonDocument> getPreviousDocuments() {
+        return Collections.unmodifiableMap(this.previousDocuments);
+    }
+
+    /**
+     * Obtain the written documents.
+     *
+     * @return The written documents, indexed by their identifier.
+     */
+    public Map<BsonValue, BsonDocument> getWrittenDocuments() {
+        return Collections.unmodifiableMap(this.writtenDocuments);
+    }
+
+}
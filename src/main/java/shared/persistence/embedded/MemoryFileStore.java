@@ -0,0 +1,167 @@
+package shared.persistence.embedded;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import shared.persistence.ContentHash;
+import shared.persistence.FileStore;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Keeps the files in memory, for the embedded databases which are only kept
+ * in memory.
+ *
+ * Each file is kept with its content hash as key, so the same content is only
+ * kept once.
+ */
+public class MemoryFileStore implements FileStore {
+
+    /**
+     * Size (in bytes) of the buffer used to read the files.
+     */
+    private static final int BUFFER_SIZE_BYTES = 8192;
+
+    /**
+     * Embedded database, used to wait its latency.
+     */
+    private final EmbeddedDatabase database;
+
+    /**
+     * Content of the stored files, indexed by their content hash.
+     */
+    private final Map<String, byte[]> contents;
+
+    /**
+     * Extension of the stored files, indexed by their content hash.
+     */
+    private final Map<String, String> extensions;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public MemoryFileStore() throws NotDefinedDatabaseContextException {
+        this.database = EmbeddedDatabase.getInstance();
+        this.contents = new ConcurrentHashMap<>();
+        this.extensions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtain the extension of the given file.
+     *
+     * @param file The file.
+     * @return The file extension, including the point.
+     */
+    private String getExtension(File file) {
+        String fileName = file.getName();
+        int lastPointIndex = fileName.lastIndexOf(".");
+        return fileName.substring(lastPointIndex);
+    }
+
+    /**
+     * Keep the content read from the given stream.
+     *
+     * @param content The stream with the file content.
+     * @param extension The file extension, including the point.
+     * @return The content hash of the stored file.
+     * @throws IOException Thrown when the content cannot be read.
+     */
+    private String write(InputStream content, String extension) throws IOException {
+        this.database.simulateLatency();
+
+        MessageDigest digest = ContentHash.createDigest();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (InputStream digestContent = new DigestInputStream(content, digest)) {
+            byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+            int numReadBytes;
+            while ((numReadBytes = digestContent.read(buffer)) != -1) {
+                bytes.write(buffer, 0, numReadBytes);
+            }
+        }
+
+        String hash = ContentHash.from(digest);
+        this.extensions.putIfAbsent(hash, extension);
+        this.contents.putIfAbsent(hash, bytes.toByteArray());
+
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return this.contents.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String store(File file) {
+        if (file == null) {
+            return null;
+        }
+
+        try (InputStream content = Files.newInputStream(file.toPath())) {
+            return this.write(content, this.getExtension(file));
+        } catch (IOException ex) {
+            Logger.getLogger(MemoryFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String store(InputStream content, String extension) {
+        try {
+            return this.write(content, extension);
+        } catch (IOException ex) {
+            Logger.getLogger(MemoryFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public File load(String hash) {
+        this.database.simulateLatency();
+
+        byte[] content = this.contents.get(hash);
+        if (content == null) {
+            return null;
+        }
+
+        try {
+            Path temp = Files.createTempFile(null, this.extensions.get(hash));
+            File tmpFile = temp.toFile();
+            tmpFile.deleteOnExit();
+
+            Files.write(temp, content);
+            return tmpFile;
+        } catch (IOException ex) {
+            Logger.getLogger(MemoryFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+}
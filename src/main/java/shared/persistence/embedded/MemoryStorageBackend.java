@@ -0,0 +1,55 @@
+package shared.persistence.embedded;
+
+import shared.persistence.StorageBackend;
+
+/**
+ * Storage on an embedded database which is only kept in memory, so it starts
+ * empty and it is lost when the application finishes.
+ *
+ * It is meant to measure the application without the cost of a real storage,
+ * optionally waiting some time on each operation to simulate the round trip
+ * to a remote database.
+ */
+public class MemoryStorageBackend implements StorageBackend {
+
+    /**
+     * Time (in milliseconds) waited on each operation.
+     */
+    private final long latency;
+
+    /**
+     * Constructor.
+     *
+     * @param latency The time (in milliseconds) waited on each operation, or 0
+     * to not wait.
+     */
+    public MemoryStorageBackend(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+        EmbeddedDatabase.setInMemoryInstance(this.latency);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the memory storage does not run any background task.
+     */
+    @Override
+    public void startBackgroundTasks() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        EmbeddedDatabase.close();
+    }
+
+}
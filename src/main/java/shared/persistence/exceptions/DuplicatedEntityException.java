@@ -0,0 +1,19 @@
+package shared.persistence.exceptions;
+
+/**
+ * Defines the exception to show when an entity cannot be stored because
+ * another one has the same unique key.
+ */
+public class DuplicatedEntityException extends Exception {
+
+    /**
+     * Constructor.
+     *
+     * @param message Duplicated entity exception message.
+     * @param cause The error returned by the database.
+     */
+    public DuplicatedEntityException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
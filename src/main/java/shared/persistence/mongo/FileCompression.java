@@ -0,0 +1,15 @@
+package shared.persistence.mongo;
+
+/**
+ * Represents all the available compression algorithms for the stored files.
+ */
+public enum FileCompression {
+    /**
+     * The file content is stored as it is.
+     */
+    NONE,
+    /**
+     * The file content is compressed with the deflate algorithm.
+     */
+    DEFLATE,
+}
@@ -0,0 +1,241 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.ChangeNotifier;
+import shared.persistence.EntityCache;
+import shared.persistence.Repository;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Watches the changes done on the database by any running application, so
+ * the cached entities are invalidated and the listeners registered on the
+ * change notifier are called with the key of each changed entity.
+ *
+ * It is intended to be run in the background while the application is
+ * running. The changes are read from a change stream, which is resumed from
+ * the last received change after a disconnection. Change streams are only
+ * available on replica sets, so nothing is watched on a standalone server; a
+ * local single-node replica set is enough to use it.
+ */
+public class MongoChangeWatcher implements Runnable {
+
+    /**
+     * Watched collections.
+     */
+    private static final List<String> WATCHED_COLLECTIONS = Arrays.asList("customer", "product", "container", "subtotal", "variable", "deliverynote", "invoice");
+
+    /**
+     * Error code returned when change streams are not supported by the
+     * server.
+     */
+    private static final int NOT_REPLICA_SET_ERROR = 40573;
+
+    /**
+     * Error code returned when the change stream cannot be resumed, because
+     * the last received change is no longer available.
+     */
+    private static final int HISTORY_LOST_ERROR = 286;
+
+    /**
+     * Milliseconds to wait before watching again after a failure.
+     */
+    private static final long RETRY_DELAY = 5000;
+
+    /**
+     * Repository models of the watched collections, indexed by the collection
+     * name.
+     */
+    private final Map<String, Class<? extends Repository>> models;
+
+    /**
+     * Token of the last received change, used to resume the change stream.
+     */
+    private BsonDocument resumeToken;
+
+    /**
+     * Constructor.
+     */
+    public MongoChangeWatcher() {
+        this.models = new HashMap<>();
+        this.resumeToken = null;
+    }
+
+    /**
+     * Obtain the repository models of the watched collections.
+     *
+     * @return A map with the repository models, indexed by the collection
+     * name.
+     */
+    private Map<String, Class<? extends Repository>> getWatchedModels() {
+        Map<String, Class<? extends Repository>> watchedModels = new HashMap<>();
+
+        for (Class<? extends Repository> model : RepositoryProvider.getRegisteredModels()) {
+            try {
+                Repository repository = RepositoryProvider.get(model);
+                if (repository instanceof MongoRepository) {
+                    String collectionName = ((MongoRepository) repository).getCollectionName();
+                    if (WATCHED_COLLECTIONS.contains(collectionName)) {
+                        watchedModels.put(collectionName, model);
+                    }
+                }
+            } catch (NotDefinedDatabaseContextException ex) {
+                String className = MongoChangeWatcher.class.getName();
+                Logger.getLogger(className).log(Level.INFO, "Changes cannot be watched because the database has not been found", ex);
+            }
+        }
+
+        return watchedModels;
+    }
+
+    /**
+     * Obtain the change stream pipeline.
+     *
+     * Note that only the entity keys are kept from the changed documents.
+     *
+     * @return A list with the stages to filter the changes on the watched
+     * collections.
+     */
+    private List<Bson> getPipeline() {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(Filters.in("ns.coll", this.models.keySet())));
+        pipeline.add(Aggregates.project(Projections.include("operationType", "ns", "documentKey", "fullDocument.code", "fullDocument.name")));
+        return pipeline;
+    }
+
+    /**
+     * Obtain the key of the changed entity.
+     *
+     * @param change The received change.
+     * @return The entity key, otherwise null.
+     */
+    private Object getKey(ChangeStreamDocument<Document> change) {
+        Document fullDocument = change.getFullDocument();
+        if (fullDocument == null) {
+            return null;
+        }
+
+        Object code = fullDocument.get("code");
+        return code != null ? code : fullDocument.get("name");
+    }
+
+    /**
+     * Invalidate the cached entities and notify the listeners of the given
+     * change.
+     *
+     * @param change The received change.
+     */
+    private void process(ChangeStreamDocument<Document> change) {
+        if (change.getNamespace() == null) {
+            return;
+        }
+
+        String collectionName = change.getNamespace().getCollectionName();
+        EntityCache.invalidateAll(collectionName);
+
+        Object key = this.getKey(change);
+        Class<? extends Repository> model = this.models.get(collectionName);
+        if (key != null && model != null) {
+            ChangeNotifier.notifyChange(model, key);
+        }
+    }
+
+    /**
+     * Watch the changes on the database until the change stream fails.
+     *
+     * @param database The database to watch.
+     */
+    private void watch(MongoDatabase database) {
+        ChangeStreamIterable<Document> changeStream = database.watch(this.getPipeline()).fullDocument(FullDocument.UPDATE_LOOKUP);
+        if (this.resumeToken != null) {
+            changeStream = changeStream.resumeAfter(this.resumeToken);
+        }
+
+        try (MongoCursor<ChangeStreamDocument<Document>> cursor = changeStream.iterator()) {
+            while (cursor.hasNext()) {
+                ChangeStreamDocument<Document> change = cursor.next();
+
+                if (change.getOperationType() == OperationType.INVALIDATE) {
+                    // An invalidated change stream cannot be resumed.
+                    this.resumeToken = null;
+                    return;
+                }
+
+                this.resumeToken = change.getResumeToken();
+                this.process(change);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        Logger logger = Logger.getLogger(MongoChangeWatcher.class.getName());
+
+        MongoDatabase database;
+        try {
+            database = MongoDatabaseConnection.getInstance();
+        } catch (NotDefinedDatabaseContextException ex) {
+            logger.log(Level.INFO, "Changes cannot be watched because the database has not been found", ex);
+            return;
+        }
+
+        this.models.putAll(this.getWatchedModels());
+        if (this.models.isEmpty()) {
+            return;
+        }
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                this.watch(database);
+            } catch (MongoCommandException ex) {
+                if (ex.getErrorCode() == NOT_REPLICA_SET_ERROR) {
+                    logger.log(Level.INFO, "Changes cannot be watched because the database is not a replica set", ex);
+                    return;
+                }
+
+                if (ex.getErrorCode() == HISTORY_LOST_ERROR) {
+                    // The missed changes are unknown, so nothing cached can be trusted.
+                    logger.log(Level.WARNING, "Change stream cannot be resumed, so the cached entities are discarded", ex);
+                    this.resumeToken = null;
+                    for (String collectionName : this.models.keySet()) {
+                        EntityCache.invalidateAll(collectionName);
+                    }
+                } else {
+                    logger.log(Level.WARNING, "Change stream has failed and it will be resumed", ex);
+                }
+            } catch (MongoException | IllegalStateException ex) {
+                logger.log(Level.WARNING, "Change stream has failed and it will be resumed", ex);
+            }
+
+            try {
+                Thread.sleep(RETRY_DELAY);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
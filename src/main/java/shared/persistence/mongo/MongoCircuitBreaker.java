@@ -0,0 +1,244 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import shared.persistence.ConnectionNotifier;
+import shared.persistence.ConnectionState;
+
+/**
+ * Guards the reads and writes done on the Mongo database, so a network
+ * failure costs seconds instead of blocking the application for minutes.
+ *
+ * A read which cannot reach the database is tried again after a random
+ * backoff, since reads are idempotent. After some consecutive failures the
+ * circuit is opened and the reads fail fast for a while, after which a single
+ * read is let through to check whether the database can be reached again.
+ * Writes are never tried again, and they fail fast while the circuit is open.
+ * Every change is reported to the connection notifier, so it can be shown to
+ * the user.
+ */
+public class MongoCircuitBreaker {
+
+    /**
+     * Maximum number of times a read is tried.
+     */
+    private static final int MAX_ATTEMPTS = 2;
+
+    /**
+     * Base time (in milliseconds) waited before trying a read again, which is
+     * doubled on each attempt.
+     */
+    private static final long BASE_BACKOFF_MS = 250;
+
+    /**
+     * Number of consecutive failures after which the circuit is opened.
+     */
+    private static final int FAILURE_THRESHOLD = 2;
+
+    /**
+     * Default milliseconds the circuit is kept open before letting a read
+     * through.
+     */
+    private static final long OPEN_INTERVAL_MS = 30000;
+
+    /**
+     * Milliseconds the circuit is kept open before letting a read through.
+     */
+    private static long openInterval = OPEN_INTERVAL_MS;
+
+    /**
+     * Number of consecutive reads which could not reach the database.
+     */
+    private static int consecutiveFailures = 0;
+
+    /**
+     * Time, in milliseconds, until which the reads fail fast.
+     */
+    private static long openUntil = 0;
+
+    /**
+     * Whether a read has been let through to check whether the database can
+     * be reached again.
+     */
+    private static boolean trialRunning = false;
+
+    /**
+     * Check whether a read can be run.
+     *
+     * @return Whether the read is the one let through after the circuit has
+     * been open.
+     * @throws MongoTimeoutException Thrown when the circuit is open.
+     */
+    private static boolean acquire() {
+        synchronized (MongoCircuitBreaker.class) {
+            if (consecutiveFailures < FAILURE_THRESHOLD) {
+                return false;
+            }
+
+            if (trialRunning || System.currentTimeMillis() < openUntil) {
+                throw new MongoTimeoutException("The database is not tried again because it could not be reached recently");
+            }
+
+            trialRunning = true;
+        }
+
+        ConnectionNotifier.setState(ConnectionState.RECONNECTING);
+        return true;
+    }
+
+    /**
+     * Record that a read has reached the database, closing the circuit.
+     *
+     * Note that a read which fails with an error returned by the database has
+     * also reached it.
+     */
+    private static void recordSuccess() {
+        synchronized (MongoCircuitBreaker.class) {
+            consecutiveFailures = 0;
+            trialRunning = false;
+        }
+
+        ConnectionNotifier.setState(ConnectionState.CONNECTED);
+    }
+
+    /**
+     * Record that a read could not reach the database, opening the circuit
+     * when there have been too many consecutive failures.
+     *
+     * @param trial Whether the read is the one let through after the circuit
+     * has been open.
+     * @return Whether the circuit is open.
+     */
+    private static boolean recordFailure(boolean trial) {
+        boolean open;
+        synchronized (MongoCircuitBreaker.class) {
+            consecutiveFailures++;
+            if (trial) {
+                trialRunning = false;
+            }
+
+            open = consecutiveFailures >= FAILURE_THRESHOLD;
+            if (open) {
+                openUntil = System.currentTimeMillis() + openInterval;
+            }
+        }
+
+        ConnectionNotifier.setState(open ? ConnectionState.DISCONNECTED : ConnectionState.RECONNECTING);
+        return open;
+    }
+
+    /**
+     * Wait a random time before trying a read again, which grows with the
+     * number of attempts.
+     *
+     * @param attempt The number of the failed attempt.
+     * @return Whether the whole time has been waited, otherwise the thread
+     * has been interrupted.
+     */
+    private static boolean backoff(int attempt) {
+        long maxBackoff = BASE_BACKOFF_MS << (attempt - 1);
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxBackoff / 2, maxBackoff + 1));
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Run the given read on the database, trying it again when the database
+     * cannot be reached.
+     *
+     * @param <R> The read result type.
+     * @param remoteRead Function which reads the database, which must be
+     * idempotent.
+     * @return The read result.
+     * @throws MongoTimeoutException Thrown when the circuit is open or no
+     * server can be selected.
+     * @throws MongoSocketException Thrown when the connection to the database
+     * fails on the last attempt.
+     */
+    public static <R> R read(Supplier<R> remoteRead) {
+        for (int attempt = 1;; attempt++) {
+            boolean trial = MongoCircuitBreaker.acquire();
+
+            try {
+                R result = remoteRead.get();
+                MongoCircuitBreaker.recordSuccess();
+                return result;
+            } catch (MongoTimeoutException | MongoSocketException ex) {
+                boolean open = MongoCircuitBreaker.recordFailure(trial);
+                if (open || attempt >= MAX_ATTEMPTS || !MongoCircuitBreaker.backoff(attempt)) {
+                    throw ex;
+                }
+            } catch (RuntimeException ex) {
+                MongoCircuitBreaker.recordSuccess();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Run the given write on the database, failing fast while the circuit is
+     * open.
+     *
+     * Note that the write is not tried again, since it may have been applied
+     * before the connection failed, and it is not let through to check
+     * whether the database can be reached again, which is left to the reads.
+     *
+     * @param <R> The write result type.
+     * @param remoteWrite Function which writes the database.
+     * @return The write result.
+     * @throws MongoTimeoutException Thrown when the circuit is open or no
+     * server can be selected.
+     * @throws MongoSocketException Thrown when the connection to the database
+     * fails.
+     */
+    public static <R> R write(Supplier<R> remoteWrite) {
+        synchronized (MongoCircuitBreaker.class) {
+            if (consecutiveFailures >= FAILURE_THRESHOLD) {
+                throw new MongoTimeoutException("The database is not written because it could not be reached recently");
+            }
+        }
+
+        try {
+            R result = remoteWrite.get();
+            MongoCircuitBreaker.recordSuccess();
+            return result;
+        } catch (MongoTimeoutException | MongoSocketException ex) {
+            MongoCircuitBreaker.recordFailure(false);
+            throw ex;
+        } catch (RuntimeException ex) {
+            MongoCircuitBreaker.recordSuccess();
+            throw ex;
+        }
+    }
+
+    /**
+     * Set the time the circuit is kept open before letting a read through,
+     * so the tests do not wait for the default one.
+     *
+     * @param openIntervalMs The time, in milliseconds.
+     */
+    static synchronized void setOpenInterval(long openIntervalMs) {
+        openInterval = openIntervalMs;
+    }
+
+    /**
+     * Close the circuit, forgetting the previous failures.
+     */
+    public static void reset() {
+        synchronized (MongoCircuitBreaker.class) {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trialRunning = false;
+        }
+
+        ConnectionNotifier.setState(ConnectionState.CONNECTED);
+    }
+
+}
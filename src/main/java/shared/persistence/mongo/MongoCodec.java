@@ -0,0 +1,29 @@
+package shared.persistence.mongo;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+
+/**
+ * Represents a codec which converts an entity to and from BSON, without
+ * building an intermediate document.
+ *
+ * @param <T> The entity type.
+ */
+public abstract class MongoCodec<T> extends MongoDecoder<T> implements Codec<T> {
+
+    /**
+     * Write a string field, which may be null.
+     *
+     * @param writer The BSON writer.
+     * @param name The field name.
+     * @param value The field value.
+     */
+    protected void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) {
+            writer.writeNull(name);
+        } else {
+            writer.writeString(name, value);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package shared.persistence.mongo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import shared.persistence.PersistenceMetrics;
+
+/**
+ * Listens to the commands sent to the Mongo database, recording the latency,
+ * the documents and the bytes of each one on the persistence metrics.
+ *
+ * Note that the sync driver notifies the commands on the thread which runs
+ * them, so each round trip is counted for the use case run on that thread.
+ */
+public class MongoCommandMetrics implements CommandListener {
+
+    /**
+     * Collection name used for the commands which are not run on a
+     * collection, like the authentication ones.
+     */
+    private static final String NO_COLLECTION = "-";
+
+    /**
+     * Represents a command which has been sent and whose reply has not been
+     * received yet.
+     */
+    private static class StartedCommand {
+
+        /**
+         * Name of the collection the command is run on.
+         */
+        private final String collection;
+
+        /**
+         * Number of bytes of the command.
+         */
+        private final long numBytes;
+
+        /**
+         * Constructor.
+         *
+         * @param collection The collection name.
+         * @param numBytes The number of bytes of the command.
+         */
+        private StartedCommand(String collection, long numBytes) {
+            this.collection = collection;
+            this.numBytes = numBytes;
+        }
+
+    }
+
+    /**
+     * Commands which have been sent, indexed by their request identifier.
+     */
+    private final Map<Integer, StartedCommand> startedCommands;
+
+    /**
+     * Constructor.
+     */
+    public MongoCommandMetrics() {
+        this.startedCommands = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Obtain the collection the given command is run on.
+     *
+     * @param commandName The command name.
+     * @param command The command.
+     * @return The collection name, otherwise a dash.
+     */
+    private String getCollection(String commandName, BsonDocument command) {
+        // The first field of a getMore command is the cursor identifier.
+        BsonValue collection = commandName.equals("getMore") ? command.get("collection") : command.get(commandName);
+        return collection != null && collection.isString() ? collection.asString().getValue() : NO_COLLECTION;
+    }
+
+    /**
+     * Obtain the number of documents returned or written by the command with
+     * the given reply.
+     *
+     * @param reply The command reply.
+     * @return The number of documents.
+     */
+    private int getNumDocuments(BsonDocument reply) {
+        BsonValue cursor = reply.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().containsKey("firstBatch") ? cursor.asDocument().get("firstBatch") : cursor.asDocument().get("nextBatch");
+            return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+        }
+
+        BsonValue values = reply.get("values");
+        if (values != null && values.isArray()) {
+            return values.asArray().size();
+        }
+
+        BsonValue numDocuments = reply.get("n");
+        return numDocuments != null && numDocuments.isNumber() ? numDocuments.asNumber().intValue() : 0;
+    }
+
+    /**
+     * Obtain the size of the given document once encoded.
+     *
+     * @param document The document.
+     * @return The number of bytes.
+     */
+    private long getNumBytes(BsonDocument document) {
+        if (document instanceof RawBsonDocument) {
+            return ((RawBsonDocument) document).getByteBuffer().remaining();
+        }
+
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        new BsonDocumentCodec().encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        return buffer.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonDocument command = event.getCommand();
+        String collection = this.getCollection(event.getCommandName(), command);
+        this.startedCommands.put(event.getRequestId(), new StartedCommand(collection, this.getNumBytes(command)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        StartedCommand command = this.startedCommands.remove(event.getRequestId());
+        String collection = command == null ? NO_COLLECTION : command.collection;
+        long numBytesSent = command == null ? 0 : command.numBytes;
+
+        BsonDocument reply = event.getResponse();
+        PersistenceMetrics.record(collection, event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), this.getNumDocuments(reply), numBytesSent, this.getNumBytes(reply), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        StartedCommand command = this.startedCommands.remove(event.getRequestId());
+        String collection = command == null ? NO_COLLECTION : command.collection;
+        long numBytesSent = command == null ? 0 : command.numBytes;
+
+        PersistenceMetrics.record(collection, event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), 0, numBytesSent, 0, true);
+    }
+
+}
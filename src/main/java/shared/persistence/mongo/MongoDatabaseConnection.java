@@ -1,34 +1,140 @@
 package shared.persistence.mongo;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
+import java.util.concurrent.TimeUnit;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 
 /**
  * Manages the connection to the Mongo database.
+ *
+ * Note that only one Mongo client is created for the whole application, so
+ * all the repositories share the same connection pool. The maintenance work,
+ * like building indexes or rebuilding whole collections, uses a separate
+ * client whose connections wait for the responses without a time limit.
  */
 public class MongoDatabaseConnection {
 
+    /**
+     * Maximum number of connections kept on the pool.
+     */
+    private static final int MAX_POOL_SIZE = 20;
+
+    /**
+     * Minimum number of connections kept on the pool.
+     */
+    private static final int MIN_POOL_SIZE = 2;
+
+    /**
+     * Maximum time (in milliseconds) that a thread waits for a free connection.
+     */
+    private static final long MAX_WAIT_TIME_MS = 10000;
+
+    /**
+     * Maximum time (in seconds) that a connection can be idle before being
+     * closed.
+     */
+    private static final long MAX_CONNECTION_IDLE_TIME_S = 300;
+
+    /**
+     * Maximum time (in milliseconds) that an operation waits for a reachable
+     * server, after which the local copies are read instead.
+     */
+    private static final long SERVER_SELECTION_TIMEOUT_MS = 5000;
+
+    /**
+     * Maximum time (in milliseconds) that a new connection waits for the
+     * server to accept it.
+     */
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    /**
+     * Maximum time (in milliseconds) that a connection waits for a response,
+     * after which it is considered stalled. It is longer than the time limit
+     * of the reads, so the server aborts them first.
+     */
+    private static final int SOCKET_READ_TIMEOUT_MS = 15000;
+
+    /**
+     * Maximum number of connections kept on the pool of the maintenance
+     * client.
+     */
+    private static final int MAINTENANCE_MAX_POOL_SIZE = 2;
+
+    /**
+     * Mongo client instance.
+     */
+    private static MongoClient CLIENT = null;
+
     /**
      * Mongo database instance.
      */
     private static MongoDatabase INSTANCE = null;
 
+    /**
+     * Mongo client instance used for the maintenance work.
+     */
+    private static MongoClient MAINTENANCE_CLIENT = null;
+
+    /**
+     * Mongo database instance used for the maintenance work.
+     */
+    private static MongoDatabase MAINTENANCE_INSTANCE = null;
+
+    /**
+     * Create the settings for a Mongo client.
+     *
+     * @param connectionString The connection string.
+     * @param socketReadTimeoutMs Maximum time (in milliseconds) that a
+     * connection waits for a response, or 0 to wait without a time limit.
+     * @param maxPoolSize Maximum number of connections kept on the pool.
+     * @param minPoolSize Minimum number of connections kept on the pool.
+     * @return The Mongo client settings, including the connection pool and
+     * socket timeouts and the listener which records the persistence metrics.
+     */
+    private static MongoClientSettings createSettings(String connectionString, int socketReadTimeoutMs, int maxPoolSize, int minPoolSize) {
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString))
+                .applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(SERVER_SELECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(socket -> {
+                    socket.connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    socket.readTimeout(socketReadTimeoutMs, TimeUnit.MILLISECONDS);
+                })
+                .addCommandListener(new MongoCommandMetrics())
+                .applyToConnectionPoolSettings(pool -> {
+                    pool.maxSize(maxPoolSize);
+                    pool.minSize(minPoolSize);
+                    pool.maxWaitTime(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS);
+                    pool.maxConnectionIdleTime(MAX_CONNECTION_IDLE_TIME_S, TimeUnit.SECONDS);
+                })
+                .build();
+    }
+
     /**
      * Set the Mongo database instance based on the given data.
      *
+     * Note that the previous clients, if any, are closed.
+     *
      * @param dbUsername Database user name.
      * @param dbPassword Database user password.
      * @param dbHost Database host.
      * @param dbName Database name.
      */
-    public static void setInstance(String dbUsername, String dbPassword, String dbHost, String dbName) {
+    public static synchronized void setInstance(String dbUsername, String dbPassword, String dbHost, String dbName) {
         String mongoDBUri = "mongodb+srv://%s:%s@%s/?retryWrites=true&w=majority";
         String connectionString = String.format(mongoDBUri, dbUsername, dbPassword, dbHost);
-        MongoClient client = MongoClients.create(connectionString);
-        MongoDatabase db = client.getDatabase(dbName);
-        INSTANCE = db;
+
+        MongoDatabaseConnection.close();
+
+        CLIENT = MongoClients.create(MongoDatabaseConnection.createSettings(connectionString, SOCKET_READ_TIMEOUT_MS, MAX_POOL_SIZE, MIN_POOL_SIZE));
+        INSTANCE = CLIENT.getDatabase(dbName);
+        MAINTENANCE_CLIENT = MongoClients.create(MongoDatabaseConnection.createSettings(connectionString, 0, MAINTENANCE_MAX_POOL_SIZE, 0));
+        MAINTENANCE_INSTANCE = MAINTENANCE_CLIENT.getDatabase(dbName);
+        MongoCircuitBreaker.reset();
     }
 
     /**
@@ -38,7 +144,7 @@ public class MongoDatabaseConnection {
      * @throws NotDefinedDatabaseContextException Thrown when the instance has
      * not been already created.
      */
-    public static MongoDatabase getInstance() throws NotDefinedDatabaseContextException {
+    public static synchronized MongoDatabase getInstance() throws NotDefinedDatabaseContextException {
         if (INSTANCE == null) {
             throw new NotDefinedDatabaseContextException("The connection to the Mongo Database has not been defined.");
         }
@@ -46,4 +152,55 @@ public class MongoDatabaseConnection {
         return INSTANCE;
     }
 
+    /**
+     * Get the Mongo database instance used for the maintenance work, whose
+     * operations may take longer than the socket read timeout.
+     *
+     * @return The Mongo database which the system is connected, through the
+     * maintenance client.
+     * @throws NotDefinedDatabaseContextException Thrown when the instance has
+     * not been already created.
+     */
+    public static synchronized MongoDatabase getMaintenanceInstance() throws NotDefinedDatabaseContextException {
+        if (MAINTENANCE_INSTANCE == null) {
+            throw new NotDefinedDatabaseContextException("The connection to the Mongo Database has not been defined.");
+        }
+
+        return MAINTENANCE_INSTANCE;
+    }
+
+    /**
+     * Start a new session on the Mongo client, which can be used to run
+     * transactions.
+     *
+     * @return The started session.
+     * @throws NotDefinedDatabaseContextException Thrown when the client has
+     * not been already created.
+     */
+    public static synchronized ClientSession startSession() throws NotDefinedDatabaseContextException {
+        if (CLIENT == null) {
+            throw new NotDefinedDatabaseContextException("The connection to the Mongo Database has not been defined.");
+        }
+
+        return CLIENT.startSession();
+    }
+
+    /**
+     * Close the Mongo clients, releasing all the pooled connections.
+     */
+    public static synchronized void close() {
+        if (CLIENT != null) {
+            CLIENT.close();
+        }
+
+        if (MAINTENANCE_CLIENT != null) {
+            MAINTENANCE_CLIENT.close();
+        }
+
+        CLIENT = null;
+        INSTANCE = null;
+        MAINTENANCE_CLIENT = null;
+        MAINTENANCE_INSTANCE = null;
+    }
+
 }
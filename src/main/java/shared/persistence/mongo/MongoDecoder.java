@@ -0,0 +1,211 @@
+package shared.persistence.mongo;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.codecs.Decoder;
+
+/**
+ * Represents a decoder which creates an entity straight from the BSON reader,
+ * without building an intermediate document.
+ *
+ * It provides lenient readers for the field values, since some documents
+ * were stored with different types along the application history.
+ *
+ * @param <T> The entity type.
+ */
+public abstract class MongoDecoder<T> implements Decoder<T> {
+
+    /**
+     * Skip the current value if it is null.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return Whether the value was null or not.
+     */
+    private boolean skipNull(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.NULL) {
+            reader.readNull();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Read a string value.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return The string value, otherwise null.
+     */
+    protected String readString(BsonReader reader) {
+        if (this.skipNull(reader)) {
+            return null;
+        }
+
+        return reader.readString();
+    }
+
+    /**
+     * Read an integer value, which may be stored as any numeric type.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return The integer value, otherwise null.
+     */
+    protected Integer readInteger(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return (int) reader.readInt64();
+            case DOUBLE:
+                return (int) reader.readDouble();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Read a decimal value, which may be stored as any numeric type or as a
+     * string.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return The decimal value, otherwise null.
+     */
+    protected Double readDouble(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case DOUBLE:
+                return reader.readDouble();
+            case INT32:
+                return (double) reader.readInt32();
+            case INT64:
+                return (double) reader.readInt64();
+            case STRING:
+                return Double.parseDouble(reader.readString());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Read a boolean value.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return The boolean value, otherwise null.
+     */
+    protected Boolean readBoolean(BsonReader reader) {
+        if (this.skipNull(reader)) {
+            return null;
+        }
+
+        return reader.readBoolean();
+    }
+
+    /**
+     * Read a date value.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return The date value, otherwise null.
+     */
+    protected Date readDate(BsonReader reader) {
+        if (this.skipNull(reader)) {
+            return null;
+        }
+
+        return new Date(reader.readDateTime());
+    }
+
+    /**
+     * Read an array of integer values.
+     *
+     * @param reader The BSON reader, positioned on a value.
+     * @return A list with the integer values, which is empty if the value is
+     * null.
+     */
+    protected List<Integer> readIntegerList(BsonReader reader) {
+        List<Integer> values = new ArrayList<>();
+        if (this.skipNull(reader)) {
+            return values;
+        }
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            Integer value = this.readInteger(reader);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        reader.readEndArray();
+
+        return values;
+    }
+
+    /**
+     * Obtain an integer field of the given document, which may be stored as
+     * any numeric type.
+     *
+     * @param document The document.
+     * @param field The field name.
+     * @return The integer value, otherwise null if the field does not exist
+     * or it is not numeric.
+     */
+    public static Integer getInteger(BsonDocument document, String field) {
+        BsonValue value = document.get(field);
+        return value != null && value.isNumber() ? value.asNumber().intValue() : null;
+    }
+
+    /**
+     * Obtain a string field of the given document.
+     *
+     * @param document The document.
+     * @param field The field name.
+     * @return The string value, otherwise null if the field does not exist or
+     * it is not a string.
+     */
+    public static String getString(BsonDocument document, String field) {
+        BsonValue value = document.get(field);
+        return value != null && value.isString() ? value.asString().getValue() : null;
+    }
+
+    /**
+     * Obtain an array field of integer values of the given document, which
+     * may be stored as any numeric type.
+     *
+     * @param document The document.
+     * @param field The field name.
+     * @return A list with the integer values, which is empty if the field
+     * does not exist or it is not an array.
+     */
+    public static List<Integer> getIntegerList(BsonDocument document, String field) {
+        List<Integer> values = new ArrayList<>();
+
+        BsonValue array = document.get(field);
+        if (array != null && array.isArray()) {
+            for (BsonValue value : array.asArray()) {
+                if (value.isNumber()) {
+                    values.add(value.asNumber().intValue());
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Obtain the given value, or the default one if it is null.
+     *
+     * @param <V> The value type.
+     * @param value The value.
+     * @param defaultValue The default value.
+     * @return The value if it is not null, otherwise the default value.
+     */
+    protected <V> V orDefault(V value, V defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+}
@@ -0,0 +1,165 @@
+package shared.persistence.mongo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.InflaterInputStream;
+import org.bson.Document;
+import org.bson.types.Binary;
+import shared.persistence.Base64Converter;
+import shared.persistence.ContentHash;
+
+/**
+ * Reads the files embedded on the documents, which are moved to the file
+ * store when the application starts.
+ *
+ * The embedded content is either a legacy Base64 string or a BSON binary,
+ * optionally compressed, along with its extension, the compression
+ * algorithm, the original length and a SHA-256 checksum of the original
+ * content. New files are not embedded, so they are only read.
+ */
+public class MongoFileConverter {
+
+    /**
+     * Open a stream which reads the original content of the given stored file.
+     *
+     * @param fileAttributes The stored file attributes.
+     * @return A stream with the original file content.
+     */
+    private static InputStream openContent(Document fileAttributes) {
+        Object content = fileAttributes.get("content");
+
+        // Legacy files.
+        if (content instanceof String) {
+            byte[] contentBytes = Base64.getDecoder().decode((String) content);
+            return new ByteArrayInputStream(contentBytes);
+        }
+
+        byte[] contentBytes = ((Binary) content).getData();
+        InputStream contentStream = new ByteArrayInputStream(contentBytes);
+
+        String compression = fileAttributes.getString("compression");
+        if (FileCompression.DEFLATE.name().equals(compression)) {
+            contentStream = new InflaterInputStream(contentStream);
+        }
+
+        return contentStream;
+    }
+
+    /**
+     * Check whether the read content matches the stored length and checksum.
+     *
+     * Note that legacy files do not store them, so they are always valid.
+     *
+     * @param fileAttributes The stored file attributes.
+     * @param length The length of the read content.
+     * @param digest The digest of the read content.
+     * @return Whether the read content is valid or not.
+     */
+    private static boolean isValid(Document fileAttributes, long length, MessageDigest digest) {
+        if (MongoFileConverter.isLegacy(fileAttributes)) {
+            return true;
+        }
+
+        long storedLength = ((Number) fileAttributes.get("length")).longValue();
+        String storedChecksum = fileAttributes.getString("checksum");
+
+        return storedLength == length && storedChecksum.equals(ContentHash.from(digest));
+    }
+
+    /**
+     * Whether the given stored file uses the legacy Base64 format or not.
+     *
+     * @param fileAttributes The stored file attributes.
+     * @return true if the file is stored as a Base64 string, otherwise false.
+     */
+    public static boolean isLegacy(Document fileAttributes) {
+        return fileAttributes.get("content") instanceof String;
+    }
+
+    /**
+     * Read the original content of the given stored file.
+     *
+     * @param fileAttributes The stored file attributes, on the legacy or on the
+     * binary format.
+     * @return The file content, otherwise null if it cannot be read or it is
+     * corrupted.
+     */
+    public static byte[] readBytes(Document fileAttributes) {
+        MessageDigest digest = ContentHash.createDigest();
+        ByteArrayOutputStream contentBytes = new ByteArrayOutputStream();
+
+        try (InputStream contentStream = new DigestInputStream(MongoFileConverter.openContent(fileAttributes), digest)) {
+            byte[] buffer = new byte[8192];
+            int readBytes;
+            while ((readBytes = contentStream.read(buffer)) != -1) {
+                contentBytes.write(buffer, 0, readBytes);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(MongoFileConverter.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+
+        if (!MongoFileConverter.isValid(fileAttributes, contentBytes.size(), digest)) {
+            Logger.getLogger(MongoFileConverter.class.getName()).log(Level.SEVERE, "The stored file is corrupted");
+            return null;
+        }
+
+        return contentBytes.toByteArray();
+    }
+
+    /**
+     * Decode the given stored file and save it on a temporary file with its
+     * extension.
+     *
+     * Note that the content is streamed to the temporary file, so no extra
+     * copies are kept in memory.
+     *
+     * @param fileAttributes The stored file attributes, on the legacy or on the
+     * binary format.
+     * @return The created temporary file containing the stored content,
+     * otherwise null if it cannot be created or it is corrupted.
+     */
+    public static File decode(Document fileAttributes) {
+        if (MongoFileConverter.isLegacy(fileAttributes)) {
+            Map<String, String> legacyFileAttributes = new HashMap<>();
+            legacyFileAttributes.put("content", fileAttributes.getString("content"));
+            legacyFileAttributes.put("extension", fileAttributes.getString("extension"));
+            return Base64Converter.decode(legacyFileAttributes);
+        }
+
+        MessageDigest digest = ContentHash.createDigest();
+        String extension = fileAttributes.getString("extension");
+
+        try (InputStream contentStream = new DigestInputStream(MongoFileConverter.openContent(fileAttributes), digest)) {
+            Path temp = Files.createTempFile(null, extension);
+            File tmpFile = temp.toFile();
+            tmpFile.deleteOnExit();
+
+            long length = Files.copy(contentStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (!MongoFileConverter.isValid(fileAttributes, length, digest)) {
+                Logger.getLogger(MongoFileConverter.class.getName()).log(Level.SEVERE, "The stored file is corrupted");
+                return null;
+            }
+
+            return tmpFile;
+        } catch (IOException ex) {
+            Logger.getLogger(MongoFileConverter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+}
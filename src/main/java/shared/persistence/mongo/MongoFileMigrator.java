@@ -0,0 +1,162 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.FileStore;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Moves the files embedded on the documents, either on the legacy Base64
+ * format or on the binary format, to the file store.
+ *
+ * The documents are migrated in small batches, so it can be run in the
+ * background while the application is being used.
+ */
+public class MongoFileMigrator implements Runnable {
+
+    /**
+     * Collections which contain stored files.
+     */
+    private static final String[] COLLECTIONS = {"deliverynote", "invoice", "template"};
+
+    /**
+     * Maximum number of documents migrated on each batch.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    /**
+     * Mongo database instance.
+     */
+    private final MongoDatabase database;
+
+    /**
+     * Store where the files are moved.
+     */
+    private final FileStore fileStore;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public MongoFileMigrator() throws NotDefinedDatabaseContextException {
+        this.database = MongoDatabaseConnection.getInstance();
+        this.fileStore = RepositoryProvider.get(FileStore.class);
+    }
+
+    /**
+     * Obtain the filter for embedded files.
+     *
+     * @return A filter indicating that the query must only obtain the
+     * documents which contain an embedded file.
+     */
+    private Bson hasEmbeddedFileFilter() {
+        return Filters.exists("file");
+    }
+
+    /**
+     * Migrate the next batch of documents from the given collection.
+     *
+     * @param collection The collection.
+     * @param lastId The identifier of the last migrated document, or null on
+     * the first batch.
+     * @return The identifier of the last document of the batch, otherwise null
+     * if there are not more documents to migrate.
+     */
+    private Object migrateBatch(MongoCollection<Document> collection, Object lastId) {
+        Bson filters = this.hasEmbeddedFileFilter();
+        if (lastId != null) {
+            filters = Filters.and(filters, Filters.gt("_id", lastId));
+        }
+
+        ArrayList<Document> documents = collection.find(filters)
+                .projection(Projections.include("file"))
+                .sort(Sorts.ascending("_id"))
+                .limit(BATCH_SIZE)
+                .into(new ArrayList<>());
+
+        if (documents.isEmpty()) {
+            return null;
+        }
+
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Document document : documents) {
+            Document fileAttributes = document.get("file", Document.class);
+            byte[] fileBytes = MongoFileConverter.readBytes(fileAttributes);
+            if (fileBytes == null) {
+                continue;
+            }
+
+            String extension = fileAttributes.getString("extension");
+            String fileHash = this.fileStore.store(new ByteArrayInputStream(fileBytes), extension);
+            if (fileHash == null) {
+                continue;
+            }
+
+            // Only rewrite the document if its file has not been updated meanwhile.
+            Bson documentFilter = Filters.and(Filters.eq("_id", document.get("_id")), this.hasEmbeddedFileFilter());
+            Bson update = Updates.combine(Updates.set("fileHash", fileHash), Updates.unset("file"));
+            updates.add(new UpdateOneModel<>(documentFilter, update));
+        }
+
+        if (!updates.isEmpty()) {
+            collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+
+        return documents.get(documents.size() - 1).get("_id");
+    }
+
+    /**
+     * Migrate all the documents from the given collection.
+     *
+     * @param collectionName The collection name.
+     */
+    private void migrate(String collectionName) {
+        MongoCollection<Document> collection = this.database.getCollection(collectionName);
+
+        int numBatches = 0;
+        Object lastId = this.migrateBatch(collection, null);
+        while (lastId != null) {
+            numBatches++;
+            lastId = this.migrateBatch(collection, lastId);
+        }
+
+        if (numBatches > 0) {
+            String message = String.format("Files from the %s collection migrated on %d batches", collectionName, numBatches);
+            Logger.getLogger(MongoFileMigrator.class.getName()).log(Level.INFO, message);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        for (String collectionName : COLLECTIONS) {
+            try {
+                this.migrate(collectionName);
+            } catch (MongoException ex) {
+                String message = String.format("Files from the %s collection cannot be migrated", collectionName);
+                Logger.getLogger(MongoFileMigrator.class.getName()).log(Level.WARNING, message, ex);
+            }
+        }
+    }
+
+}
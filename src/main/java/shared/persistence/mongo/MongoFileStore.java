@@ -0,0 +1,306 @@
+package shared.persistence.mongo;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import shared.persistence.ContentHash;
+import shared.persistence.FileStore;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Stores the files on a GridFS bucket of the Mongo database.
+ *
+ * Each file is stored with its content hash as file name, which is checked
+ * when the file is downloaded, and both uploads and downloads are streamed in
+ * chunks. Files are stored uncompressed, since they are mostly PDF files.
+ */
+public class MongoFileStore implements FileStore {
+
+    /**
+     * Name of the GridFS bucket.
+     */
+    private static final String BUCKET_NAME = "files";
+
+    /**
+     * Size (in bytes) of each stored chunk.
+     */
+    private static final int CHUNK_SIZE_BYTES = 255 * 1024;
+
+    /**
+     * Size (in bytes) of the buffer used to read the files.
+     */
+    private static final int BUFFER_SIZE_BYTES = 8192;
+
+    /**
+     * Prefix of the name given to a file while its content hash is unknown.
+     */
+    private static final String PROVISIONAL_NAME_PREFIX = "pending-";
+
+    /**
+     * GridFS bucket where the files are stored.
+     */
+    private final GridFSBucket bucket;
+
+    /**
+     * Collection containing the stored files metadata.
+     */
+    private final MongoCollection<Document> filesCollection;
+
+    /**
+     * Collection containing the stored files metadata, obtained through the
+     * maintenance connections.
+     */
+    private final MongoCollection<Document> maintenanceFilesCollection;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not a
+     * connected database to the system.
+     */
+    public MongoFileStore() throws NotDefinedDatabaseContextException {
+        MongoDatabase database = MongoDatabaseConnection.getInstance();
+        this.bucket = GridFSBuckets.create(database, BUCKET_NAME).withChunkSizeBytes(CHUNK_SIZE_BYTES);
+        this.filesCollection = database.getCollection(BUCKET_NAME + ".files");
+        this.maintenanceFilesCollection = MongoDatabaseConnection.getMaintenanceInstance().getCollection(BUCKET_NAME + ".files");
+    }
+
+    /**
+     * Obtain the extension of the given file.
+     *
+     * @param file The file.
+     * @return The file extension, including the point.
+     */
+    private String getExtension(File file) {
+        String fileName = file.getName();
+        int lastPointIndex = fileName.lastIndexOf(".");
+        return fileName.substring(lastPointIndex);
+    }
+
+    /**
+     * Create the upload options for a file with the given extension.
+     *
+     * @param extension The file extension.
+     * @return The upload options, which keep the extension as metadata.
+     */
+    private GridFSUploadOptions createUploadOptions(String extension) {
+        Document metadata = new Document("extension", extension);
+        return new GridFSUploadOptions().metadata(metadata);
+    }
+
+    /**
+     * Find the stored file associated with the given content hash.
+     *
+     * @param hash The content hash.
+     * @return The stored file, otherwise null.
+     */
+    private GridFSFile findFile(String hash) {
+        return this.bucket.find(Filters.eq("filename", hash)).sort(Sorts.ascending("uploadDate")).first();
+    }
+
+    /**
+     * Upload the given content with a provisional name and then rename it
+     * with its content hash, or discard it if that hash was already stored.
+     *
+     * Note that the file names are unique, so when two applications store the
+     * same content at once, only one of them keeps it.
+     *
+     * @param content The file content.
+     * @param extension The file extension.
+     * @param digest The digest updated while the content is read.
+     * @return The content hash.
+     */
+    private String upload(InputStream content, String extension, MessageDigest digest) {
+        String provisionalName = PROVISIONAL_NAME_PREFIX + UUID.randomUUID();
+        ObjectId fileId = this.bucket.uploadFromStream(provisionalName, content, this.createUploadOptions(extension));
+
+        String hash = ContentHash.from(digest);
+        if (this.findFile(hash) != null) {
+            this.bucket.delete(fileId);
+            return hash;
+        }
+
+        try {
+            this.bucket.rename(fileId, hash);
+        } catch (MongoWriteException ex) {
+            if (ex.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) {
+                throw ex;
+            }
+
+            this.bucket.delete(fileId);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Delete the files stored more than once with the same content hash,
+     * keeping the oldest one, and then create a unique index on the file
+     * names so they are not duplicated again.
+     *
+     * Note that the duplicates are searched and the index is built through
+     * the maintenance connections, since both read the whole collection.
+     *
+     * @return The number of deleted files.
+     */
+    int createUniqueIndex() {
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.not(Filters.regex("filename", "^" + PROVISIONAL_NAME_PREFIX))),
+                Aggregates.sort(Sorts.ascending("uploadDate")),
+                Aggregates.group("$filename", Accumulators.push("ids", "$_id")),
+                Aggregates.match(Filters.exists("ids.1")));
+
+        int numDeletedFiles = 0;
+        for (Document duplicate : this.maintenanceFilesCollection.aggregate(pipeline)) {
+            List<ObjectId> fileIds = duplicate.getList("ids", ObjectId.class);
+            for (ObjectId fileId : fileIds.subList(1, fileIds.size())) {
+                this.bucket.delete(fileId);
+                numDeletedFiles++;
+            }
+        }
+
+        this.maintenanceFilesCollection.createIndex(Indexes.ascending("filename"), new IndexOptions().unique(true).background(true));
+        return numDeletedFiles;
+    }
+
+    /**
+     * Calculate the content hash of the given file, reading it in chunks.
+     *
+     * @param path The file path.
+     * @return The content hash.
+     * @throws IOException Thrown when the file cannot be read.
+     */
+    private String hash(Path path) throws IOException {
+        MessageDigest digest = ContentHash.createDigest();
+
+        try (InputStream content = new DigestInputStream(Files.newInputStream(path), digest)) {
+            byte[] buffer = new byte[BUFFER_SIZE_BYTES];
+            while (content.read(buffer) != -1) {
+                // The digest is updated while reading.
+            }
+        }
+
+        return ContentHash.from(digest);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return (int) this.filesCollection.countDocuments();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String store(File file) {
+        if (file == null) {
+            return null;
+        }
+
+        Path path = file.toPath();
+
+        try {
+            String hash = this.hash(path);
+
+            if (this.findFile(hash) != null) {
+                return hash;
+            }
+
+            MessageDigest digest = ContentHash.createDigest();
+            try (InputStream content = new DigestInputStream(Files.newInputStream(path), digest)) {
+                return this.upload(content, this.getExtension(file), digest);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(MongoFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the content hash is only known once the stream has been read,
+     * so the content is uploaded with a provisional name and then renamed, or
+     * discarded if it was already stored.
+     */
+    @Override
+    public String store(InputStream content, String extension) {
+        MessageDigest digest = ContentHash.createDigest();
+
+        try (InputStream digestContent = new DigestInputStream(content, digest)) {
+            return this.upload(digestContent, extension, digest);
+        } catch (IOException ex) {
+            Logger.getLogger(MongoFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the file name is the checksum of the stored content, so the
+     * downloaded content is checked against it.
+     */
+    @Override
+    public File load(String hash) {
+        GridFSFile storedFile = this.findFile(hash);
+        if (storedFile == null) {
+            return null;
+        }
+
+        String extension = storedFile.getMetadata().getString("extension");
+        MessageDigest digest = ContentHash.createDigest();
+
+        try (InputStream content = new DigestInputStream(this.bucket.openDownloadStream(storedFile.getObjectId()), digest)) {
+            Path temp = Files.createTempFile(null, extension);
+            File tmpFile = temp.toFile();
+            tmpFile.deleteOnExit();
+
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (!hash.equals(ContentHash.from(digest))) {
+                String message = String.format("The stored file %s is corrupted", hash);
+                Logger.getLogger(MongoFileStore.class.getName()).log(Level.SEVERE, message);
+                return null;
+            }
+
+            return tmpFile;
+        } catch (IOException ex) {
+            Logger.getLogger(MongoFileStore.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+}
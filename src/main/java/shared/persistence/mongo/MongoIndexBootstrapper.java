@@ -0,0 +1,105 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.conversions.Bson;
+import shared.persistence.FileStore;
+import shared.persistence.Repository;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Creates the indexes declared by the registered Mongo repositories and
+ * checks that their frequent queries are supported by an index.
+ *
+ * It is intended to be run in the background when the application starts, so
+ * the indexes are built while the application is being used.
+ */
+public class MongoIndexBootstrapper implements Runnable {
+
+    /**
+     * Obtain the Mongo repositories registered on the system.
+     *
+     * @return A list with the registered Mongo repositories.
+     */
+    private List<MongoRepository> getMongoRepositories() {
+        List<MongoRepository> mongoRepositories = new ArrayList<>();
+
+        for (Class<? extends Repository> model : RepositoryProvider.getRegisteredModels()) {
+            try {
+                Repository repository = RepositoryProvider.get(model);
+                if (repository instanceof MongoRepository) {
+                    mongoRepositories.add((MongoRepository) repository);
+                }
+            } catch (NotDefinedDatabaseContextException ex) {
+                String className = MongoIndexBootstrapper.class.getName();
+                Logger.getLogger(className).log(Level.INFO, "Indexes cannot be created because the database has not been found", ex);
+            }
+        }
+
+        return mongoRepositories;
+    }
+
+    /**
+     * Create the unique index on the names of the stored files, deleting the
+     * files which were stored twice before.
+     */
+    private void createFileStoreIndex() {
+        Logger logger = Logger.getLogger(MongoIndexBootstrapper.class.getName());
+
+        try {
+            FileStore fileStore = RepositoryProvider.get(FileStore.class);
+            if (fileStore instanceof MongoFileStore) {
+                int numDeletedFiles = ((MongoFileStore) fileStore).createUniqueIndex();
+                if (numDeletedFiles > 0) {
+                    String message = String.format("%d duplicated files deleted from the file store", numDeletedFiles);
+                    logger.log(Level.INFO, message);
+                }
+            }
+        } catch (NotDefinedDatabaseContextException ex) {
+            logger.log(Level.INFO, "File store index cannot be created because the database has not been found", ex);
+        } catch (MongoException ex) {
+            logger.log(Level.WARNING, "File store index cannot be created", ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        List<MongoRepository> mongoRepositories = this.getMongoRepositories();
+        Logger logger = Logger.getLogger(MongoIndexBootstrapper.class.getName());
+
+        for (MongoRepository mongoRepository : mongoRepositories) {
+            try {
+                int numCreatedIndexes = mongoRepository.createMissingIndexes();
+                if (numCreatedIndexes > 0) {
+                    String message = String.format("%d indexes created on the %s collection", numCreatedIndexes, mongoRepository.getCollectionName());
+                    logger.log(Level.INFO, message);
+                }
+            } catch (MongoException ex) {
+                String message = String.format("Indexes cannot be created on the %s collection", mongoRepository.getCollectionName());
+                logger.log(Level.WARNING, message, ex);
+            }
+        }
+
+        this.createFileStoreIndex();
+
+        for (MongoRepository mongoRepository : mongoRepositories) {
+            try {
+                for (Bson collectionScan : mongoRepository.findCollectionScans()) {
+                    String message = String.format("Query on the %s collection needs a collection scan: %s", mongoRepository.getCollectionName(), collectionScan);
+                    logger.log(Level.WARNING, message);
+                }
+            } catch (MongoException ex) {
+                String message = String.format("Queries on the %s collection cannot be explained", mongoRepository.getCollectionName());
+                logger.log(Level.WARNING, message, ex);
+            }
+        }
+    }
+
+}
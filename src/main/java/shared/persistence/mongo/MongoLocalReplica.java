@@ -0,0 +1,232 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.embedded.EmbeddedCollection;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Keeps a local copy of the reference collections and the recent delivery
+ * notes, which the repositories read while the Mongo database cannot be
+ * reached.
+ *
+ * It is intended to be run in the background while the application is
+ * running, copying the collections again periodically. The copies are stored
+ * on local files, so they are also available when the application starts
+ * without connection. The writes done meanwhile are kept on the write
+ * journals until the database can be reached again.
+ */
+public class MongoLocalReplica implements Runnable {
+
+    /**
+     * Directory where the copied collections are stored.
+     */
+    private static final Path REPLICA_DIRECTORY = Paths.get(System.getProperty("user.home"), ".fgen", "replica");
+
+    /**
+     * Collections which are copied as a whole.
+     */
+    private static final List<String> REFERENCE_COLLECTIONS = Arrays.asList("customer", "product", "container", "subtotal", "variable");
+
+    /**
+     * Collection whose recent documents are copied.
+     */
+    private static final String DELIVERY_NOTE_COLLECTION = "deliverynote";
+
+    /**
+     * Number of days of delivery notes which are copied.
+     */
+    private static final int RECENT_DAYS = 90;
+
+    /**
+     * Milliseconds to wait between two copies.
+     */
+    private static final long SYNC_INTERVAL = 300000;
+
+    /**
+     * Milliseconds the local copies are read after the database could not be
+     * reached, before trying to reach it again.
+     */
+    private static final long OFFLINE_INTERVAL = 30000;
+
+    /**
+     * Opened copies, indexed by the collection name.
+     */
+    private static final Map<String, EmbeddedCollection> replicas = new HashMap<>();
+
+    /**
+     * Time, in milliseconds, until which the local copies are read without
+     * trying to reach the database.
+     */
+    private static volatile long offlineUntil = 0;
+
+    /**
+     * Obtain the local copy of the given collection.
+     *
+     * @param collectionName The collection name.
+     * @return The local copy, or null if the collection is not copied or its
+     * copy cannot be read.
+     */
+    public static synchronized EmbeddedCollection find(String collectionName) {
+        if (!REFERENCE_COLLECTIONS.contains(collectionName) && !DELIVERY_NOTE_COLLECTION.equals(collectionName)) {
+            return null;
+        }
+
+        EmbeddedCollection replica = replicas.get(collectionName);
+        if (replica == null) {
+            try {
+                replica = new EmbeddedCollection(collectionName, REPLICA_DIRECTORY.resolve(collectionName + ".json"));
+                replicas.put(collectionName, replica);
+            } catch (IOException ex) {
+                String message = String.format("The local copy of the %s collection cannot be read", collectionName);
+                Logger.getLogger(MongoLocalReplica.class.getName()).log(Level.WARNING, message, ex);
+            }
+        }
+
+        return replica;
+    }
+
+    /**
+     * Check whether the local copies must be read instead of the database.
+     *
+     * @return Whether the database could not be reached recently.
+     */
+    public static boolean isOffline() {
+        return System.currentTimeMillis() < offlineUntil;
+    }
+
+    /**
+     * Record that the database cannot be reached, so the local copies are
+     * read for a while.
+     *
+     * @param ex The exception thrown when reaching the database.
+     */
+    public static void setOffline(MongoException ex) {
+        if (!MongoLocalReplica.isOffline()) {
+            Logger.getLogger(MongoLocalReplica.class.getName()).log(Level.WARNING, "The database cannot be reached, so the local copies are read", ex);
+        }
+
+        offlineUntil = System.currentTimeMillis() + OFFLINE_INTERVAL;
+    }
+
+    /**
+     * Obtain the date since which the documents of the given collection are
+     * copied, so the local copy does not hold the older ones.
+     *
+     * Note that a copy done some days ago holds some older documents too,
+     * which are not taken into account.
+     *
+     * @param collectionName The collection name.
+     * @return The date of the oldest copied documents, or null when the whole
+     * collection is copied.
+     */
+    public static Date getCopiedSince(String collectionName) {
+        if (!DELIVERY_NOTE_COLLECTION.equals(collectionName)) {
+            return null;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -RECENT_DAYS);
+        return calendar.getTime();
+    }
+
+    /**
+     * Obtain the filter for the documents to copy from the given collection.
+     *
+     * @param collectionName The collection name.
+     * @return A filter indicating that only the recent delivery notes must be
+     * copied, or an empty filter for the reference collections.
+     */
+    private Bson getCopyFilter(String collectionName) {
+        Date copiedSince = MongoLocalReplica.getCopiedSince(collectionName);
+        return copiedSince == null ? new Document() : Filters.gte("date", copiedSince);
+    }
+
+    /**
+     * Copy the given collection from the database.
+     *
+     * Note that the legacy embedded files are not copied, since the files are
+     * only needed to print the documents. The collection is read through the
+     * circuit breaker, so the copies are skipped while the database cannot
+     * be reached.
+     *
+     * @param database The Mongo database.
+     * @param collectionName The collection name.
+     * @throws IOException Thrown when the copy cannot be stored.
+     */
+    private void copy(MongoDatabase database, String collectionName) throws IOException {
+        EmbeddedCollection replica = MongoLocalReplica.find(collectionName);
+        if (replica == null) {
+            return;
+        }
+
+        List<BsonDocument> documents = MongoCircuitBreaker.read(() -> database.getCollection(collectionName, BsonDocument.class)
+                .find(this.getCopyFilter(collectionName))
+                .projection(Projections.exclude("file"))
+                .into(new ArrayList<>()));
+
+        replica.replaceAll(documents);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        Logger logger = Logger.getLogger(MongoLocalReplica.class.getName());
+
+        MongoDatabase database;
+        try {
+            database = MongoDatabaseConnection.getInstance();
+        } catch (NotDefinedDatabaseContextException ex) {
+            logger.log(Level.INFO, "Collections cannot be copied because the database has not been found", ex);
+            return;
+        }
+
+        List<String> copiedCollections = new ArrayList<>(REFERENCE_COLLECTIONS);
+        copiedCollections.add(DELIVERY_NOTE_COLLECTION);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            for (String collectionName : copiedCollections) {
+                try {
+                    this.copy(database, collectionName);
+                } catch (MongoTimeoutException | MongoSocketException ex) {
+                    MongoLocalReplica.setOffline(ex);
+                    break;
+                } catch (MongoException ex) {
+                    String message = String.format("The %s collection cannot be copied", collectionName);
+                    logger.log(Level.WARNING, message, ex);
+                } catch (IOException ex) {
+                    String message = String.format("The local copy of the %s collection cannot be stored", collectionName);
+                    logger.log(Level.WARNING, message, ex);
+                }
+            }
+
+            try {
+                Thread.sleep(SYNC_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -1,14 +1,59 @@
 package shared.persistence.mongo;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.DistinctIterable;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
 import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
+import shared.application.TrackedEntity;
+import shared.persistence.FileStore;
+import shared.persistence.PageKey;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.embedded.EmbeddedCollection;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 
 /**
@@ -16,22 +61,388 @@ import shared.persistence.exceptions.NotDefinedDatabaseContextException;
  */
 public abstract class MongoRepository {
 
+    /**
+     * Session of the transaction being run on the current thread, if any.
+     */
+    private static final ThreadLocal<ClientSession> TRANSACTION_SESSION = new ThreadLocal<>();
+
+    /**
+     * Maximum time (in milliseconds) that the database spends on a read,
+     * after which the read fails instead of blocking the application.
+     */
+    private static final long READ_TIME_LIMIT_MS = 5000;
+
     /**
      * Mongo collection associated with the repository.
      */
     private final MongoCollection<Document> collection;
 
+    /**
+     * Mongo database instance, used to explain the queries.
+     */
+    private final MongoDatabase database;
+
+    /**
+     * Mongo database instance used for the maintenance work, like building
+     * the indexes or writing the aggregations into collections.
+     */
+    private final MongoDatabase maintenanceDatabase;
+
     /**
      * Constructor.
      *
      * @param collectionName The collection name which the repository will
      * check.
+     * @param codecs The codecs used to decode the collection documents
+     * straight into entities.
      * @throws NotDefinedDatabaseContextException Thrown when there is not a
      * connected database to the system.
      */
-    protected MongoRepository(String collectionName) throws NotDefinedDatabaseContextException {
-        MongoDatabase database = MongoDatabaseConnection.getInstance();
-        this.collection = database.getCollection(collectionName);
+    protected MongoRepository(String collectionName, Codec<?>... codecs) throws NotDefinedDatabaseContextException {
+        this.database = MongoDatabaseConnection.getInstance();
+        this.maintenanceDatabase = MongoDatabaseConnection.getMaintenanceInstance();
+
+        CodecRegistry codecRegistry = CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codecs), this.database.getCodecRegistry());
+        this.collection = this.database.getCollection(collectionName).withCodecRegistry(codecRegistry);
+    }
+
+    /**
+     * Declare the indexes needed by the queries of the repository.
+     *
+     * @return A list with the indexes, which is empty by default.
+     */
+    protected List<IndexModel> getIndexes() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Declare the filters used by the frequent queries of the repository, so
+     * it can be checked that they are supported by an index.
+     *
+     * Note that the values on the filters are only placeholders.
+     *
+     * @return A list with the query filters, which is empty by default.
+     */
+    protected List<Bson> getQueryShapes() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Create the declared indexes which do not exist on the collection yet.
+     *
+     * Indexes are built in the background, so the collection can be used
+     * meanwhile. An index which cannot be created, for example a unique index
+     * on a field with repeated values, is skipped. An existing index which is
+     * declared as unique now is replaced, or kept if the unique one cannot be
+     * created.
+     *
+     * Note that the indexes are built through the maintenance connections,
+     * since a build may take longer than the socket read timeout.
+     *
+     * @return The number of created indexes.
+     */
+    int createMissingIndexes() {
+        CodecRegistry codecRegistry = this.collection.getCodecRegistry();
+        MongoCollection<Document> maintenanceCollection = this.maintenanceDatabase.getCollection(this.getCollectionName());
+
+        Map<String, Document> existingIndexes = new HashMap<>();
+        for (Document existingIndex : this.collection.listIndexes()) {
+            BsonDocument keys = existingIndex.get("key", Document.class).toBsonDocument(BsonDocument.class, codecRegistry);
+            existingIndexes.put(keys.toJson(), existingIndex);
+        }
+
+        int numCreatedIndexes = 0;
+        for (IndexModel index : this.getIndexes()) {
+            String keys = index.getKeys().toBsonDocument(BsonDocument.class, codecRegistry).toJson();
+            Document existingIndex = existingIndexes.get(keys);
+            boolean isUnique = Boolean.TRUE.equals(index.getOptions().isUnique());
+
+            if (existingIndex != null) {
+                if (!isUnique || existingIndex.getBoolean("unique", false)) {
+                    continue;
+                }
+
+                // The keys cannot be indexed twice, so the old index is dropped first.
+                maintenanceCollection.dropIndex(existingIndex.getString("name"));
+            }
+
+            try {
+                maintenanceCollection.createIndex(index.getKeys(), index.getOptions().background(true));
+                numCreatedIndexes++;
+            } catch (MongoException ex) {
+                String message = String.format("Index %s cannot be created on the %s collection", keys, this.getCollectionName());
+                Logger.getLogger(MongoRepository.class.getName()).log(Level.WARNING, message, ex);
+
+                if (existingIndex != null) {
+                    maintenanceCollection.createIndex(index.getKeys(), new IndexOptions().background(true));
+                }
+            }
+        }
+
+        return numCreatedIndexes;
+    }
+
+    /**
+     * Find the declared query shapes which need a collection scan, based on
+     * the plan chosen by the database.
+     *
+     * @return A list with the filters of the query shapes which are not
+     * supported by any index.
+     */
+    List<Bson> findCollectionScans() {
+        List<Bson> collectionScans = new ArrayList<>();
+
+        for (Bson queryShape : this.getQueryShapes()) {
+            BsonDocument filter = queryShape.toBsonDocument(BsonDocument.class, this.collection.getCodecRegistry());
+            Document findCommand = new Document("find", this.getCollectionName()).append("filter", filter);
+            Document explainCommand = new Document("explain", findCommand).append("verbosity", "queryPlanner");
+
+            Document explanation = this.database.runCommand(explainCommand);
+            Document queryPlanner = explanation.get("queryPlanner", Document.class);
+            if (queryPlanner != null && MongoRepository.hasStage(queryPlanner.get("winningPlan", Document.class), "COLLSCAN")) {
+                collectionScans.add(filter);
+            }
+        }
+
+        return collectionScans;
+    }
+
+    /**
+     * Check whether the given query plan contains the given stage.
+     *
+     * @param plan The query plan, as obtained from the explain command.
+     * @param stage The stage name.
+     * @return Whether the plan or any of its input stages is the given stage.
+     */
+    private static boolean hasStage(Document plan, String stage) {
+        if (plan == null) {
+            return false;
+        }
+
+        if (stage.equals(plan.getString("stage"))) {
+            return true;
+        }
+
+        if (MongoRepository.hasStage(plan.get("inputStage", Document.class), stage)) {
+            return true;
+        }
+
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            for (Document inputStage : inputStages) {
+                if (MongoRepository.hasStage(inputStage, stage)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Obtain the name of the associated Mongo collection.
+     *
+     * @return The collection name.
+     */
+    String getCollectionName() {
+        return this.collection.getNamespace().getCollectionName();
+    }
+
+    /**
+     * Run the given read on the database, or on the local copy of the
+     * collection while the database cannot be reached.
+     *
+     * The database read is guarded by the circuit breaker, so it is tried
+     * again after a network failure and it fails fast while the database
+     * cannot be reached.
+     *
+     * @param <R> The read result type.
+     * @param remoteRead Function which reads the database.
+     * @param localRead Function which reads the local copy of the collection.
+     * @return The read result.
+     * @throws MongoException Thrown when the database cannot be read and the
+     * collection has no local copy.
+     */
+    private <R> R read(Supplier<R> remoteRead, Function<EmbeddedCollection, R> localRead) {
+        EmbeddedCollection replica = MongoLocalReplica.find(this.getCollectionName());
+        if (replica == null) {
+            return MongoCircuitBreaker.read(remoteRead);
+        }
+
+        if (!MongoLocalReplica.isOffline()) {
+            try {
+                return MongoCircuitBreaker.read(remoteRead);
+            } catch (MongoTimeoutException | MongoSocketException ex) {
+                MongoLocalReplica.setOffline(ex);
+            }
+        }
+
+        return localRead.apply(replica);
+    }
+
+    /**
+     * Wrap the given database read so it is captured by the slow query log
+     * when it takes longer than the threshold.
+     *
+     * @param <R> The read result type.
+     * @param remoteRead Function which reads the database.
+     * @param command Function which creates the command equivalent to the
+     * read, only called for a slow read.
+     * @return The wrapped database read.
+     */
+    private <R> Supplier<R> timed(Supplier<R> remoteRead, Supplier<BsonDocument> command) {
+        return () -> {
+            long start = System.nanoTime();
+            R result = remoteRead.get();
+            MongoSlowQueryLog.capture(this.getCollectionName(), command, System.nanoTime() - start);
+            return result;
+        };
+    }
+
+    /**
+     * Create the find command equivalent to a find with the given options.
+     *
+     * @param filters The query filters, or null.
+     * @param projection The fields to include or exclude, or null.
+     * @param sort The sort criteria, or null.
+     * @param limit The maximum number of documents, or 0 for no limit.
+     * @return The find command.
+     */
+    private BsonDocument findCommand(Bson filters, Bson projection, Bson sort, int limit) {
+        BsonDocument command = new BsonDocument("find", new BsonString(this.getCollectionName()));
+        command.put("filter", filters == null ? new BsonDocument() : this.toBsonDocument(filters));
+        if (projection != null) {
+            command.put("projection", this.toBsonDocument(projection));
+        }
+        if (sort != null) {
+            command.put("sort", this.toBsonDocument(sort));
+        }
+        if (limit > 0) {
+            command.put("limit", new BsonInt32(limit));
+        }
+
+        return command;
+    }
+
+    /**
+     * Create the count command equivalent to a count with the given options.
+     *
+     * @param filters The query filters, or null.
+     * @param limit The maximum number of documents to count, or 0 for no
+     * limit.
+     * @return The count command.
+     */
+    private BsonDocument countCommand(Bson filters, int limit) {
+        BsonDocument command = new BsonDocument("count", new BsonString(this.getCollectionName()));
+        command.put("query", filters == null ? new BsonDocument() : this.toBsonDocument(filters));
+        if (limit > 0) {
+            command.put("limit", new BsonInt32(limit));
+        }
+
+        return command;
+    }
+
+    /**
+     * Create the distinct command equivalent to a distinct with the given
+     * options.
+     *
+     * @param field The field name.
+     * @param filters The query filters.
+     * @return The distinct command.
+     */
+    private BsonDocument distinctCommand(String field, Bson filters) {
+        return new BsonDocument("distinct", new BsonString(this.getCollectionName()))
+                .append("key", new BsonString(field))
+                .append("query", filters == null ? new BsonDocument() : this.toBsonDocument(filters));
+    }
+
+    /**
+     * Create the aggregate command equivalent to the given pipeline.
+     *
+     * @param pipeline The aggregation stages.
+     * @return The aggregate command.
+     */
+    private BsonDocument aggregateCommand(List<Bson> pipeline) {
+        BsonArray stages = new BsonArray();
+        for (Bson stage : pipeline) {
+            stages.add(this.toBsonDocument(stage));
+        }
+
+        return new BsonDocument("aggregate", new BsonString(this.getCollectionName()))
+                .append("pipeline", stages)
+                .append("cursor", new BsonDocument());
+    }
+
+    /**
+     * Convert the given query document, like a filter or a sort, into a BSON
+     * document which can be evaluated on a local copy.
+     *
+     * @param bson The query document, or null.
+     * @return The BSON document, otherwise null.
+     */
+    private BsonDocument toBsonDocument(Bson bson) {
+        return bson == null ? null : bson.toBsonDocument(BsonDocument.class, this.collection.getCodecRegistry());
+    }
+
+    /**
+     * Decode the given documents read from a local copy into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param documents The read documents.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the decoded documents.
+     */
+    private <TResult> ArrayList<TResult> decode(List<BsonDocument> documents, Class<TResult> type) {
+        Codec<TResult> codec = this.collection.getCodecRegistry().get(type);
+
+        ArrayList<TResult> results = new ArrayList<>();
+        for (BsonDocument document : documents) {
+            results.add(codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Decode the given values read from a local copy into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param values The read values.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the decoded values.
+     */
+    private <TResult> ArrayList<TResult> decodeValues(List<BsonValue> values, Class<TResult> type) {
+        Codec<TResult> codec = this.collection.getCodecRegistry().get(type);
+
+        ArrayList<TResult> results = new ArrayList<>();
+        for (BsonValue value : values) {
+            BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument("value", value));
+            reader.readStartDocument();
+            reader.readName();
+            results.add(codec.decode(reader, DecoderContext.builder().build()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Find the documents on the local copy of the collection which match the
+     * given filters, decoding them into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param replica The local copy of the collection.
+     * @param filters The query filters, or null to find all the documents.
+     * @param projection The fields to include or exclude, or null.
+     * @param sort The sort criteria, or null.
+     * @param limit The maximum number of documents to obtain, or 0.
+     * @param type The class of the results type.
+     * @return A list with the found documents.
+     */
+    private <TResult> ArrayList<TResult> findLocally(EmbeddedCollection replica, Bson filters, Bson projection, Bson sort, int limit, Class<TResult> type) {
+        BsonDocument filter = filters == null ? new BsonDocument() : this.toBsonDocument(filters);
+        return this.decode(replica.find(filter, this.toBsonDocument(projection), this.toBsonDocument(sort), limit), type);
     }
 
     /**
@@ -40,7 +451,7 @@ public abstract class MongoRepository {
      * @return The number of documents on the collection.
      */
     protected int count() {
-        return (int) this.collection.countDocuments();
+        return this.read(this.timed(() -> (int) this.collection.countDocuments(new BsonDocument(), new CountOptions().maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS)), () -> this.countCommand(null, 0)), replica -> replica.size());
     }
 
     /**
@@ -51,7 +462,93 @@ public abstract class MongoRepository {
      * @return The number of documents on the collection which match the filters.
      */
     protected int count(Bson filters) {
-        return (int) this.collection.countDocuments(filters);
+        return this.read(this.timed(() -> (int) this.collection.countDocuments(filters, new CountOptions().maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS)), () -> this.countCommand(filters, 0)), replica -> replica.count(this.toBsonDocument(filters), 0));
+    }
+
+    /**
+     * Count the documents on the collection which match with the given
+     * filters, stopping when the limit is reached.
+     *
+     * @param filters The filters.
+     * @param limit The maximum number of documents to count.
+     * @return The number of documents which match the filters, up to the
+     * limit.
+     */
+    protected int count(Bson filters, int limit) {
+        return this.read(this.timed(() -> (int) this.collection.countDocuments(filters, new CountOptions().limit(limit).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS)), () -> this.countCommand(filters, limit)), replica -> replica.count(this.toBsonDocument(filters), limit));
+    }
+
+    /**
+     * Check whether there is any document on the collection which matches
+     * with the given filters.
+     *
+     * With filters on a unique index, only one index key is examined.
+     *
+     * @param filters The filters.
+     * @return true if there is a matching document, otherwise false.
+     */
+    protected boolean exists(Bson filters) {
+        return this.count(filters, 1) > 0;
+    }
+
+    /**
+     * Run the given aggregation pipeline on the collection.
+     *
+     * Note that the aggregations cannot be run on the local copy of the
+     * collection, so they fail while the database cannot be reached.
+     *
+     * @param pipeline The aggregation stages.
+     * @return A list with the documents returned by the last stage.
+     */
+    protected ArrayList<Document> aggregate(List<Bson> pipeline) {
+        return this.aggregate(pipeline, () -> {
+            throw new MongoTimeoutException(String.format("The aggregation cannot be run on the local copy of the %s collection", this.getCollectionName()));
+        });
+    }
+
+    /**
+     * Run the given aggregation pipeline on the collection, or obtain the
+     * same results from the local copy of the collection while the database
+     * cannot be reached.
+     *
+     * @param pipeline The aggregation stages.
+     * @param localAggregation Function which obtains the results of the
+     * pipeline with the finds of the repository, which read the local copy
+     * while the database cannot be reached.
+     * @return A list with the documents returned by the last stage.
+     */
+    protected ArrayList<Document> aggregate(List<Bson> pipeline, Supplier<ArrayList<Document>> localAggregation) {
+        return this.read(this.timed(() -> {
+            AggregateIterable<Document> aggregateIterator = collection.aggregate(pipeline).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return aggregateIterator.into(new ArrayList<>());
+        }, () -> this.aggregateCommand(pipeline)), replica -> localAggregation.get());
+    }
+
+    /**
+     * Run the given aggregation pipeline on another collection, whose last
+     * stage writes the results into a collection.
+     *
+     * Note that it is run through the maintenance connections, since the
+     * whole source collection may be read before writing the results.
+     *
+     * @param sourceCollectionName The name of the collection to aggregate.
+     * @param pipeline The aggregation stages, ending with an $out stage.
+     */
+    protected void aggregateFrom(String sourceCollectionName, List<Bson> pipeline) {
+        this.maintenanceDatabase.getCollection(sourceCollectionName).aggregate(pipeline).toCollection();
+    }
+
+    /**
+     * Obtain the numeric value of an aggregation result field, which may be
+     * of any numeric type.
+     *
+     * @param document The aggregation result document.
+     * @param field The field name.
+     * @return The numeric value, or zero if the field does not exist.
+     */
+    protected Number getNumber(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number ? (Number) value : 0;
     }
 
     /**
@@ -63,8 +560,7 @@ public abstract class MongoRepository {
      * @return A list with the different field values.
      */
     protected <TResult extends Object> ArrayList<TResult> distinct(String field, Class<TResult> type) {
-        DistinctIterable<TResult> distinctIterator = collection.distinct(field, type);
-        return distinctIterator.into(new ArrayList<>());
+        return this.distinct(field, new BsonDocument(), type);
     }
 
     /**
@@ -78,8 +574,10 @@ public abstract class MongoRepository {
      * @return A list with the different field values.
      */
     protected <TResult extends Object> ArrayList<TResult> distinct(String field, Bson filters, Class<TResult> type) {
-        DistinctIterable<TResult> distinctIterator = collection.distinct(field, filters, type);
-        return distinctIterator.into(new ArrayList<>());
+        return this.read(this.timed(() -> {
+            DistinctIterable<TResult> distinctIterator = collection.distinct(field, filters, type).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return distinctIterator.into(new ArrayList<>());
+        }, () -> this.distinctCommand(field, filters)), replica -> this.decodeValues(replica.distinct(field, this.toBsonDocument(filters)), type));
     }
 
     /**
@@ -88,8 +586,7 @@ public abstract class MongoRepository {
      * @return A list with all found documents on the collection.
      */
     protected ArrayList<Document> find() {
-        FindIterable<Document> findIterator = collection.find();
-        return findIterator.into(new ArrayList<>());
+        return this.find(Document.class);
     }
 
     /**
@@ -99,8 +596,222 @@ public abstract class MongoRepository {
      * @return A list with all found documents on the collection.
      */
     protected ArrayList<Document> find(Bson filters) {
-        FindIterable<Document> findIterator = collection.find(filters);
-        return findIterator.into(new ArrayList<>());
+        return this.find(filters, Document.class);
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * only obtaining the fields specified on the projection.
+     *
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @return A list with all found documents on the collection.
+     */
+    protected ArrayList<Document> find(Bson filters, Bson projection) {
+        return this.find(filters, projection, Document.class);
+    }
+
+    /**
+     * Find all the documents on the collection, decoding them into the given
+     * type.
+     *
+     * @param <TResult> The results type.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Class<TResult> type) {
+        return this.read(this.timed(() -> {
+            FindIterable<TResult> findIterator = collection.find(type).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return findIterator.into(new ArrayList<>());
+        }, () -> this.findCommand(null, null, null, 0)), replica -> this.findLocally(replica, null, null, null, 0, type));
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * decoding them into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Class<TResult> type) {
+        return this.read(this.timed(() -> {
+            FindIterable<TResult> findIterator = collection.find(filters, type).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return findIterator.into(new ArrayList<>());
+        }, () -> this.findCommand(filters, null, null, 0)), replica -> this.findLocally(replica, filters, null, null, 0, type));
+    }
+
+    /**
+     * Find all the documents on the collection which match the given filters,
+     * only obtaining the fields specified on the projection and decoding them
+     * into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with all found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Bson projection, Class<TResult> type) {
+        return this.read(this.timed(() -> {
+            FindIterable<TResult> findIterator = collection.find(filters, type).projection(projection).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return findIterator.into(new ArrayList<>());
+        }, () -> this.findCommand(filters, projection, null, 0)), replica -> this.findLocally(replica, filters, projection, null, 0, type));
+    }
+
+    /**
+     * Find the first documents on the collection which match the given
+     * filters, in the given order, decoding them into the given type.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param sort The sort criteria.
+     * @param limit The maximum number of documents to obtain.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @return A list with the found documents on the collection.
+     */
+    protected <TResult> ArrayList<TResult> find(Bson filters, Bson projection, Bson sort, int limit, Class<TResult> type) {
+        return this.read(this.timed(() -> {
+            FindIterable<TResult> findIterator = collection.find(filters, type).projection(projection).sort(sort).limit(limit).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return findIterator.into(new ArrayList<>());
+        }, () -> this.findCommand(filters, projection, sort, limit)), replica -> this.findLocally(replica, filters, projection, sort, limit, type));
+    }
+
+    /**
+     * Stream all the documents on the collection which match the given
+     * filters, in the given order, handing them out in batches.
+     *
+     * Note that only one batch is kept in memory at once, since the documents
+     * are fetched from the database as the batches are consumed. The cursor
+     * is opened through the circuit breaker, so the stream fails fast while
+     * the database cannot be reached, unless the collection has a local copy,
+     * which is streamed instead.
+     *
+     * @param <TResult> The results type.
+     * @param filters The query filters.
+     * @param projection The fields to include or exclude.
+     * @param sort The sort criteria.
+     * @param batchSize The number of documents on each batch.
+     * @param type The class of the results type, which must have a registered
+     * codec.
+     * @param batchConsumer Function which receives each batch of documents.
+     */
+    protected <TResult> void stream(Bson filters, Bson projection, Bson sort, int batchSize, Class<TResult> type, Consumer<List<TResult>> batchConsumer) {
+        MongoCursor<TResult> remoteCursor = this.read(() -> {
+            FindIterable<TResult> findIterator = collection.find(filters, type).projection(projection).sort(sort).batchSize(batchSize);
+            return findIterator.iterator();
+        }, replica -> null);
+
+        if (remoteCursor == null) {
+            EmbeddedCollection replica = MongoLocalReplica.find(this.getCollectionName());
+            List<TResult> documents = this.findLocally(replica, filters, projection, sort, 0, type);
+            for (int start = 0; start < documents.size(); start += batchSize) {
+                batchConsumer.accept(new ArrayList<>(documents.subList(start, Math.min(start + batchSize, documents.size()))));
+            }
+
+            return;
+        }
+
+        try (MongoCursor<TResult> cursor = remoteCursor) {
+            List<TResult> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+
+                if (batch.size() == batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+        }
+    }
+
+    /**
+     * Obtain the sort criteria used by the paginated listings.
+     *
+     * @return A sort indicating that the documents must be sorted by date and
+     * then by code.
+     */
+    protected Bson getPageSort() {
+        return Sorts.ascending("date", "code");
+    }
+
+    /**
+     * Obtain the filter for the documents placed after the given key on the
+     * paginated listings.
+     *
+     * @param afterKey The key of the last obtained document.
+     * @return A filter indicating that the query must only obtain the
+     * documents whose date and code are greater than the given key ones.
+     */
+    protected Bson getAfterKeyFilter(PageKey afterKey) {
+        return afterKey.getAfterFilter();
+    }
+
+    /**
+     * Find the file of the first document which matches the given filters.
+     *
+     * Note that documents stored before the file store was introduced keep
+     * the file embedded, so it is decoded from the document itself.
+     *
+     * @param filters The query filters.
+     * @return The found file, otherwise null.
+     */
+    protected File findFile(Bson filters) {
+        Bson fileProjection = Projections.include("file", "fileHash");
+        Document document = this.read(this.timed(() -> {
+            FindIterable<Document> findIterator = collection.find(filters).projection(fileProjection).maxTime(READ_TIME_LIMIT_MS, TimeUnit.MILLISECONDS);
+            return findIterator.first();
+        }, () -> this.findCommand(filters, fileProjection, null, 1)), replica -> {
+            ArrayList<Document> documents = this.findLocally(replica, filters, fileProjection, null, 1, Document.class);
+            return documents.isEmpty() ? null : documents.get(0);
+        });
+
+        if (document == null) {
+            return null;
+        }
+
+        String fileHash = document.getString("fileHash");
+        if (fileHash != null) {
+            try {
+                FileStore fileStore = RepositoryProvider.get(FileStore.class);
+                return fileStore.load(fileHash);
+            } catch (NotDefinedDatabaseContextException ex) {
+                String className = MongoRepository.class.getName();
+                Logger.getLogger(className).log(Level.INFO, "File cannot be obtained because the database has not been found", ex);
+                return null;
+            }
+        }
+
+        Document fileAttributes = document.get("file", Document.class);
+        return fileAttributes == null ? null : MongoFileConverter.decode(fileAttributes);
+    }
+
+    /**
+     * Store the given file on the file store.
+     *
+     * @param file The file to store.
+     * @return The content hash of the stored file, otherwise null.
+     */
+    protected String storeFile(File file) {
+        try {
+            FileStore fileStore = RepositoryProvider.get(FileStore.class);
+            return fileStore.store(file);
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoRepository.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "File cannot be stored because the database has not been found", ex);
+        }
+
+        return null;
     }
 
     /**
@@ -109,7 +820,55 @@ public abstract class MongoRepository {
      * @param document The document to insert.
      */
     protected void insertOne(Document document) {
-        collection.insertOne(document);
+        ClientSession session = TRANSACTION_SESSION.get();
+        MongoCircuitBreaker.write(() -> session == null
+                ? collection.insertOne(document)
+                : collection.insertOne(session, document));
+    }
+
+    /**
+     * Insert the given document to the associated Mongo collection, which
+     * must not break any unique index.
+     *
+     * @param document The document to insert.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same value for a unique index.
+     */
+    protected void insertUniqueOne(Document document) throws DuplicatedEntityException {
+        try {
+            this.insertOne(document);
+        } catch (MongoWriteException ex) {
+            if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                String message = String.format("The document cannot be inserted on the %s collection: %s", this.getCollectionName(), ex.getError().getMessage());
+                throw new DuplicatedEntityException(message, ex);
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Check whether the stored document with the code of the given one has
+     * the same values for the given keys, for example when a duplicated code
+     * is found while writing a document which may have been written before.
+     *
+     * @param document The document to compare.
+     * @param keys The keys to compare.
+     * @return Whether the stored document has the same values.
+     */
+    protected boolean isStored(Document document, String... keys) {
+        ArrayList<Document> storedDocuments = this.find(Filters.eq("code", document.get("code")), Projections.include(keys));
+        if (storedDocuments.isEmpty()) {
+            return false;
+        }
+
+        for (String key : keys) {
+            if (!Objects.equals(storedDocuments.get(0).get(key), document.get(key))) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -120,10 +879,145 @@ public abstract class MongoRepository {
      * @return Whether the document has been updated or not.
      */
     protected boolean replaceOne(Bson filters, Document document) {
-        UpdateResult updateResult = collection.replaceOne(filters, document);
+        ClientSession session = TRANSACTION_SESSION.get();
+        UpdateResult updateResult = MongoCircuitBreaker.write(() -> session == null
+                ? collection.replaceOne(filters, document)
+                : collection.replaceOne(session, filters, document));
+
         return updateResult.getModifiedCount() == 1;
     }
 
+    /**
+     * Updates the document which matches the filters.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @return Whether the document has been updated or not.
+     */
+    protected boolean updateOne(Bson filters, Bson update) {
+        ClientSession session = TRANSACTION_SESSION.get();
+        UpdateResult updateResult = MongoCircuitBreaker.write(() -> session == null
+                ? collection.updateOne(filters, update)
+                : collection.updateOne(session, filters, update));
+
+        return updateResult.getModifiedCount() == 1;
+    }
+
+    /**
+     * Updates the document which matches the filters, inserting it when there
+     * is no matching document.
+     *
+     * @param filters The query filters, whose equality fields are set on the
+     * inserted document.
+     * @param update The update to apply.
+     */
+    protected void updateOrInsertOne(Bson filters, Bson update) {
+        UpdateOptions options = new UpdateOptions().upsert(true);
+        ClientSession session = TRANSACTION_SESSION.get();
+        MongoCircuitBreaker.write(() -> session == null
+                ? collection.updateOne(filters, update, options)
+                : collection.updateOne(session, filters, update, options));
+    }
+
+    /**
+     * Updates all the documents which match the filters in a single
+     * operation.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @return The number of documents which match the filters.
+     */
+    protected int updateMany(Bson filters, Bson update) {
+        ClientSession session = TRANSACTION_SESSION.get();
+        UpdateResult updateResult = MongoCircuitBreaker.write(() -> session == null
+                ? collection.updateMany(filters, update)
+                : collection.updateMany(session, filters, update));
+
+        return (int) updateResult.getMatchedCount();
+    }
+
+    /**
+     * Updates the document which matches the filters and obtains it in a
+     * single atomic operation.
+     *
+     * @param filters The query filters.
+     * @param update The update to apply.
+     * @param options The options, which indicate whether the document is
+     * obtained before or after the update.
+     * @return The found document, otherwise null.
+     */
+    protected Document findOneAndUpdate(Bson filters, Bson update, FindOneAndUpdateOptions options) {
+        ClientSession session = TRANSACTION_SESSION.get();
+        return MongoCircuitBreaker.write(() -> session == null
+                ? collection.findOneAndUpdate(filters, update, options)
+                : collection.findOneAndUpdate(session, filters, update, options));
+    }
+
+    /**
+     * Updates the document which matches the filters with the changes done on
+     * the given entity.
+     *
+     * Note that only the changed attributes are set on the stored document.
+     * When the entity has no tracked changes, for example because it has been
+     * created from scratch, the whole document is replaced.
+     *
+     * @param <A> The entity attributes type.
+     * @param filters The query filters.
+     * @param entity The entity to update.
+     * @param attributeUpdate Function which obtains the update for a changed
+     * attribute.
+     * @param document Function which creates the whole document.
+     * @return Whether the document has been updated or not.
+     */
+    protected <A extends Enum<A>> boolean updateChanges(Bson filters, TrackedEntity<A> entity, Function<A, Bson> attributeUpdate, Supplier<Document> document) {
+        Set<A> changedAttributes = entity.getChangedAttributes();
+
+        boolean isUpdated;
+        if (changedAttributes.isEmpty()) {
+            isUpdated = this.replaceOne(filters, document.get());
+        } else {
+            List<Bson> updates = new ArrayList<>();
+            for (A attribute : changedAttributes) {
+                updates.add(attributeUpdate.apply(attribute));
+            }
+
+            isUpdated = this.updateOne(filters, Updates.combine(updates));
+        }
+
+        if (isUpdated) {
+            entity.clearChanges();
+        }
+
+        return isUpdated;
+    }
+
+    /**
+     * Updates the document which matches the filters with the changes done on
+     * the given entity, which must not break any unique index.
+     *
+     * @param <A> The entity attributes type.
+     * @param filters The query filters.
+     * @param entity The entity to update.
+     * @param attributeUpdate Function which obtains the update for a changed
+     * attribute.
+     * @param document Function which creates the whole document.
+     * @return Whether the document has been updated or not.
+     * @throws DuplicatedEntityException Thrown when another document has the
+     * same value for a unique index.
+     */
+    protected <A extends Enum<A>> boolean updateUniqueChanges(Bson filters, TrackedEntity<A> entity, Function<A, Bson> attributeUpdate, Supplier<Document> document) throws DuplicatedEntityException {
+        try {
+            return this.updateChanges(filters, entity, attributeUpdate, document);
+        } catch (MongoWriteException ex) {
+            if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                String message = String.format("The document cannot be updated on the %s collection: %s", this.getCollectionName(), ex.getError().getMessage());
+                throw new DuplicatedEntityException(message, ex);
+            }
+
+            throw ex;
+        }
+    }
+
     /**
      * Upserts the document which matches the filters.
      *
@@ -133,11 +1027,53 @@ public abstract class MongoRepository {
      */
     protected boolean upsertOne(Bson filters, Document document) {
         ReplaceOptions options = new ReplaceOptions().upsert(true);
-        UpdateResult updateReplaceResult = collection.replaceOne(filters, document, options);
+        ClientSession session = TRANSACTION_SESSION.get();
+        UpdateResult updateReplaceResult = MongoCircuitBreaker.write(() -> session == null
+                ? collection.replaceOne(filters, document, options)
+                : collection.replaceOne(session, filters, document, options));
 
         boolean hasBeenInserted = updateReplaceResult.getUpsertedId() != null;
         boolean hasBeenModified = updateReplaceResult.getModifiedCount() == 1;
 
         return hasBeenInserted || hasBeenModified;
     }
+
+    /**
+     * Run the given operations inside a multi-document transaction.
+     *
+     * All the writes done by the repositories on the current thread while the
+     * operations are running belong to the transaction, which is committed
+     * only if the operations succeed. Nested calls join the running
+     * transaction.
+     *
+     * @param operations The operations to run, which indicate whether they
+     * have succeeded or not.
+     * @return Whether the transaction has been committed or not.
+     */
+    protected boolean inTransaction(Supplier<Boolean> operations) {
+        if (TRANSACTION_SESSION.get() != null) {
+            return operations.get();
+        }
+
+        try (ClientSession session = MongoDatabaseConnection.startSession()) {
+            TRANSACTION_SESSION.set(session);
+            session.startTransaction();
+
+            boolean isSuccessful = operations.get();
+            if (isSuccessful) {
+                session.commitTransaction();
+            } else {
+                session.abortTransaction();
+            }
+
+            return isSuccessful;
+        } catch (MongoException | NotDefinedDatabaseContextException ex) {
+            String className = MongoRepository.class.getName();
+            Logger.getLogger(className).log(Level.WARNING, "Transaction not committed", ex);
+            return false;
+        } finally {
+            TRANSACTION_SESSION.remove();
+        }
+    }
+
 }
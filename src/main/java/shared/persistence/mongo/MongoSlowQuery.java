@@ -0,0 +1,110 @@
+package shared.persistence.mongo;
+
+import java.util.Date;
+
+/**
+ * Represents a query which took longer than the slow query threshold, along
+ * with the plan the database used to run it.
+ */
+public class MongoSlowQuery {
+
+    /**
+     * Date when the query was run.
+     */
+    private final Date date;
+
+    /**
+     * Name of the queried collection.
+     */
+    private final String collection;
+
+    /**
+     * Command equivalent to the query, as extended JSON, including its
+     * filter and its sort.
+     */
+    private final String command;
+
+    /**
+     * Time (in milliseconds) spent on the query.
+     */
+    private final long elapsedMillis;
+
+    /**
+     * Execution statistics of the query plan, as extended JSON, or null if
+     * the query has not been explained.
+     */
+    private final String explanation;
+
+    /**
+     * Constructor.
+     *
+     * @param date The date when the query was run.
+     * @param collection The name of the queried collection.
+     * @param command The command equivalent to the query, as extended JSON.
+     * @param elapsedMillis The time (in milliseconds) spent on the query.
+     * @param explanation The execution statistics of the query plan, as
+     * extended JSON, or null if the query has not been explained.
+     */
+    public MongoSlowQuery(Date date, String collection, String command, long elapsedMillis, String explanation) {
+        this.date = new Date(date.getTime());
+        this.collection = collection;
+        this.command = command;
+        this.elapsedMillis = elapsedMillis;
+        this.explanation = explanation;
+    }
+
+    /**
+     * Obtain the date when the query was run.
+     *
+     * @return The query date.
+     */
+    public Date getDate() {
+        return new Date(this.date.getTime());
+    }
+
+    /**
+     * Obtain the name of the queried collection.
+     *
+     * @return The collection name.
+     */
+    public String getCollection() {
+        return this.collection;
+    }
+
+    /**
+     * Obtain the command equivalent to the query.
+     *
+     * @return The command, as extended JSON.
+     */
+    public String getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Obtain the time spent on the query.
+     *
+     * @return The elapsed time, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * Obtain the execution statistics of the query plan.
+     *
+     * @return The explanation, as extended JSON, otherwise null if the query
+     * has not been explained.
+     */
+    public String getExplanation() {
+        return this.explanation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%tFT%<tT %s %d ms%n  command: %s%n  executionStats: %s", this.date, this.collection, this.elapsedMillis, this.command, this.explanation);
+    }
+
+}
@@ -0,0 +1,270 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Captures the queries which take longer than the "SLOW_QUERY_THRESHOLD"
+ * application configuration variable, in milliseconds, where 0 disables the
+ * capture.
+ *
+ * Each slow query is explained with the "executionStats" verbosity on a
+ * background thread, and it is kept on a bounded buffer of the latest ones
+ * and written to a rotating log file. A query shape, which is a query without
+ * its values, is only explained once per interval, since the explanation
+ * runs the query again.
+ */
+public class MongoSlowQueryLog {
+
+    /**
+     * Default threshold (in milliseconds) above which a query is slow.
+     */
+    private static final int DEFAULT_THRESHOLD = 500;
+
+    /**
+     * Maximum number of slow queries kept in memory.
+     */
+    private static final int CAPACITY = 100;
+
+    /**
+     * Maximum number of slow queries waiting to be explained.
+     */
+    private static final int MAX_PENDING_EXPLANATIONS = 10;
+
+    /**
+     * Milliseconds to wait before explaining a query shape again.
+     */
+    private static final long EXPLANATION_INTERVAL = 600000;
+
+    /**
+     * Pattern of the rotating log files.
+     */
+    private static final Path LOG_FILE_PATTERN = Paths.get(System.getProperty("user.home"), ".fgen", "slowqueries.%g.log");
+
+    /**
+     * Maximum size (in bytes) of each log file.
+     */
+    private static final int LOG_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * Number of rotated log files.
+     */
+    private static final int NUM_LOG_FILES = 5;
+
+    /**
+     * Settings to write the commands and the explanations.
+     */
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+    /**
+     * Latest slow queries, from the oldest to the newest.
+     */
+    private static final ArrayDeque<MongoSlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Time, in milliseconds, when each query shape was last explained.
+     */
+    private static final Map<String, Long> explanationTimes = new HashMap<>();
+
+    /**
+     * Executor which explains the slow queries, discarding them when too
+     * many are waiting.
+     */
+    private static final ThreadPoolExecutor explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_EXPLANATIONS), runnable -> {
+        Thread thread = new Thread(runnable, "slow-query-explainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Logger which writes the slow queries to the rotating log files, or null
+     * if it has not been created yet.
+     */
+    private static Logger fileLogger = null;
+
+    /**
+     * Obtain the threshold above which a query is slow.
+     *
+     * @return The configured threshold, in milliseconds.
+     */
+    private static int getThreshold() {
+        Integer threshold = ApplicationConfiguration.getConfigurationVariable(ConfigurationVariable.SLOW_QUERY_THRESHOLD);
+        return threshold == null || threshold < 0 ? DEFAULT_THRESHOLD : threshold;
+    }
+
+    /**
+     * Obtain the logger which writes to the rotating log files, creating it
+     * the first time.
+     *
+     * @return The file logger.
+     */
+    private static synchronized Logger getFileLogger() {
+        if (fileLogger == null) {
+            fileLogger = Logger.getLogger(MongoSlowQueryLog.class.getName() + ".file");
+            fileLogger.setUseParentHandlers(false);
+
+            try {
+                Files.createDirectories(LOG_FILE_PATTERN.getParent());
+                FileHandler handler = new FileHandler(LOG_FILE_PATTERN.toString(), LOG_FILE_SIZE, NUM_LOG_FILES, true);
+                handler.setFormatter(new SimpleFormatter());
+                fileLogger.addHandler(handler);
+            } catch (IOException ex) {
+                Logger.getLogger(MongoSlowQueryLog.class.getName()).log(Level.WARNING, "Slow queries are only kept in memory because the log file cannot be opened", ex);
+            }
+        }
+
+        return fileLogger;
+    }
+
+    /**
+     * Obtain the shape of the given query value, replacing each value by a
+     * placeholder.
+     *
+     * @param value The query value.
+     * @return The query value shape.
+     */
+    private static BsonValue getShape(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument shape = new BsonDocument();
+            for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+                shape.put(field.getKey(), MongoSlowQueryLog.getShape(field.getValue()));
+            }
+
+            return shape;
+        }
+
+        if (value.isArray() && !value.asArray().isEmpty()) {
+            return new BsonArray(Collections.singletonList(MongoSlowQueryLog.getShape(value.asArray().get(0))));
+        }
+
+        return new BsonString("?");
+    }
+
+    /**
+     * Check whether the query with the given shape must be explained, which
+     * is when it has not been explained recently.
+     *
+     * @param shape The query shape.
+     * @return Whether the query must be explained.
+     */
+    private static synchronized boolean mustExplain(String shape) {
+        long now = System.currentTimeMillis();
+
+        Long explanationTime = explanationTimes.get(shape);
+        if (explanationTime != null && now - explanationTime < EXPLANATION_INTERVAL) {
+            return false;
+        }
+
+        explanationTimes.put(shape, now);
+        return true;
+    }
+
+    /**
+     * Explain the given command with the "executionStats" verbosity.
+     *
+     * @param command The command.
+     * @return The execution statistics, as extended JSON.
+     */
+    private static String explain(BsonDocument command) {
+        try {
+            Document explainCommand = new Document("explain", command).append("verbosity", "executionStats");
+            Document explanation = MongoDatabaseConnection.getInstance().runCommand(explainCommand);
+
+            Object executionStats = explanation.get("executionStats");
+            return executionStats instanceof Document ? ((Document) executionStats).toJson(JSON_SETTINGS) : explanation.toJson(JSON_SETTINGS);
+        } catch (NotDefinedDatabaseContextException | MongoException ex) {
+            Logger.getLogger(MongoSlowQueryLog.class.getName()).log(Level.FINE, "Slow query cannot be explained", ex);
+            return String.format("\"%s\"", ex.getMessage());
+        }
+    }
+
+    /**
+     * Keep the given slow query and write it to the log file.
+     *
+     * @param slowQuery The slow query.
+     */
+    private static void add(MongoSlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            if (slowQueries.size() == CAPACITY) {
+                slowQueries.removeFirst();
+            }
+
+            slowQueries.addLast(slowQuery);
+        }
+
+        MongoSlowQueryLog.getFileLogger().log(Level.WARNING, slowQuery.toString());
+    }
+
+    /**
+     * Capture the query equivalent to the given command when it took longer
+     * than the threshold.
+     *
+     * @param collection The name of the queried collection.
+     * @param command Function which creates the command equivalent to the
+     * query, only called for a slow query.
+     * @param elapsedNanos The time (in nanoseconds) spent on the query.
+     */
+    public static void capture(String collection, Supplier<BsonDocument> command, long elapsedNanos) {
+        int threshold = MongoSlowQueryLog.getThreshold();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (threshold == 0 || elapsedMillis < threshold) {
+            return;
+        }
+
+        Date date = new Date();
+        BsonDocument slowCommand = command.get();
+        String commandJson = slowCommand.toJson(JSON_SETTINGS);
+
+        if (!MongoSlowQueryLog.mustExplain(MongoSlowQueryLog.getShape(slowCommand).toString())) {
+            MongoSlowQueryLog.add(new MongoSlowQuery(date, collection, commandJson, elapsedMillis, null));
+            return;
+        }
+
+        try {
+            explainer.execute(() -> MongoSlowQueryLog.add(new MongoSlowQuery(date, collection, commandJson, elapsedMillis, MongoSlowQueryLog.explain(slowCommand))));
+        } catch (RejectedExecutionException ex) {
+            MongoSlowQueryLog.add(new MongoSlowQuery(date, collection, commandJson, elapsedMillis, null));
+        }
+    }
+
+    /**
+     * Obtain the latest slow queries.
+     *
+     * @return A list with the slow queries, from the oldest to the newest.
+     */
+    public static List<MongoSlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package shared.persistence.mongo;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import shared.persistence.StorageBackend;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Storage on a remote Mongo database, which can be shared by several
+ * applications.
+ */
+public class MongoStorageBackend implements StorageBackend {
+
+    /**
+     * Database user name.
+     */
+    private final String dbUsername;
+
+    /**
+     * Database password.
+     */
+    private final String dbPassword;
+
+    /**
+     * Database host.
+     */
+    private final String dbHost;
+
+    /**
+     * Database name.
+     */
+    private final String dbName;
+
+    /**
+     * Constructor.
+     *
+     * @param dbUsername The database user name.
+     * @param dbPassword The database password.
+     * @param dbHost The database host.
+     * @param dbName The database name.
+     */
+    public MongoStorageBackend(String dbUsername, String dbPassword, String dbHost, String dbName) {
+        this.dbUsername = dbUsername;
+        this.dbPassword = dbPassword;
+        this.dbHost = dbHost;
+        this.dbName = dbName;
+    }
+
+    /**
+     * Start the given task on a daemon thread.
+     *
+     * @param task The task.
+     * @param name The thread name.
+     */
+    private void start(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open() {
+        MongoDatabaseConnection.setInstance(this.dbUsername, this.dbPassword, this.dbHost, this.dbName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Note that the missing indexes are created, the embedded files are moved
+     * to the file store, the changes done by other applications are watched
+     * and the collections are copied to be read without connection.
+     */
+    @Override
+    public void startBackgroundTasks() {
+        this.start(new MongoIndexBootstrapper(), "index-creation");
+
+        try {
+            this.start(new MongoFileMigrator(), "file-migration");
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = MongoStorageBackend.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Files not migrated because the database has not been found", ex);
+        }
+
+        this.start(new MongoChangeWatcher(), "change-watcher");
+        this.start(new MongoLocalReplica(), "replica-sync");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        MongoDatabaseConnection.close();
+    }
+
+}
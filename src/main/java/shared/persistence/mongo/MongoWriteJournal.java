@@ -0,0 +1,555 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+import shared.persistence.ConnectionNotifier;
+import shared.persistence.exceptions.DuplicatedEntityException;
+
+/**
+ * Local journal which acknowledges the documents to write as soon as they
+ * are stored on disk, and writes them to the Mongo database on a background
+ * thread.
+ *
+ * Each document is appended to the journal file, together with a copy of its
+ * file, and both are forced to disk before acknowledging it. The pending
+ * documents are written in batches, retrying them with an increasing delay
+ * while the database cannot be reached, and the ones left when the
+ * application finishes are written again when the journal is opened. A
+ * document which cannot be written yet is moved behind the other pending
+ * ones, so it does not hold them back, and a document which can never be
+ * written is moved to the rejected documents file, along with its file.
+ *
+ * The number of pending and rejected documents, and whether the last write
+ * failed, are reported to the connection notifier, so they can be shown to
+ * the user.
+ */
+public class MongoWriteJournal {
+
+    /**
+     * Writes a journaled document to the database.
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        /**
+         * Write the given document to the database.
+         *
+         * Note that it may be called again for an already written document,
+         * if the application finished before recording it.
+         *
+         * @param document The journaled document.
+         * @param file The journaled copy of the document file.
+         * @return Whether the document has been written, otherwise it is kept
+         * on the journal and retried later.
+         * @throws DuplicatedEntityException Thrown when the document can never
+         * be written, since its code has been taken by another document.
+         */
+        public boolean write(Document document, File file) throws DuplicatedEntityException;
+
+    }
+
+    /**
+     * Directory where the journals are stored.
+     */
+    private static final Path JOURNAL_DIRECTORY = Paths.get(System.getProperty("user.home"), ".fgen", "journal");
+
+    /**
+     * Maximum number of documents written on each batch.
+     */
+    private static final int BATCH_SIZE = 20;
+
+    /**
+     * Milliseconds to wait before retrying the first time.
+     */
+    private static final long MIN_RETRY_DELAY = 1000;
+
+    /**
+     * Maximum milliseconds to wait before retrying.
+     */
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    /**
+     * Settings to write the journal records, keeping the BSON types.
+     */
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    /**
+     * Journal name, usually the collection.
+     */
+    private final String name;
+
+    /**
+     * Writes the journaled documents to the database.
+     */
+    private final Writer writer;
+
+    /**
+     * Directory with the copies of the journaled files.
+     */
+    private final Path filesDirectory;
+
+    /**
+     * Path of the file with the records of the documents which can never be
+     * written.
+     */
+    private final Path rejectedPath;
+
+    /**
+     * Journal file channel, opened to append records.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Records of the documents not written yet, indexed by their
+     * identifier.
+     */
+    private final Map<String, Document> pendingRecords;
+
+    /**
+     * Number of documents which can never be written.
+     */
+    private int rejectedCount;
+
+    /**
+     * Whether the last attempt to write the pending documents failed.
+     */
+    private boolean stalled;
+
+    /**
+     * Constructor.
+     *
+     * The documents left on the journal are written again on the background.
+     *
+     * @param name The journal name, usually the collection.
+     * @param writer Function which writes a journaled document to the
+     * database.
+     * @throws IOException Thrown when the journal cannot be opened.
+     */
+    public MongoWriteJournal(String name, Writer writer) throws IOException {
+        this(JOURNAL_DIRECTORY, name, writer);
+    }
+
+    /**
+     * Constructor.
+     *
+     * The documents left on the journal are written again on the background.
+     *
+     * @param directory The directory where the journal is stored.
+     * @param name The journal name, usually the collection.
+     * @param writer Function which writes a journaled document to the
+     * database.
+     * @throws IOException Thrown when the journal cannot be opened.
+     */
+    MongoWriteJournal(Path directory, String name, Writer writer) throws IOException {
+        this.name = name;
+        this.writer = writer;
+        this.filesDirectory = directory.resolve(name);
+        this.rejectedPath = directory.resolve(name + ".rejected");
+        this.pendingRecords = new LinkedHashMap<>();
+        this.rejectedCount = 0;
+        this.stalled = false;
+
+        Files.createDirectories(this.filesDirectory);
+        Path journalPath = directory.resolve(name + ".journal");
+
+        if (Files.exists(journalPath)) {
+            this.load(journalPath);
+        }
+
+        if (Files.exists(this.rejectedPath)) {
+            this.rejectedCount = Files.readAllLines(this.rejectedPath, StandardCharsets.UTF_8).size();
+        }
+
+        this.channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.publishPendingWrites();
+
+        Thread flusher = new Thread(this::flushContinuously, name + "-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Load the records of the documents not written yet from the journal.
+     *
+     * Note that the last record may be incomplete if the application
+     * finished while appending it, which is ignored since it was never
+     * acknowledged.
+     *
+     * @param journalPath The journal file path.
+     * @throws IOException Thrown when the journal cannot be read.
+     */
+    private void load(Path journalPath) throws IOException {
+        for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+            Document record;
+            try {
+                record = Document.parse(line);
+            } catch (JsonParseException ex) {
+                continue;
+            }
+
+            String id = record.getString("id");
+            if (record.containsKey("document")) {
+                this.pendingRecords.put(id, record);
+            } else {
+                this.pendingRecords.remove(id);
+            }
+        }
+
+        if (!this.pendingRecords.isEmpty()) {
+            String message = String.format("%d documents of the %s journal will be written again", this.pendingRecords.size(), this.name);
+            Logger.getLogger(MongoWriteJournal.class.getName()).log(Level.INFO, message);
+        }
+    }
+
+    /**
+     * Append the given records to the journal and force them to disk.
+     *
+     * @param records The records to append.
+     * @throws IOException Thrown when the journal cannot be written.
+     */
+    private void append(List<Document> records) throws IOException {
+        this.append(this.channel, records);
+    }
+
+    /**
+     * Append the given records to the given file channel and force them to
+     * disk.
+     *
+     * @param fileChannel The file channel, opened to append records.
+     * @param records The records to append.
+     * @throws IOException Thrown when the file cannot be written.
+     */
+    private void append(FileChannel fileChannel, List<Document> records) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Document record : records) {
+            lines.append(record.toJson(JSON_SETTINGS)).append('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+
+        fileChannel.force(true);
+    }
+
+    /**
+     * Copy the given file to the journal and force it to disk.
+     *
+     * Note that the copy keeps the file extension, which is stored along with
+     * the file content.
+     *
+     * @param id The record identifier.
+     * @param file The file to copy.
+     * @return The journaled copy of the file.
+     * @throws IOException Thrown when the file cannot be copied.
+     */
+    private Path copyFile(String id, File file) throws IOException {
+        String fileName = file.getName();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String extension = extensionIndex < 0 ? "" : fileName.substring(extensionIndex);
+
+        Path journaledFile = this.filesDirectory.resolve(id + extension);
+        Files.copy(file.toPath(), journaledFile, StandardCopyOption.REPLACE_EXISTING);
+
+        try (FileChannel fileChannel = FileChannel.open(journaledFile, StandardOpenOption.WRITE)) {
+            fileChannel.force(true);
+        }
+
+        return journaledFile;
+    }
+
+    /**
+     * Report the number of pending and rejected documents, and whether the
+     * last write failed, to the connection notifier.
+     */
+    private void publishPendingWrites() {
+        int pendingCount;
+        int rejected;
+        boolean isStalled;
+        synchronized (this) {
+            pendingCount = this.pendingRecords.size();
+            rejected = this.rejectedCount;
+            isStalled = this.stalled;
+        }
+
+        ConnectionNotifier.setPendingWrites(this.name, pendingCount, rejected, isStalled);
+    }
+
+    /**
+     * Add the given document to the journal, so it is written to the
+     * database on the background.
+     *
+     * Note that the document is written straight to the database when the
+     * journal cannot be written.
+     *
+     * @param document The document to write.
+     * @param file The document file, which is copied to the journal.
+     */
+    public void add(Document document, File file) {
+        String id = UUID.randomUUID().toString();
+
+        try {
+            Path journaledFile = this.copyFile(id, file);
+            Document record = new Document("id", id).append("document", document).append("file", journaledFile.toString());
+
+            synchronized (this) {
+                List<Document> records = new ArrayList<>();
+                records.add(record);
+                this.append(records);
+
+                this.pendingRecords.put(id, record);
+                this.notifyAll();
+            }
+        } catch (IOException ex) {
+            String message = String.format("The %s journal cannot be written, so the document is written straight to the database", this.name);
+            Logger.getLogger(MongoWriteJournal.class.getName()).log(Level.WARNING, message, ex);
+
+            try {
+                this.writer.write(document, file);
+            } catch (DuplicatedEntityException duplicatedEx) {
+                String rejectedMessage = String.format("A document of the %s journal can never be written", this.name);
+                Logger.getLogger(MongoWriteJournal.class.getName()).log(Level.SEVERE, rejectedMessage, duplicatedEx);
+            }
+
+            return;
+        }
+
+        this.publishPendingWrites();
+    }
+
+    /**
+     * Check whether any document matching the given condition is waiting to
+     * be written.
+     *
+     * @param condition The condition of the documents.
+     * @return Whether any pending document matches the condition.
+     */
+    public synchronized boolean hasPending(Predicate<Document> condition) {
+        for (Document record : this.pendingRecords.values()) {
+            if (condition.test(record.get("document", Document.class))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Obtain the next batch of documents to write, waiting until there is
+     * any.
+     *
+     * @return A list with the records of the documents to write.
+     * @throws InterruptedException Thrown when the thread is interrupted
+     * while waiting.
+     */
+    private synchronized List<Document> takeBatch() throws InterruptedException {
+        while (this.pendingRecords.isEmpty()) {
+            this.wait();
+        }
+
+        List<Document> batch = new ArrayList<>();
+        for (Document record : this.pendingRecords.values()) {
+            if (batch.size() == BATCH_SIZE) {
+                break;
+            }
+
+            batch.add(record);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Record the outcome of the given batch: the written documents are
+     * removed, along with their files, the rejected ones are moved to the
+     * rejected documents file, keeping their files, and the other ones are
+     * moved behind the rest of the pending documents. The journal is emptied
+     * when there is nothing else to write.
+     *
+     * @param batch The records of the documents of the batch.
+     * @param writtenRecords The records of the written documents.
+     * @param rejectedRecords The records of the documents which can never be
+     * written.
+     * @throws IOException Thrown when the journal cannot be written.
+     */
+    private synchronized void complete(List<Document> batch, List<Document> writtenRecords, List<Document> rejectedRecords) throws IOException {
+        if (!rejectedRecords.isEmpty()) {
+            try (FileChannel rejectedChannel = FileChannel.open(this.rejectedPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                this.append(rejectedChannel, rejectedRecords);
+            }
+
+            this.rejectedCount += rejectedRecords.size();
+        }
+
+        List<Document> completionRecords = new ArrayList<>();
+        for (Document record : writtenRecords) {
+            completionRecords.add(new Document("id", record.getString("id")));
+        }
+        for (Document record : rejectedRecords) {
+            completionRecords.add(new Document("id", record.getString("id")));
+        }
+
+        if (!completionRecords.isEmpty()) {
+            this.append(completionRecords);
+        }
+
+        for (Document record : writtenRecords) {
+            this.pendingRecords.remove(record.getString("id"));
+            Files.deleteIfExists(Paths.get(record.getString("file")));
+        }
+        for (Document record : rejectedRecords) {
+            this.pendingRecords.remove(record.getString("id"));
+        }
+
+        // The insertion order is the writing order, so they are inserted again.
+        for (Document record : batch) {
+            String id = record.getString("id");
+            if (this.pendingRecords.remove(id) != null) {
+                this.pendingRecords.put(id, record);
+            }
+        }
+
+        if (this.pendingRecords.isEmpty()) {
+            this.channel.truncate(0);
+            this.channel.force(true);
+        }
+    }
+
+    /**
+     * Write the given batch of documents to the database, until the database
+     * cannot be reached.
+     *
+     * @param batch The records of the documents to write.
+     * @param writtenRecords The list where the records of the written
+     * documents are added.
+     * @param rejectedRecords The list where the records of the documents
+     * which can never be written are added.
+     * @return Whether the database could be reached for the whole batch.
+     */
+    private boolean write(List<Document> batch, List<Document> writtenRecords, List<Document> rejectedRecords) {
+        Logger logger = Logger.getLogger(MongoWriteJournal.class.getName());
+
+        for (Document record : batch) {
+            Document document = record.get("document", Document.class);
+            File file = new File(record.getString("file"));
+
+            try {
+                if (this.writer.write(document, file)) {
+                    writtenRecords.add(record);
+                }
+            } catch (DuplicatedEntityException ex) {
+                String message = String.format("The document %s of the %s journal can never be written, so it is moved to %s", record.getString("id"), this.name, this.rejectedPath);
+                logger.log(Level.SEVERE, message, ex);
+                rejectedRecords.add(record);
+            } catch (MongoTimeoutException | MongoSocketException ex) {
+                String message = String.format("The documents of the %s journal cannot be written until the database is reached", this.name);
+                logger.log(Level.WARNING, message, ex);
+                return false;
+            } catch (RuntimeException ex) {
+                // It is retried after the other pending documents, so they are not held back.
+                String message = String.format("The document %s of the %s journal cannot be written", record.getString("id"), this.name);
+                logger.log(Level.SEVERE, message, ex);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Record whether the last attempt to write the pending documents failed,
+     * reporting it along with the number of pending documents.
+     *
+     * @param failed Whether the last attempt failed.
+     */
+    private void setStalled(boolean failed) {
+        synchronized (this) {
+            this.stalled = failed;
+        }
+
+        this.publishPendingWrites();
+    }
+
+    /**
+     * Write the pending documents to the database while the application is
+     * running, retrying them with an increasing delay while the database
+     * cannot be reached.
+     *
+     * Note that the documents written before the journal cannot record it
+     * are kept as pending, so they are written again. When no document of a
+     * batch can be written, the next one is tried after the minimum delay.
+     */
+    private void flushContinuously() {
+        long retryDelay = MIN_RETRY_DELAY;
+
+        while (true) {
+            boolean unreachable;
+            boolean failed;
+            boolean progressed;
+            try {
+                List<Document> batch = this.takeBatch();
+                List<Document> writtenRecords = new ArrayList<>();
+                List<Document> rejectedRecords = new ArrayList<>();
+
+                unreachable = !this.write(batch, writtenRecords, rejectedRecords);
+                this.complete(batch, writtenRecords, rejectedRecords);
+
+                int numCompleted = writtenRecords.size() + rejectedRecords.size();
+                failed = numCompleted < batch.size();
+                progressed = numCompleted > 0;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ex) {
+                String message = String.format("The %s journal cannot record the written documents, so they will be written again", this.name);
+                Logger.getLogger(MongoWriteJournal.class.getName()).log(Level.SEVERE, message, ex);
+                unreachable = false;
+                failed = true;
+                progressed = false;
+            }
+
+            this.setStalled(failed);
+
+            if (!unreachable) {
+                retryDelay = MIN_RETRY_DELAY;
+                if (progressed || !failed) {
+                    continue;
+                }
+            }
+
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (unreachable) {
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+            }
+        }
+    }
+
+}
@@ -1,6 +1,24 @@
 package shared.presentation;
 
+import com.mongodb.MongoException;
+import container.persistence.ContainerRepository;
+import container.persistence.embedded.EmbeddedContainerRepository;
+import container.persistence.mongo.MongoContainerRepository;
+import customer.persistence.CustomerRepository;
+import customer.persistence.embedded.EmbeddedCustomerRepository;
+import customer.persistence.mongo.MongoCustomerRepository;
+import deliverynote.application.usecases.RebuildDeliveryNoteRollups;
+import deliverynote.persistence.DeliveryNoteRepository;
+import deliverynote.persistence.DeliveryNoteRollupRepository;
+import deliverynote.persistence.embedded.EmbeddedDeliveryNoteRepository;
+import deliverynote.persistence.embedded.EmbeddedDeliveryNoteRollupRepository;
+import deliverynote.persistence.mongo.MongoDeliveryNoteRepository;
+import deliverynote.persistence.mongo.MongoDeliveryNoteRollupRepository;
+import invoice.persistence.InvoiceRepository;
+import invoice.persistence.embedded.EmbeddedInvoiceRepository;
+import invoice.persistence.mongo.MongoInvoiceRepository;
 import java.io.Console;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
@@ -8,21 +26,52 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFrame;
 import password.application.usecases.CheckPassword;
+import password.persistence.PasswordRepository;
+import password.persistence.embedded.EmbeddedPasswordRepository;
 import password.persistence.mongo.MongoPasswordRepository;
+import product.persistence.ProductRepository;
+import product.persistence.embedded.EmbeddedProductRepository;
+import product.persistence.mongo.MongoProductRepository;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.FileStore;
+import shared.persistence.PersistenceMetrics;
+import shared.persistence.RepositoryFactory;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
+import shared.persistence.embedded.EmbeddedFileStore;
+import shared.persistence.embedded.EmbeddedSequenceRepository;
+import shared.persistence.embedded.EmbeddedStorageBackend;
+import shared.persistence.embedded.MemoryFileStore;
+import shared.persistence.embedded.MemoryStorageBackend;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
-import shared.persistence.mongo.MongoDatabaseConnection;
+import shared.persistence.mongo.MongoFileStore;
+import shared.persistence.mongo.MongoSequenceRepository;
+import shared.persistence.mongo.MongoStorageBackend;
 import shared.presentation.dictionary.languages.SpanishDictionary;
 import shared.presentation.exceptions.MissingSystemArgumentsContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
+import subtotal.persistence.SubtotalRepository;
+import subtotal.persistence.embedded.EmbeddedSubtotalRepository;
+import subtotal.persistence.mongo.MongoSubtotalRepository;
+import template.persistence.TemplateRepository;
+import template.persistence.embedded.EmbeddedTemplateRepository;
+import template.persistence.mongo.MongoTemplateRepository;
+import variable.persistence.VariableRepository;
+import variable.persistence.embedded.EmbeddedVariableRepository;
+import variable.persistence.mongo.MongoVariableRepository;
 
 /**
  * Main application class, which will load the system UI.
  */
 public class Main {
 
+    /**
+     * Prefix of the system properties which hold the optional settings.
+     */
+    private static final String SETTING_PREFIX = "fgen.";
+
     /**
      * Check whether the password matches or not.
      *
@@ -31,7 +80,7 @@ public class Main {
      */
     private static boolean checkPassword(char[] password) {
         try {
-            MongoPasswordRepository passwordRepository = new MongoPasswordRepository();
+            PasswordRepository passwordRepository = RepositoryProvider.get(PasswordRepository.class);
             CheckPassword checkPassword = new CheckPassword(passwordRepository);
             return checkPassword.execute(password);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -130,9 +179,126 @@ public class Main {
         return templatesMapping;
     }
 
+    /**
+     * Register the repository implementations on the Mongo database.
+     */
+    private static void registerMongoRepositories() {
+        RepositoryProvider.register(ContainerRepository.class, MongoContainerRepository::new);
+        RepositoryProvider.register(CustomerRepository.class, MongoCustomerRepository::new);
+        RepositoryProvider.register(DeliveryNoteRepository.class, MongoDeliveryNoteRepository::new);
+        RepositoryProvider.register(DeliveryNoteRollupRepository.class, MongoDeliveryNoteRollupRepository::new);
+        RepositoryProvider.register(FileStore.class, MongoFileStore::new);
+        RepositoryProvider.register(InvoiceRepository.class, MongoInvoiceRepository::new);
+        RepositoryProvider.register(PasswordRepository.class, MongoPasswordRepository::new);
+        RepositoryProvider.register(ProductRepository.class, MongoProductRepository::new);
+        RepositoryProvider.register(SequenceRepository.class, MongoSequenceRepository::new);
+        RepositoryProvider.register(SubtotalRepository.class, MongoSubtotalRepository::new);
+        RepositoryProvider.register(TemplateRepository.class, MongoTemplateRepository::new);
+        RepositoryProvider.register(VariableRepository.class, MongoVariableRepository::new);
+    }
+
+    /**
+     * Register the repository implementations on the embedded database.
+     *
+     * @param fileStore The factory of the file store, which depends on whether
+     * the embedded database is kept on disk or only in memory.
+     */
+    private static void registerEmbeddedRepositories(RepositoryFactory<FileStore> fileStore) {
+        RepositoryProvider.register(ContainerRepository.class, EmbeddedContainerRepository::new);
+        RepositoryProvider.register(CustomerRepository.class, EmbeddedCustomerRepository::new);
+        RepositoryProvider.register(DeliveryNoteRepository.class, EmbeddedDeliveryNoteRepository::new);
+        RepositoryProvider.register(DeliveryNoteRollupRepository.class, EmbeddedDeliveryNoteRollupRepository::new);
+        RepositoryProvider.register(FileStore.class, fileStore);
+        RepositoryProvider.register(InvoiceRepository.class, EmbeddedInvoiceRepository::new);
+        RepositoryProvider.register(PasswordRepository.class, EmbeddedPasswordRepository::new);
+        RepositoryProvider.register(ProductRepository.class, EmbeddedProductRepository::new);
+        RepositoryProvider.register(SequenceRepository.class, EmbeddedSequenceRepository::new);
+        RepositoryProvider.register(SubtotalRepository.class, EmbeddedSubtotalRepository::new);
+        RepositoryProvider.register(TemplateRepository.class, EmbeddedTemplateRepository::new);
+        RepositoryProvider.register(VariableRepository.class, EmbeddedVariableRepository::new);
+    }
+
+    /**
+     * Set the storage backend which will be used by the system, registering
+     * its repository implementations.
+     *
+     * @param storageBackend The storage backend name, which is either "mongo",
+     * "embedded" or "memory".
+     * @param dbUsername The database user name.
+     * @param dbPassword The database password.
+     * @param dbHost The database host.
+     * @param dbName The database name.
+     * @param latency The time (in milliseconds) waited on each operation by
+     * the memory storage backend.
+     */
+    private static void setStorageBackend(String storageBackend, String dbUsername, String dbPassword, String dbHost, String dbName, long latency) {
+        switch (storageBackend) {
+            case "mongo":
+                RepositoryProvider.setStorageBackend(new MongoStorageBackend(dbUsername, dbPassword, dbHost, dbName));
+                Main.registerMongoRepositories();
+                break;
+            case "embedded":
+                RepositoryProvider.setStorageBackend(new EmbeddedStorageBackend(dbName));
+                Main.registerEmbeddedRepositories(EmbeddedFileStore::new);
+                break;
+            case "memory":
+                RepositoryProvider.setStorageBackend(new MemoryStorageBackend(latency));
+                Main.registerEmbeddedRepositories(MemoryFileStore::new);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("The storage backend %s is not supported.", storageBackend));
+        }
+    }
+
+    /**
+     * Start the rebuild of the delivery note rollups on a background thread.
+     *
+     * Note that the changes added by other stations during the rebuild are
+     * lost, so it is only run on demand, while no other station is saving
+     * delivery notes.
+     */
+    private static void startRollupRebuild() {
+        try {
+            DeliveryNoteRollupRepository deliveryNoteRollupRepository = RepositoryProvider.get(DeliveryNoteRollupRepository.class);
+            RebuildDeliveryNoteRollups rebuildDeliveryNoteRollups = new RebuildDeliveryNoteRollups(deliveryNoteRollupRepository);
+
+            Thread rollupRebuild = new Thread(() -> {
+                try {
+                    rebuildDeliveryNoteRollups.execute(false);
+                } catch (MongoException | UncheckedIOException ex) {
+                    String className = Main.class.getName();
+                    Logger.getLogger(className).log(Level.WARNING, "Delivery note rollups cannot be rebuilt", ex);
+                }
+            }, "rollup-rebuild");
+            rollupRebuild.setDaemon(true);
+            rollupRebuild.start();
+        } catch (NotDefinedDatabaseContextException ex) {
+            String className = Main.class.getName();
+            Logger.getLogger(className).log(Level.INFO, "Rollups not rebuilt because the database has not been found", ex);
+        }
+    }
+
+    /**
+     * Obtain the optional setting with the given name, which is given as a
+     * system property prefixed by "fgen.", like -Dfgen.cacheSize=1000.
+     *
+     * @param name The setting name.
+     * @param defaultValue The value used when the setting is not given.
+     * @return The setting value.
+     */
+    private static String getSetting(String name, String defaultValue) {
+        return System.getProperty(SETTING_PREFIX + name, defaultValue);
+    }
+
     /**
      * Runs the application.
      *
+     * The optional settings are given as system properties instead of
+     * arguments: fgen.codeBlockSize, fgen.cacheSize, fgen.cacheTimeToLive,
+     * fgen.storageBackend, fgen.storageLatency, fgen.metricsLogInterval,
+     * fgen.slowQueryThreshold and fgen.rebuildRollups, which rebuilds the
+     * delivery note rollups on demand.
+     *
      * @param args System arguments.
      * @throws MissingSystemArgumentsContextException Thrown when an expected
      * argument is missing.
@@ -151,14 +317,16 @@ public class Main {
         String invoiceItemsPerPage = args[6];
         String deliveryNoteTemplateByCustomer = args[7];
         String invoiceTemplateByCustomer = args[8];
+        String codeBlockSize = Main.getSetting("codeBlockSize", "1");
+        String cacheSize = Main.getSetting("cacheSize", "500");
+        String cacheTimeToLive = Main.getSetting("cacheTimeToLive", "300");
+        String storageBackend = Main.getSetting("storageBackend", "mongo");
+        String storageLatency = Main.getSetting("storageLatency", "0");
+        String metricsLogInterval = Main.getSetting("metricsLogInterval", "300");
+        String slowQueryThreshold = Main.getSetting("slowQueryThreshold", "500");
+        String rebuildRollups = Main.getSetting("rebuildRollups", "false");
 
-        // Set the localization for the Spanish language.
-        Localization.load(new SpanishDictionary());
-
-        // Set the database to connect.
-        MongoDatabaseConnection.setInstance(dbUsername, dbPassword, dbHost, dbName);
-
-        // Indicate application details.
+        // Indicate application details, before any background task reads them.
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.VERSION, "1.9.0");
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.NAME, "FGEN");
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.PROJECT_URL, "https://github.com/albertosml/fgen");
@@ -170,6 +338,31 @@ public class Main {
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.INVOICE_ITEMS_PER_PAGE, Integer.valueOf(invoiceItemsPerPage));
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.DELIVERY_NOTE_TEMPLATE_BY_CUSTOMER, Main.createTemplateMapping(deliveryNoteTemplateByCustomer));
         ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.INVOICE_TEMPLATE_BY_CUSTOMER, Main.createTemplateMapping(invoiceTemplateByCustomer));
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE, Integer.valueOf(codeBlockSize));
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_SIZE, Integer.valueOf(cacheSize));
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_TIME_TO_LIVE, Integer.valueOf(cacheTimeToLive));
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.METRICS_LOG_INTERVAL, Integer.valueOf(metricsLogInterval));
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.SLOW_QUERY_THRESHOLD, Integer.valueOf(slowQueryThreshold));
+
+        // Set the localization for the Spanish language.
+        Localization.load(new SpanishDictionary());
+
+        // Set the database to connect.
+        Main.setStorageBackend(storageBackend, dbUsername, dbPassword, dbHost, dbName, Long.parseLong(storageLatency));
+
+        // Release the database connections when the application finishes.
+        Runtime.getRuntime().addShutdownHook(new Thread(RepositoryProvider::shutdown));
+
+        // Run the storage maintenance, like creating the indexes needed by the repository queries.
+        RepositoryProvider.startBackgroundTasks();
+
+        // Rebuild the delivery note rollups when requested for this station.
+        if (Boolean.parseBoolean(rebuildRollups)) {
+            Main.startRollupRebuild();
+        }
+
+        // Expose the persistence metrics through JMX and log them periodically.
+        PersistenceMetrics.start();
 
         // Authentication.
         boolean isAuthenticated = Main.authenticate();
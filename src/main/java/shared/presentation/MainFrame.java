@@ -8,13 +8,20 @@ import customer.presentation.panels.ShowCustomerPanel;
 import deliverynote.presentation.panels.GenerateDeliveryNotePanel;
 import deliverynote.presentation.panels.ListDeliveryNotesPanel;
 import invoice.presentation.panels.ListInvoicesPanel;
+import java.awt.Color;
 import java.awt.Container;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import password.presentation.panels.EstablishPasswordPanel;
 import product.presentation.panels.ListProductsPanel;
 import product.presentation.panels.RegisterProductPanel;
 import shared.application.configuration.ApplicationConfiguration;
 import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.ConnectionNotifier;
+import shared.persistence.ConnectionState;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import shared.presentation.panels.AboutPanel;
@@ -31,6 +38,11 @@ import variable.presentation.panels.RegisterVariablePanel;
  */
 public class MainFrame extends javax.swing.JFrame {
 
+    /**
+     * Label which shows the state of the connection to the database.
+     */
+    private final JLabel connectionState = new JLabel();
+
     /**
      * Constructor.
      */
@@ -38,9 +50,65 @@ public class MainFrame extends javax.swing.JFrame {
         initComponents();
 
         this.initializeMenu();
+        this.initializeConnectionState();
         this.redirectToAbout();
     }
 
+    /**
+     * Initialize the label which shows the state of the connection to the
+     * database at the right of the menu, updating it when the state changes.
+     */
+    private void initializeConnectionState() {
+        this.menuBar.add(Box.createHorizontalGlue());
+        this.menuBar.add(this.connectionState);
+        this.connectionState.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
+
+        this.showConnectionState(ConnectionNotifier.getState());
+        ConnectionNotifier.addListener(state -> SwingUtilities.invokeLater(() -> this.showConnectionState(state)));
+    }
+
+    /**
+     * Show the given connection state, along with the saved documents waiting
+     * to be written to the database and the ones which can never be written.
+     *
+     * @param state The connection state.
+     */
+    private void showConnectionState(ConnectionState state) {
+        switch (state) {
+            case RECONNECTING:
+                this.connectionState.setText(Localization.getLocalization(LocalizationKey.RECONNECTING_MESSAGE));
+                this.connectionState.setForeground(Color.ORANGE.darker());
+                break;
+            case DISCONNECTED:
+                this.connectionState.setText(Localization.getLocalization(LocalizationKey.DISCONNECTED_MESSAGE));
+                this.connectionState.setForeground(Color.RED.darker());
+                break;
+            default:
+                this.connectionState.setText(Localization.getLocalization(LocalizationKey.CONNECTED_MESSAGE));
+                this.connectionState.setForeground(Color.GREEN.darker());
+                break;
+        }
+
+        // The saved documents are not listed until they are written.
+        int pendingWrites = ConnectionNotifier.getPendingWrites();
+        if (pendingWrites > 0) {
+            boolean isStalled = ConnectionNotifier.isWriteStalled();
+            String pendingMessage = Localization.getLocalization(isStalled ? LocalizationKey.STALLED_WRITES_MESSAGE : LocalizationKey.PENDING_WRITES_MESSAGE);
+            this.connectionState.setText(String.format("%s - %s", this.connectionState.getText(), String.format(pendingMessage, pendingWrites)));
+
+            if (isStalled) {
+                this.connectionState.setForeground(Color.RED.darker());
+            }
+        }
+
+        int rejectedWrites = ConnectionNotifier.getRejectedWrites();
+        if (rejectedWrites > 0) {
+            String rejectedMessage = Localization.getLocalization(LocalizationKey.REJECTED_WRITES_MESSAGE);
+            this.connectionState.setText(String.format("%s - %s", this.connectionState.getText(), String.format(rejectedMessage, rejectedWrites)));
+            this.connectionState.setForeground(Color.RED.darker());
+        }
+    }
+
     /**
      * Initialize all the menu items by setting the localized text for them.
      */
@@ -163,6 +163,8 @@ public class SpanishDictionary extends Dictionary {
         super.setTranslation(LocalizationKey.TRADER_CUSTOMER_IBAN, "IBAN del cliente");
         super.setTranslation(LocalizationKey.INVOICE_GENERATED_MESSAGE, "La factura ha sido generada con éxito");
         super.setTranslation(LocalizationKey.INVOICE_NOT_GENERATED_MESSAGE, "Error al generar la factura");
+        super.setTranslation(LocalizationKey.PENDING_DELIVERY_NOTES_MESSAGE, "Hay albaranes del cliente pendientes de guardar en la base de datos. Espere a que se guarden para generar la factura.");
+        super.setTranslation(LocalizationKey.PARTIAL_DELIVERY_NOTES_MESSAGE, "Sin conexión, solo se muestran los albaranes desde el %s");
         super.setTranslation(LocalizationKey.TOTAL, "Total");
         super.setTranslation(LocalizationKey.REMOVED_INVOICE_MESSAGE, "Factura eliminada con éxito");
         super.setTranslation(LocalizationKey.REMOVED_INVOICE_ERROR_MESSAGE, "Error al eliminar la factura");
@@ -171,6 +173,7 @@ public class SpanishDictionary extends Dictionary {
         super.setTranslation(LocalizationKey.CLOSE, "Cerrar");
         super.setTranslation(LocalizationKey.CLOSED_INVOICE_MESSAGE, "Factura cerrada con éxito");
         super.setTranslation(LocalizationKey.CLOSED_INVOICE_ERROR_MESSAGE, "Error al cerrar la factura");
+        super.setTranslation(LocalizationKey.PENDING_INVOICE_MESSAGE, "La factura está pendiente de guardar en la base de datos. Espere a que se guarde para cerrarla.");
         super.setTranslation(LocalizationKey.NEW_PASSWORD, "Nueva contraseña");
         super.setTranslation(LocalizationKey.ESTABLISH, "Establecer");
         super.setTranslation(LocalizationKey.PASSWORD_ESTABLISHED_MESSAGE, "Contraseña establecida");
@@ -185,6 +188,12 @@ public class SpanishDictionary extends Dictionary {
         super.setTranslation(LocalizationKey.TOTAL_AMOUNT, "Cantidad total (en euros)");
         super.setTranslation(LocalizationKey.IMPORT, "Importe");
         super.setTranslation(LocalizationKey.TOTAL_IMPORT, "Importe total (en euros)");
+        super.setTranslation(LocalizationKey.CONNECTED_MESSAGE, "Conectado");
+        super.setTranslation(LocalizationKey.RECONNECTING_MESSAGE, "Reconectando...");
+        super.setTranslation(LocalizationKey.DISCONNECTED_MESSAGE, "Sin conexión. Se muestran los datos guardados en el equipo.");
+        super.setTranslation(LocalizationKey.PENDING_WRITES_MESSAGE, "%d documentos pendientes de guardar en la base de datos");
+        super.setTranslation(LocalizationKey.STALLED_WRITES_MESSAGE, "%d documentos sin guardar en la base de datos. Se reintentará.");
+        super.setTranslation(LocalizationKey.REJECTED_WRITES_MESSAGE, "%d documentos rechazados porque su código ya está en uso. Revise el registro de la aplicación.");
     }
 
 }
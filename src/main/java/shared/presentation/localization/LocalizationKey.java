@@ -605,6 +605,16 @@ public enum LocalizationKey {
      * Message shown when the invoice has not been generated.
      */
     INVOICE_NOT_GENERATED_MESSAGE,
+    /**
+     * Message shown when the invoice is not generated because some delivery
+     * notes of the customer have not been written yet.
+     */
+    PENDING_DELIVERY_NOTES_MESSAGE,
+    /**
+     * Message shown when only the recent delivery notes can be listed
+     * because the database cannot be reached.
+     */
+    PARTIAL_DELIVERY_NOTES_MESSAGE,
     /**
      * Total.
      */
@@ -637,6 +647,11 @@ public enum LocalizationKey {
      * Closed invoice error message.
      */
     CLOSED_INVOICE_ERROR_MESSAGE,
+    /**
+     * Message shown when the invoice is not closed because it has not been
+     * written yet.
+     */
+    PENDING_INVOICE_MESSAGE,
     /**
      * New password.
      */
@@ -693,5 +708,32 @@ public enum LocalizationKey {
     /**
      * Total import.
      */
-    TOTAL_IMPORT;
+    TOTAL_IMPORT,
+    /**
+     * Message shown while the database can be reached.
+     */
+    CONNECTED_MESSAGE,
+    /**
+     * Message shown while the database is being reached again.
+     */
+    RECONNECTING_MESSAGE,
+    /**
+     * Message shown while the database cannot be reached.
+     */
+    DISCONNECTED_MESSAGE,
+    /**
+     * Message shown while there are saved documents waiting to be written to
+     * the database.
+     */
+    PENDING_WRITES_MESSAGE,
+    /**
+     * Message shown while the saved documents cannot be written to the
+     * database.
+     */
+    STALLED_WRITES_MESSAGE,
+    /**
+     * Message shown when some saved documents can never be written to the
+     * database, since their code has been taken by another document.
+     */
+    REJECTED_WRITES_MESSAGE;
 }
@@ -1,11 +1,12 @@
 package subtotal.application;
 
 import java.util.Map;
+import shared.application.TrackedEntity;
 
 /**
  * Subtotal entity class.
  */
-public class Subtotal {
+public class Subtotal extends TrackedEntity<SubtotalAttribute> {
 
     /**
      * Code.
@@ -44,6 +45,7 @@ public class Subtotal {
      * @param isDeleted Whether the subtotal is deleted or not.
      */
     private Subtotal(int code, String name, int percentage, boolean isDiscount, boolean isDeleted) {
+        super(SubtotalAttribute.class);
         this.code = code;
         this.name = name;
         this.isDiscount = isDiscount;
@@ -104,6 +106,7 @@ public class Subtotal {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(SubtotalAttribute.ISDELETED);
     }
 
     /**
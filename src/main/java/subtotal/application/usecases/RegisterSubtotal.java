@@ -2,6 +2,7 @@ package subtotal.application.usecases;
 
 import java.util.Map;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
 import subtotal.application.Subtotal;
 import subtotal.application.SubtotalAttribute;
 import subtotal.persistence.SubtotalRepository;
@@ -16,13 +17,20 @@ public class RegisterSubtotal {
      */
     private final SubtotalRepository subtotalRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private final SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param subtotalRepository Subtotal repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public RegisterSubtotal(SubtotalRepository subtotalRepository) {
+    public RegisterSubtotal(SubtotalRepository subtotalRepository, SequenceRepository sequenceRepository) {
         this.subtotalRepository = subtotalRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -36,7 +44,7 @@ public class RegisterSubtotal {
     public void execute(Map<SubtotalAttribute, Object> newSubtotalAttributes) {
         boolean isCodeManuallyAdded = newSubtotalAttributes.containsKey(SubtotalAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedSubtotalCode = CodeAutoGenerator.generate(subtotalRepository);
+            int generatedSubtotalCode = CodeAutoGenerator.generate(sequenceRepository, "subtotal");
             newSubtotalAttributes.put(SubtotalAttribute.CODE, generatedSubtotalCode);
         }
 
@@ -0,0 +1,146 @@
+package subtotal.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import subtotal.application.Subtotal;
+import subtotal.application.SubtotalAttribute;
+import subtotal.persistence.SubtotalRepository;
+import subtotal.persistence.mongo.SubtotalCodec;
+
+/**
+ * Interacts with the subtotal collection on the embedded database.
+ */
+public class EmbeddedSubtotalRepository extends EmbeddedRepository implements SubtotalRepository {
+
+    /**
+     * Recently used subtotals, indexed by their code.
+     */
+    private final EntityCache<Integer, Subtotal> cache;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedSubtotalRepository() throws NotDefinedDatabaseContextException {
+        super("subtotal", new SubtotalCodec());
+        super.createIndex(true, "code");
+        this.cache = new EntityCache<>("subtotal");
+    }
+
+    /**
+     * It creates a document from a subtotal.
+     *
+     * @param subtotal The subtotal to get the data.
+     * @return A document with the given subtotal data.
+     */
+    private Document createDocumentFrom(Subtotal subtotal) {
+        Document document = new Document();
+
+        document.append("code", subtotal.getCode());
+        document.append("name", subtotal.getName());
+        document.append("percentage", subtotal.getPercentage());
+        document.append("isDiscount", subtotal.isDiscount());
+        document.append("isDeleted", subtotal.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * Obtain the filter for the subtotal code.
+     *
+     * @param code The subtotal code.
+     * @return A filter indicating that the query must only obtain the subtotal
+     * which contains the given subtotal code.
+     */
+    private Bson getSubtotalCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * It creates the update for a changed attribute of the subtotal.
+     *
+     * @param attribute The changed attribute.
+     * @param subtotal The subtotal.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(SubtotalAttribute attribute, Subtotal subtotal) {
+        if (attribute == SubtotalAttribute.ISDELETED) {
+            return Updates.set("isDeleted", subtotal.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The subtotal attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * Find the stored subtotal associated with the given code.
+     *
+     * @param code The subtotal code.
+     * @return The found subtotal, otherwise null.
+     */
+    private Subtotal findStored(int code) {
+        Bson subtotalCodeFilter = this.getSubtotalCodeFilter(code);
+        ArrayList<Subtotal> foundSubtotals = super.find(subtotalCodeFilter, Subtotal.class);
+
+        return foundSubtotals.isEmpty() ? null : foundSubtotals.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Subtotal find(int code) {
+        return this.cache.get(code, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Subtotal> get() {
+        return super.find(Subtotal.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(Subtotal subtotal) {
+        Document document = this.createDocumentFrom(subtotal);
+        super.insertOne(document);
+        this.cache.invalidate(subtotal.getCode());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Subtotal subtotal) {
+        Bson subtotalCodeFilter = this.getSubtotalCodeFilter(subtotal.getCode());
+
+        try {
+            return super.updateChanges(subtotalCodeFilter, subtotal, attribute -> this.createUpdateFor(attribute, subtotal), () -> this.createDocumentFrom(subtotal));
+        } finally {
+            this.cache.invalidate(subtotal.getCode());
+            // Cached variables keep the subtotal they reference.
+            EntityCache.invalidateAll("variable");
+        }
+    }
+
+}
@@ -1,11 +1,15 @@
 package subtotal.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 import subtotal.application.Subtotal;
@@ -17,6 +21,11 @@ import subtotal.persistence.SubtotalRepository;
  */
 public class MongoSubtotalRepository extends MongoRepository implements SubtotalRepository {
 
+    /**
+     * Recently used subtotals, indexed by their code.
+     */
+    private final EntityCache<Integer, Subtotal> cache;
+
     /**
      * Constructor.
      *
@@ -24,7 +33,8 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
      * connected database to the system.
      */
     public MongoSubtotalRepository() throws NotDefinedDatabaseContextException {
-        super("subtotal");
+        super("subtotal", new SubtotalCodec());
+        this.cache = new EntityCache<>("subtotal");
     }
 
     /**
@@ -45,24 +55,6 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
         return document;
     }
 
-    /**
-     * It creates a subtotal a Mongo document.
-     *
-     * @param document A document obtained from the Mongo collection.
-     * @return A subtotal object based on the data obtained from the given
-     * document.
-     */
-    private Subtotal createSubtotalFrom(Document document) {
-        Map<SubtotalAttribute, Object> attributes = new HashMap<>();
-        attributes.put(SubtotalAttribute.CODE, document.get("code"));
-        attributes.put(SubtotalAttribute.NAME, document.get("name"));
-        attributes.put(SubtotalAttribute.PERCENTAGE, document.get("percentage"));
-        attributes.put(SubtotalAttribute.ISDISCOUNT, document.get("isDiscount"));
-        attributes.put(SubtotalAttribute.ISDELETED, document.get("isDeleted"));
-
-        return Subtotal.from(attributes);
-    }
-
     /**
      * Obtain the filter for the subtotal code.
      *
@@ -74,6 +66,42 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
         return Filters.eq("code", code);
     }
 
+    /**
+     * It creates the update for a changed attribute of the subtotal.
+     *
+     * @param attribute The changed attribute.
+     * @param subtotal The subtotal.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(SubtotalAttribute attribute, Subtotal subtotal) {
+        if (attribute == SubtotalAttribute.ISDELETED) {
+            return Updates.set("isDeleted", subtotal.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The subtotal attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getSubtotalCodeFilter(0));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -82,20 +110,25 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
         return super.count();
     }
 
+    /**
+     * Find the stored subtotal associated with the given code.
+     *
+     * @param code The subtotal code.
+     * @return The found subtotal, otherwise null.
+     */
+    private Subtotal findStored(int code) {
+        Bson subtotalCodeFilter = this.getSubtotalCodeFilter(code);
+        ArrayList<Subtotal> foundSubtotals = super.find(subtotalCodeFilter, Subtotal.class);
+
+        return foundSubtotals.isEmpty() ? null : foundSubtotals.get(0);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Subtotal find(int code) {
-        Bson subtotalCodeFilter = this.getSubtotalCodeFilter(code);
-        ArrayList<Document> foundSubtotalDocuments = super.find(subtotalCodeFilter);
-
-        if (foundSubtotalDocuments.isEmpty()) {
-            return null;
-        } else {
-            Document foundSubtotalDocument = foundSubtotalDocuments.get(0);
-            return this.createSubtotalFrom(foundSubtotalDocument);
-        }
+        return this.cache.get(code, this::findStored);
     }
 
     /**
@@ -103,14 +136,7 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
      */
     @Override
     public ArrayList<Subtotal> get() {
-        ArrayList<Document> foundDocuments = super.find();
-
-        ArrayList<Subtotal> subtotals = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            subtotals.add(this.createSubtotalFrom(document));
-        }
-
-        return subtotals;
+        return super.find(Subtotal.class);
     }
 
     /**
@@ -120,6 +146,7 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
     public void register(Subtotal subtotal) {
         Document document = this.createDocumentFrom(subtotal);
         super.insertOne(document);
+        this.cache.invalidate(subtotal.getCode());
     }
 
     /**
@@ -128,7 +155,14 @@ public class MongoSubtotalRepository extends MongoRepository implements Subtotal
     @Override
     public boolean update(Subtotal subtotal) {
         Bson subtotalCodeFilter = this.getSubtotalCodeFilter(subtotal.getCode());
-        return super.replaceOne(subtotalCodeFilter, this.createDocumentFrom(subtotal));
+
+        try {
+            return super.updateChanges(subtotalCodeFilter, subtotal, attribute -> this.createUpdateFor(attribute, subtotal), () -> this.createDocumentFrom(subtotal));
+        } finally {
+            this.cache.invalidate(subtotal.getCode());
+            // Cached variables keep the subtotal they reference.
+            EntityCache.invalidateAll("variable");
+        }
     }
 
 }
@@ -0,0 +1,86 @@
+package subtotal.persistence.mongo;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import shared.persistence.mongo.MongoCodec;
+import subtotal.application.Subtotal;
+import subtotal.application.SubtotalAttribute;
+
+/**
+ * Converts subtotals to and from the documents of the subtotal collection.
+ */
+public class SubtotalCodec extends MongoCodec<Subtotal> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Subtotal decode(BsonReader reader, DecoderContext decoderContext) {
+        Integer code = null;
+        String name = null;
+        Integer percentage = null;
+        Boolean isDiscount = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "code":
+                    code = super.readInteger(reader);
+                    break;
+                case "name":
+                    name = super.readString(reader);
+                    break;
+                case "percentage":
+                    percentage = super.readInteger(reader);
+                    break;
+                case "isDiscount":
+                    isDiscount = super.readBoolean(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Map<SubtotalAttribute, Object> attributes = new HashMap<>();
+        attributes.put(SubtotalAttribute.CODE, super.orDefault(code, 0));
+        attributes.put(SubtotalAttribute.NAME, super.orDefault(name, ""));
+        attributes.put(SubtotalAttribute.PERCENTAGE, super.orDefault(percentage, 0));
+        attributes.put(SubtotalAttribute.ISDISCOUNT, super.orDefault(isDiscount, false));
+        attributes.put(SubtotalAttribute.ISDELETED, super.orDefault(isDeleted, false));
+
+        return Subtotal.from(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(BsonWriter writer, Subtotal subtotal, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("code", subtotal.getCode());
+        super.writeString(writer, "name", subtotal.getName());
+        writer.writeInt32("percentage", subtotal.getPercentage());
+        writer.writeBoolean("isDiscount", subtotal.isDiscount());
+        writer.writeBoolean("isDeleted", subtotal.isDeleted());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Subtotal> getEncoderClass() {
+        return Subtotal.class;
+    }
+
+}
@@ -5,13 +5,14 @@ import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.TableColumn;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import shared.presentation.utils.ButtonRenderer;
 import subtotal.application.Subtotal;
 import subtotal.application.usecases.ListSubtotals;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import subtotal.presentation.utils.ListSubtotalsMouseAdapter;
 import subtotal.presentation.utils.ListSubtotalsTableModel;
 
@@ -35,7 +36,7 @@ public class ListSubtotalsPanel extends javax.swing.JPanel {
      */
     private ArrayList<Subtotal> getSubtotals() {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             ListSubtotals listSubtotals = new ListSubtotals(subtotalRepository);
             return listSubtotals.execute();
         } catch (NotDefinedDatabaseContextException ex) {
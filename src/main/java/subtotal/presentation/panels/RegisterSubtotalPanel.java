@@ -7,12 +7,14 @@ import java.util.logging.Logger;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import subtotal.application.SubtotalAttribute;
 import subtotal.application.usecases.RegisterSubtotal;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 
 /**
  * Panel which shows the form to register a subtotal.
@@ -84,8 +86,9 @@ public class RegisterSubtotalPanel extends javax.swing.JPanel {
      */
     private void registerSubtotal(Map<SubtotalAttribute, Object> newSubtotalAttributes) {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
-            RegisterSubtotal registerSubtotal = new RegisterSubtotal(subtotalRepository);
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            RegisterSubtotal registerSubtotal = new RegisterSubtotal(subtotalRepository, sequenceRepository);
             registerSubtotal.execute(newSubtotalAttributes);
 
             this.showInfoMessage();
@@ -7,14 +7,15 @@ import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import subtotal.application.usecases.RemoveSubtotal;
 import subtotal.application.usecases.RestoreSubtotal;
 import subtotal.application.utils.SubtotalRemovalState;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
-import variable.persistence.mongo.MongoVariableRepository;
+import subtotal.persistence.SubtotalRepository;
+import variable.persistence.VariableRepository;
 
 /**
  * Mouse adapter for the list subtotals panel, which includes a button to remove
@@ -44,8 +45,8 @@ public class ListSubtotalsMouseAdapter extends MouseAdapter {
      */
     private SubtotalRemovalState removeSubtotal(int code) {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             RemoveSubtotal removeSubtotal = new RemoveSubtotal(subtotalRepository, variableRepository);
             return removeSubtotal.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -65,7 +66,7 @@ public class ListSubtotalsMouseAdapter extends MouseAdapter {
      */
     private boolean restoreSubtotal(int code) {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             RestoreSubtotal restoreSubtotal = new RestoreSubtotal(subtotalRepository);
             return restoreSubtotal.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
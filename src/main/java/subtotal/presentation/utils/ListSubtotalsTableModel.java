@@ -6,12 +6,13 @@ import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import subtotal.application.SubtotalAttribute;
 import subtotal.application.usecases.EditSubtotal;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import subtotal.presentation.panels.ListSubtotalsPanel;
 
 /**
@@ -70,7 +71,7 @@ public class ListSubtotalsTableModel extends DefaultTableModel {
         try {
             Map<SubtotalAttribute, Object> subtotalAttributes = this.getSubtotalAttributes(newValue, row, column);
 
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             EditSubtotal editSubtotal = new EditSubtotal(subtotalRepository);
             editSubtotal.execute(subtotalAttributes);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -5,11 +5,13 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import shared.application.LazyFile;
+import shared.application.TrackedEntity;
 
 /**
  * Template entity class.
  */
-public class Template {
+public class Template extends TrackedEntity<TemplateAttribute> {
 
     /**
      * Code.
@@ -22,9 +24,9 @@ public class Template {
     private String name;
 
     /**
-     * File.
+     * File, loaded on demand.
      */
-    private File file;
+    private LazyFile file;
 
     /**
      * List of fields.
@@ -45,7 +47,8 @@ public class Template {
      * @param fields Template fields.
      * @param isDeleted Whether the template is deleted or not.
      */
-    private Template(int code, String name, File file, ArrayList<TemplateField> fields, boolean isDeleted) {
+    private Template(int code, String name, LazyFile file, ArrayList<TemplateField> fields, boolean isDeleted) {
+        super(TemplateAttribute.class);
         this.code = code;
         this.name = name;
         this.file = file;
@@ -77,7 +80,7 @@ public class Template {
      * @return The template file.
      */
     public File getFile() {
-        return this.file;
+        return this.file.get();
     }
 
     /**
@@ -111,6 +114,7 @@ public class Template {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(TemplateAttribute.ISDELETED);
     }
 
     /**
@@ -130,7 +134,7 @@ public class Template {
     public static Template from(Map<TemplateAttribute, Object> attributes) {
         int code = (int) attributes.get(TemplateAttribute.CODE);
         String name = (String) attributes.getOrDefault(TemplateAttribute.NAME, "");
-        File file = (File) attributes.get(TemplateAttribute.FILE);
+        LazyFile file = LazyFile.from(attributes.get(TemplateAttribute.FILE));
         ArrayList<TemplateField> fields = (ArrayList<TemplateField>) attributes.get(TemplateAttribute.FIELDS);
         boolean isDeleted = (boolean) attributes.getOrDefault(TemplateAttribute.ISDELETED, false);
 
@@ -2,6 +2,7 @@ package template.application.usecases;
 
 import java.util.Map;
 import shared.application.utils.CodeAutoGenerator;
+import shared.persistence.SequenceRepository;
 import template.application.Template;
 import template.application.TemplateAttribute;
 import template.application.utils.TemplateValidationState;
@@ -18,13 +19,20 @@ public class RegisterTemplate {
      */
     private final TemplateRepository templateRepository;
 
+    /**
+     * @see SequenceRepository
+     */
+    private final SequenceRepository sequenceRepository;
+
     /**
      * Constructor.
      *
      * @param templateRepository Template repository.
+     * @param sequenceRepository Sequence repository.
      */
-    public RegisterTemplate(TemplateRepository templateRepository) {
+    public RegisterTemplate(TemplateRepository templateRepository, SequenceRepository sequenceRepository) {
         this.templateRepository = templateRepository;
+        this.sequenceRepository = sequenceRepository;
     }
 
     /**
@@ -39,7 +47,7 @@ public class RegisterTemplate {
     public TemplateValidationState execute(Map<TemplateAttribute, Object> newTemplateAttributes) {
         boolean isCodeManuallyAdded = newTemplateAttributes.containsKey(TemplateAttribute.CODE);
         if (!isCodeManuallyAdded) {
-            int generatedTemplateCode = CodeAutoGenerator.generate(templateRepository);
+            int generatedTemplateCode = CodeAutoGenerator.generate(sequenceRepository, "template");
             newTemplateAttributes.put(TemplateAttribute.CODE, generatedTemplateCode);
         }
 
@@ -0,0 +1,186 @@
+package template.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.application.LazyFile;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import template.application.Template;
+import template.application.TemplateAttribute;
+import template.application.TemplateField;
+import template.application.TemplateFieldAttribute;
+import template.persistence.TemplateRepository;
+
+/**
+ * Interacts with the template collection on the embedded database.
+ */
+public class EmbeddedTemplateRepository extends EmbeddedRepository implements TemplateRepository {
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedTemplateRepository() throws NotDefinedDatabaseContextException {
+        super("template");
+        super.createIndex(true, "code");
+    }
+
+    /**
+     * It creates a document from a template.
+     *
+     * @param template The template to get the data.
+     * @return A document with the given template data if it has been created,
+     * otherwise null.
+     */
+    private Document createDocumentFrom(Template template) {
+        Document document = new Document();
+
+        String fileHash = super.storeFile(template.getFile());
+        if (fileHash == null) {
+            return null;
+        }
+
+        document.append("code", template.getCode());
+        document.append("name", template.getName());
+        document.append("fileHash", fileHash);
+        document.append("fields", template.getFields());
+        document.append("isDeleted", template.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * It creates a template from a document.
+     *
+     * @param document A document obtained from the collection.
+     * @return A template object based on the data obtained from the given
+     * document.
+     */
+    private Template createTemplateFrom(Document document) {
+        int code = document.getInteger("code");
+
+        Map<TemplateAttribute, Object> attributes = new HashMap<>();
+        attributes.put(TemplateAttribute.CODE, code);
+        attributes.put(TemplateAttribute.NAME, document.get("name"));
+        attributes.put(TemplateAttribute.ISDELETED, document.get("isDeleted"));
+
+        // Template file, loaded on demand.
+        attributes.put(TemplateAttribute.FILE, new LazyFile(() -> super.findFile(this.getTemplateCodeFilter(code))));
+
+        // Template fields.
+        Map<String, String> fields = (Map<String, String>) document.get("fields");
+        ArrayList<TemplateField> templateFields = new ArrayList<>();
+
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            Map<TemplateFieldAttribute, String> templateFieldAttributes = new HashMap<>();
+            templateFieldAttributes.put(TemplateFieldAttribute.POSITION, field.getKey());
+            templateFieldAttributes.put(TemplateFieldAttribute.EXPRESSION, field.getValue());
+
+            TemplateField templateField = TemplateField.from(templateFieldAttributes);
+            templateFields.add(templateField);
+        }
+
+        attributes.put(TemplateAttribute.FIELDS, templateFields);
+
+        return Template.from(attributes);
+    }
+
+    /**
+     * Obtain the filter for the template code.
+     *
+     * @param code The template code.
+     * @return A filter indicating that the query must only obtain the template
+     * which contains the given template code.
+     */
+    private Bson getTemplateCodeFilter(int code) {
+        return Filters.eq("code", code);
+    }
+
+    /**
+     * It creates the update for a changed attribute of the template.
+     *
+     * @param attribute The changed attribute.
+     * @param template The template.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(TemplateAttribute attribute, Template template) {
+        if (attribute == TemplateAttribute.ISDELETED) {
+            return Updates.set("isDeleted", template.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The template attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Template find(int code) {
+        Bson templateCodeFilter = this.getTemplateCodeFilter(code);
+        ArrayList<Document> foundTemplateDocuments = super.find(templateCodeFilter);
+
+        if (foundTemplateDocuments.isEmpty()) {
+            return null;
+        } else {
+            Document foundTemplateDocument = foundTemplateDocuments.get(0);
+            return this.createTemplateFrom(foundTemplateDocument);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Template> get(boolean includeRemoved) {
+        Bson filters = includeRemoved ? new Document() : Filters.eq("isDeleted", false);
+        ArrayList<Document> foundDocuments = super.find(filters);
+
+        ArrayList<Template> templates = new ArrayList<>();
+        for (Document document : foundDocuments) {
+            templates.add(this.createTemplateFrom(document));
+        }
+
+        return templates;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean register(Template template) {
+        Document document = this.createDocumentFrom(template);
+
+        if (document == null) {
+            return false;
+        }
+
+        super.insertOne(document);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Template template) {
+        Bson templateCodeFilter = this.getTemplateCodeFilter(template.getCode());
+        return super.updateChanges(templateCodeFilter, template, attribute -> this.createUpdateFor(attribute, template), () -> this.createDocumentFrom(template));
+    }
+
+}
@@ -1,13 +1,18 @@
 package template.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
-import java.io.File;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.bson.Document;
 import org.bson.conversions.Bson;
-import shared.persistence.Base64Converter;
+import shared.application.LazyFile;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 import template.application.Template;
@@ -41,14 +46,14 @@ public class MongoTemplateRepository extends MongoRepository implements Template
     private Document createDocumentFrom(Template template) {
         Document document = new Document();
 
-        Map<String, String> fileAttributes = Base64Converter.encode(template.getFile());
-        if (fileAttributes == null) {
+        String fileHash = super.storeFile(template.getFile());
+        if (fileHash == null) {
             return null;
         }
 
         document.append("code", template.getCode());
         document.append("name", template.getName());
-        document.append("file", fileAttributes);
+        document.append("fileHash", fileHash);
         document.append("fields", template.getFields());
         document.append("isDeleted", template.isDeleted());
 
@@ -63,15 +68,15 @@ public class MongoTemplateRepository extends MongoRepository implements Template
      * document.
      */
     private Template createTemplateFrom(Document document) {
+        int code = document.getInteger("code");
+
         Map<TemplateAttribute, Object> attributes = new HashMap<>();
-        attributes.put(TemplateAttribute.CODE, document.get("code"));
+        attributes.put(TemplateAttribute.CODE, code);
         attributes.put(TemplateAttribute.NAME, document.get("name"));
         attributes.put(TemplateAttribute.ISDELETED, document.get("isDeleted"));
 
-        // Template file.
-        Map<String, String> fileAttributes = (Map<String, String>) document.get("file");
-        File file = Base64Converter.decode(fileAttributes);
-        attributes.put(TemplateAttribute.FILE, file);
+        // Template file, loaded on demand.
+        attributes.put(TemplateAttribute.FILE, new LazyFile(() -> super.findFile(this.getTemplateCodeFilter(code))));
 
         // Template fields.
         Map<String, String> fields = (Map<String, String>) document.get("fields");
@@ -102,6 +107,52 @@ public class MongoTemplateRepository extends MongoRepository implements Template
         return Filters.eq("code", code);
     }
 
+    /**
+     * Obtain the projection used to query templates.
+     *
+     * @return A projection indicating that the query must not obtain the
+     * template file, which is loaded on demand.
+     */
+    private Bson withoutFileProjection() {
+        return Projections.exclude("file");
+    }
+
+    /**
+     * It creates the update for a changed attribute of the template.
+     *
+     * @param attribute The changed attribute.
+     * @param template The template.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(TemplateAttribute attribute, Template template) {
+        if (attribute == TemplateAttribute.ISDELETED) {
+            return Updates.set("isDeleted", template.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The template attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("code"), new IndexOptions().unique(true)));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getTemplateCodeFilter(0));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -116,7 +167,7 @@ public class MongoTemplateRepository extends MongoRepository implements Template
     @Override
     public Template find(int code) {
         Bson templateCodeFilter = this.getTemplateCodeFilter(code);
-        ArrayList<Document> foundTemplateDocuments = super.find(templateCodeFilter);
+        ArrayList<Document> foundTemplateDocuments = super.find(templateCodeFilter, this.withoutFileProjection());
 
         if (foundTemplateDocuments.isEmpty()) {
             return null;
@@ -131,15 +182,12 @@ public class MongoTemplateRepository extends MongoRepository implements Template
      */
     @Override
     public ArrayList<Template> get(boolean includeRemoved) {
-        ArrayList<Document> foundDocuments = super.find();
+        Bson filters = includeRemoved ? new Document() : Filters.eq("isDeleted", false);
+        ArrayList<Document> foundDocuments = super.find(filters, this.withoutFileProjection());
 
         ArrayList<Template> templates = new ArrayList<>();
         for (Document document : foundDocuments) {
-            Template template = this.createTemplateFrom(document);
-
-            if (includeRemoved || !template.isDeleted()) {
-                templates.add(template);
-            }
+            templates.add(this.createTemplateFrom(document));
         }
 
         return templates;
@@ -166,7 +214,7 @@ public class MongoTemplateRepository extends MongoRepository implements Template
     @Override
     public boolean update(Template template) {
         Bson templateCodeFilter = this.getTemplateCodeFilter(template.getCode());
-        return super.replaceOne(templateCodeFilter, this.createDocumentFrom(template));
+        return super.updateChanges(templateCodeFilter, template, attribute -> this.createUpdateFor(attribute, template), () -> this.createDocumentFrom(template));
     }
 
 }
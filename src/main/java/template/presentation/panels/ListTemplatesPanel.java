@@ -5,13 +5,14 @@ import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.TableColumn;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import shared.presentation.utils.ButtonRenderer;
 import template.application.Template;
 import template.application.usecases.ListTemplates;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 import template.presentation.utils.ListTemplatesMouseAdapter;
 import template.presentation.utils.ListTemplatesTableModel;
 
@@ -35,7 +36,7 @@ public class ListTemplatesPanel extends javax.swing.JPanel {
      */
     private ArrayList<Template> getTemplates() {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             ListTemplates listTemplates = new ListTemplates(templateRepository);
             return listTemplates.execute(true);
         } catch (NotDefinedDatabaseContextException ex) {
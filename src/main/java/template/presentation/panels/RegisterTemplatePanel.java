@@ -9,13 +9,15 @@ import java.util.logging.Logger;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.SequenceRepository;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import template.application.TemplateAttribute;
 import template.application.usecases.RegisterTemplate;
 import template.application.utils.TemplateValidationState;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 
 /**
  * Panel which shows a form to register the template.
@@ -98,8 +100,9 @@ public class RegisterTemplatePanel extends javax.swing.JPanel {
      */
     private void registerTemplate(Map<TemplateAttribute, Object> attributes) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
-            RegisterTemplate registerTemplate = new RegisterTemplate(templateRepository);
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
+            SequenceRepository sequenceRepository = RepositoryProvider.get(SequenceRepository.class);
+            RegisterTemplate registerTemplate = new RegisterTemplate(templateRepository, sequenceRepository);
             TemplateValidationState state = registerTemplate.execute(attributes);
 
             this.showInfoMessage(state);
@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -17,7 +18,7 @@ import template.application.TemplateAttribute;
 import template.application.usecases.ShowTemplate;
 import template.application.usecases.UpdateTemplate;
 import template.application.utils.TemplateValidationState;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 
 /**
  * Panel which shows the template details.
@@ -119,7 +120,7 @@ public class ShowTemplatePanel extends javax.swing.JPanel {
      */
     private Template showTemplate(int code) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             ShowTemplate showTemplate = new ShowTemplate(templateRepository);
             return showTemplate.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -154,7 +155,7 @@ public class ShowTemplatePanel extends javax.swing.JPanel {
      */
     private void updateTemplate(Map<TemplateAttribute, Object> attributes) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             UpdateTemplate updateTemplate = new UpdateTemplate(templateRepository);
             TemplateValidationState state = updateTemplate.execute(attributes);
 
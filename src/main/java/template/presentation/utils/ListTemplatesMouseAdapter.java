@@ -7,13 +7,14 @@ import java.util.logging.Logger;
 import javax.swing.JTable;
 import javax.swing.SwingUtilities;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.MainFrame;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import template.application.usecases.RemoveTemplate;
 import template.application.usecases.RestoreTemplate;
-import template.persistence.mongo.MongoTemplateRepository;
+import template.persistence.TemplateRepository;
 
 /**
  * Mouse adapter for the list templates panel, which includes buttons to
@@ -43,7 +44,7 @@ public class ListTemplatesMouseAdapter extends MouseAdapter {
      */
     private boolean removeTemplate(int code) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             RemoveTemplate removeTemplate = new RemoveTemplate(templateRepository);
             return removeTemplate.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -62,7 +63,7 @@ public class ListTemplatesMouseAdapter extends MouseAdapter {
      */
     private boolean restoreTemplate(int code) {
         try {
-            MongoTemplateRepository templateRepository = new MongoTemplateRepository();
+            TemplateRepository templateRepository = RepositoryProvider.get(TemplateRepository.class);
             RestoreTemplate restoreTemplate = new RestoreTemplate(templateRepository);
             return restoreTemplate.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -1,11 +1,12 @@
 package variable.application;
 
 import java.util.Map;
+import shared.application.TrackedEntity;
 
 /**
  * Variable entity class.
  */
-public class Variable {
+public class Variable extends TrackedEntity<VariableAttribute> {
 
     /**
      * Name.
@@ -38,6 +39,7 @@ public class Variable {
      * @param isDeleted Whether the variable is deleted or not.
      */
     protected Variable(String name, String description, EntityAttribute attribute, boolean isDeleted) {
+        super(VariableAttribute.class);
         this.name = name;
         this.description = description;
         this.attribute = attribute;
@@ -88,6 +90,7 @@ public class Variable {
      */
     public void setIsDeleted(boolean isDeleted) {
         this.isDeleted = isDeleted;
+        this.markChanged(VariableAttribute.ISDELETED);
     }
 
     /**
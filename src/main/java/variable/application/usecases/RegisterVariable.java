@@ -1,6 +1,7 @@
 package variable.application.usecases;
 
 import java.util.Map;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import variable.application.SubtotalVariable;
 import variable.application.Variable;
 import variable.application.VariableAttribute;
@@ -43,7 +44,12 @@ public class RegisterVariable {
 
         VariableValidationState variableValidationState = VariableValidator.isValid(variable, variableRepository);
         if (variableValidationState == VariableValidationState.VALID) {
-            variableRepository.register(variable);
+            try {
+                variableRepository.register(variable);
+            } catch (DuplicatedEntityException ex) {
+                // Another station has registered the same variable after the validation.
+                return VariableValidationState.DUPLICATED;
+            }
         }
 
         return variableValidationState;
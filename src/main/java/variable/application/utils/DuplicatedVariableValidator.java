@@ -19,15 +19,7 @@ public class DuplicatedVariableValidator {
      * @return true if the variable is duplicated, otherwise false.
      */
     public static boolean isDuplicated(Variable variable, VariableRepository variableRepository) {
-        String variableName = variable.getName();
-
-        for (String name : variableRepository.getNamesList()) {
-            if (name.equals(variableName)) {
-                return true;
-            }
-        }
-
-        return false;
+        return variableRepository.hasName(variable.getName());
     }
 
 }
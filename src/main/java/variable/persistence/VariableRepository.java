@@ -2,6 +2,7 @@ package variable.persistence;
 
 import java.util.ArrayList;
 import shared.persistence.Repository;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import variable.application.Variable;
 
 /**
@@ -13,8 +14,10 @@ public interface VariableRepository extends Repository {
      * Register the given variable.
      *
      * @param variable The variable to register.
+     * @throws DuplicatedEntityException Thrown when another variable has
+     * the same unique key.
      */
-    public void register(Variable variable);
+    public void register(Variable variable) throws DuplicatedEntityException;
 
     /**
      * Obtain all the variables registered on the system, even if they have been
@@ -25,11 +28,13 @@ public interface VariableRepository extends Repository {
     public ArrayList<Variable> get();
 
     /**
-     * Get the names from all variables on the repository.
+     * Check whether there is a variable with the given name, even if it has been
+     * removed.
      *
-     * @return A list with all the retrieved variable names.
+     * @param name The variable name.
+     * @return true if there is a variable with the given name, otherwise false.
      */
-    public ArrayList<String> getNamesList();
+    public boolean hasName(String name);
 
     /**
      * Update the given variable with its associated data.
@@ -0,0 +1,211 @@
+package variable.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.embedded.EmbeddedRepository;
+import shared.persistence.exceptions.DuplicatedEntityException;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+import subtotal.application.Subtotal;
+import subtotal.application.usecases.FindSubtotal;
+import subtotal.persistence.SubtotalRepository;
+import variable.application.EntityAttribute;
+import variable.application.SubtotalVariable;
+import variable.application.Variable;
+import variable.application.VariableAttribute;
+import variable.persistence.VariableRepository;
+import variable.persistence.mongo.VariableCodec;
+
+/**
+ * Interacts with the variable collection on the embedded database.
+ */
+public class EmbeddedVariableRepository extends EmbeddedRepository implements VariableRepository {
+
+    /**
+     * Recently used variables, indexed by their name.
+     */
+    private final EntityCache<String, Variable> cache;
+
+    /**
+     * Constructor.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when there is not an
+     * opened database on the system.
+     */
+    public EmbeddedVariableRepository() throws NotDefinedDatabaseContextException {
+        super("variable", new VariableCodec(EmbeddedVariableRepository::findSubtotal));
+        super.createIndex(true, "name");
+        super.createIndex(false, "subtotal", "isDeleted");
+        this.cache = new EntityCache<>("variable");
+    }
+
+    /**
+     * It creates a document from a variable.
+     *
+     * @param variable The variable to get the data.
+     * @return A document with the given variable data.
+     */
+    private Document createDocumentFrom(Variable variable) {
+        Document document = new Document();
+
+        document.append("name", variable.getName());
+
+        document.append("description", variable.getDescription());
+
+        EntityAttribute entityAttribute = variable.getAttribute();
+        document.append("attribute", entityAttribute.name());
+
+        if (variable instanceof SubtotalVariable) {
+            SubtotalVariable subtotalVariable = (SubtotalVariable) variable;
+            Subtotal subtotal = subtotalVariable.getSubtotal();
+            document.append("subtotal", subtotal.getCode());
+        }
+
+        document.append("isDeleted", variable.isDeleted());
+
+        return document;
+    }
+
+    /**
+     * Find subtotal associated with the given code.
+     *
+     * @param code The code of the subtotal to find.
+     * @return The found subtotal, otherwise null.
+     */
+    private static Subtotal findSubtotal(int code) {
+        try {
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
+            FindSubtotal findSubtotal = new FindSubtotal(subtotalRepository);
+            return findSubtotal.execute(code);
+        } catch (NotDefinedDatabaseContextException ex) {
+            Logger.getLogger(EmbeddedVariableRepository.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * Obtain the filter for the variable name.
+     *
+     * @param name The variable name.
+     * @return A filter indicating that the query must only obtain the variable
+     * which contains the given variable name.
+     */
+    private Bson getVariableNameFilter(String name) {
+        return Filters.eq("name", name);
+    }
+
+    /**
+     * Obtain the filter for the non-removed variables of a subtotal.
+     *
+     * @param code The subtotal code.
+     * @return A filter indicating that the query must only obtain the
+     * non-removed variables which belong to the given subtotal.
+     */
+    private Bson getSubtotalVariablesFilter(int code) {
+        Bson subtotalWithGivenCode = Filters.eq("subtotal", code);
+        Bson nonDeletedVariable = Filters.eq("isDeleted", false);
+        return Filters.and(subtotalWithGivenCode, nonDeletedVariable);
+    }
+
+    /**
+     * It creates the update for a changed attribute of the variable.
+     *
+     * @param attribute The changed attribute.
+     * @param variable The variable.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(VariableAttribute attribute, Variable variable) {
+        if (attribute == VariableAttribute.ISDELETED) {
+            return Updates.set("isDeleted", variable.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The variable attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return super.count();
+    }
+
+    /**
+     * Find the stored variable associated with the given name.
+     *
+     * @param name The variable name.
+     * @return The found variable, otherwise null.
+     */
+    private Variable findStored(String name) {
+        Bson variableNameFilter = this.getVariableNameFilter(name);
+        ArrayList<Variable> foundVariables = super.find(variableNameFilter, Variable.class);
+
+        return foundVariables.isEmpty() ? null : foundVariables.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Variable find(String name) {
+        return this.cache.get(name, this::findStored);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Variable> get() {
+        return super.find(Variable.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasName(String name) {
+        return super.exists(this.getVariableNameFilter(name));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void register(Variable variable) throws DuplicatedEntityException {
+        Document document = this.createDocumentFrom(variable);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(variable.getName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Variable variable) {
+        Bson variableNameFilter = this.getVariableNameFilter(variable.getName());
+
+        try {
+            return super.updateChanges(variableNameFilter, variable, attribute -> this.createUpdateFor(attribute, variable), () -> this.createDocumentFrom(variable));
+        } finally {
+            this.cache.invalidate(variable.getName());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean existVariableWithSubtotal(int code) {
+        Bson filters = this.getSubtotalVariablesFilter(code);
+        return super.count(filters) > 0;
+    }
+
+}
@@ -1,18 +1,24 @@
 package variable.persistence.mongo;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import shared.persistence.EntityCache;
+import shared.persistence.RepositoryProvider;
+import shared.persistence.exceptions.DuplicatedEntityException;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.persistence.mongo.MongoRepository;
 import subtotal.application.Subtotal;
 import subtotal.application.usecases.FindSubtotal;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import variable.application.EntityAttribute;
 import variable.application.SubtotalVariable;
 import variable.application.Variable;
@@ -24,6 +30,11 @@ import variable.persistence.VariableRepository;
  */
 public class MongoVariableRepository extends MongoRepository implements VariableRepository {
 
+    /**
+     * Recently used variables, indexed by their name.
+     */
+    private final EntityCache<String, Variable> cache;
+
     /**
      * Constructor.
      *
@@ -31,7 +42,8 @@ public class MongoVariableRepository extends MongoRepository implements Variable
      * connected database to the system.
      */
     public MongoVariableRepository() throws NotDefinedDatabaseContextException {
-        super("variable");
+        super("variable", new VariableCodec(MongoVariableRepository::findSubtotal));
+        this.cache = new EntityCache<>("variable");
     }
 
     /**
@@ -61,44 +73,15 @@ public class MongoVariableRepository extends MongoRepository implements Variable
         return document;
     }
 
-    /**
-     * It creates a variable from a Mongo document.
-     *
-     * @param document A document obtained from the Mongo collection.
-     * @return A variable object based on the data obtained from the given
-     * document.
-     */
-    private Variable createVariableFrom(Document document) {
-        Map<VariableAttribute, Object> attributes = new HashMap<>();
-        attributes.put(VariableAttribute.NAME, document.get("name"));
-        attributes.put(VariableAttribute.DESCRIPTION, document.get("description"));
-        attributes.put(VariableAttribute.ISDELETED, document.get("isDeleted"));
-
-        String attribute = (String) document.get("attribute");
-        EntityAttribute entityAttribute = EntityAttribute.valueOf(attribute);
-        attributes.put(VariableAttribute.ATTRIBUTE, entityAttribute);
-
-        Integer subtotalCode = (Integer) document.get("subtotal");
-        if (subtotalCode != null) {
-            Subtotal subtotal = this.findSubtotal(subtotalCode);
-            if (subtotal != null) {
-                attributes.put(VariableAttribute.SUBTOTAL, subtotal);
-                return SubtotalVariable.from(attributes);
-            }
-        }
-
-        return Variable.from(attributes);
-    }
-
     /**
      * Find subtotal associated with the given code.
      *
      * @param code The code of the subtotal to find.
      * @return The found subtotal, otherwise null.
      */
-    private Subtotal findSubtotal(int code) {
+    private static Subtotal findSubtotal(int code) {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             FindSubtotal findSubtotal = new FindSubtotal(subtotalRepository);
             return findSubtotal.execute(code);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -119,6 +102,57 @@ public class MongoVariableRepository extends MongoRepository implements Variable
         return Filters.eq("name", name);
     }
 
+    /**
+     * Obtain the filter for the non-removed variables of a subtotal.
+     *
+     * @param code The subtotal code.
+     * @return A filter indicating that the query must only obtain the
+     * non-removed variables which belong to the given subtotal.
+     */
+    private Bson getSubtotalVariablesFilter(int code) {
+        Bson subtotalWithGivenCode = Filters.eq("subtotal", code);
+        Bson nonDeletedVariable = Filters.eq("isDeleted", false);
+        return Filters.and(subtotalWithGivenCode, nonDeletedVariable);
+    }
+
+    /**
+     * It creates the update for a changed attribute of the variable.
+     *
+     * @param attribute The changed attribute.
+     * @param variable The variable.
+     * @return An update which sets the field associated with the given
+     * attribute.
+     */
+    private Bson createUpdateFor(VariableAttribute attribute, Variable variable) {
+        if (attribute == VariableAttribute.ISDELETED) {
+            return Updates.set("isDeleted", variable.isDeleted());
+        }
+
+        throw new IllegalArgumentException(String.format("The variable attribute %s cannot be updated.", attribute));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<IndexModel> getIndexes() {
+        List<IndexModel> indexes = new ArrayList<>();
+        indexes.add(new IndexModel(Indexes.ascending("name"), new IndexOptions().unique(true)));
+        indexes.add(new IndexModel(Indexes.ascending("subtotal", "isDeleted")));
+        return indexes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<Bson> getQueryShapes() {
+        List<Bson> queryShapes = new ArrayList<>();
+        queryShapes.add(this.getVariableNameFilter(""));
+        queryShapes.add(this.getSubtotalVariablesFilter(0));
+        return queryShapes;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -127,20 +161,25 @@ public class MongoVariableRepository extends MongoRepository implements Variable
         return super.count();
     }
 
+    /**
+     * Find the stored variable associated with the given name.
+     *
+     * @param name The variable name.
+     * @return The found variable, otherwise null.
+     */
+    private Variable findStored(String name) {
+        Bson variableNameFilter = this.getVariableNameFilter(name);
+        ArrayList<Variable> foundVariables = super.find(variableNameFilter, Variable.class);
+
+        return foundVariables.isEmpty() ? null : foundVariables.get(0);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Variable find(String name) {
-        Bson variableNameFilter = this.getVariableNameFilter(name);
-        ArrayList<Document> foundVariableDocuments = super.find(variableNameFilter);
-
-        if (foundVariableDocuments.isEmpty()) {
-            return null;
-        } else {
-            Document foundVariableDocument = foundVariableDocuments.get(0);
-            return this.createVariableFrom(foundVariableDocument);
-        }
+        return this.cache.get(name, this::findStored);
     }
 
     /**
@@ -148,31 +187,25 @@ public class MongoVariableRepository extends MongoRepository implements Variable
      */
     @Override
     public ArrayList<Variable> get() {
-        ArrayList<Document> foundDocuments = super.find();
-
-        ArrayList<Variable> variables = new ArrayList<>();
-        for (Document document : foundDocuments) {
-            variables.add(this.createVariableFrom(document));
-        }
-
-        return variables;
+        return super.find(Variable.class);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public ArrayList<String> getNamesList() {
-        return super.distinct("name", null, String.class);
+    public boolean hasName(String name) {
+        return super.exists(this.getVariableNameFilter(name));
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void register(Variable variable) {
+    public void register(Variable variable) throws DuplicatedEntityException {
         Document document = this.createDocumentFrom(variable);
-        super.insertOne(document);
+        super.insertUniqueOne(document);
+        this.cache.invalidate(variable.getName());
     }
 
     /**
@@ -181,7 +214,12 @@ public class MongoVariableRepository extends MongoRepository implements Variable
     @Override
     public boolean update(Variable variable) {
         Bson variableNameFilter = this.getVariableNameFilter(variable.getName());
-        return super.replaceOne(variableNameFilter, this.createDocumentFrom(variable));
+
+        try {
+            return super.updateChanges(variableNameFilter, variable, attribute -> this.createUpdateFor(attribute, variable), () -> this.createDocumentFrom(variable));
+        } finally {
+            this.cache.invalidate(variable.getName());
+        }
     }
 
     /**
@@ -189,9 +227,7 @@ public class MongoVariableRepository extends MongoRepository implements Variable
      */
     @Override
     public boolean existVariableWithSubtotal(int code) {
-        Bson subtotalWithGivenCode = Filters.eq("subtotal", code);
-        Bson nonDeletedVariable = Filters.eq("isDeleted", false);
-        Bson filters = Filters.and(subtotalWithGivenCode, nonDeletedVariable);
+        Bson filters = this.getSubtotalVariablesFilter(code);
         return super.count(filters) > 0;
     }
 
@@ -0,0 +1,110 @@
+package variable.persistence.mongo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import shared.persistence.mongo.MongoCodec;
+import subtotal.application.Subtotal;
+import variable.application.EntityAttribute;
+import variable.application.SubtotalVariable;
+import variable.application.Variable;
+import variable.application.VariableAttribute;
+
+/**
+ * Converts variables to and from the documents of the variable collection.
+ */
+public class VariableCodec extends MongoCodec<Variable> {
+
+    /**
+     * Function which obtains the subtotal associated with a code.
+     */
+    private final Function<Integer, Subtotal> subtotals;
+
+    /**
+     * Constructor.
+     *
+     * @param subtotals Function which obtains the subtotal associated with a
+     * code, or null if it does not exist.
+     */
+    public VariableCodec(Function<Integer, Subtotal> subtotals) {
+        this.subtotals = subtotals;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Variable decode(BsonReader reader, DecoderContext decoderContext) {
+        String name = null;
+        String description = null;
+        String attribute = null;
+        Integer subtotalCode = null;
+        Boolean isDeleted = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "name":
+                    name = super.readString(reader);
+                    break;
+                case "description":
+                    description = super.readString(reader);
+                    break;
+                case "attribute":
+                    attribute = super.readString(reader);
+                    break;
+                case "subtotal":
+                    subtotalCode = super.readInteger(reader);
+                    break;
+                case "isDeleted":
+                    isDeleted = super.readBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        Map<VariableAttribute, Object> attributes = new HashMap<>();
+        attributes.put(VariableAttribute.NAME, super.orDefault(name, ""));
+        attributes.put(VariableAttribute.DESCRIPTION, super.orDefault(description, ""));
+        attributes.put(VariableAttribute.ATTRIBUTE, EntityAttribute.valueOf(attribute));
+        attributes.put(VariableAttribute.ISDELETED, super.orDefault(isDeleted, false));
+        attributes.put(VariableAttribute.SUBTOTAL, subtotalCode == null ? null : this.subtotals.apply(subtotalCode));
+
+        return SubtotalVariable.from(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void encode(BsonWriter writer, Variable variable, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        super.writeString(writer, "name", variable.getName());
+        super.writeString(writer, "description", variable.getDescription());
+        writer.writeString("attribute", variable.getAttribute().name());
+
+        if (variable instanceof SubtotalVariable) {
+            Subtotal subtotal = ((SubtotalVariable) variable).getSubtotal();
+            writer.writeInt32("subtotal", subtotal.getCode());
+        }
+
+        writer.writeBoolean("isDeleted", variable.isDeleted());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<Variable> getEncoderClass() {
+        return Variable.class;
+    }
+
+}
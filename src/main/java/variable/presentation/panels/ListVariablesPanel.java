@@ -7,18 +7,19 @@ import java.util.logging.Logger;
 import javax.swing.DefaultCellEditor;
 import javax.swing.JComboBox;
 import javax.swing.table.TableColumn;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import shared.presentation.utils.ButtonRenderer;
 import subtotal.application.Subtotal;
 import subtotal.application.usecases.ListSubtotals;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import variable.application.EntityAttribute;
 import variable.application.SubtotalVariable;
 import variable.application.Variable;
 import variable.application.usecases.ListVariables;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 import variable.presentation.utils.ListVariablesMouseAdapter;
 import variable.presentation.utils.ListVariablesTableModel;
 
@@ -42,7 +43,7 @@ public class ListVariablesPanel extends javax.swing.JPanel {
      */
     private ArrayList<Subtotal> getSubtotals() {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             ListSubtotals listSubtotals = new ListSubtotals(subtotalRepository);
             return listSubtotals.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -61,7 +62,7 @@ public class ListVariablesPanel extends javax.swing.JPanel {
      */
     private ArrayList<Variable> getVariables() {
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             ListVariables listVariables = new ListVariables(variableRepository);
             return listVariables.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -10,17 +10,18 @@ import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import subtotal.application.Subtotal;
 import subtotal.application.usecases.ListSubtotals;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import variable.application.EntityAttribute;
 import variable.application.VariableAttribute;
 import variable.application.usecases.RegisterVariable;
 import variable.application.utils.VariableValidationState;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 
 /**
  * Panel which shows the form to register a variable.
@@ -77,7 +78,7 @@ public class RegisterVariablePanel extends javax.swing.JPanel {
      */
     private ArrayList<Subtotal> getSubtotals() {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             ListSubtotals listSubtotals = new ListSubtotals(subtotalRepository);
             return listSubtotals.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -162,7 +163,7 @@ public class RegisterVariablePanel extends javax.swing.JPanel {
      */
     private void registerSubtotal(Map<VariableAttribute, Object> newVariableAttributes) {
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             RegisterVariable registerVariable = new RegisterVariable(variableRepository);
             VariableValidationState state = registerVariable.execute(newVariableAttributes);
 
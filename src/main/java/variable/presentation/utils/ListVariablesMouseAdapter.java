@@ -7,13 +7,14 @@ import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
 import javax.swing.table.TableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import variable.application.usecases.RemoveVariable;
 import variable.application.usecases.RestoreVariable;
 import variable.application.utils.VariableRestorationState;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 
 /**
  * Mouse adapter for the list variables panel, which includes a button to remove
@@ -43,7 +44,7 @@ public class ListVariablesMouseAdapter extends MouseAdapter {
      */
     private boolean removeVariable(String name) {
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             RemoveVariable removeVariable = new RemoveVariable(variableRepository);
             return removeVariable.execute(name);
         } catch (NotDefinedDatabaseContextException ex) {
@@ -62,7 +63,7 @@ public class ListVariablesMouseAdapter extends MouseAdapter {
      */
     private VariableRestorationState restoreVariable(String name) {
         try {
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             RestoreVariable restoreVariable = new RestoreVariable(variableRepository);
             return restoreVariable.execute(name);
         } catch (NotDefinedDatabaseContextException ex) {
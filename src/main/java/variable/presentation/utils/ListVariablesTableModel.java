@@ -7,16 +7,17 @@ import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.table.DefaultTableModel;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
 import subtotal.application.Subtotal;
 import subtotal.application.usecases.ListSubtotals;
-import subtotal.persistence.mongo.MongoSubtotalRepository;
+import subtotal.persistence.SubtotalRepository;
 import variable.application.EntityAttribute;
 import variable.application.VariableAttribute;
 import variable.application.usecases.EditVariable;
-import variable.persistence.mongo.MongoVariableRepository;
+import variable.persistence.VariableRepository;
 
 /**
  * Table model for the list variables panel.
@@ -40,7 +41,7 @@ public class ListVariablesTableModel extends DefaultTableModel {
      */
     private ArrayList<Subtotal> getSubtotals() {
         try {
-            MongoSubtotalRepository subtotalRepository = new MongoSubtotalRepository();
+            SubtotalRepository subtotalRepository = RepositoryProvider.get(SubtotalRepository.class);
             ListSubtotals listSubtotals = new ListSubtotals(subtotalRepository);
             return listSubtotals.execute();
         } catch (NotDefinedDatabaseContextException ex) {
@@ -99,7 +100,7 @@ public class ListVariablesTableModel extends DefaultTableModel {
         try {
             Map<VariableAttribute, Object> variableAttributes = this.getVariableAttributes(newValue, row, column);
 
-            MongoVariableRepository variableRepository = new MongoVariableRepository();
+            VariableRepository variableRepository = RepositoryProvider.get(VariableRepository.class);
             EditVariable editVariable = new EditVariable(variableRepository);
             editVariable.execute(variableAttributes);
         } catch (NotDefinedDatabaseContextException ex) {
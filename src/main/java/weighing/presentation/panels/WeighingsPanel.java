@@ -3,7 +3,7 @@ package weighing.presentation.panels;
 import container.application.Box;
 import container.application.Pallet;
 import container.application.usecases.ListBoxes;
-import container.persistence.mongo.MongoContainerRepository;
+import container.persistence.ContainerRepository;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,6 +16,7 @@ import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
+import shared.persistence.RepositoryProvider;
 import shared.persistence.exceptions.NotDefinedDatabaseContextException;
 import shared.presentation.localization.Localization;
 import shared.presentation.localization.LocalizationKey;
@@ -72,7 +73,7 @@ public class WeighingsPanel extends javax.swing.JPanel {
      */
     private ArrayList<Box> getBoxes() {
         try {
-            MongoContainerRepository containerRepository = new MongoContainerRepository();
+            ContainerRepository containerRepository = RepositoryProvider.get(ContainerRepository.class);
             ListBoxes listBoxes = new ListBoxes(containerRepository);
             return listBoxes.execute(false);
         } catch (NotDefinedDatabaseContextException ex) {
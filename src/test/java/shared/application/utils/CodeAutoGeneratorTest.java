@@ -0,0 +1,127 @@
+package shared.application.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+import shared.persistence.SequenceRepository;
+
+/**
+ * Tests the generation of codes from blocks reserved on a sequence.
+ */
+public class CodeAutoGeneratorTest {
+
+    /**
+     * Sequence repository kept in memory, which counts the reservations.
+     */
+    private static class MemorySequenceRepository implements SequenceRepository {
+
+        /**
+         * Last reserved code of each sequence.
+         */
+        private final Map<String, Integer> counters = new HashMap<>();
+
+        /**
+         * Number of reservations done.
+         */
+        private int reservations = 0;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int count() {
+            return this.counters.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int reserve(String sequence, int blockSize) {
+            this.reservations++;
+            return this.counters.merge(sequence, blockSize, Integer::sum);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int current(String sequence) {
+            return this.counters.getOrDefault(sequence, 0);
+        }
+
+    }
+
+    /**
+     * Restore the default block size after each test.
+     */
+    @After
+    public void tearDown() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE, null);
+    }
+
+    /**
+     * Check that the codes of a block are handed out with one reservation.
+     */
+    @Test
+    public void codesAreLeasedInBlocks() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE, 3);
+        MemorySequenceRepository repository = new MemorySequenceRepository();
+
+        for (int code = 1; code <= 7; code++) {
+            assertEquals(code, CodeAutoGenerator.generate(repository, "blocks"));
+        }
+
+        assertEquals(3, repository.reservations);
+        assertEquals(9, repository.current("blocks"));
+    }
+
+    /**
+     * Check that each code is reserved alone by default.
+     */
+    @Test
+    public void codesAreReservedOneByOneByDefault() {
+        MemorySequenceRepository repository = new MemorySequenceRepository();
+
+        assertEquals(1, CodeAutoGenerator.generate(repository, "default"));
+        assertEquals(2, CodeAutoGenerator.generate(repository, "default"));
+        assertEquals(2, repository.reservations);
+    }
+
+    /**
+     * Check that a block reserved by another client is skipped.
+     */
+    @Test
+    public void blocksReservedByOtherClientsAreSkipped() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE, 2);
+        MemorySequenceRepository repository = new MemorySequenceRepository();
+
+        assertEquals(1, CodeAutoGenerator.generate(repository, "shared"));
+        repository.reserve("shared", 2);
+        assertEquals(2, CodeAutoGenerator.generate(repository, "shared"));
+        assertEquals(5, CodeAutoGenerator.generate(repository, "shared"));
+    }
+
+    /**
+     * Check that the preview does not reserve any code.
+     */
+    @Test
+    public void previewDoesNotReserve() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CODE_BLOCK_SIZE, 2);
+        MemorySequenceRepository repository = new MemorySequenceRepository();
+
+        assertEquals(1, CodeAutoGenerator.preview(repository, "preview"));
+        assertEquals(0, repository.reservations);
+
+        assertEquals(1, CodeAutoGenerator.generate(repository, "preview"));
+        assertEquals(2, CodeAutoGenerator.preview(repository, "preview"));
+        assertEquals(2, CodeAutoGenerator.generate(repository, "preview"));
+        assertEquals(3, CodeAutoGenerator.preview(repository, "preview"));
+        assertEquals(1, repository.reservations);
+    }
+
+}
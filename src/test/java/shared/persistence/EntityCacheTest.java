@@ -0,0 +1,193 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+import shared.application.configuration.ApplicationConfiguration;
+import shared.application.configuration.ConfigurationVariable;
+
+/**
+ * Tests the eviction, expiration and invalidation of the entity cache.
+ */
+public class EntityCacheTest {
+
+    /**
+     * Number of times the entities have been loaded from the repository.
+     */
+    private AtomicInteger loads;
+
+    /**
+     * Reset the load counter before each test.
+     */
+    @Before
+    public void setUp() {
+        this.loads = new AtomicInteger();
+    }
+
+    /**
+     * Restore the default cache settings after each test.
+     */
+    @After
+    public void tearDown() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_SIZE, null);
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_TIME_TO_LIVE, null);
+    }
+
+    /**
+     * Load an entity, which is its key as a string.
+     *
+     * @param key The entity key.
+     * @return The loaded entity.
+     */
+    private String load(Integer key) {
+        this.loads.incrementAndGet();
+        return String.valueOf(key);
+    }
+
+    /**
+     * Check that a cached entity is not loaded again.
+     */
+    @Test
+    public void cachedEntitiesAreNotLoadedAgain() {
+        EntityCache<Integer, String> cache = new EntityCache<>("test-hits");
+
+        assertEquals("1", cache.get(1, this::load));
+        assertEquals("1", cache.get(1, this::load));
+
+        assertEquals(1, this.loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Check that the least recently used entity is evicted when the cache is
+     * full.
+     */
+    @Test
+    public void leastRecentlyUsedEntityIsEvicted() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_SIZE, 2);
+        EntityCache<Integer, String> cache = new EntityCache<>("test-eviction");
+
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+        assertEquals(2, cache.size());
+        assertEquals(3, this.loads.get());
+
+        cache.get(1, this::load);
+        assertEquals(3, this.loads.get());
+
+        cache.get(2, this::load);
+        assertEquals(4, this.loads.get());
+    }
+
+    /**
+     * Check that nothing is cached when the size is 0.
+     */
+    @Test
+    public void zeroSizeDisablesTheCache() {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_SIZE, 0);
+        EntityCache<Integer, String> cache = new EntityCache<>("test-disabled");
+
+        cache.get(1, this::load);
+        cache.get(1, this::load);
+
+        assertEquals(0, cache.size());
+        assertEquals(2, this.loads.get());
+    }
+
+    /**
+     * Check that an expired entity is loaded again.
+     *
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    @Test
+    public void expiredEntitiesAreLoadedAgain() throws InterruptedException {
+        ApplicationConfiguration.addConfigurationVariable(ConfigurationVariable.CACHE_TIME_TO_LIVE, 0);
+        EntityCache<Integer, String> cache = new EntityCache<>("test-expiration");
+
+        cache.get(1, this::load);
+        Thread.sleep(5);
+        cache.get(1, this::load);
+
+        assertEquals(2, this.loads.get());
+    }
+
+    /**
+     * Check that an invalidated entity is loaded again.
+     */
+    @Test
+    public void invalidatedEntitiesAreLoadedAgain() {
+        EntityCache<Integer, String> cache = new EntityCache<>("test-invalidation");
+
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.invalidate(1);
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        assertEquals(3, this.loads.get());
+
+        EntityCache.invalidateAll("test-invalidation");
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Check that an entity loaded while it is invalidated is not cached, since
+     * it may have been read before the change.
+     */
+    @Test
+    public void entitiesLoadedDuringAnInvalidationAreNotCached() {
+        EntityCache<Integer, String> cache = new EntityCache<>("test-generation");
+
+        String entity = cache.get(1, key -> {
+            cache.invalidate(key);
+            return this.load(key);
+        });
+
+        assertEquals("1", entity);
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Check that only the entities which are not cached are loaded, in one
+     * request.
+     */
+    @Test
+    public void onlyMissingEntitiesAreLoadedTogether() {
+        EntityCache<Integer, String> cache = new EntityCache<>("test-batch");
+        cache.get(2, this::load);
+
+        List<List<Integer>> requests = new ArrayList<>();
+        ArrayList<String> entities = cache.getAll(Arrays.asList(1, 2, 3), Integer::valueOf, keys -> {
+            requests.add(new ArrayList<>(keys));
+            List<String> loadedEntities = new ArrayList<>();
+            for (Integer key : keys) {
+                loadedEntities.add(this.load(key));
+            }
+            return loadedEntities;
+        });
+
+        assertEquals(Arrays.asList("2", "1", "3"), entities);
+        assertEquals(Arrays.asList(Arrays.asList(1, 3)), requests);
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Check that an entity which does not exist is not cached.
+     */
+    @Test
+    public void missingEntitiesAreNotCached() {
+        EntityCache<Integer, String> cache = new EntityCache<>("test-missing");
+
+        assertNull(cache.get(1, key -> null));
+        assertEquals(0, cache.size());
+    }
+
+}
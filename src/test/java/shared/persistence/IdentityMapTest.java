@@ -0,0 +1,92 @@
+package shared.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the identity map which batches the loading of referenced entities.
+ */
+public class IdentityMapTest {
+
+    /**
+     * Keys requested on each call to the loader.
+     */
+    private List<List<Integer>> loads;
+
+    /**
+     * Identity map whose entities are the string values of the existing
+     * keys, which are the ones below 100.
+     */
+    private IdentityMap<Integer, String> identityMap;
+
+    /**
+     * Create the identity map before each test.
+     */
+    @Before
+    public void setUp() {
+        this.loads = new ArrayList<>();
+        this.identityMap = new IdentityMap<>(Integer::valueOf, keys -> {
+            this.loads.add(keys);
+            return keys.stream().filter(key -> key < 100).map(String::valueOf).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Check that all the collected keys are loaded with a single call.
+     */
+    @Test
+    public void collectedKeysAreLoadedAtOnce() {
+        this.identityMap.collect(1);
+        this.identityMap.collect(2);
+        this.identityMap.collect(1);
+
+        assertEquals("1", this.identityMap.get(1));
+        assertEquals("2", this.identityMap.get(2));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), this.loads);
+    }
+
+    /**
+     * Check that a key without entity is resolved to null and not requested
+     * again.
+     */
+    @Test
+    public void missingKeysAreNotRequestedAgain() {
+        this.identityMap.collect(500);
+        assertNull(this.identityMap.get(500));
+
+        this.identityMap.collect(500);
+        assertNull(this.identityMap.get(500));
+        assertEquals(1, this.loads.size());
+    }
+
+    /**
+     * Check that an entity added directly is not loaded.
+     */
+    @Test
+    public void putEntitiesAreNotLoaded() {
+        this.identityMap.collect(7);
+        this.identityMap.put("7");
+
+        assertEquals("7", this.identityMap.get(7));
+        this.identityMap.resolve();
+        assertEquals(0, this.loads.size());
+    }
+
+    /**
+     * Check that null keys are ignored.
+     */
+    @Test
+    public void nullKeysAreIgnored() {
+        this.identityMap.collect(null);
+        this.identityMap.resolve();
+
+        assertEquals(0, this.loads.size());
+    }
+
+}
@@ -0,0 +1,100 @@
+package shared.persistence;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Sorts;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import shared.persistence.embedded.EmbeddedQuery;
+
+/**
+ * Tests the keyset filters used to page the listings sorted by date and
+ * code.
+ */
+public class PageKeyTest {
+
+    /**
+     * Create a document with the given date and code.
+     *
+     * @param day The day of the date.
+     * @param code The code.
+     * @return The document.
+     */
+    private BsonDocument createDocument(int day, int code) {
+        return new BsonDocument("date", new BsonDateTime(day * 86400000L)).append("code", new BsonInt32(code));
+    }
+
+    /**
+     * Obtain the documents placed after the given key, in listing order.
+     *
+     * @param documents The documents.
+     * @param afterKey The key, or null for the first page.
+     * @param limit The page size.
+     * @return The page documents.
+     */
+    private List<BsonDocument> page(List<BsonDocument> documents, PageKey afterKey, int limit) {
+        BsonDocument sort = Sorts.ascending("date", "code").toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        BsonDocument filter = afterKey == null ? new BsonDocument() : afterKey.getAfterFilter().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+
+        return documents.stream()
+                .filter(document -> EmbeddedQuery.matches(document, filter))
+                .sorted(EmbeddedQuery.createComparator(sort))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Check that paging visits every document once and in order, including
+     * the ones sharing a date across a page boundary.
+     */
+    @Test
+    public void pagesVisitEveryDocumentOnce() {
+        List<BsonDocument> documents = Arrays.asList(
+                this.createDocument(2, 7), this.createDocument(1, 9), this.createDocument(2, 3),
+                this.createDocument(1, 4), this.createDocument(2, 5), this.createDocument(3, 1));
+
+        List<Integer> visitedCodes = new ArrayList<>();
+        PageKey afterKey = null;
+        int numPages = 0;
+
+        List<BsonDocument> page;
+        while (!(page = this.page(documents, afterKey, 2)).isEmpty()) {
+            numPages++;
+            for (BsonDocument document : page) {
+                visitedCodes.add(document.getInt32("code").getValue());
+            }
+
+            BsonDocument last = page.get(page.size() - 1);
+            afterKey = new PageKey(new Date(last.getDateTime("date").getValue()), last.getInt32("code").getValue());
+        }
+
+        assertEquals(Arrays.asList(4, 9, 3, 5, 7, 1), visitedCodes);
+        assertEquals(3, numPages);
+    }
+
+    /**
+     * Check that the key itself is excluded and later codes on the same date
+     * are included.
+     */
+    @Test
+    public void keyIsExcluded() {
+        PageKey key = new PageKey(new Date(2 * 86400000L), 5);
+        BsonDocument filter = key.getAfterFilter().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+
+        assertFalse(EmbeddedQuery.matches(this.createDocument(2, 5), filter));
+        assertFalse(EmbeddedQuery.matches(this.createDocument(2, 4), filter));
+        assertFalse(EmbeddedQuery.matches(this.createDocument(1, 9), filter));
+        assertTrue(EmbeddedQuery.matches(this.createDocument(2, 6), filter));
+        assertTrue(EmbeddedQuery.matches(this.createDocument(3, 1), filter));
+    }
+
+}
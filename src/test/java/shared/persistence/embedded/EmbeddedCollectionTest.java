@@ -0,0 +1,98 @@
+package shared.persistence.embedded;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import shared.persistence.exceptions.DuplicatedEntityException;
+
+/**
+ * Tests the storage of the embedded collections on their files.
+ */
+public class EmbeddedCollectionTest {
+
+    /**
+     * Directory of the collection files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Check that the last version of each document is loaded again, skipping
+     * the removed documents and an incomplete last line.
+     *
+     * Note that a removal is stored when a transaction undoes an insert.
+     *
+     * @throws Exception Thrown when the collection cannot be used.
+     */
+    @Test
+    public void lastVersionsAreLoadedAgain() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("customer.json");
+        EmbeddedCollection collection = new EmbeddedCollection("customer", file);
+        collection.insert(BsonDocument.parse("{_id: 1, code: 1, name: 'Juan'}"));
+        collection.insert(BsonDocument.parse("{_id: 2, code: 2, name: 'Ana'}"));
+        collection.update(BsonDocument.parse("{code: 1}"), BsonDocument.parse("{$set: {name: 'Juana'}}"), false, false);
+        collection.insert(BsonDocument.parse("{_id: 3, code: 3, name: 'Luis'}"));
+        collection.restore(Collections.singletonMap(new BsonInt32(3), null));
+        collection.close();
+
+        Files.write(file, "{\"_id\": 4, \"co".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        EmbeddedCollection loadedCollection = new EmbeddedCollection("customer", file);
+        List<BsonDocument> documents = loadedCollection.find(new BsonDocument(), null, BsonDocument.parse("{code: 1}"), 0);
+
+        assertEquals(Arrays.asList(BsonDocument.parse("{_id: 1, code: 1, name: 'Juana'}"), BsonDocument.parse("{_id: 2, code: 2, name: 'Ana'}")), documents);
+    }
+
+    /**
+     * Check that the file is compacted when it holds too many old versions,
+     * keeping the last one of each document.
+     *
+     * @throws Exception Thrown when the collection cannot be used.
+     */
+    @Test
+    public void oldVersionsAreCompacted() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("sequence.json");
+        EmbeddedCollection collection = new EmbeddedCollection("sequence", file);
+        collection.insert(BsonDocument.parse("{_id: 'invoice', value: 0}"));
+
+        for (int i = 0; i < 1500; i++) {
+            collection.update(BsonDocument.parse("{_id: 'invoice'}"), BsonDocument.parse("{$inc: {value: 1}}"), false, false);
+        }
+
+        collection.close();
+
+        assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).size() < 1000);
+        EmbeddedCollection loadedCollection = new EmbeddedCollection("sequence", file);
+        assertEquals(BsonDocument.parse("{_id: 'invoice', value: 1500}"), loadedCollection.find(new BsonDocument(), null, null, 0).get(0));
+    }
+
+    /**
+     * Check that a document which breaks a unique index is not stored.
+     *
+     * @throws Exception Thrown when the collection cannot be used.
+     */
+    @Test(expected = DuplicatedEntityException.class)
+    public void uniqueIndexesRejectDuplicatedKeys() throws Exception {
+        EmbeddedCollection collection = new EmbeddedCollection("product", null);
+        collection.createIndex(true, "code");
+        collection.insert(BsonDocument.parse("{code: 'TOM'}"));
+
+        try {
+            collection.insert(BsonDocument.parse("{code: 'TOM'}"));
+        } finally {
+            assertEquals(1, collection.size());
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package shared.persistence.embedded;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the selection of the candidate documents with an index.
+ */
+public class EmbeddedIndexTest {
+
+    /**
+     * Index on the farmer and the date of the delivery notes.
+     */
+    private EmbeddedIndex index;
+
+    /**
+     * Index some delivery notes, identified by their code, with the dates 1
+     * to 5 for the farmer 1, and 1 to 2 for the farmer 2.
+     */
+    @Before
+    public void setUp() {
+        this.index = new EmbeddedIndex(Arrays.asList("farmer", "date"), false);
+
+        int code = 1;
+        for (int date = 1; date <= 5; date++) {
+            this.index.add(new BsonInt32(code++), BsonDocument.parse(String.format("{farmer: 1, date: %d}", date)));
+        }
+
+        for (int date = 1; date <= 2; date++) {
+            this.index.add(new BsonInt32(code++), BsonDocument.parse(String.format("{farmer: 2, date: %d}", date)));
+        }
+
+        this.index.add(new BsonInt32(code), BsonDocument.parse("{date: 3}"));
+    }
+
+    /**
+     * Find the codes of the candidate documents for the given filter.
+     *
+     * @param filter The query filter.
+     * @return The candidate codes.
+     */
+    private Set<Integer> find(String filter) {
+        Set<BsonValue> ids = this.index.find(EmbeddedIndex.getConditions(BsonDocument.parse(filter)));
+        assertNotNull(ids);
+
+        Set<Integer> codes = new LinkedHashSet<>();
+        for (BsonValue id : ids) {
+            codes.add(id.asInt32().getValue());
+        }
+
+        return codes;
+    }
+
+    /**
+     * Check that an equality on the first field and a range on the second one
+     * select the keys between the bounds.
+     */
+    @Test
+    public void rangeAfterEqualitySelectsTheKeysBetweenTheBounds() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2, 3, 4)), this.find("{farmer: 1, date: {$gte: 2, $lte: 4}}"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(3)), this.find("{farmer: 1, date: {$gt: 2, $lt: 4}}"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(5)), this.find("{farmer: 1, date: {$gt: 4}}"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(6)), this.find("{farmer: 2, date: {$lt: 2}}"));
+        assertTrue(this.find("{farmer: 1, date: {$gt: 4, $lt: 2}}").isEmpty());
+    }
+
+    /**
+     * Check that the values of an $in condition are looked up one by one.
+     */
+    @Test
+    public void inConditionsLookUpEachValue() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2, 7)), this.find("{farmer: {$in: [1, 2]}, date: 2}"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(1, 2, 6, 7)), this.find("{farmer: {$in: [1, 2]}, date: {$lte: 2}}"));
+    }
+
+    /**
+     * Check that a missing field is indexed as null.
+     */
+    @Test
+    public void missingFieldsAreIndexedAsNull() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList(8)), this.find("{farmer: null}"));
+    }
+
+    /**
+     * Check that the index is preferred the more leading fields it fixes.
+     */
+    @Test
+    public void selectivityGrowsWithTheUsedFields() {
+        int rangeSelectivity = this.index.getSelectivity(EmbeddedIndex.getConditions(BsonDocument.parse("{farmer: 1, date: {$gt: 1}}")));
+        int equalitySelectivity = this.index.getSelectivity(EmbeddedIndex.getConditions(BsonDocument.parse("{farmer: 1}")));
+        int unusedSelectivity = this.index.getSelectivity(EmbeddedIndex.getConditions(BsonDocument.parse("{date: 1}")));
+
+        assertTrue(rangeSelectivity > equalitySelectivity);
+        assertEquals(0, unusedSelectivity);
+    }
+
+    /**
+     * Check that a removed document is not selected anymore.
+     */
+    @Test
+    public void removedDocumentsAreNotSelected() {
+        this.index.remove(new BsonInt32(3), BsonDocument.parse("{farmer: 1, date: 3}"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2, 4)), this.find("{farmer: 1, date: {$gte: 2, $lte: 4}}"));
+    }
+
+    /**
+     * Check that a unique index reports the key of another document with the
+     * same values.
+     */
+    @Test
+    public void uniqueIndexesReportDuplicatedKeys() {
+        EmbeddedIndex uniqueIndex = new EmbeddedIndex(Arrays.asList("code"), true);
+        uniqueIndex.add(new BsonInt32(1), BsonDocument.parse("{code: 10}"));
+
+        assertNull(uniqueIndex.findDuplicatedKey(new BsonInt32(1), BsonDocument.parse("{code: 10}")));
+        assertNotNull(uniqueIndex.findDuplicatedKey(new BsonInt32(2), BsonDocument.parse("{code: 10}")));
+    }
+
+}
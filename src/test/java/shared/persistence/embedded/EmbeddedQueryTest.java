@@ -0,0 +1,115 @@
+package shared.persistence.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.BsonDocument;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the filters, sorts and projections of the embedded collections.
+ */
+public class EmbeddedQueryTest {
+
+    /**
+     * Delivery note used by the filter tests.
+     */
+    private static final BsonDocument DOCUMENT = BsonDocument.parse("{code: 7, farmer: 3, isDeleted: false, price: 1.5, product: 'TOM', containers: [1, 4], customer: {code: 3, name: 'Juan'}}");
+
+    /**
+     * Check the implicit equality, including the array elements and the
+     * embedded document fields.
+     */
+    @Test
+    public void equalityMatchesValuesArraysAndEmbeddedFields() {
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: 7, product: 'TOM'}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{containers: 4}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{'customer.name': 'Juan'}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: 7.0}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: 7, product: 'PEP'}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{trader: 3}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{trader: null}")));
+    }
+
+    /**
+     * Check the comparison, membership and existence operators.
+     */
+    @Test
+    public void operatorsMatchTheirConditions() {
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: {$gt: 5, $lte: 7}}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: {$lt: 7}}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{product: {$gt: 5}}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{farmer: {$in: [1, 3]}, isDeleted: {$ne: true}}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{farmer: {$nin: [3]}}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{trader: {$exists: false}, price: {$exists: true}}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{product: {$regex: /^t/i}}")));
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{code: {$not: {$gt: 7}}}")));
+    }
+
+    /**
+     * Check the logical operators.
+     */
+    @Test
+    public void logicalOperatorsCombineTheirFilters() {
+        assertTrue(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{$or: [{code: 1}, {code: 7}]}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{$and: [{code: 7}, {farmer: 1}]}")));
+        assertFalse(EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{$nor: [{code: 7}]}")));
+    }
+
+    /**
+     * Check that a query operator which is not supported is rejected instead
+     * of being ignored.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedOperatorsAreRejected() {
+        EmbeddedQuery.matches(DOCUMENT, BsonDocument.parse("{containers: {$size: 2}}"));
+    }
+
+    /**
+     * Check that the documents are sorted by several fields, placing the
+     * missing values first like on the Mongo database.
+     */
+    @Test
+    public void documentsAreSortedBySeveralFields() {
+        List<BsonDocument> documents = new ArrayList<>(Arrays.asList(
+                BsonDocument.parse("{code: 1, date: 2}"),
+                BsonDocument.parse("{code: 2, date: 1}"),
+                BsonDocument.parse("{code: 3, date: 2}"),
+                BsonDocument.parse("{code: 4}")));
+
+        documents.sort(EmbeddedQuery.createComparator(BsonDocument.parse("{date: 1, code: -1}")));
+
+        List<Integer> codes = new ArrayList<>();
+        for (BsonDocument document : documents) {
+            codes.add(document.getInt32("code").getValue());
+        }
+
+        assertEquals(Arrays.asList(4, 2, 3, 1), codes);
+    }
+
+    /**
+     * Check that the included fields may be embedded document fields.
+     */
+    @Test
+    public void projectionIncludesEmbeddedFields() {
+        BsonDocument projectedDocument = EmbeddedQuery.project(DOCUMENT, BsonDocument.parse("{code: 1, 'customer.name': 1, 'product.name': 1}"));
+
+        assertEquals(BsonDocument.parse("{code: 7, customer: {name: 'Juan'}}"), projectedDocument);
+    }
+
+    /**
+     * Check that the excluded fields may be embedded document fields, without
+     * changing the projected document.
+     */
+    @Test
+    public void projectionExcludesEmbeddedFields() {
+        BsonDocument projectedDocument = EmbeddedQuery.project(DOCUMENT, BsonDocument.parse("{containers: 0, 'customer.code': 0, price: 0}"));
+
+        assertEquals(BsonDocument.parse("{code: 7, farmer: 3, isDeleted: false, product: 'TOM', customer: {name: 'Juan'}}"), projectedDocument);
+        assertEquals(3, DOCUMENT.getDocument("customer").getInt32("code").getValue());
+    }
+
+}
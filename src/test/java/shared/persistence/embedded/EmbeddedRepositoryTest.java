@@ -0,0 +1,126 @@
+package shared.persistence.embedded;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import shared.persistence.exceptions.NotDefinedDatabaseContextException;
+
+/**
+ * Tests the transactions of the embedded repositories.
+ */
+public class EmbeddedRepositoryTest {
+
+    /**
+     * Repository which exposes the writes of the embedded repositories.
+     */
+    private static class DocumentRepository extends EmbeddedRepository {
+
+        /**
+         * Constructor.
+         *
+         * @param collectionName The collection name.
+         * @throws NotDefinedDatabaseContextException Thrown when there is not
+         * an opened database on the system.
+         */
+        private DocumentRepository(String collectionName) throws NotDefinedDatabaseContextException {
+            super(collectionName);
+        }
+
+    }
+
+    /**
+     * Repository of the invoices.
+     */
+    private DocumentRepository invoices;
+
+    /**
+     * Repository of the delivery notes.
+     */
+    private DocumentRepository deliveryNotes;
+
+    /**
+     * Open an empty database before each test.
+     *
+     * @throws NotDefinedDatabaseContextException Thrown when the database
+     * cannot be opened.
+     */
+    @Before
+    public void setUp() throws NotDefinedDatabaseContextException {
+        EmbeddedDatabase.setInMemoryInstance(0);
+        this.invoices = new DocumentRepository("invoice");
+        this.deliveryNotes = new DocumentRepository("deliverynote");
+
+        this.deliveryNotes.insertOne(new Document("code", 1).append("isClosed", false));
+        this.deliveryNotes.insertOne(new Document("code", 2).append("isClosed", false));
+    }
+
+    /**
+     * Close the database after each test.
+     */
+    @After
+    public void tearDown() {
+        EmbeddedDatabase.close();
+    }
+
+    /**
+     * Insert an invoice and close its delivery notes inside a transaction.
+     *
+     * @param isSuccessful Whether the operations succeed.
+     * @return Whether the transaction has been committed.
+     */
+    private boolean closeInvoice(boolean isSuccessful) {
+        return this.invoices.inTransaction(() -> {
+            this.invoices.insertOne(new Document("code", 10));
+            this.deliveryNotes.updateMany(Filters.in("code", 1, 2), Updates.set("isClosed", true));
+            this.deliveryNotes.updateOne(Filters.eq("code", 1), Updates.set("invoice", 10));
+            return isSuccessful;
+        });
+    }
+
+    /**
+     * Check that the writes of a successful transaction are kept.
+     */
+    @Test
+    public void successfulTransactionsAreCommitted() {
+        assertTrue(this.closeInvoice(true));
+
+        assertEquals(1, this.invoices.count());
+        assertEquals(2, this.deliveryNotes.count(Filters.eq("isClosed", true)));
+        assertEquals(1, this.deliveryNotes.count(Filters.eq("invoice", 10)));
+    }
+
+    /**
+     * Check that the writes of a failed transaction are undone, on all the
+     * collections.
+     */
+    @Test
+    public void failedTransactionsAreRolledBack() {
+        assertFalse(this.closeInvoice(false));
+
+        assertEquals(0, this.invoices.count());
+        assertEquals(0, this.deliveryNotes.count(Filters.eq("isClosed", true)));
+        assertEquals(0, this.deliveryNotes.count(Filters.exists("invoice")));
+    }
+
+    /**
+     * Check that the writes of a transaction which throws an exception are
+     * undone.
+     */
+    @Test
+    public void transactionsThrowingAnExceptionAreRolledBack() {
+        boolean isCommitted = this.invoices.inTransaction(() -> {
+            this.invoices.insertOne(new Document("code", 10));
+            throw new IllegalStateException("The delivery notes cannot be closed");
+        });
+
+        assertFalse(isCommitted);
+        assertEquals(0, this.invoices.count());
+    }
+
+}
@@ -0,0 +1,173 @@
+package shared.persistence.mongo;
+
+import com.mongodb.MongoTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import shared.persistence.ConnectionNotifier;
+import shared.persistence.ConnectionState;
+
+/**
+ * Tests the state transitions of the circuit breaker which guards the
+ * database operations.
+ */
+public class MongoCircuitBreakerTest {
+
+    /**
+     * Milliseconds the circuit is kept open on the tests.
+     */
+    private static final long OPEN_INTERVAL_MS = 100;
+
+    /**
+     * Number of times the guarded operation has been run.
+     */
+    private AtomicInteger numCalls;
+
+    /**
+     * Close the circuit and shorten its open interval before each test.
+     */
+    @Before
+    public void setUp() {
+        MongoCircuitBreaker.setOpenInterval(OPEN_INTERVAL_MS);
+        MongoCircuitBreaker.reset();
+        this.numCalls = new AtomicInteger();
+    }
+
+    /**
+     * Restore the default open interval after each test.
+     */
+    @After
+    public void tearDown() {
+        MongoCircuitBreaker.setOpenInterval(30000);
+        MongoCircuitBreaker.reset();
+    }
+
+    /**
+     * Create an operation which fails the given number of times because the
+     * database cannot be reached, and then succeeds.
+     *
+     * @param numFailures The number of failures.
+     * @return The operation, which counts the times it is run.
+     */
+    private Supplier<String> failing(int numFailures) {
+        return () -> {
+            if (this.numCalls.incrementAndGet() <= numFailures) {
+                throw new MongoTimeoutException("The database cannot be reached");
+            }
+
+            return "result";
+        };
+    }
+
+    /**
+     * Run a read which cannot reach the database, expecting it to fail.
+     */
+    private void readFailing() {
+        try {
+            MongoCircuitBreaker.read(this.failing(Integer.MAX_VALUE));
+            fail("The read should fail");
+        } catch (MongoTimeoutException ex) {
+            // The failure is expected.
+        }
+    }
+
+    /**
+     * Check that a read which cannot reach the database is tried again while
+     * the circuit is closed.
+     */
+    @Test
+    public void closedCircuitTriesTheReadsAgain() {
+        assertEquals("result", MongoCircuitBreaker.read(this.failing(1)));
+        assertEquals(2, this.numCalls.get());
+        assertEquals(ConnectionState.CONNECTED, ConnectionNotifier.getState());
+    }
+
+    /**
+     * Check that the circuit is opened after the consecutive failures, after
+     * which the reads and the writes fail without reaching the database.
+     */
+    @Test
+    public void openCircuitFailsFast() {
+        this.readFailing();
+        assertEquals(2, this.numCalls.get());
+        assertEquals(ConnectionState.DISCONNECTED, ConnectionNotifier.getState());
+
+        this.numCalls.set(0);
+        this.readFailing();
+
+        try {
+            MongoCircuitBreaker.write(this.failing(0));
+            fail("The write should fail");
+        } catch (MongoTimeoutException ex) {
+            // The failure is expected.
+        }
+
+        assertEquals(0, this.numCalls.get());
+    }
+
+    /**
+     * Check that a read is let through after the open interval, closing the
+     * circuit when it reaches the database.
+     *
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    @Test
+    public void successfulTrialClosesTheCircuit() throws InterruptedException {
+        this.readFailing();
+        Thread.sleep(2 * OPEN_INTERVAL_MS);
+
+        this.numCalls.set(0);
+        assertEquals("result", MongoCircuitBreaker.read(this.failing(0)));
+        assertEquals(ConnectionState.CONNECTED, ConnectionNotifier.getState());
+
+        assertEquals("result", MongoCircuitBreaker.write(this.failing(0)));
+        assertEquals(2, this.numCalls.get());
+    }
+
+    /**
+     * Check that a read let through after the open interval which cannot
+     * reach the database is not tried again and opens the circuit again.
+     *
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    @Test
+    public void failedTrialOpensTheCircuitAgain() throws InterruptedException {
+        this.readFailing();
+        Thread.sleep(2 * OPEN_INTERVAL_MS);
+
+        this.numCalls.set(0);
+        this.readFailing();
+        assertEquals(1, this.numCalls.get());
+
+        this.readFailing();
+        assertEquals(1, this.numCalls.get());
+        assertEquals(ConnectionState.DISCONNECTED, ConnectionNotifier.getState());
+    }
+
+    /**
+     * Check that a write which cannot reach the database is not tried again,
+     * although it counts towards opening the circuit.
+     */
+    @Test
+    public void writesAreNotTriedAgain() {
+        try {
+            MongoCircuitBreaker.write(this.failing(1));
+            fail("The write should fail");
+        } catch (MongoTimeoutException ex) {
+            // The failure is expected.
+        }
+
+        assertEquals(1, this.numCalls.get());
+        assertEquals(ConnectionState.RECONNECTING, ConnectionNotifier.getState());
+
+        this.numCalls.set(0);
+        this.readFailing();
+        assertEquals(1, this.numCalls.get());
+        assertEquals(ConnectionState.DISCONNECTED, ConnectionNotifier.getState());
+    }
+
+}
@@ -0,0 +1,64 @@
+package shared.persistence.mongo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Tests the lenient reading of the referenced codes from the stored
+ * documents.
+ */
+public class MongoDecoderTest {
+
+    /**
+     * Check that integers stored as any numeric type are read.
+     */
+    @Test
+    public void integersAreReadFromAnyNumericType() {
+        BsonDocument document = new BsonDocument("int32", new BsonInt32(3))
+                .append("int64", new BsonInt64(4))
+                .append("double", new BsonDouble(5.0));
+
+        assertEquals(Integer.valueOf(3), MongoDecoder.getInteger(document, "int32"));
+        assertEquals(Integer.valueOf(4), MongoDecoder.getInteger(document, "int64"));
+        assertEquals(Integer.valueOf(5), MongoDecoder.getInteger(document, "double"));
+    }
+
+    /**
+     * Check that missing or mistyped values are read as null.
+     */
+    @Test
+    public void missingValuesAreNull() {
+        BsonDocument document = new BsonDocument("null", new BsonNull()).append("string", new BsonString("a")).append("number", new BsonInt32(1));
+
+        assertNull(MongoDecoder.getInteger(document, "missing"));
+        assertNull(MongoDecoder.getInteger(document, "null"));
+        assertNull(MongoDecoder.getInteger(document, "string"));
+        assertNull(MongoDecoder.getString(document, "missing"));
+        assertNull(MongoDecoder.getString(document, "number"));
+        assertEquals("a", MongoDecoder.getString(document, "string"));
+    }
+
+    /**
+     * Check that integer arrays skip the non numeric values.
+     */
+    @Test
+    public void integerListsSkipNonNumericValues() {
+        BsonArray codes = new BsonArray(Arrays.asList(new BsonInt32(1), new BsonInt64(2), new BsonNull(), new BsonDouble(3.0)));
+        BsonDocument document = new BsonDocument("codes", codes).append("null", new BsonNull());
+
+        assertEquals(Arrays.asList(1, 2, 3), MongoDecoder.getIntegerList(document, "codes"));
+        assertEquals(Collections.emptyList(), MongoDecoder.getIntegerList(document, "null"));
+        assertEquals(Collections.emptyList(), MongoDecoder.getIntegerList(document, "missing"));
+    }
+
+}
@@ -0,0 +1,111 @@
+package shared.persistence.mongo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.zip.DeflaterOutputStream;
+import org.bson.Document;
+import org.bson.types.Binary;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import shared.persistence.ContentHash;
+
+/**
+ * Tests the reading of the files embedded on legacy documents.
+ */
+public class MongoFileConverterTest {
+
+    /**
+     * Content of the embedded files.
+     */
+    private static final byte[] CONTENT = "%PDF-1.4 delivery note delivery note delivery note".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Create a document with the content embedded on the binary format.
+     *
+     * @param compressed Whether the content is compressed.
+     * @return The stored file attributes.
+     * @throws IOException Thrown when the content cannot be compressed.
+     */
+    private Document createBinaryFile(boolean compressed) throws IOException {
+        byte[] storedContent = CONTENT;
+        if (compressed) {
+            ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
+            try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(compressedContent)) {
+                deflaterStream.write(CONTENT);
+            }
+            storedContent = compressedContent.toByteArray();
+        }
+
+        MessageDigest digest = ContentHash.createDigest();
+        digest.update(CONTENT);
+
+        return new Document("content", new Binary(storedContent))
+                .append("extension", ".pdf")
+                .append("compression", compressed ? FileCompression.DEFLATE.name() : FileCompression.NONE.name())
+                .append("length", (long) CONTENT.length)
+                .append("checksum", ContentHash.from(digest));
+    }
+
+    /**
+     * Check that a legacy Base64 file is read.
+     */
+    @Test
+    public void legacyFilesAreRead() {
+        Document fileAttributes = new Document("content", Base64.getEncoder().encodeToString(CONTENT)).append("extension", ".pdf");
+
+        assertTrue(MongoFileConverter.isLegacy(fileAttributes));
+        assertArrayEquals(CONTENT, MongoFileConverter.readBytes(fileAttributes));
+    }
+
+    /**
+     * Check that binary files are read, whether compressed or not.
+     *
+     * @throws IOException Thrown when the content cannot be compressed.
+     */
+    @Test
+    public void binaryFilesAreRead() throws IOException {
+        Document compressedFile = this.createBinaryFile(true);
+        Document uncompressedFile = this.createBinaryFile(false);
+
+        assertFalse(MongoFileConverter.isLegacy(compressedFile));
+        assertArrayEquals(CONTENT, MongoFileConverter.readBytes(compressedFile));
+        assertArrayEquals(CONTENT, MongoFileConverter.readBytes(uncompressedFile));
+    }
+
+    /**
+     * Check that a binary file is decoded into a file with its extension.
+     *
+     * @throws IOException Thrown when the file cannot be read.
+     */
+    @Test
+    public void binaryFilesAreDecoded() throws IOException {
+        File file = MongoFileConverter.decode(this.createBinaryFile(true));
+
+        assertTrue(file.getName().endsWith(".pdf"));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Check that a binary file whose checksum does not match is rejected.
+     *
+     * @throws IOException Thrown when the content cannot be compressed.
+     */
+    @Test
+    public void corruptedFilesAreRejected() throws IOException {
+        Document wrongChecksum = this.createBinaryFile(true).append("checksum", "0");
+        Document wrongLength = this.createBinaryFile(false).append("length", 1L);
+
+        assertNull(MongoFileConverter.readBytes(wrongChecksum));
+        assertNull(MongoFileConverter.readBytes(wrongLength));
+        assertNull(MongoFileConverter.decode(wrongChecksum));
+    }
+
+}
@@ -0,0 +1,244 @@
+package shared.persistence.mongo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.bson.Document;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import shared.persistence.exceptions.DuplicatedEntityException;
+
+/**
+ * Tests the local journal of the documents written to the database on the
+ * background.
+ */
+public class MongoWriteJournalTest {
+
+    /**
+     * Seconds waited for the background writes.
+     */
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * Directory of the journals and the journaled files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Create a file to journal along with a document.
+     *
+     * @return The created file.
+     * @throws IOException Thrown when the file cannot be created.
+     */
+    private File createFile() throws IOException {
+        File file = this.folder.newFile();
+        Files.write(file.toPath(), "%PDF".getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    /**
+     * Wait until the journal file of the given journal is emptied.
+     *
+     * @param journalPath The journal file path.
+     * @return Whether the journal has been emptied before the timeout.
+     * @throws IOException Thrown when the journal cannot be read.
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    private boolean awaitTruncated(Path journalPath) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (Files.size(journalPath) > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            Thread.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait until no document matching the given condition is pending on the
+     * given journal, since a document is recorded as written after the writer
+     * returns.
+     *
+     * @param journal The journal.
+     * @param condition The condition of the documents.
+     * @return Whether the documents have been recorded before the timeout.
+     * @throws InterruptedException Thrown when the test is interrupted.
+     */
+    private boolean awaitRecorded(MongoWriteJournal journal, Predicate<Document> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (journal.hasPending(condition)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            Thread.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Check that an added document is written, after which its copy is
+     * removed and the journal emptied.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void addedDocumentsAreWrittenAndTruncated() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        MongoWriteJournal journal = new MongoWriteJournal(directory, "written", (document, file) -> {
+            assertTrue(file.exists());
+            return written.add(document);
+        });
+
+        journal.add(new Document("code", 1), this.createFile());
+
+        assertEquals(new Document("code", 1), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(this.awaitTruncated(directory.resolve("written.journal")));
+        assertFalse(journal.hasPending(document -> true));
+        assertEquals(0, Files.list(directory.resolve("written")).count());
+    }
+
+    /**
+     * Check that the documents not written before the journal is closed are
+     * written again when it is opened.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void pendingDocumentsAreWrittenAgainOnLoad() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        MongoWriteJournal failingJournal = new MongoWriteJournal(directory, "replayed", (document, file) -> false);
+        failingJournal.add(new Document("code", 1), this.createFile());
+        failingJournal.add(new Document("code", 2), this.createFile());
+        assertTrue(failingJournal.hasPending(document -> document.getInteger("code") == 2));
+
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        new MongoWriteJournal(directory, "replayed", (document, file) -> written.add(document));
+
+        assertEquals(new Document("code", 1), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(new Document("code", 2), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Check that the completed records and an incomplete last record are not
+     * written again when the journal is opened.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void completedAndIncompleteRecordsAreNotWrittenAgain() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        String filePath = this.createFile().getPath();
+        List<String> lines = Arrays.asList(
+                new Document("id", "a").append("document", new Document("code", 1)).append("file", filePath).toJson(),
+                new Document("id", "b").append("document", new Document("code", 2)).append("file", filePath).toJson(),
+                new Document("id", "a").toJson(),
+                "{\"id\": \"c\", \"docu");
+        Files.write(directory.resolve("loaded.journal"), lines, StandardCharsets.UTF_8);
+
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        new MongoWriteJournal(directory, "loaded", (document, file) -> written.add(document));
+
+        assertEquals(new Document("code", 2), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(this.awaitTruncated(directory.resolve("loaded.journal")));
+        assertNull(written.poll());
+    }
+
+    /**
+     * Check that a document which fails with an unexpected error is kept on
+     * the journal without holding back the next ones.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void failingDocumentsDoNotHoldBackTheNextOnes() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        MongoWriteJournal journal = new MongoWriteJournal(directory, "failing", (document, file) -> {
+            if (document.getInteger("code") == 1) {
+                throw new NullPointerException();
+            }
+
+            return written.add(document);
+        });
+
+        journal.add(new Document("code", 1), this.createFile());
+        journal.add(new Document("code", 2), this.createFile());
+
+        assertEquals(new Document("code", 2), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(this.awaitRecorded(journal, document -> document.getInteger("code") == 2));
+        assertTrue(journal.hasPending(document -> document.getInteger("code") == 1));
+    }
+
+    /**
+     * Check that the documents which cannot be written yet do not hold back
+     * the next ones, even when they fill a whole batch.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void unwrittenDocumentsAreRetriedAfterTheNextOnes() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        MongoWriteJournal journal = new MongoWriteJournal(directory, "retried", (document, file) -> document.getInteger("code") > 20 && written.add(document));
+
+        for (int code = 1; code <= 21; code++) {
+            journal.add(new Document("code", code), this.createFile());
+        }
+
+        assertEquals(new Document("code", 21), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(journal.hasPending(document -> document.getInteger("code") == 1));
+    }
+
+    /**
+     * Check that a document which can never be written is moved to the
+     * rejected documents file, keeping its file, without holding back the
+     * next ones.
+     *
+     * @throws Exception Thrown when the journal cannot be used.
+     */
+    @Test
+    public void rejectedDocumentsAreMovedAside() throws Exception {
+        Path directory = this.folder.getRoot().toPath();
+        BlockingQueue<Document> written = new LinkedBlockingQueue<>();
+        MongoWriteJournal journal = new MongoWriteJournal(directory, "rejected", (document, file) -> {
+            if (document.getInteger("code") == 1) {
+                throw new DuplicatedEntityException("The code has been taken", null);
+            }
+
+            return written.add(document);
+        });
+
+        journal.add(new Document("code", 1), this.createFile());
+        journal.add(new Document("code", 2), this.createFile());
+
+        assertEquals(new Document("code", 2), written.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(this.awaitTruncated(directory.resolve("rejected.journal")));
+        assertFalse(journal.hasPending(document -> true));
+
+        List<String> rejectedLines = Files.readAllLines(directory.resolve("rejected.rejected"), StandardCharsets.UTF_8);
+        assertEquals(1, rejectedLines.size());
+        assertEquals(new Document("code", 1), Document.parse(rejectedLines.get(0)).get("document", Document.class));
+        assertEquals(1, Files.list(directory.resolve("rejected")).count());
+    }
+
+}